@@ -0,0 +1,92 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.DbContext;
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.async.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Completes a burst of {@code countAsync()} queries through the async API with
+ * {@link AsyncOptions.Builder#virtualThreads()}, with the default executor and with a larger
+ * platform thread pool.
+ * <p>
+ * Each query borrows a connection from a stub data source whose statements park for
+ * {@link #latencyMicros} to stand in for a database round trip, so the figures show the
+ * executor's effect on the library's own async path. Only meaningful on Java 21 or later; the
+ * virtual variant fails on older runtimes.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncExecutorBenchmark {
+
+    @Param({"virtual", "platform-default", "platform-200"})
+    public String executor;
+
+    @Param({"1000", "10000"})
+    public int operations;
+
+    @Param({"1000"})
+    public int latencyMicros;
+
+    private DbContext ctx;
+    /** Executor created by this benchmark, or null when the shared default is used */
+    private ExecutorService pool;
+
+    @Setup
+    public void setUp() {
+        DataSource dataSource = Fixtures.slowDataSource(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        AsyncOptions.Builder options = AsyncOptions.builder(dataSource);
+        switch (executor) {
+            case "virtual":
+                if (!VirtualThreads.isSupported()) throw new IllegalStateException("Virtual threads need Java 21");
+                pool = VirtualThreads.newExecutor();
+                options.executor(pool);
+                break;
+            case "platform-default":
+                break;
+            default:
+                pool = platformPool(200);
+                options.executor(pool);
+        }
+        ctx = Fixtures.context();
+        ctx.enableAsync(options.build());
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (pool == null) return;
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long burst() {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            futures.add(ctx.from(Fixtures.Order.class).countAsync());
+        }
+        long total = 0;
+        for (CompletableFuture<Long> f : futures) total += f.join();
+        return total;
+    }
+
+    private static ExecutorService platformPool(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bench-platform-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
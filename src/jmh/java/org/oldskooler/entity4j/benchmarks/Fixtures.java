@@ -0,0 +1,215 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.DbContext;
+import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.annotations.Entity;
+import org.oldskooler.entity4j.annotations.Id;
+import org.oldskooler.entity4j.dialect.types.PostgresDialect;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Entities and JDBC stand-ins shared by the benchmarks.
+ * <p>
+ * The connection, result set and prepared statement are {@link Proxy} instances, so every call
+ * on them allocates an argument array. Benchmarks that go through them have a baseline method
+ * doing the same JDBC calls without the ORM, to be subtracted from the {@code -prof gc} figures.
+ * </p>
+ */
+final class Fixtures {
+    private Fixtures() {}
+
+    @Entity(table = "customers")
+    public static class Customer {
+        @Id(auto = true) private Long id;
+        @Column private String name;
+        @Column private String email;
+        @Column private String status;
+        @Column(name = "created_at") private LocalDateTime createdAt;
+
+        public Customer() {}
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public String getEmail() { return email; }
+        public String getStatus() { return status; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+    }
+
+    @Entity(table = "orders")
+    public static class Order {
+        @Id(auto = true) private Long id;
+        @Column(name = "customer_id") private Long customerId;
+        @Column private BigDecimal total;
+        @Column private Integer quantity;
+        @Column private Boolean shipped;
+        @Column(name = "placed_at") private LocalDateTime placedAt;
+
+        public Order() {}
+
+        public Long getId() { return id; }
+        public Long getCustomerId() { return customerId; }
+        public BigDecimal getTotal() { return total; }
+        public Integer getQuantity() { return quantity; }
+        public Boolean getShipped() { return shipped; }
+        public LocalDateTime getPlacedAt() { return placedAt; }
+    }
+
+    /** A context on a connection that fails every call, for benchmarks that never reach the database. */
+    static DbContext context() {
+        Connection conn = (Connection) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("isClosed")) return false;
+                    throw new UnsupportedOperationException("Benchmark connection: " + method.getName());
+                });
+        return new DbContext(conn, new PostgresDialect());
+    }
+
+    /**
+     * A forward-only result set over {@code rows}, each a map of column label to value.
+     * {@link Rows#rewind()} moves it back before the first row.
+     */
+    static Rows rows(List<Map<String, Object>> rows) {
+        return new Rows(rows);
+    }
+
+    static final class Rows {
+        final List<Map<String, Object>> data;
+        final ResultSet resultSet;
+        int cursor = -1;
+
+        Rows(List<Map<String, Object>> data) {
+            this.data = data;
+            this.resultSet = (ResultSet) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                return ++cursor < data.size();
+                            case "getObject":
+                                Map<String, Object> row = data.get(cursor);
+                                if (!row.containsKey(args[0])) throw new SQLException("No column " + args[0]);
+                                return row.get(args[0]);
+                            case "close":
+                                return null;
+                            case "isClosed":
+                            case "wasNull":
+                                return false;
+                            default:
+                                throw new UnsupportedOperationException("Benchmark result set: " + method.getName());
+                        }
+                    });
+        }
+
+        void rewind() {
+            cursor = -1;
+        }
+    }
+
+    /** @return {@code count} order rows as the database would return them */
+    static List<Map<String, Object>> orderRows(int count) {
+        List<Map<String, Object>> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", (long) i + 1);
+            row.put("customer_id", (long) (i % 100));
+            row.put("total", BigDecimal.valueOf(i * 7L, 2));
+            row.put("quantity", i % 10);
+            row.put("shipped", i % 2 == 0);
+            row.put("placed_at", java.sql.Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(i)));
+            out.add(row);
+        }
+        return out;
+    }
+
+    /**
+     * A data source whose connections answer every query with a single row holding
+     * {@code 1L}, after parking for {@code latencyNanos} as a stand-in for the database
+     * round trip.
+     */
+    static DataSource slowDataSource(long latencyNanos) {
+        return (DataSource) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection")) return slowConnection(latencyNanos);
+                    throw new UnsupportedOperationException("Benchmark data source: " + method.getName());
+                });
+    }
+
+    private static Connection slowConnection(long latencyNanos) {
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return slowStatement(latencyNanos);
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException("Benchmark connection: " + method.getName());
+                    }
+                });
+    }
+
+    private static PreparedStatement slowStatement(long latencyNanos) {
+        return (PreparedStatement) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") || name.equals("close")) return null;
+                    // Tracked in a set by the async API so it can cancel running statements
+                    if (name.equals("hashCode")) return System.identityHashCode(proxy);
+                    if (name.equals("equals")) return proxy == args[0];
+                    if (name.equals("executeQuery")) {
+                        LockSupport.parkNanos(latencyNanos);
+                        return oneRow();
+                    }
+                    throw new UnsupportedOperationException("Benchmark statement: " + name);
+                });
+    }
+
+    private static ResultSet oneRow() {
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] == 0;
+                        case "getLong":
+                            return 1L;
+                        case "close":
+                            return null;
+                        case "wasNull":
+                            return false;
+                        default:
+                            throw new UnsupportedOperationException("Benchmark result set: " + method.getName());
+                    }
+                });
+    }
+
+    /** A prepared statement that stores bound values in {@code sink}, indexed from 1. */
+    static PreparedStatement statement(Object[] sink) {
+        return (PreparedStatement) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2) {
+                        sink[(Integer) args[0]] = args[1];
+                        return null;
+                    }
+                    throw new UnsupportedOperationException("Benchmark statement: " + method.getName());
+                });
+    }
+}
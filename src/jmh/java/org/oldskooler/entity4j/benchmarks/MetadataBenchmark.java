@@ -0,0 +1,49 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.benchmarks.Fixtures.Order;
+import org.oldskooler.entity4j.functions.SFunction;
+import org.oldskooler.entity4j.mapping.MappingRegistry;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.LambdaUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the property behind a getter reference, and the table metadata of an entity from
+ * annotations on an unfrozen registry and from the cache of a frozen one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private final SFunction<Order, ?> getter = Order::getCustomerId;
+    private MappingRegistry unfrozen;
+    private MappingRegistry frozen;
+
+    @Setup
+    public void setUp() {
+        unfrozen = new MappingRegistry();
+        frozen = new MappingRegistry();
+        frozen.freeze();
+    }
+
+    @Benchmark
+    public String propertyName() {
+        return LambdaUtils.propertyName(getter);
+    }
+
+    @Benchmark
+    public TableMeta<Order> tableMetaFromAnnotations() {
+        return TableMeta.of(Order.class, unfrozen);
+    }
+
+    @Benchmark
+    public TableMeta<Order> tableMetaCached() {
+        return TableMeta.of(Order.class, frozen);
+    }
+}
@@ -0,0 +1,60 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.util.JdbcParamBinder;
+import org.oldskooler.entity4j.util.ValueConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds a mixed parameter list with {@link JdbcParamBinder} to a stub statement, and converts
+ * typical JDBC values to field types with {@link ValueConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParamBindingBenchmark {
+
+    private final Object[] sink = new Object[16];
+    private PreparedStatement ps;
+    private final List<Object> params = Arrays.asList(42L, "ACTIVE", 3, true, new BigDecimal("19.99"),
+            LocalDate.of(2025, 1, 1), LocalDateTime.of(2025, 1, 1, 12, 0), Instant.EPOCH);
+
+    private final Timestamp timestamp = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 12, 0));
+    private final Integer intValue = 7;
+    private final Long longValue = 7L;
+
+    @Setup
+    public void setUp() {
+        ps = Fixtures.statement(sink);
+    }
+
+    @Benchmark
+    public Object[] bindParams() throws SQLException {
+        JdbcParamBinder.bindParams(ps, params);
+        return sink;
+    }
+
+    @Benchmark
+    public void convert(Blackhole bh) {
+        bh.consume(ValueConverter.convert(intValue, Long.class));     // INTEGER column into a Long field
+        bh.consume(ValueConverter.convert(longValue, int.class));
+        bh.consume(ValueConverter.convert(intValue, Boolean.class));  // 0/1 into a Boolean field
+        bh.consume(ValueConverter.convert(timestamp, LocalDateTime.class));
+        bh.consume(ValueConverter.convert("2025-01-01", LocalDate.class));
+        bh.consume(ValueConverter.convert("ACTIVE", String.class));   // already the target type
+    }
+}
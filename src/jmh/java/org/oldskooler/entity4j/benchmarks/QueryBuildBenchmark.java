@@ -0,0 +1,63 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.DbContext;
+import org.oldskooler.entity4j.benchmarks.Fixtures.Customer;
+import org.oldskooler.entity4j.benchmarks.Fixtures.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds SELECT statements with the fluent API, from {@code from(...)} to {@code toSql()},
+ * without touching the database. Covers lambda column resolution, filters, joins and selectors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuildBenchmark {
+
+    private DbContext ctx;
+    private final List<Long> ids = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+
+    @Setup
+    public void setUp() {
+        ctx = Fixtures.context();
+        ctx.from(Customer.class).toSql(); // build the model outside the measurement
+    }
+
+    @Benchmark
+    public String simpleFilter() {
+        return ctx.from(Customer.class)
+                .filter(f -> f.equals(Customer::getStatus, "ACTIVE"))
+                .toSql();
+    }
+
+    @Benchmark
+    public String multipleFilters() {
+        return ctx.from(Order.class)
+                .filter(f -> f.in(Order::getCustomerId, ids)
+                        .greater(Order::getQuantity, 2)
+                        .equals(Order::getShipped, true))
+                .orderBy(o -> o.col(Order::getPlacedAt).desc())
+                .limit(50)
+                .toSql();
+    }
+
+    @Benchmark
+    public String joinWithSelect() {
+        return ctx.from(Customer.class).as("c")
+                .innerJoin(Order.class, "o", j -> j.eq(Customer::getId, Order::getCustomerId))
+                .select(s -> s
+                        .col(Customer::getName).as("name")
+                        .col(Order.class, Order::getTotal).as("total")
+                        .col(Order.class, Order::getPlacedAt).as("placed_at"))
+                .filter(f -> f.equals(Customer::getStatus, "ACTIVE"))
+                .orderBy(o -> o.col(Customer::getName).asc())
+                .toSql();
+    }
+}
@@ -0,0 +1,55 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.DbContext;
+import org.oldskooler.entity4j.Query;
+import org.oldskooler.entity4j.benchmarks.Fixtures.Customer;
+import org.oldskooler.entity4j.benchmarks.Fixtures.Order;
+import org.oldskooler.entity4j.serialization.QuerySerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a joined, filtered query to JSON with {@link QuerySerializer} and restores it
+ * against a context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuerySerializerBenchmark {
+
+    private final QuerySerializer serializer = new QuerySerializer();
+    private DbContext ctx;
+    private Query<Customer> query;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        ctx = Fixtures.context();
+        query = ctx.from(Customer.class).as("c")
+                .innerJoin(Order.class, "o", j -> j.eq(Customer::getId, Order::getCustomerId))
+                .filter(f -> f.equals(Customer::getStatus, "ACTIVE").greater(Order.class, Order::getQuantity, 2))
+                .orderBy(o -> o.col(Customer::getName).asc())
+                .limit(20);
+        json = serializer.toJson(query);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return serializer.toJson(query);
+    }
+
+    @Benchmark
+    public Query<Customer> fromJson() {
+        return serializer.fromJson(json, ctx);
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        Query<Customer> restored = serializer.fromJson(serializer.toJson(query), ctx);
+        return restored.toSql();
+    }
+}
@@ -0,0 +1,56 @@
+package org.oldskooler.entity4j.benchmarks;
+
+import org.oldskooler.entity4j.benchmarks.Fixtures.Order;
+import org.oldskooler.entity4j.mapping.MappingRegistry;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.RowMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps rows of a stub {@link ResultSet} to entities with {@link RowMapper#mapAll}.
+ * {@link #readOnly} performs the same result set calls without mapping; the difference is the
+ * cost of instantiation, reflection and value conversion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int rows;
+
+    private Fixtures.Rows data;
+    private TableMeta<Order> meta;
+
+    @Setup
+    public void setUp() {
+        data = Fixtures.rows(Fixtures.orderRows(rows));
+        MappingRegistry registry = new MappingRegistry();
+        registry.freeze();
+        meta = TableMeta.of(Order.class, registry);
+    }
+
+    @Benchmark
+    public List<Order> mapAll() throws SQLException {
+        data.rewind();
+        return RowMapper.mapAll(data.resultSet, meta);
+    }
+
+    @Benchmark
+    public void readOnly(Blackhole bh) throws SQLException {
+        data.rewind();
+        ResultSet rs = data.resultSet;
+        while (rs.next()) {
+            for (String col : meta.propToColumn.values()) bh.consume(rs.getObject(col));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.oldskooler.entity4j.loadtest;
+
+import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.annotations.Entity;
+import org.oldskooler.entity4j.annotations.Id;
+import org.oldskooler.entity4j.annotations.Index;
+
+/** Synthetic customer; {@code region} has few distinct values so that filters return many rows. */
+@Entity(table = "lt_customers")
+public class Customer {
+    @Id(auto = true) private Long id;
+    @Column private String name;
+    @Index @Column private String region;
+    @Column private Integer tier;
+
+    public Customer() {}
+
+    public Customer(String name, String region, int tier) {
+        this.name = name;
+        this.region = region;
+        this.tier = tier;
+    }
+
+    public Long getId() { return id; }
+    public String getName() { return name; }
+    public String getRegion() { return region; }
+    public Integer getTier() { return tier; }
+}
@@ -0,0 +1,482 @@
+package org.oldskooler.entity4j.loadtest;
+
+import org.oldskooler.entity4j.DbContext;
+import org.oldskooler.entity4j.DbContextFactory;
+import org.oldskooler.entity4j.dialect.SqlDialectType;
+import org.oldskooler.entity4j.diagnostics.LatencyHistogram;
+import org.oldskooler.entity4j.pool.ConnectionPool;
+import org.oldskooler.entity4j.pool.PoolMetrics;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load harness: seeds an embedded SQLite database, then runs a weighted mix of
+ * {@link Operation operations} from many threads for a fixed time and reports throughput and
+ * latency percentiles per operation.
+ * <p>
+ * Every operation leases a context from a {@link DbContextFactory}, runs, and closes it; its
+ * latency includes the wait for a pooled connection. Operations that start during the warm-up
+ * are not recorded. Percentiles come from {@link LatencyHistogram}, so they are accurate to
+ * within its bucket width (about 12%).
+ * </p>
+ * <pre>{@code
+ * ./gradlew loadTest --args="--db temp --threads 16 --duration 30s --mix find=50,filter=20,insertAll=10,join=10,aggregate=10"
+ * }</pre>
+ */
+public final class LoadTest {
+
+    private final String database;
+    private final int threads;
+    private final int poolSize;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Map<Operation, Integer> mix;
+    private final Workload workload;
+
+    private LoadTest(Builder b) {
+        this.database = b.database;
+        this.threads = b.threads;
+        this.poolSize = b.poolSize > 0 ? b.poolSize : b.threads;
+        this.duration = b.duration;
+        this.warmup = b.warmup;
+        this.mix = new EnumMap<>(b.mix);
+        this.workload = new Workload(b.batchSize, b.seedCustomers, b.seedOrders);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Report report = parse(args).build().run();
+        report.print(System.out);
+    }
+
+    /**
+     * Seeds the database and runs the mix.
+     *
+     * @return the per-operation results of the measured period
+     * @throws SQLException if the database cannot be opened or prepared
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Report run() throws SQLException, InterruptedException {
+        boolean memory = database.equals("memory");
+        File file = null;
+        String url;
+        if (memory) {
+            url = "jdbc:sqlite:file:entity4j_load_" + System.nanoTime() + "?mode=memory&cache=shared";
+        } else {
+            if (database.equals("temp")) {
+                try {
+                    file = File.createTempFile("entity4j_load_", ".db");
+                } catch (java.io.IOException e) {
+                    throw new SQLException("Cannot create a temporary database file", e);
+                }
+            } else {
+                file = new File(database);
+            }
+            if (file.exists() && !file.delete()) throw new IllegalStateException("Cannot delete " + file);
+            url = "jdbc:sqlite:" + file.getPath();
+        }
+
+        // An in-memory database lives as long as one connection to it is open
+        Connection anchor = DriverManager.getConnection(url);
+        ConnectionPool pool = ConnectionPool.builder(() -> open(url, memory))
+                .maxSize(poolSize)
+                .acquireTimeout(Duration.ofSeconds(30))
+                .build();
+        try (DbContextFactory<DbContext> factory = DbContextFactory
+                .builder(c -> new DbContext(c, SqlDialectType.SQLITE), pool).build()) {
+            try (DbContext ctx = factory.lease()) {
+                workload.seed(ctx);
+            }
+            return measure(factory);
+        } finally {
+            anchor.close();
+            if (database.equals("temp")) {
+                for (String suffix : new String[] {"", "-wal", "-shm"}) {
+                    new File(file.getPath() + suffix).delete();
+                }
+            }
+        }
+    }
+
+    private static Connection open(String url, boolean memory) throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA busy_timeout = 10000");
+            if (memory) {
+                // Readers skip shared-cache table locks; writers still serialise
+                st.execute("PRAGMA read_uncommitted = 1");
+            } else {
+                st.execute("PRAGMA journal_mode = WAL");
+                st.execute("PRAGMA synchronous = NORMAL");
+            }
+        }
+        return c;
+    }
+
+    private Report measure(DbContextFactory<DbContext> factory) throws InterruptedException {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation op : mix.keySet()) stats.put(op, new OperationStats(op));
+        Operation[] table = weightedTable();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    Operation op = table[rnd.nextInt(table.length)];
+                    OperationStats s = stats.get(op);
+                    try (DbContext ctx = factory.lease()) {
+                        int rows = op.run(ctx, workload, rnd);
+                        if (now >= measureFrom) s.success(System.nanoTime() - now, rows);
+                    } catch (RuntimeException e) {
+                        if (now >= measureFrom) s.failure(System.nanoTime() - now, e);
+                    }
+                }
+            }, "load-" + i);
+            workers.add(t);
+            t.start();
+        }
+        for (Thread t : workers) t.join();
+
+        long measured = System.nanoTime() - measureFrom;
+        return new Report(this, new ArrayList<>(stats.values()), measured, factory.metrics());
+    }
+
+    /** @return operations repeated by weight, for uniform sampling */
+    private Operation[] weightedTable() {
+        List<Operation> table = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> e : mix.entrySet()) {
+            for (int i = 0; i < e.getValue(); i++) table.add(e.getKey());
+        }
+        return table.toArray(new Operation[0]);
+    }
+
+    /**
+     * Parses command line options into a builder.
+     *
+     * @param args options such as {@code --threads 16 --duration 30s}
+     * @return a builder with the options applied
+     * @throws IllegalArgumentException on an unknown or malformed option
+     */
+    public static Builder parse(String[] args) {
+        Builder b = builder();
+        for (int i = 0; i < args.length; i++) {
+            String opt = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + opt);
+            String v = args[++i];
+            switch (opt) {
+                case "--db": b.database(v); break;
+                case "--threads": b.threads(Integer.parseInt(v)); break;
+                case "--pool": b.poolSize(Integer.parseInt(v)); break;
+                case "--duration": b.duration(parseDuration(v)); break;
+                case "--warmup": b.warmup(parseDuration(v)); break;
+                case "--batch": b.batchSize(Integer.parseInt(v)); break;
+                case "--customers": b.seedCustomers(Long.parseLong(v)); break;
+                case "--orders": b.seedOrders(Long.parseLong(v)); break;
+                case "--mix": b.mix(parseMix(v)); break;
+                default: throw new IllegalArgumentException("Unknown option: " + opt);
+            }
+        }
+        return b;
+    }
+
+    private static Duration parseDuration(String v) {
+        String s = v.trim().toLowerCase(Locale.ROOT);
+        if (s.endsWith("ms")) return Duration.ofMillis(Long.parseLong(s.substring(0, s.length() - 2)));
+        if (s.endsWith("s")) return Duration.ofSeconds(Long.parseLong(s.substring(0, s.length() - 1)));
+        if (s.endsWith("m")) return Duration.ofMinutes(Long.parseLong(s.substring(0, s.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(s));
+    }
+
+    private static Map<Operation, Integer> parseMix(String v) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : v.split(",")) {
+            String[] kv = entry.split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Expected operation=weight, got: " + entry);
+            mix.put(Operation.fromLabel(kv[0]), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    /** Latency, rows and errors of one operation type during the measured period. */
+    public static final class OperationStats {
+        private final Operation operation;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram errorLatency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+
+        OperationStats(Operation operation) {
+            this.operation = operation;
+        }
+
+        void success(long nanos, int rowCount) {
+            latency.record(nanos);
+            rows.add(rowCount);
+        }
+
+        void failure(long nanos, RuntimeException e) {
+            errorLatency.record(nanos);
+            firstError.compareAndSet(null, e);
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /** @return latencies of the operations that completed */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errorLatency.getCount();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /** @return the first failure, or null */
+        public RuntimeException getFirstError() {
+            return firstError.get();
+        }
+    }
+
+    /** Results of a run. */
+    public static final class Report {
+        private final LoadTest config;
+        private final List<OperationStats> operations;
+        private final long measuredNanos;
+        private final PoolMetrics pool;
+
+        Report(LoadTest config, List<OperationStats> operations, long measuredNanos, PoolMetrics pool) {
+            this.config = config;
+            this.operations = operations;
+            this.measuredNanos = measuredNanos;
+            this.pool = pool;
+        }
+
+        public List<OperationStats> getOperations() {
+            return operations;
+        }
+
+        public long getMeasuredNanos() {
+            return measuredNanos;
+        }
+
+        /** @return completed operations per second, all types together */
+        public double getThroughput() {
+            long n = 0;
+            for (OperationStats s : operations) n += s.getLatency().getCount();
+            return n / (measuredNanos / 1e9);
+        }
+
+        /** Prints a table with one line per operation type. */
+        public void print(PrintStream out) {
+            double seconds = measuredNanos / 1e9;
+            out.printf(Locale.ROOT, "SQLite %s, %d threads, pool %d, %.1fs measured after %ds warm-up%n",
+                    config.database, config.threads, config.poolSize, seconds, config.warmup.getSeconds());
+            out.printf(Locale.ROOT, "%-10s %9s %10s %7s %9s %9s %9s %9s %9s%n",
+                    "operation", "count", "ops/s", "errors", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            for (OperationStats s : operations) {
+                LatencyHistogram h = s.getLatency();
+                out.printf(Locale.ROOT, "%-10s %9d %10.1f %7d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                        s.getOperation().label(), h.getCount(), h.getCount() / seconds, s.getErrors(),
+                        ms(h.getMeanNanos()), ms(h.getPercentileNanos(50)), ms(h.getPercentileNanos(99)),
+                        ms(h.getPercentileNanos(99.9)), ms(h.getMaxNanos()));
+            }
+            out.printf(Locale.ROOT, "total      %9s %10.1f%n", "", getThroughput());
+            out.println("pool: " + pool);
+            for (OperationStats s : operations) {
+                if (s.getFirstError() != null) {
+                    Throwable e = s.getFirstError();
+                    Throwable root = e;
+                    while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+                    out.println("first " + s.getOperation().label() + " error: " + e
+                            + (root != e ? " (root cause: " + root + ")" : ""));
+                }
+            }
+        }
+
+        private static double ms(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    /**
+     * Builder for LoadTest.
+     */
+    public static class Builder {
+        private String database = "temp";
+        private int threads = Runtime.getRuntime().availableProcessors() * 2;
+        private int poolSize = 0;
+        private Duration duration = Duration.ofSeconds(30);
+        private Duration warmup = Duration.ofSeconds(5);
+        private int batchSize = 50;
+        private long seedCustomers = 1_000;
+        private long seedOrders = 20_000;
+        private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+        private Builder() {
+            mix.put(Operation.INSERT, 5);
+            mix.put(Operation.INSERT_ALL, 5);
+            mix.put(Operation.UPDATE_ALL, 5);
+            mix.put(Operation.FIND, 40);
+            mix.put(Operation.FILTER, 25);
+            mix.put(Operation.JOIN, 10);
+            mix.put(Operation.AGGREGATE, 10);
+        }
+
+        /**
+         * Sets the database: {@code temp} for a temporary file that is deleted after the run,
+         * {@code memory} for a shared-cache in-memory database, or a file path, which is deleted
+         * first. Files are opened in WAL mode. Defaults to {@code temp}.
+         * <p>
+         * Shared-cache memory databases lock whole tables, and a writer that meets another
+         * connection's table lock fails with {@code SQLITE_LOCKED} at once instead of waiting for
+         * the busy timeout, so under concurrent writes that mode reports errors which a file
+         * database does not.
+         * </p>
+         *
+         * @param database {@code temp}, {@code memory} or a file path
+         * @return this builder
+         */
+        public Builder database(String database) {
+            this.database = Objects.requireNonNull(database, "database");
+            return this;
+        }
+
+        /**
+         * Sets the number of worker threads. Defaults to twice the number of processors.
+         *
+         * @param threads the worker count
+         * @return this builder
+         */
+        public Builder threads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the connection pool size. Defaults to the number of threads.
+         *
+         * @param poolSize the maximum number of connections
+         * @return this builder
+         */
+        public Builder poolSize(int poolSize) {
+            if (poolSize < 1) throw new IllegalArgumentException("poolSize must be at least 1");
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        /**
+         * Sets how long to measure, after the warm-up. Defaults to 30 seconds.
+         *
+         * @param duration the measured period
+         * @return this builder
+         */
+        public Builder duration(Duration duration) {
+            this.duration = Objects.requireNonNull(duration, "duration");
+            return this;
+        }
+
+        /**
+         * Sets how long to run before measuring. Defaults to 5 seconds.
+         *
+         * @param warmup the warm-up period
+         * @return this builder
+         */
+        public Builder warmup(Duration warmup) {
+            this.warmup = Objects.requireNonNull(warmup, "warmup");
+            return this;
+        }
+
+        /**
+         * Sets the number of rows per {@code insertAll} and {@code updateAll}. Defaults to 50.
+         *
+         * @param batchSize rows per batch
+         * @return this builder
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of customers inserted before the run. Defaults to 1,000.
+         *
+         * @param seedCustomers the customer count
+         * @return this builder
+         */
+        public Builder seedCustomers(long seedCustomers) {
+            if (seedCustomers < 1) throw new IllegalArgumentException("seedCustomers must be at least 1");
+            this.seedCustomers = seedCustomers;
+            return this;
+        }
+
+        /**
+         * Sets the number of orders inserted before the run. Defaults to 20,000.
+         *
+         * @param seedOrders the order count
+         * @return this builder
+         */
+        public Builder seedOrders(long seedOrders) {
+            if (seedOrders < 1) throw new IllegalArgumentException("seedOrders must be at least 1");
+            this.seedOrders = seedOrders;
+            return this;
+        }
+
+        /**
+         * Replaces the operation mix. Weights are relative; operations left out do not run.
+         * Defaults to 5 each of insert, insertAll and updateAll, 40 find, 25 filter, 10 join
+         * and 10 aggregate.
+         *
+         * @param mix weight per operation
+         * @return this builder
+         */
+        public Builder mix(Map<Operation, Integer> mix) {
+            this.mix.clear();
+            for (Map.Entry<Operation, Integer> e : mix.entrySet()) {
+                if (e.getValue() < 0) throw new IllegalArgumentException("Negative weight for " + e.getKey().label());
+                if (e.getValue() > 0) this.mix.put(e.getKey(), e.getValue());
+            }
+            if (this.mix.isEmpty()) throw new IllegalArgumentException("The mix needs at least one operation");
+            return this;
+        }
+
+        /**
+         * Builds the LoadTest.
+         *
+         * @return a new LoadTest instance
+         */
+        public LoadTest build() {
+            return new LoadTest(this);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.oldskooler.entity4j.loadtest;
+
+import org.oldskooler.entity4j.DbContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The operations of the load mix. Each runs one unit of work on a leased context and returns the
+ * number of rows it read or wrote.
+ */
+public enum Operation {
+    /** One {@code insert} of a customer. */
+    INSERT {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            return ctx.insert(w.newCustomer(rnd));
+        }
+    },
+    /** One {@code insertAll} of a batch of orders. */
+    INSERT_ALL {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            List<Order> batch = new ArrayList<>(w.batchSize);
+            for (int i = 0; i < w.batchSize; i++) batch.add(w.newOrder(rnd));
+            return ctx.insertAll(batch);
+        }
+    },
+    /** One {@code updateAll} of a batch of seeded orders with consecutive ids. */
+    UPDATE_ALL {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            long first = 1 + rnd.nextLong(Math.max(1, w.seedOrders - w.batchSize));
+            List<Order> batch = new ArrayList<>(w.batchSize);
+            for (int i = 0; i < w.batchSize; i++) {
+                Order o = w.newOrder(rnd);
+                o.setId(first + i);
+                batch.add(o);
+            }
+            return ctx.updateAll(batch);
+        }
+    },
+    /** Primary key lookup of a customer. */
+    FIND {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            long id = 1 + rnd.nextLong(w.seedCustomers);
+            return ctx.from(Customer.class).filter(f -> f.equals(Customer::getId, id)).first().isPresent() ? 1 : 0;
+        }
+    },
+    /** Filtered, ordered page of orders of one customer. */
+    FILTER {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            long customer = 1 + rnd.nextLong(w.seedCustomers);
+            return ctx.from(Order.class)
+                    .filter(f -> f.equals(Order::getCustomerId, customer).greater(Order::getQuantity, 2))
+                    .orderBy(o -> o.col(Order::getTotal).desc())
+                    .limit(20)
+                    .toList().size();
+        }
+    },
+    /** Customers of a region joined to their open orders. */
+    JOIN {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            String region = Workload.REGIONS[rnd.nextInt(Workload.REGIONS.length)];
+            return ctx.from(Customer.class).as("c")
+                    .innerJoin(Order.class, "o", j -> j.eq(Customer::getId, Order::getCustomerId))
+                    .select(s -> s.col(Customer::getName).as("name")
+                            .col(Order.class, Order::getTotal).as("total"))
+                    .filter(f -> f.equals(Customer::getRegion, region)
+                            .equals(Order.class, Order::getStatus, "OPEN"))
+                    .limit(100)
+                    .toMapList().size();
+        }
+    },
+    /** Order totals grouped by status for a range of customers. */
+    AGGREGATE {
+        @Override
+        int run(DbContext ctx, Workload w, ThreadLocalRandom rnd) {
+            long from = 1 + rnd.nextLong(w.seedCustomers);
+            return ctx.from(Order.class)
+                    .select(s -> s.col(Order::getStatus).sum(Order::getTotal).as("total").count().as("orders"))
+                    .filter(f -> f.greaterOrEquals(Order::getCustomerId, from).lessOrEquals(Order::getCustomerId, from + 50))
+                    .groupBy(g -> g.col(Order::getStatus))
+                    .toMapList().size();
+        }
+    };
+
+    abstract int run(DbContext ctx, Workload w, ThreadLocalRandom rnd);
+
+    /** @return the name used in {@code --mix}, e.g. {@code insertAll} for {@link #INSERT_ALL} */
+    public String label() {
+        String[] words = name().toLowerCase(Locale.ROOT).split("_");
+        StringBuilder s = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) s.append(Character.toUpperCase(words[i].charAt(0))).append(words[i].substring(1));
+        return s.toString();
+    }
+
+    /**
+     * @param label a name as returned by {@link #label()}, case-insensitive
+     * @return the operation
+     * @throws IllegalArgumentException if no operation has that name
+     */
+    public static Operation fromLabel(String label) {
+        for (Operation op : values()) {
+            if (op.label().equalsIgnoreCase(label.trim())) return op;
+        }
+        throw new IllegalArgumentException("Unknown operation: " + label);
+    }
+}
@@ -0,0 +1,33 @@
+package org.oldskooler.entity4j.loadtest;
+
+import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.annotations.Entity;
+import org.oldskooler.entity4j.annotations.Id;
+import org.oldskooler.entity4j.annotations.Index;
+
+/** Synthetic order of a {@link Customer}. */
+@Entity(table = "lt_orders")
+public class Order {
+    @Id(auto = true) private Long id;
+    @Index @Column(name = "customer_id") private Long customerId;
+    @Column private String status;
+    @Column private Integer quantity;
+    @Column private Double total;
+
+    public Order() {}
+
+    public Order(long customerId, String status, int quantity, double total) {
+        this.customerId = customerId;
+        this.status = status;
+        this.quantity = quantity;
+        this.total = total;
+    }
+
+    public Long getId() { return id; }
+    public Long getCustomerId() { return customerId; }
+    public String getStatus() { return status; }
+    public Integer getQuantity() { return quantity; }
+    public Double getTotal() { return total; }
+
+    public void setId(Long id) { this.id = id; }
+}
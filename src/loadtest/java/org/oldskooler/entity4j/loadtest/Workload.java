@@ -0,0 +1,54 @@
+package org.oldskooler.entity4j.loadtest;
+
+import org.oldskooler.entity4j.DbContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Generates the synthetic customers and orders, and seeds the tables before the run. */
+final class Workload {
+    static final String[] REGIONS = {"north", "south", "east", "west", "central"};
+    static final String[] STATUSES = {"OPEN", "PAID", "SHIPPED", "CANCELLED"};
+
+    final int batchSize;
+    final long seedCustomers;
+    final long seedOrders;
+
+    Workload(int batchSize, long seedCustomers, long seedOrders) {
+        this.batchSize = batchSize;
+        this.seedCustomers = seedCustomers;
+        this.seedOrders = seedOrders;
+    }
+
+    Customer newCustomer(ThreadLocalRandom rnd) {
+        return new Customer("customer-" + rnd.nextInt(1_000_000), REGIONS[rnd.nextInt(REGIONS.length)], 1 + rnd.nextInt(3));
+    }
+
+    Order newOrder(ThreadLocalRandom rnd) {
+        return new Order(1 + rnd.nextLong(seedCustomers), STATUSES[rnd.nextInt(STATUSES.length)],
+                1 + rnd.nextInt(10), Math.round(rnd.nextDouble(5, 500) * 100) / 100.0);
+    }
+
+    /** Creates the tables and inserts the seed rows, so that seeded ids run from 1 upwards. */
+    void seed(DbContext ctx) {
+        ctx.createTables(Customer.class, Order.class);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<Customer> customers = new ArrayList<>();
+        for (long i = 0; i < seedCustomers; i++) {
+            customers.add(newCustomer(rnd));
+            if (customers.size() == 1000 || i == seedCustomers - 1) {
+                ctx.insertAll(customers);
+                customers.clear();
+            }
+        }
+        List<Order> orders = new ArrayList<>();
+        for (long i = 0; i < seedOrders; i++) {
+            orders.add(newOrder(rnd));
+            if (orders.size() == 1000 || i == seedOrders - 1) {
+                ctx.insertAll(orders);
+                orders.clear();
+            }
+        }
+    }
+}
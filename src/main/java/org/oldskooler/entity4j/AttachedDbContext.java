@@ -0,0 +1,22 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.mapping.ModelBuilder;
+
+import java.sql.Connection;
+
+/**
+ * A context bound to its own connection that shares the dialect, entity model, query cache and
+ * replicas of a parent context. Used for work that must not run on the parent's connection,
+ * such as async operations or pooled leases.
+ */
+public class AttachedDbContext extends IDbContext {
+    public AttachedDbContext(IDbContext parent, Connection connection) {
+        super(parent, connection);
+    }
+
+    /** The model is built once by the parent; nothing to configure here. */
+    @Override
+    public void onModelCreating(ModelBuilder model) {
+
+    }
+}
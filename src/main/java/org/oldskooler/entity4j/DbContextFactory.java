@@ -0,0 +1,175 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.cache.QueryCache;
+import org.oldskooler.entity4j.pool.ConnectionPool;
+import org.oldskooler.entity4j.pool.PoolMetrics;
+import org.oldskooler.entity4j.pool.StatementScopedConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Creates contexts over a {@link ConnectionPool}, building the entity model only once.
+ * <p>
+ * {@link #lease()} returns a context bound to one pooled connection; closing the context
+ * returns the connection. Leases are cheap to create and are meant to be used by one thread
+ * at a time, typically for a single request or unit of work, and support transactions.
+ * </p>
+ * <p>
+ * {@link #shared()} returns a single context that is safe to use from many threads at once:
+ * each statement borrows a pooled connection for its own duration. It runs in auto-commit
+ * mode and cannot begin transactions.
+ * </p>
+ * <p>
+ * All contexts from one factory share the query cache, and async operations on them borrow
+ * from the same pool. A lease starts with the replicas, statement interceptors and read
+ * routing configured on {@link #shared()} at the time it is leased.
+ * </p>
+ *
+ * @param <C> the context type
+ */
+public class DbContextFactory<C extends IDbContext> implements AutoCloseable {
+
+    /**
+     * Creates a context on the given connection, e.g. {@code AppDb::new}.
+     *
+     * @param <C> the context type
+     */
+    @FunctionalInterface
+    public interface ContextConstructor<C extends IDbContext> {
+        C create(Connection connection) throws SQLException;
+    }
+
+    private final ContextConstructor<C> constructor;
+    private final ConnectionPool pool;
+    private final C shared;
+
+    private DbContextFactory(Builder<C> b) {
+        this.constructor = b.constructor;
+        this.pool = b.pool;
+        try {
+            this.shared = constructor.create(StatementScopedConnection.over(pool));
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create shared context", e);
+        }
+        shared.setQueryCache(b.queryCache != null ? b.queryCache : new QueryCache());
+        shared.enableAsync(b.asyncOptions != null ? b.asyncOptions : AsyncOptions.builder(pool).build());
+        shared.ensureModelBuiltInternal();
+    }
+
+    /**
+     * Creates a builder for a factory.
+     *
+     * @param constructor creates a context on a connection
+     * @param pool        the pool connections are leased from
+     * @param <C>         the context type
+     * @return a new Builder instance
+     */
+    public static <C extends IDbContext> Builder<C> builder(ContextConstructor<C> constructor, ConnectionPool pool) {
+        return new Builder<>(constructor, pool);
+    }
+
+    /**
+     * Leases a pooled connection and returns a context bound to it, configured like
+     * {@link #shared()}. Close the context to return the connection.
+     *
+     * @return a new context
+     * @throws RuntimeException wrapping the SQLException if no connection could be leased
+     */
+    public C lease() {
+        Connection conn;
+        try {
+            conn = pool.getConnection();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to lease a connection", e);
+        }
+
+        try {
+            C ctx = constructor.create(conn);
+            ctx.useConfigurationOf(shared);
+            return ctx;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.close();
+            } catch (SQLException closeEx) {
+                e.addSuppressed(closeEx);
+            }
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new RuntimeException("Failed to create context", e);
+        }
+    }
+
+    /**
+     * @return the thread-safe context that borrows a connection per statement
+     */
+    public C shared() {
+        return shared;
+    }
+
+    public ConnectionPool pool() {
+        return pool;
+    }
+
+    /**
+     * @return a snapshot of the pool's wait-time and utilisation metrics
+     */
+    public PoolMetrics metrics() {
+        return pool.metrics();
+    }
+
+    /** Closes the pool. */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Builder for DbContextFactory.
+     *
+     * @param <C> the context type
+     */
+    public static class Builder<C extends IDbContext> {
+        private final ContextConstructor<C> constructor;
+        private final ConnectionPool pool;
+        private QueryCache queryCache = null;
+        private AsyncOptions asyncOptions = null;
+
+        private Builder(ContextConstructor<C> constructor, ConnectionPool pool) {
+            this.constructor = Objects.requireNonNull(constructor, "constructor");
+            this.pool = Objects.requireNonNull(pool, "pool");
+        }
+
+        /**
+         * Sets the query cache shared by all contexts. Defaults to a new {@link QueryCache}.
+         *
+         * @param queryCache the cache
+         * @return this builder
+         */
+        public Builder<C> queryCache(QueryCache queryCache) {
+            this.queryCache = Objects.requireNonNull(queryCache, "queryCache");
+            return this;
+        }
+
+        /**
+         * Sets the async options. Defaults to borrowing from the factory's pool.
+         *
+         * @param asyncOptions the async options
+         * @return this builder
+         */
+        public Builder<C> async(AsyncOptions asyncOptions) {
+            this.asyncOptions = Objects.requireNonNull(asyncOptions, "asyncOptions");
+            return this;
+        }
+
+        /**
+         * Builds the DbContextFactory. Creates the shared context and builds the model.
+         *
+         * @return a new DbContextFactory instance
+         */
+        public DbContextFactory<C> build() {
+            return new DbContextFactory<>(this);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.cache.QueryCache;
+import org.oldskooler.entity4j.transaction.Transaction;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of whole context instances, each bound to its own connection.
+ * <p>
+ * {@link #rent()} hands out an idle context, or creates one if the pool is below its maximum
+ * size. Closing a rented context returns it: its transaction state is cleared, its
+ * connection put back into auto-commit mode, and interceptors, replicas, read routing, async
+ * settings and query cache are restored to what the pool configured, so nothing one renter
+ * changes reaches the next. The connection itself, the compiled model and the operation
+ * handlers are kept. New contexts are warmed up before
+ * they are first handed out.
+ * </p>
+ * <p>
+ * A context returned with a transaction still open is not reused: the transaction is rolled
+ * back, the context is discarded and {@link #giveBack(IDbContext)} throws
+ * {@link IllegalStateException}.
+ * </p>
+ *
+ * @param <C> the context type
+ */
+public class DbContextPool<C extends IDbContext> implements AutoCloseable {
+    private final DbContextFactory.ContextConstructor<C> constructor;
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final Duration acquireTimeout;
+    private final Duration validationTimeout;
+    private final Duration validationInterval;
+    private final QueryCache queryCache;
+    private final AsyncOptions asyncOptions;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Entry<C>> idle = new ConcurrentLinkedDeque<>();
+    private final Map<IDbContext, Entry<C>> all = new ConcurrentHashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rents = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    private volatile boolean closed;
+
+    private DbContextPool(Builder<C> b) {
+        this.constructor = b.constructor;
+        this.dataSource = b.dataSource;
+        this.maxSize = b.maxSize;
+        this.acquireTimeout = b.acquireTimeout;
+        this.validationTimeout = b.validationTimeout;
+        this.validationInterval = b.validationInterval;
+        this.queryCache = b.queryCache != null ? b.queryCache : new QueryCache();
+        this.asyncOptions = b.asyncOptions;
+        this.permits = new Semaphore(b.maxSize, true);
+    }
+
+    /**
+     * Creates a builder for a context pool.
+     *
+     * @param constructor creates a context on a connection, e.g. {@code AppDb::new}
+     * @param dataSource  opens the connections the contexts are bound to
+     * @param <C>         the context type
+     * @return a new Builder instance
+     */
+    public static <C extends IDbContext> Builder<C> builder(DbContextFactory.ContextConstructor<C> constructor, DataSource dataSource) {
+        return new Builder<>(constructor, dataSource);
+    }
+
+    /**
+     * Rents a context, waiting up to the acquire timeout if all contexts are in use.
+     * Close the context to return it.
+     *
+     * @return a ready-to-use context
+     * @throws RuntimeException wrapping the SQLException if no context became available in
+     *                          time or a new one could not be created
+     */
+    public C rent() {
+        if (closed) throw new IllegalStateException("Context pool is closed");
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a pooled context", e);
+        }
+        if (!acquired) {
+            throw new RuntimeException(new SQLTransientConnectionException("Timed out after " + acquireTimeout.toMillis()
+                    + "ms waiting for a pooled context (active=" + active.get() + ", max=" + maxSize + ")"));
+        }
+
+        try {
+            Entry<C> e;
+            while ((e = idle.pollFirst()) != null) {
+                if (validate(e)) break;
+                discard(e);
+            }
+            if (e == null) e = create();
+
+            e.rented.set(true);
+            active.incrementAndGet();
+            rents.increment();
+            return e.context;
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a rented context to the pool. Equivalent to closing the context.
+     *
+     * @param context a context rented from this pool
+     * @throws IllegalArgumentException if the context does not belong to this pool
+     * @throws IllegalStateException if the context was already returned, or still has an open
+     *                               transaction (it is rolled back and discarded)
+     */
+    public void giveBack(IDbContext context) {
+        Entry<C> e = all.get(context);
+        if (e == null) throw new IllegalArgumentException("Context does not belong to this pool");
+
+        if (!e.rented.compareAndSet(true, false)) {
+            throw new IllegalStateException("Context has already been returned to the pool");
+        }
+
+        try {
+            Transaction open = context.getCurrentTransaction();
+            if (open != null) {
+                try {
+                    open.rollback();
+                } catch (SQLException ignored) {
+                    // Discarded below either way
+                }
+                discard(e);
+                throw new IllegalStateException("Context was returned with an open transaction; it has been rolled back and the context discarded");
+            }
+
+            if (closed) {
+                discard(e);
+                return;
+            }
+            try {
+                context.resetForReuse(e.template);
+                e.lastUsed = System.nanoTime();
+                idle.offerFirst(e);
+            } catch (SQLException | RuntimeException ex) {
+                discard(e);
+            }
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /** @return contexts currently rented out */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getRentCount() {
+        return rents.sum();
+    }
+
+    /** @return contexts created; rents minus this is the number of reuses */
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    /** @return contexts closed because they failed validation, or were returned dirty or after close */
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    public QueryCache queryCache() {
+        return queryCache;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes idle contexts. Rented contexts are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Entry<C> e;
+        while ((e = idle.pollFirst()) != null) discard(e);
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private Entry<C> create() {
+        Connection conn;
+        try {
+            conn = dataSource.getConnection();
+        } catch (SQLException ex) {
+            throw new RuntimeException("Failed to open a connection for a pooled context", ex);
+        }
+
+        try {
+            C ctx = constructor.create(conn);
+            ctx.setQueryCache(queryCache);
+            if (asyncOptions != null) ctx.enableAsync(asyncOptions);
+            ctx.warmUp();
+            ctx.setOwnerPool(this);
+
+            Entry<C> e = new Entry<>(ctx, ctx.captureReuseTemplate());
+            all.put(ctx, e);
+            created.increment();
+            return e;
+        } catch (SQLException | RuntimeException ex) {
+            try {
+                conn.close();
+            } catch (SQLException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            if (ex instanceof RuntimeException) throw (RuntimeException) ex;
+            throw new RuntimeException("Failed to create a pooled context", ex);
+        }
+    }
+
+    private void discard(Entry<C> e) {
+        if (all.remove(e.context) == null) return;
+        discarded.increment();
+        e.context.setOwnerPool(null);
+        try {
+            e.context.closeConnection();
+        } catch (RuntimeException ignored) {
+            // Already broken
+        }
+    }
+
+    private boolean validate(Entry<C> e) {
+        if (System.nanoTime() - e.lastUsed < validationInterval.toNanos()) return true;
+        try {
+            return e.context.conn().isValid((int) Math.max(1, validationTimeout.getSeconds()));
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static final class Entry<C extends IDbContext> {
+        final C context;
+        final IDbContext.ReuseTemplate template;
+        volatile long lastUsed = System.nanoTime();
+        final AtomicBoolean rented = new AtomicBoolean();
+
+        Entry(C context, IDbContext.ReuseTemplate template) {
+            this.context = context;
+            this.template = template;
+        }
+    }
+
+    /**
+     * Builder for DbContextPool.
+     *
+     * @param <C> the context type
+     */
+    public static class Builder<C extends IDbContext> {
+        private final DbContextFactory.ContextConstructor<C> constructor;
+        private final DataSource dataSource;
+        private int maxSize = 10;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration validationTimeout = Duration.ofSeconds(5);
+        private Duration validationInterval = Duration.ofMillis(500);
+        private QueryCache queryCache = null;
+        private AsyncOptions asyncOptions = null;
+
+        private Builder(DbContextFactory.ContextConstructor<C> constructor, DataSource dataSource) {
+            this.constructor = Objects.requireNonNull(constructor, "constructor");
+            this.dataSource = Objects.requireNonNull(dataSource, "dataSource");
+        }
+
+        /**
+         * Sets the maximum number of contexts, rented plus idle. Defaults to 10.
+         *
+         * @param maxSize the maximum pool size
+         * @return this builder
+         */
+        public Builder<C> maxSize(int maxSize) {
+            if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets how long {@link DbContextPool#rent()} waits for a free context. Defaults to 30 seconds.
+         *
+         * @param acquireTimeout the maximum wait
+         * @return this builder
+         */
+        public Builder<C> acquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = Objects.requireNonNull(acquireTimeout, "acquireTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the timeout for {@link Connection#isValid(int)} checks. Defaults to 5 seconds.
+         *
+         * @param validationTimeout the validation timeout
+         * @return this builder
+         */
+        public Builder<C> validationTimeout(Duration validationTimeout) {
+            this.validationTimeout = Objects.requireNonNull(validationTimeout, "validationTimeout");
+            return this;
+        }
+
+        /**
+         * Contexts idle for less than this are handed out without validating their connection.
+         * Defaults to 500 milliseconds.
+         *
+         * @param validationInterval the interval
+         * @return this builder
+         */
+        public Builder<C> validationInterval(Duration validationInterval) {
+            this.validationInterval = Objects.requireNonNull(validationInterval, "validationInterval");
+            return this;
+        }
+
+        /**
+         * Sets the query cache shared by all contexts. Defaults to a new {@link QueryCache}.
+         *
+         * @param queryCache the cache
+         * @return this builder
+         */
+        public Builder<C> queryCache(QueryCache queryCache) {
+            this.queryCache = Objects.requireNonNull(queryCache, "queryCache");
+            return this;
+        }
+
+        /**
+         * Enables the {@code *Async} methods on pooled contexts.
+         *
+         * @param asyncOptions the async options
+         * @return this builder
+         */
+        public Builder<C> async(AsyncOptions asyncOptions) {
+            this.asyncOptions = Objects.requireNonNull(asyncOptions, "asyncOptions");
+            return this;
+        }
+
+        /**
+         * Builds the DbContextPool. Contexts are created on demand.
+         *
+         * @return a new DbContextPool instance
+         */
+        public DbContextPool<C> build() {
+            return new DbContextPool<>(this);
+        }
+    }
+}
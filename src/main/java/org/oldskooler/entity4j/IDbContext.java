@@ -1,7 +1,16 @@
 package org.oldskooler.entity4j;
 
+import org.oldskooler.entity4j.async.AsyncExecution;
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.cache.QueryCache;
+import org.oldskooler.entity4j.cache.ReferenceTableReplica;
+import org.oldskooler.entity4j.diagnostics.StatementInterceptor;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.diagnostics.TableAccess;
 import org.oldskooler.entity4j.dialect.SqlDialect;
 import org.oldskooler.entity4j.dialect.SqlDialectType;
+import org.oldskooler.entity4j.mapping.CompiledModel;
 import org.oldskooler.entity4j.mapping.MappingRegistry;
 import org.oldskooler.entity4j.mapping.ModelBuilder;
 import org.oldskooler.entity4j.mapping.TableMeta;
@@ -9,11 +18,18 @@ import org.oldskooler.entity4j.operations.DbBatchOperations;
 import org.oldskooler.entity4j.operations.DbCrudOperations;
 import org.oldskooler.entity4j.operations.DbDdlOperations;
 import org.oldskooler.entity4j.operations.DbQueryExecutor;
+import org.oldskooler.entity4j.routing.ReadRouting;
 import org.oldskooler.entity4j.transaction.*;
 import org.oldskooler.entity4j.util.*;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * Abstract base class for database context implementations that provides core database operations
@@ -36,11 +52,44 @@ public abstract class IDbContext implements AutoCloseable {
     private Transaction currentTransaction;
     private final SqlDialect dialect;
 
-    /** Registry for entity-to-table mappings */
-    private final MappingRegistry mappingRegistry = new MappingRegistry();
+    /** Context whose model and caches this one shares, or null if this is a root context */
+    private final IDbContext parent;
+
+    /** Registry for entity-to-table mappings; replaced by the frozen compiled model when it is built */
+    private volatile MappingRegistry mappingRegistry;
 
     /** Flag indicating whether the model has been built */
-    private boolean modelBuilt = false;
+    private volatile boolean modelBuilt = false;
+
+    /** Guards model building and lazy creation of the operation handlers */
+    private final Object initLock = new Object();
+
+    /** Cache used by {@link Query#cached(java.time.Duration)}; created on first use */
+    private volatile QueryCache queryCache;
+
+    /** In-memory copies of reference tables, keyed by entity type */
+    private final Map<Class<?>, ReferenceTableReplica<?>> replicas;
+
+    /** Interceptors notified around every statement; shared with attached contexts */
+    private final List<StatementInterceptor> statementInterceptors;
+
+    /** Settings for the {@code *Async} methods; null until {@link #enableAsync(AsyncOptions)} */
+    private volatile AsyncOptions asyncOptions;
+
+    /** Replicas that reads are sent to; null until {@link #enableReadRouting(ReadRouting)} */
+    private volatile ReadRouting readRouting;
+
+    /** {@link System#nanoTime()} of the last write through this context tree, for read-your-writes */
+    private volatile long lastWriteNanos = Long.MIN_VALUE;
+
+    /** Tables written in the current transaction, invalidated again on commit; null outside one */
+    private Set<String> dirtyTables;
+
+    /** True for the short-lived contexts that run a routed read on a replica connection */
+    private boolean replicaBound;
+
+    /** Pool this context is returned to on {@link #close()}, or null if it owns its connection */
+    private volatile DbContextPool<?> ownerPool;
 
     /**
      * Constructs a new database context with explicit SQL dialect specification via enum.
@@ -52,6 +101,10 @@ public abstract class IDbContext implements AutoCloseable {
     public IDbContext(Connection connection, SqlDialectType dialectType) {
         this.connection = Objects.requireNonNull(connection, "connection");
         this.dialect = dialectType.createDialect();
+        this.parent = null;
+        this.mappingRegistry = new MappingRegistry();
+        this.replicas = new ConcurrentHashMap<>();
+        this.statementInterceptors = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -64,6 +117,10 @@ public abstract class IDbContext implements AutoCloseable {
     public IDbContext(Connection connection, SqlDialect dialect) {
         this.connection = Objects.requireNonNull(connection, "connection");
         this.dialect = Objects.requireNonNull(dialect, "dialect");
+        this.parent = null;
+        this.mappingRegistry = new MappingRegistry();
+        this.replicas = new ConcurrentHashMap<>();
+        this.statementInterceptors = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -76,6 +133,29 @@ public abstract class IDbContext implements AutoCloseable {
     public IDbContext(Connection connection) throws SQLException {
         this.connection = Objects.requireNonNull(connection, "connection");
         this.dialect = DialectDetector.detectDialect(connection);
+        this.parent = null;
+        this.mappingRegistry = new MappingRegistry();
+        this.replicas = new ConcurrentHashMap<>();
+        this.statementInterceptors = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Constructs a context on another connection that shares the dialect, entity model,
+     * query cache, replicas and async settings of {@code parent}.
+     * Transactions are not shared; each context manages its own connection.
+     *
+     * @param parent the context to share state with
+     * @param connection the JDBC connection to use
+     * @throws NullPointerException if parent or connection is null
+     */
+    protected IDbContext(IDbContext parent, Connection connection) {
+        IDbContext root = Objects.requireNonNull(parent, "parent").root();
+        this.connection = Objects.requireNonNull(connection, "connection");
+        this.dialect = root.dialect;
+        this.parent = root;
+        this.mappingRegistry = null; // always read through the root
+        this.replicas = root.replicas;
+        this.statementInterceptors = root.statementInterceptors;
     }
 
     /**
@@ -86,17 +166,102 @@ public abstract class IDbContext implements AutoCloseable {
      */
     public abstract void onModelCreating(ModelBuilder model);
 
+    /**
+     * Whether contexts of this class share one compiled model. When true (the default),
+     * {@link #onModelCreating(ModelBuilder)} runs once per context class and later instances
+     * attach to the frozen result. Override to return false if the model depends on
+     * per-instance state, such as a schema name passed to the constructor.
+     *
+     * @return true to share the model across instances of this class
+     */
+    protected boolean shareCompiledModel() {
+        return true;
+    }
+
     /**
      * Ensures the entity model has been built by calling {@link #onModelCreating(ModelBuilder)}
-     * if it hasn't been called yet.
+     * if it hasn't been called yet, or by attaching to the class's compiled model.
      */
     private void ensureModelBuilt() {
+        if (parent != null) {
+            parent.ensureModelBuilt();
+            return;
+        }
         if (!modelBuilt) {
-            onModelCreating(new ModelBuilder(mappingRegistry));
-            modelBuilt = true;
+            synchronized (initLock) {
+                if (!modelBuilt) {
+                    CompiledModel model = shareCompiledModel()
+                            ? CompiledModel.forContext(getClass(), this::onModelCreating)
+                            : CompiledModel.compile(getClass(), this::onModelCreating);
+                    mappingRegistry = model.getRegistry();
+                    modelBuilt = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the compiled model of {@code contextType} so that contexts created afterwards
+     * run {@link #onModelCreating(ModelBuilder)} again. Existing contexts keep their model;
+     * use {@link #rebuildModel()} to refresh one of them.
+     *
+     * @param contextType the context class whose configuration changed
+     */
+    public static void rebuildModel(Class<? extends IDbContext> contextType) {
+        CompiledModel.invalidate(contextType);
+    }
+
+    /**
+     * Discards the compiled model of this context's class and rebuilds it immediately for
+     * this context and the contexts attached to it.
+     */
+    public void rebuildModel() {
+        IDbContext root = root();
+        CompiledModel.invalidate(root.getClass());
+        synchronized (root.initLock) {
+            root.modelBuilt = false;
+            root.ensureModelBuilt();
         }
     }
 
+    /** @return the built model, building it first if needed */
+    private MappingRegistry model() {
+        ensureModelBuilt();
+        return root().mappingRegistry;
+    }
+
+    /**
+     * Makes this context use the already built model of {@code source} instead of building its
+     * own. Must be called before the context is first used.
+     *
+     * @param source a context of the same configuration
+     */
+    void useModelOf(IDbContext source) {
+        IDbContext root = source.root();
+        root.ensureModelBuilt();
+        synchronized (initLock) {
+            this.mappingRegistry = root.mappingRegistry;
+            this.modelBuilt = true;
+        }
+    }
+
+    /**
+     * Makes this context use the model of {@code source} and copies its query cache, replicas,
+     * statement interceptors, async settings and read routing. Must be called before the
+     * context is first used; later changes to {@code source} do not reach this context.
+     *
+     * @param source a context of the same configuration
+     */
+    void useConfigurationOf(IDbContext source) {
+        useModelOf(source);
+        IDbContext root = source.root();
+        queryCache = root.queryCache;
+        replicas.putAll(root.replicas);
+        statementInterceptors.addAll(root.statementInterceptors);
+        asyncOptions = root.asyncOptions;
+        readRouting = root.readRouting;
+    }
+
     /**
      * Begins a new database transaction.
      * If a transaction is already active, throws IllegalStateException.
@@ -110,7 +275,9 @@ public abstract class IDbContext implements AutoCloseable {
             throw new IllegalStateException("A transaction is already active. Commit or rollback the current transaction before starting a new one.");
         }
 
-        currentTransaction = new DbTransaction(connection);
+        DbTransaction transaction = new DbTransaction(connection);
+        notifyTransactionStarted(transaction);
+        currentTransaction = transaction;
         return currentTransaction;
     }
 
@@ -195,7 +362,9 @@ public abstract class IDbContext implements AutoCloseable {
             throw new IllegalStateException("A transaction is already active. Commit or rollback the current transaction before starting a new one.");
         }
 
-        currentTransaction = new DbTransactionEnhanced(connection, options);
+        DbTransaction transaction = new DbTransactionEnhanced(connection, options);
+        notifyTransactionStarted(transaction);
+        currentTransaction = transaction;
         return currentTransaction;
     }
 
@@ -291,7 +460,35 @@ public abstract class IDbContext implements AutoCloseable {
         TransactionOptions options = TransactionOptions.builder()
                 .readOnly(true)
                 .build();
-        return executeInTransaction(options, action);
+        if (!routesReads()) return executeInTransaction(options, action);
+
+        // Once the action has started on a replica it is not run again on the primary
+        AtomicBoolean started = new AtomicBoolean();
+        try {
+            return routeRead(ctx -> {
+                try {
+                    return ctx.executeInTransaction(options, tx -> {
+                        started.set(true);
+                        return action.execute(tx);
+                    });
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ReadFailure(e);
+                }
+            }, () -> !started.get());
+        } catch (ReadFailure e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /** Carries a checked exception out of a routed read-only transaction. */
+    private static final class ReadFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ReadFailure(Exception cause) {
+            super(cause);
+        }
     }
 
     /**
@@ -320,7 +517,7 @@ public abstract class IDbContext implements AutoCloseable {
      * @return a new Query instance for the specified type
      */
     public <T> Query<T> from(Class<T> type) {
-        return new Query<>(this, TableMeta.of(type, mappingRegistry));
+        return new Query<>(this, TableMeta.of(type, model()));
     }
 
     // DDL Operations
@@ -349,6 +546,19 @@ public abstract class IDbContext implements AutoCloseable {
         return getDdlOperations().createTableSql(type, ifNotExists);
     }
 
+    /**
+     * Generates SQL for creating the indexes declared on the specified entity type
+     * (via {@code @Index} or {@code hasIndex}). Indexes the dialect cannot express are left out.
+     *
+     * @param <T> the entity type
+     * @param type the class of the entity
+     * @param ifNotExists whether to include IF NOT EXISTS clause where the dialect supports it
+     * @return the CREATE INDEX SQL statements, in declaration order
+     */
+    public <T> List<String> createIndexesSql(Class<T> type, boolean ifNotExists) {
+        return getDdlOperations().createIndexesSql(type, ifNotExists);
+    }
+
     /**
      * Generates SQL for dropping a table for the specified entity type.
      * Equivalent to calling {@link #dropTableSql(Class, boolean)} with {@code ifExists = true}.
@@ -374,7 +584,8 @@ public abstract class IDbContext implements AutoCloseable {
     }
 
     /**
-     * Creates a table for the specified entity type in the database.
+     * Creates a table for the specified entity type in the database, followed by the indexes
+     * declared on it.
      *
      * @param <T> the entity type
      * @param type the class of the entity
@@ -402,38 +613,50 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the number of statements executed (typically 1 if table existed, 0 otherwise)
      */
     public <T> int dropTableIfExists(Class<T> type) {
-        return getDdlOperations().dropTableIfExists(type);
+        int n = getDdlOperations().dropTableIfExists(type);
+        invalidateQueryCache(type);
+        return n;
     }
 
     public void createView(String viewName, Query<?> query) {
         String selectSql = query.compileSelectSql();
         String createSql = dialect.createViewSql(viewName, selectSql);
 
+        StatementTimer timer = timeStatement(StatementKind.DDL, createSql, null);
         try (PreparedStatement stmt = connection.prepareStatement(createSql)) {
-            stmt.executeUpdate();
+            timer.prepared();
+            int n = stmt.executeUpdate();
+            timer.executed();
+            timer.finish(n);
         } catch (SQLException ex) {
+            timer.fail(ex);
             throw new RuntimeException("Failed to create view '" + viewName + "'", ex);
         }
     }
 
     // 2) View name from mapped entity
     public <T> void createView(Class<T> viewEntityType, Query<?> query) {
-        String viewName = TableMeta.of(viewEntityType, mappingRegistry).table;
+        String viewName = TableMeta.of(viewEntityType, model()).table;
         createView(viewName, query);
     }
 
     public void dropViewIfExists(String viewName) {
         String sql = dialect.dropViewIfExistsSql(viewName);
+        StatementTimer timer = timeStatement(StatementKind.DDL, sql, null);
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.executeUpdate();
+            timer.prepared();
+            int n = stmt.executeUpdate();
+            timer.executed();
+            timer.finish(n);
         } catch (SQLException ex) {
+            timer.fail(ex);
             throw new RuntimeException("Failed to drop view '" + viewName + "'", ex);
         }
     }
 
     // 2) Drop by mapped entity (reuses table mapping)
     public <T> void dropViewIfExists(Class<T> viewEntityType) {
-        String viewName = TableMeta.of(viewEntityType, mappingRegistry).table;
+        String viewName = TableMeta.of(viewEntityType, model()).table;
         dropViewIfExists(viewName);
     }
 
@@ -447,7 +670,9 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the number of rows affected (typically 1)
      */
     public <T> int insert(T entity) {
-        return getCrudOperations().insert(entity);
+        int n = getCrudOperations().insert(entity);
+        invalidateQueryCache(entity.getClass());
+        return n;
     }
 
     /**
@@ -458,7 +683,9 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the number of rows affected (typically 1)
      */
     public <T> int update(T entity) {
-        return getCrudOperations().update(entity);
+        int n = getCrudOperations().update(entity);
+        invalidateQueryCache(entity.getClass());
+        return n;
     }
 
     /**
@@ -469,7 +696,9 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the number of rows affected (typically 1)
      */
     public <T> int delete(T entity) {
-        return getCrudOperations().delete(entity);
+        int n = getCrudOperations().delete(entity);
+        invalidateQueryCache(entity.getClass());
+        return n;
     }
 
     // Batch Operations
@@ -483,7 +712,9 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the total number of rows affected
      */
     public <T> int insertAll(Collection<T> entities) {
-        return getBatchOperations().insertAll(entities);
+        int n = getBatchOperations().insertAll(entities);
+        if (n > 0) invalidateQueryCache(entities.iterator().next().getClass());
+        return n;
     }
 
     /**
@@ -495,7 +726,9 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the total number of rows affected
      */
     public <T> int updateAll(Collection<T> entities) {
-        return getBatchOperations().updateAll(entities);
+        int n = getBatchOperations().updateAll(entities);
+        if (n > 0) invalidateQueryCache(entities.iterator().next().getClass());
+        return n;
     }
 
     /**
@@ -507,7 +740,360 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the total number of rows affected
      */
     public <T> int deleteAll(Collection<T> entities) {
-        return getBatchOperations().deleteAll(entities);
+        int n = getBatchOperations().deleteAll(entities);
+        if (n > 0) invalidateQueryCache(entities.iterator().next().getClass());
+        return n;
+    }
+
+    // Query result cache
+
+    /**
+     * Returns the cache used by queries marked with {@link Query#cached(java.time.Duration)},
+     * creating one with {@link QueryCache#DEFAULT_MAX_ENTRIES} entries if none has been set.
+     *
+     * @return the query result cache
+     */
+    public QueryCache queryCache() {
+        if (parent != null) return parent.queryCache();
+        QueryCache cache = queryCache;
+        if (cache == null) {
+            synchronized (initLock) {
+                if (queryCache == null) queryCache = new QueryCache();
+                cache = queryCache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Replaces the query result cache. Pass the same instance to several contexts so that
+     * they share cached results and a write through any of them invalidates the others.
+     *
+     * @param queryCache the cache to use
+     */
+    public void setQueryCache(QueryCache queryCache) {
+        if (parent != null) {
+            parent.setQueryCache(queryCache);
+            return;
+        }
+        this.queryCache = Objects.requireNonNull(queryCache, "queryCache");
+    }
+
+    /**
+     * Drops cached query results that read from the given table.
+     * Called automatically after writes made through this context or {@link Query}. Inside a
+     * transaction the table is dropped again once the transaction commits, since other contexts
+     * may cache the old committed rows until then.
+     *
+     * @param table the unquoted table name
+     */
+    public void invalidateQueryCache(String table) {
+        invalidateNow(table);
+        Transaction tx = getCurrentTransaction();
+        if (tx instanceof DbTransaction) {
+            if (dirtyTables == null) {
+                Set<String> tables = dirtyTables = new LinkedHashSet<>();
+                ((DbTransaction) tx).onCompletion(committed -> {
+                    dirtyTables = null;
+                    if (committed) for (String t : tables) invalidateNow(t);
+                });
+            }
+            dirtyTables.add(table);
+        }
+    }
+
+    private void invalidateNow(String table) {
+        root().lastWriteNanos = System.nanoTime();
+        QueryCache cache = root().queryCache;
+        if (cache != null) cache.invalidate(table);
+        for (ReferenceTableReplica<?> r : replicas.values()) {
+            if (r.getTable().equals(table)) r.markStale();
+        }
+    }
+
+    private void invalidateQueryCache(Class<?> type) {
+        root().lastWriteNanos = System.nanoTime();
+        if (root().queryCache != null || !replicas.isEmpty()) invalidateQueryCache(TableMeta.of(type, model()).table);
+    }
+
+    // Reference table replicas
+
+    /**
+     * Loads the replica's table into memory and answers simple queries for its entity type
+     * from that copy from now on. Replaces any replica previously registered for the type.
+     *
+     * @param replica the replica to register
+     * @param <T>     the entity type
+     * @return the registered replica
+     */
+    public <T> ReferenceTableReplica<T> replicate(ReferenceTableReplica<T> replica) {
+        Objects.requireNonNull(replica, "replica");
+        TableMeta<T> meta = TableMeta.of(replica.getType(), model());
+        String sql = "SELECT * FROM " + q(meta.table);
+        replica.attach(this, meta, ctx -> ctx.executeQuery(meta, sql, Collections.emptyList()));
+        replicas.put(replica.getType(), replica);
+        return replica;
+    }
+
+    /**
+     * Returns the replica registered for the entity type.
+     *
+     * @param type the entity class
+     * @param <T>  the entity type
+     * @return the replica, or null if the type is not replicated
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ReferenceTableReplica<T> replicaFor(Class<T> type) {
+        return (ReferenceTableReplica<T>) replicas.get(type);
+    }
+
+    /**
+     * Stops answering queries for the entity type from memory.
+     *
+     * @param type the entity class
+     */
+    public void removeReplica(Class<?> type) {
+        replicas.remove(type);
+    }
+
+    // Read/write splitting
+
+    /**
+     * Sends this context's reads ({@link Query#toList()}, {@link Query#count()},
+     * {@link Query#toMapList()} and {@link #executeInReadOnlyTransaction(TransactionAction)})
+     * to the given replicas. Writes, {@link #beginTransaction()} and reads inside a
+     * transaction stay on this context's connection, which acts as the primary.
+     *
+     * @param routing the replicas and load-balancing policy
+     */
+    public void enableReadRouting(ReadRouting routing) {
+        if (parent != null) {
+            parent.enableReadRouting(routing);
+            return;
+        }
+        this.readRouting = Objects.requireNonNull(routing, "routing");
+    }
+
+    /**
+     * @return the read routing, or null if reads use this context's connection
+     */
+    public ReadRouting readRouting() {
+        return root().readRouting;
+    }
+
+    /** @return true if a read issued now would go to a replica */
+    private boolean routesReads() {
+        IDbContext root = root();
+        ReadRouting routing = root.readRouting;
+        return routing != null && !replicaBound && !hasActiveTransaction()
+                && !routing.withinReadYourWrites(root.lastWriteNanos);
+    }
+
+    /**
+     * Runs a read on a replica if read routing applies, otherwise on this context.
+     *
+     * @param work the read; the context it receives is only valid during the call
+     * @param <R>  the result type
+     * @return the result of {@code work}
+     */
+    <R> R routeRead(Function<? super IDbContext, ? extends R> work) {
+        return routeRead(work, () -> true);
+    }
+
+    /**
+     * Like {@link #routeRead(Function)}, for reads that may only be repeated on the primary
+     * while {@code repeatable} returns true.
+     */
+    private <R> R routeRead(Function<? super IDbContext, ? extends R> work, BooleanSupplier repeatable) {
+        if (!routesReads()) return work.apply(this);
+        return root().readRouting.read(conn -> {
+            IDbContext replica = new AttachedDbContext(this, conn);
+            replica.replicaBound = true;
+            return work.apply(replica);
+        }, () -> work.apply(this), repeatable);
+    }
+
+    // Statement interceptors
+
+    /**
+     * Registers an interceptor that is notified around every statement executed through this
+     * context and the contexts attached to it.
+     *
+     * @param interceptor the interceptor
+     * @see org.oldskooler.entity4j.diagnostics.StatementMetrics
+     */
+    public void addStatementInterceptor(StatementInterceptor interceptor) {
+        statementInterceptors.add(Objects.requireNonNull(interceptor, "interceptor"));
+    }
+
+    /**
+     * Unregisters an interceptor.
+     *
+     * @param interceptor the interceptor
+     * @return true if it was registered
+     */
+    public boolean removeStatementInterceptor(StatementInterceptor interceptor) {
+        return statementInterceptors.remove(interceptor);
+    }
+
+    /**
+     * Starts timing a statement for the registered interceptors.
+     * This method is used internally by the operation handlers and queries.
+     *
+     * @param kind   the statement kind
+     * @param sql    the SQL text
+     * @param params the parameters that will be bound, or null if there are none
+     * @return the timer; inactive if no interceptor is registered
+     */
+    public StatementTimer timeStatement(StatementKind kind, String sql, List<Object> params) {
+        return StatementTimer.start(statementInterceptors, kind, sql, params);
+    }
+
+    /** Reports the columns a query is about to use to the interceptors, if any are registered. */
+    void noteQueryAccess(String sql, Query<?> query, boolean withJoins) {
+        if (statementInterceptors.isEmpty()) return;
+        List<TableAccess> access = null;
+        for (StatementInterceptor i : statementInterceptors) {
+            if (access == null) access = Collections.unmodifiableList(query.tableAccess(withJoins));
+            try {
+                i.queryAccess(sql, access);
+            } catch (RuntimeException e) {
+                warnInterceptor(i, e);
+            }
+        }
+    }
+
+    private void notifyTransactionStarted(DbTransaction transaction) {
+        if (statementInterceptors.isEmpty()) return;
+        List<StatementInterceptor> notified = new ArrayList<>(statementInterceptors);
+        for (StatementInterceptor i : notified) {
+            try {
+                i.transactionStarted();
+            } catch (RuntimeException e) {
+                warnInterceptor(i, e);
+            }
+        }
+        transaction.onCompletion(committed -> {
+            for (StatementInterceptor i : notified) {
+                try {
+                    i.transactionCompleted(committed);
+                } catch (RuntimeException e) {
+                    warnInterceptor(i, e);
+                }
+            }
+        });
+    }
+
+    private static void warnInterceptor(StatementInterceptor i, RuntimeException e) {
+        System.err.println("Warning: statement interceptor " + i.getClass().getName() + " failed: " + e);
+    }
+
+    // Async operations
+
+    /**
+     * Enables the {@code *Async} methods on this context and its queries. Each async operation
+     * borrows its own connection from the configured data source, so independent operations
+     * run concurrently and never touch this context's connection or transaction.
+     *
+     * @param options the data source, executor and default timeout to use
+     */
+    public void enableAsync(AsyncOptions options) {
+        if (parent != null) {
+            parent.enableAsync(options);
+            return;
+        }
+        this.asyncOptions = Objects.requireNonNull(options, "options");
+    }
+
+    /**
+     * @return the async settings, or null if {@link #enableAsync(AsyncOptions)} has not been called
+     */
+    public AsyncOptions asyncOptions() {
+        return root().asyncOptions;
+    }
+
+    /**
+     * Runs {@code work} on the async executor against a context bound to a freshly borrowed
+     * connection. Cancelling the returned future, or the default timeout expiring, cancels the
+     * statement that is currently executing via {@link Statement#cancel()}.
+     *
+     * @param work the operation to run; the context it receives is only valid during the call
+     * @param <R>  the result type
+     * @return a future completed with the result of {@code work}
+     * @throws IllegalStateException if async operations have not been enabled
+     */
+    public <R> CompletableFuture<R> supplyAsync(Function<? super IDbContext, ? extends R> work) {
+        AsyncOptions options = asyncOptions();
+        if (options == null) {
+            throw new IllegalStateException("Async operations are not enabled. Call enableAsync(AsyncOptions) first.");
+        }
+        return AsyncExecution.supply(options, conn -> new AttachedDbContext(this, conn), work);
+    }
+
+    /**
+     * Asynchronous {@link #insert(Object)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entity the entity to insert
+     * @return a future completed with the number of rows affected
+     */
+    public <T> CompletableFuture<Integer> insertAsync(T entity) {
+        return supplyAsync(ctx -> ctx.insert(entity));
+    }
+
+    /**
+     * Asynchronous {@link #update(Object)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entity the entity to update
+     * @return a future completed with the number of rows affected
+     */
+    public <T> CompletableFuture<Integer> updateAsync(T entity) {
+        return supplyAsync(ctx -> ctx.update(entity));
+    }
+
+    /**
+     * Asynchronous {@link #delete(Object)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entity the entity to delete
+     * @return a future completed with the number of rows affected
+     */
+    public <T> CompletableFuture<Integer> deleteAsync(T entity) {
+        return supplyAsync(ctx -> ctx.delete(entity));
+    }
+
+    /**
+     * Asynchronous {@link #insertAll(Collection)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entities the collection of entities to insert
+     * @return a future completed with the total number of rows affected
+     */
+    public <T> CompletableFuture<Integer> insertAllAsync(Collection<T> entities) {
+        return supplyAsync(ctx -> ctx.insertAll(entities));
+    }
+
+    /**
+     * Asynchronous {@link #updateAll(Collection)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entities the collection of entities to update
+     * @return a future completed with the total number of rows affected
+     */
+    public <T> CompletableFuture<Integer> updateAllAsync(Collection<T> entities) {
+        return supplyAsync(ctx -> ctx.updateAll(entities));
+    }
+
+    /**
+     * Asynchronous {@link #deleteAll(Collection)}; see {@link #supplyAsync(Function)}.
+     *
+     * @param <T> the entity type
+     * @param entities the collection of entities to delete
+     * @return a future completed with the total number of rows affected
+     */
+    public <T> CompletableFuture<Integer> deleteAllAsync(Collection<T> entities) {
+        return supplyAsync(ctx -> ctx.deleteAll(entities));
     }
 
     // Query execution helpers
@@ -539,13 +1125,117 @@ public abstract class IDbContext implements AutoCloseable {
     }
 
     /**
-     * Closes the underlying database connection.
+     * Prepares a statement for reading a query's rows incrementally.
+     *
+     * @param sql the SQL query to execute
+     * @param params the parameters for the query
+     * @param fetchSize the initial fetch size hint
+     * @return the bound statement, owned by the caller
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepareCursor(String sql, List<Object> params, int fetchSize) throws SQLException {
+        return getQueryExecutor().prepareCursor(sql, params, fetchSize);
+    }
+
+    /**
+     * Closes the underlying database connection, or returns the context to its
+     * {@link DbContextPool} if it was rented from one.
      * This method is called automatically when using try-with-resources.
      *
      * @throws RuntimeException if a SQLException occurs while closing the connection
+     * @throws IllegalStateException if a pooled context is returned with an open transaction
      */
     @Override
     public void close() throws RuntimeException {
+        DbContextPool<?> pool = ownerPool;
+        if (pool != null) {
+            pool.giveBack(this);
+            return;
+        }
+        closeConnection();
+    }
+
+    /* -------------------------------
+       Context pooling
+       ------------------------------- */
+
+    void setOwnerPool(DbContextPool<?> pool) {
+        this.ownerPool = pool;
+    }
+
+    /**
+     * Builds the model and creates the operation handlers so that the first operation on a
+     * pooled context does no setup work.
+     */
+    void warmUp() {
+        ensureModelBuilt();
+        getDdlOperations();
+        getCrudOperations();
+        getBatchOperations();
+        getQueryExecutor();
+    }
+
+    /**
+     * Captures the per-renter configuration of a pooled context as the pool set it up, for
+     * {@link #resetForReuse(ReuseTemplate)}.
+     */
+    ReuseTemplate captureReuseTemplate() {
+        return new ReuseTemplate(queryCache, new HashMap<>(replicas), new ArrayList<>(statementInterceptors),
+                asyncOptions, readRouting);
+    }
+
+    /**
+     * Prepares a context for its next user: forgets the completed transaction, puts the
+     * connection back into auto-commit mode and restores the query cache, replicas,
+     * interceptors, async settings and read routing captured in {@code template}, dropping
+     * whatever the previous renter changed. Operation handlers are kept.
+     *
+     * @throws IllegalStateException if a transaction is still open
+     * @throws SQLException if the connection could not be reset
+     */
+    void resetForReuse(ReuseTemplate template) throws SQLException {
+        if (hasActiveTransaction()) {
+            throw new IllegalStateException("Context still has an open transaction; commit or roll it back before returning the context");
+        }
+        currentTransaction = null;
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+        connection.clearWarnings();
+
+        queryCache = template.queryCache;
+        replicas.clear();
+        replicas.putAll(template.replicas);
+        if (!statementInterceptors.equals(template.statementInterceptors)) {
+            statementInterceptors.clear();
+            statementInterceptors.addAll(template.statementInterceptors);
+        }
+        asyncOptions = template.asyncOptions;
+        readRouting = template.readRouting;
+        lastWriteNanos = Long.MIN_VALUE;
+    }
+
+    /** Per-renter configuration of a pooled context; see {@link #captureReuseTemplate()}. */
+    static final class ReuseTemplate {
+        final QueryCache queryCache;
+        final Map<Class<?>, ReferenceTableReplica<?>> replicas;
+        final List<StatementInterceptor> statementInterceptors;
+        final AsyncOptions asyncOptions;
+        final ReadRouting readRouting;
+
+        ReuseTemplate(QueryCache queryCache, Map<Class<?>, ReferenceTableReplica<?>> replicas,
+                      List<StatementInterceptor> statementInterceptors, AsyncOptions asyncOptions, ReadRouting readRouting) {
+            this.queryCache = queryCache;
+            this.replicas = replicas;
+            this.statementInterceptors = statementInterceptors;
+            this.asyncOptions = asyncOptions;
+            this.readRouting = readRouting;
+        }
+    }
+
+    /** Closes the underlying connection, bypassing any pool. */
+    void closeConnection() throws RuntimeException {
         try {
             if (connection != null && !connection.isClosed()) connection.close();
         } catch (SQLException e) {
@@ -566,6 +1256,13 @@ public abstract class IDbContext implements AutoCloseable {
         return dialect.q(ident);
     }
 
+    /**
+     * @return the root context whose model and caches this context shares (itself if not attached)
+     */
+    IDbContext root() {
+        return parent != null ? parent : this;
+    }
+
     /**
      * Returns the underlying JDBC connection.
      * This method provides access to the connection for internal operations.
@@ -593,7 +1290,7 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the mapping registry
      */
     public MappingRegistry mappingRegistry() {
-        return mappingRegistry;
+        return root().mappingRegistry;
     }
 
     /**
@@ -607,16 +1304,16 @@ public abstract class IDbContext implements AutoCloseable {
     // Lazy-loaded operation handlers
 
     /** Lazy-loaded DDL operations handler */
-    private DbDdlOperations ddlOperations;
+    private volatile DbDdlOperations ddlOperations;
 
     /** Lazy-loaded CRUD operations handler */
-    private DbCrudOperations crudOperations;
+    private volatile DbCrudOperations crudOperations;
 
     /** Lazy-loaded batch operations handler */
-    private DbBatchOperations batchOperations;
+    private volatile DbBatchOperations batchOperations;
 
     /** Lazy-loaded query executor */
-    private DbQueryExecutor queryExecutor;
+    private volatile DbQueryExecutor queryExecutor;
 
     /**
      * Returns the DDL operations handler, creating it if necessary.
@@ -624,10 +1321,14 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the DDL operations handler
      */
     private DbDdlOperations getDdlOperations() {
-        if (ddlOperations == null) {
-            ddlOperations = new DbDdlOperations(this);
+        DbDdlOperations handler = ddlOperations;
+        if (handler == null) {
+            synchronized (initLock) {
+                if (ddlOperations == null) ddlOperations = new DbDdlOperations(this);
+                handler = ddlOperations;
+            }
         }
-        return ddlOperations;
+        return handler;
     }
 
     /**
@@ -636,10 +1337,14 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the CRUD operations handler
      */
     private DbCrudOperations getCrudOperations() {
-        if (crudOperations == null) {
-            crudOperations = new DbCrudOperations(this);
+        DbCrudOperations handler = crudOperations;
+        if (handler == null) {
+            synchronized (initLock) {
+                if (crudOperations == null) crudOperations = new DbCrudOperations(this);
+                handler = crudOperations;
+            }
         }
-        return crudOperations;
+        return handler;
     }
 
     /**
@@ -648,10 +1353,14 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the batch operations handler
      */
     private DbBatchOperations getBatchOperations() {
-        if (batchOperations == null) {
-            batchOperations = new DbBatchOperations(this);
+        DbBatchOperations handler = batchOperations;
+        if (handler == null) {
+            synchronized (initLock) {
+                if (batchOperations == null) batchOperations = new DbBatchOperations(this);
+                handler = batchOperations;
+            }
         }
-        return batchOperations;
+        return handler;
     }
 
     /**
@@ -660,9 +1369,13 @@ public abstract class IDbContext implements AutoCloseable {
      * @return the query executor
      */
     private DbQueryExecutor getQueryExecutor() {
-        if (queryExecutor == null) {
-            queryExecutor = new DbQueryExecutor(this);
+        DbQueryExecutor handler = queryExecutor;
+        if (handler == null) {
+            synchronized (initLock) {
+                if (queryExecutor == null) queryExecutor = new DbQueryExecutor(this);
+                handler = queryExecutor;
+            }
         }
-        return queryExecutor;
+        return handler;
     }
 }
\ No newline at end of file
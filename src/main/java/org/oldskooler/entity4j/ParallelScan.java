@@ -0,0 +1,473 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.select.SelectionPart;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the rows of a query in parallel partitions, each on its own connection borrowed from
+ * the context's async data source and run on its async executor.
+ * <p>
+ * Partitions split the query on its single integral primary key, either into contiguous
+ * {@link Strategy#RANGE key ranges} between the key's MIN and MAX, or into
+ * {@link Strategy#HASH_MOD hash buckets} ({@code key % n}) when keys are unevenly distributed.
+ * Rows are streamed from each partition's result set, so memory use does not grow with the
+ * table.
+ * </p>
+ * <p>
+ * {@link #forEach(Consumer)} hands rows to a consumer from all partition threads at once;
+ * {@link #stream()} merges them into one stream through a bounded queue. Partition progress
+ * and throughput can be observed with {@link #onProgress(Consumer, long)}.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public class ParallelScan<T> {
+
+    /** How the key space is divided between partitions. */
+    public enum Strategy {
+        /** Equal-width ranges between MIN(key) and MAX(key) */
+        RANGE,
+        /** {@code ABS(key % n) = i}; balanced for any key distribution, but each partition scans the whole index */
+        HASH_MOD
+    }
+
+    private static final Object END = new Object();
+
+    private final Query<T> query;
+    private final int partitions;
+    private Strategy strategy = Strategy.RANGE;
+    private int fetchSize = 1000;
+    private int queueCapacity = 10_000;
+    private Consumer<Progress> progressListener;
+    private long reportEvery = 10_000;
+
+    ParallelScan(Query<T> query, int partitions) {
+        if (partitions < 1) throw new IllegalArgumentException("partitions must be at least 1");
+        if (query.getLimit() != null || query.getOffset() != null) {
+            throw new IllegalStateException("parallelScan() cannot be combined with limit/offset");
+        }
+        // Each partition would aggregate only its own rows, returning partial or repeated groups
+        if (!query.getGroupBys().isEmpty()) {
+            throw new IllegalArgumentException("parallelScan() cannot split a grouped query");
+        }
+        for (SelectionPart p : query.getSelectionParts()) {
+            if (p.kind == SelectionPart.Kind.AGGREGATE) {
+                throw new IllegalArgumentException("parallelScan() cannot split a query selecting aggregates");
+            }
+        }
+        this.query = query;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Sets how the key space is divided. Defaults to {@link Strategy#RANGE}.
+     *
+     * @param strategy the partitioning strategy
+     * @return this scan
+     */
+    public ParallelScan<T> strategy(Strategy strategy) {
+        this.strategy = Objects.requireNonNull(strategy, "strategy");
+        return this;
+    }
+
+    /**
+     * Sets the JDBC fetch size used by each partition. Defaults to 1000.
+     *
+     * @param fetchSize rows fetched per round trip
+     * @return this scan
+     */
+    public ParallelScan<T> fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * Sets how many rows {@link #stream()} buffers before partitions wait for the consumer.
+     * Defaults to 10,000.
+     *
+     * @param queueCapacity the buffer size
+     * @return this scan
+     */
+    public ParallelScan<T> queueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Reports progress every {@code everyRows} rows (across all partitions) and whenever a
+     * partition finishes. Calls are serialized but come from partition threads.
+     *
+     * @param listener  receives progress snapshots
+     * @param everyRows how often to report
+     * @return this scan
+     */
+    public ParallelScan<T> onProgress(Consumer<Progress> listener, long everyRows) {
+        this.progressListener = Objects.requireNonNull(listener, "listener");
+        this.reportEvery = Math.max(1, everyRows);
+        return this;
+    }
+
+    /**
+     * Runs all partitions and passes every row to {@code consumer}, concurrently from the
+     * partition threads. Blocks until the scan completes. If a partition fails, the others
+     * are stopped and the failure is rethrown.
+     *
+     * @param consumer a thread-safe row consumer
+     * @return the final progress, including per-partition row counts and throughput
+     */
+    public Progress forEach(Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        Run run = start(consumer);
+        try {
+            run.all.join();
+        } catch (CompletionException e) {
+            run.cancelled = true;
+            throw unwrap(e);
+        }
+        return run.snapshot();
+    }
+
+    /**
+     * Starts all partitions and returns their rows as one stream, in no particular order.
+     * Close the stream (e.g. with try-with-resources) to stop the scan early.
+     *
+     * @return the merged stream of rows
+     */
+    @SuppressWarnings("unchecked")
+    public Stream<T> stream() {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Run> started = new AtomicReference<>();
+        Run run = start(row -> put(queue, row, () -> started.get() != null && started.get().cancelled));
+        started.set(run);
+        run.all.whenComplete((v, e) -> {
+            run.failure = e;
+            put(queue, END, () -> run.closed);
+        });
+
+        Iterator<T> it = new Iterator<T>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        run.closed = true;
+                        run.cancelled = true;
+                        throw new RuntimeException("Interrupted while waiting for scanned rows", e);
+                    }
+                }
+                if (next == END) {
+                    if (run.failure != null && !run.closed) throw unwrap(run.failure);
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Object row = next;
+                next = null;
+                return (T) row;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    run.closed = true;
+                    run.cancelled = true;
+                    queue.clear(); // unblock producers waiting for space
+                });
+    }
+
+    /** Blocks until there is room, giving up once {@code giveUp} turns true. */
+    private static void put(BlockingQueue<Object> queue, Object row, BooleanSupplier giveUp) {
+        try {
+            while (!queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                if (giveUp.getAsBoolean()) throw new CancellationException("Scan cancelled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+
+    /* -------------------------------
+       Partitioning and execution
+       ------------------------------- */
+
+    private Run start(Consumer<? super T> sink) {
+        IDbContext ctx = query.context();
+        AsyncOptions options = ctx.asyncOptions();
+        if (options == null) {
+            throw new IllegalStateException("Async operations are not enabled. Call enableAsync(AsyncOptions) first.");
+        }
+
+        List<Partition> parts = partition();
+        Run run = new Run(parts);
+        List<CompletableFuture<Void>> futures = new ArrayList<>(parts.size());
+        for (Partition p : parts) {
+            futures.add(CompletableFuture.runAsync(() -> runPartition(ctx, options.getDataSource(), p, sink, run), options.getExecutor()));
+        }
+        run.all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        // Stop the remaining partitions as soon as one fails
+        for (CompletableFuture<Void> f : futures) {
+            f.whenComplete((v, e) -> {
+                if (e != null) run.cancelled = true;
+            });
+        }
+        return run;
+    }
+
+    private void runPartition(IDbContext ctx, DataSource dataSource, Partition p, Consumer<? super T> sink, Run run) {
+        if (run.cancelled) return;
+        p.startedAt = System.nanoTime();
+        try (Connection c = dataSource.getConnection()) {
+            // Read inside a transaction so that drivers such as PostgreSQL honour the fetch size with a cursor
+            boolean autoCommit = c.getAutoCommit();
+            if (autoCommit) c.setAutoCommit(false);
+            try {
+                Query<T> q = query.on(new AttachedDbContext(ctx, c));
+                q.andWhere(p.predicate, p.params);
+                q.forEachRow(fetchSize, row -> {
+                    if (run.cancelled) throw new CancellationException("Scan cancelled");
+                    sink.accept(row);
+                    p.rows.incrementAndGet();
+                    if (run.total.incrementAndGet() % reportEvery == 0) run.report();
+                });
+            } finally {
+                c.rollback();
+                if (autoCommit) c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Partition " + p.index + " (" + p.predicate + ") failed", e);
+        } finally {
+            p.finishedAt = System.nanoTime();
+            run.report();
+        }
+    }
+
+    private List<Partition> partition() {
+        TableMeta<T> meta = query.getTableMeta();
+        if (meta.keys.size() != 1) {
+            throw new IllegalStateException("parallelScan() needs a single-column primary key on " + meta.type.getSimpleName());
+        }
+        PrimaryKey pk = meta.keys.values().iterator().next();
+        String col = query.qualifiedColumn(pk.property);
+
+        List<Partition> out = new ArrayList<>(partitions);
+        if (partitions == 1) {
+            out.add(new Partition(0, "1 = 1", Collections.emptyList()));
+            return out;
+        }
+
+        if (strategy == Strategy.HASH_MOD) {
+            for (int i = 0; i < partitions; i++) {
+                out.add(new Partition(i, "ABS(" + col + " % " + partitions + ") = " + i, Collections.emptyList()));
+            }
+            return out;
+        }
+
+        Object[] range = query.minMax(pk.property);
+        if (range[0] == null) return out; // nothing to scan
+        if (!(range[0] instanceof Number) || !(range[1] instanceof Number)) {
+            throw new IllegalStateException("RANGE partitioning needs a numeric key; use Strategy.HASH_MOD or a single partition");
+        }
+
+        BigInteger lo = BigInteger.valueOf(((Number) range[0]).longValue());
+        BigInteger hi = BigInteger.valueOf(((Number) range[1]).longValue());
+        BigInteger span = hi.subtract(lo).add(BigInteger.ONE);
+        BigInteger n = BigInteger.valueOf(partitions).min(span);
+        BigInteger width = span.add(n).subtract(BigInteger.ONE).divide(n); // ceil(span / n)
+
+        for (int i = 0; i < n.intValue(); i++) {
+            BigInteger from = lo.add(width.multiply(BigInteger.valueOf(i)));
+            if (from.compareTo(hi) > 0) break;
+            BigInteger to = from.add(width);
+            if (to.compareTo(hi) > 0) {
+                out.add(new Partition(i, col + " >= ? AND " + col + " <= ?", Arrays.asList(from.longValue(), hi.longValue())));
+            } else {
+                out.add(new Partition(i, col + " >= ? AND " + col + " < ?", Arrays.asList(from.longValue(), to.longValue())));
+            }
+        }
+        return out;
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RuntimeException) return (RuntimeException) cause;
+        return new RuntimeException(cause);
+    }
+
+    /** State of one running scan. */
+    private final class Run {
+        final List<Partition> parts;
+        final long startedAt = System.nanoTime();
+        final AtomicLong total = new AtomicLong();
+        /** Set when a partition fails or the consumer stops; remaining partitions stop */
+        volatile boolean cancelled;
+        /** Set when the consumer closed the stream */
+        volatile boolean closed;
+        volatile Throwable failure;
+        CompletableFuture<Void> all;
+        /** Keeps progress callbacks from overlapping */
+        final ReentrantLock reportLock = new ReentrantLock();
+
+        Run(List<Partition> parts) {
+            this.parts = parts;
+        }
+
+        Progress snapshot() {
+            List<PartitionProgress> ps = new ArrayList<>(parts.size());
+            for (Partition p : parts) ps.add(p.snapshot());
+            return new Progress(ps, total.get(), System.nanoTime() - startedAt);
+        }
+
+        void report() {
+            Consumer<Progress> listener = progressListener;
+            if (listener == null) return;
+            reportLock.lock();
+            try {
+                listener.accept(snapshot());
+            } finally {
+                reportLock.unlock();
+            }
+        }
+    }
+
+    private static final class Partition {
+        final int index;
+        final String predicate;
+        final List<Object> params;
+        final AtomicLong rows = new AtomicLong();
+        volatile long startedAt;
+        volatile long finishedAt;
+
+        Partition(int index, String predicate, List<Object> params) {
+            this.index = index;
+            this.predicate = predicate;
+            this.params = params;
+        }
+
+        PartitionProgress snapshot() {
+            long start = startedAt, end = finishedAt;
+            long elapsed = start == 0 ? 0 : (end != 0 ? end : System.nanoTime()) - start;
+            return new PartitionProgress(index, predicate, rows.get(), elapsed, end != 0);
+        }
+    }
+
+    /** Progress of one partition. */
+    public static final class PartitionProgress {
+        private final int index;
+        private final String predicate;
+        private final long rows;
+        private final long elapsedNanos;
+        private final boolean finished;
+
+        PartitionProgress(int index, String predicate, long rows, long elapsedNanos, boolean finished) {
+            this.index = index;
+            this.predicate = predicate;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+            this.finished = finished;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /** @return the SQL predicate that selects this partition's rows */
+        public String getPredicate() {
+            return predicate;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition{" + index + ", rows=" + rows + ", " + Math.round(getRowsPerSecond()) + " rows/s"
+                    + (finished ? ", finished" : "") + "}";
+        }
+    }
+
+    /** Snapshot of a whole scan. */
+    public static final class Progress {
+        private final List<PartitionProgress> partitions;
+        private final long rows;
+        private final long elapsedNanos;
+
+        Progress(List<PartitionProgress> partitions, long rows, long elapsedNanos) {
+            this.partitions = Collections.unmodifiableList(partitions);
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<PartitionProgress> getPartitions() {
+            return partitions;
+        }
+
+        /** @return rows delivered so far across all partitions */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public int getFinishedPartitions() {
+            int n = 0;
+            for (PartitionProgress p : partitions) if (p.isFinished()) n++;
+            return n;
+        }
+
+        /** @return finished partitions as a fraction of all partitions, 0.0 to 1.0 */
+        public double getFraction() {
+            return partitions.isEmpty() ? 1.0 : (double) getFinishedPartitions() / partitions.size();
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Progress{rows=" + rows + ", partitions=" + getFinishedPartitions() + "/" + partitions.size()
+                    + ", " + Math.round(getRowsPerSecond()) + " rows/s}";
+        }
+    }
+}
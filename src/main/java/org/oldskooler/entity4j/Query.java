@@ -1,6 +1,12 @@
 package org.oldskooler.entity4j;
 
+import org.oldskooler.entity4j.cache.ReferenceTableReplica;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.diagnostics.TableAccess;
 import org.oldskooler.entity4j.functions.SFunction;
+import org.oldskooler.entity4j.mapping.IndexMeta;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.SetBuilder;
 import org.oldskooler.entity4j.mapping.TableMeta;
 import org.oldskooler.entity4j.select.Aggregator;
@@ -12,20 +18,31 @@ import org.oldskooler.entity4j.util.JdbcParamBinder;
 import org.oldskooler.entity4j.util.Names;
 import org.oldskooler.entity4j.util.LambdaUtils;
 import org.oldskooler.entity4j.util.ReflectionUtils;
+import org.reactivestreams.Publisher;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class Query<T> implements Serializable {
     private static QuerySerializer querySerializer;
 
+    /** {@code [alias.]column = [alias.]column} in a generated ON clause; identifiers are always quoted */
+    private static final Pattern ON_EQUALITY = Pattern.compile(
+            "(?:(\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\])\\.)?(\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\])\\s*=\\s*"
+                    + "(?:(\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\])\\.)?(\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\])");
+
     private final IDbContext ctx;
     private final TableMeta<T> meta;
 
@@ -33,6 +50,10 @@ public class Query<T> implements Serializable {
     final StringBuilder where = new StringBuilder();
     final List<Object> params = new ArrayList<>();
 
+    // Structured copy of simple base-table filters, for evaluating the WHERE outside the database
+    private final List<Condition> conditions = new ArrayList<>();
+    private boolean simpleConditions = true;
+
     // Multi-ORDER BY
     private final List<SelectionPart> orderBys = new ArrayList<>();
 
@@ -52,6 +73,9 @@ public class Query<T> implements Serializable {
     private boolean hasExplicitSelect = false;
     private final List<SelectionPart> selectionParts = new ArrayList<>();
 
+    // Result caching; null means "not cached"
+    private Duration cacheTtl = null;
+
     static {
         querySerializer = new QuerySerializer();
     }
@@ -63,6 +87,39 @@ public class Query<T> implements Serializable {
         aliases.put(meta.type, new AliasMeta<>(meta, null));
     }
 
+    /**
+     * Copies every clause of {@code src} into a query that runs on {@code ctx}.
+     */
+    Query(Query<T> src, IDbContext ctx) {
+        this.ctx = ctx;
+        this.meta = src.meta;
+        this.where.append(src.where);
+        this.params.addAll(src.params);
+        this.conditions.addAll(src.conditions);
+        this.simpleConditions = src.simpleConditions;
+        this.orderBys.addAll(src.orderBys);
+        this.groupBys.addAll(src.groupBys);
+        this.limit = src.limit;
+        this.offset = src.offset;
+        this.baseAlias = src.baseAlias;
+        this.joins.addAll(src.joins);
+        this.aliases.putAll(src.aliases);
+        this.hasExplicitSelect = src.hasExplicitSelect;
+        this.selectionParts.addAll(src.selectionParts);
+        this.cacheTtl = src.cacheTtl;
+    }
+
+    /**
+     * Returns a copy of this query that executes on another context, e.g. one bound to a
+     * different connection. This query is left unchanged.
+     *
+     * @param other the context to run on
+     * @return the copy
+     */
+    public Query<T> on(IDbContext other) {
+        return new Query<>(this, Objects.requireNonNull(other, "other"));
+    }
+
     public Class<T> getEntityType() {
         return meta.type;
     }
@@ -75,6 +132,23 @@ public class Query<T> implements Serializable {
         return new ArrayList<>(params);
     }
 
+    /**
+     * Base-table filters in the order they were added. Only meaningful when
+     * {@link #hasOnlySimpleConditions()} is true.
+     */
+    public List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * @return true if the WHERE clause is exactly the AND of {@link #getConditions()}, i.e. it
+     * contains no OR, grouping, LIKE, case-insensitive or joined-table filters
+     */
+    public boolean hasOnlySimpleConditions() {
+        // A WHERE restored from JSON has no structured conditions
+        return simpleConditions && (where.length() == 0) == conditions.isEmpty();
+    }
+
     public List<SelectionPart> getOrderBys() {
         return orderBys;
     }
@@ -167,6 +241,25 @@ public class Query<T> implements Serializable {
     public Query<T> limit(Integer n) { this.limit = n; return this; }
     public Query<T> offset(Integer n) { this.offset = n; return this; }
 
+    /**
+     * Serve this query's results from the context's {@link org.oldskooler.entity4j.cache.QueryCache}
+     * for up to {@code ttl}. Results are keyed by the generated SQL and parameters, and any write
+     * through the context (or this API's update/delete/increment) to a table in FROM/JOIN drops them.
+     * Queries run inside an active transaction bypass the cache.
+     *
+     * Cached entities are shared between callers, so treat them as read-only.
+     */
+    public Query<T> cached(Duration ttl) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero())
+            throw new IllegalArgumentException("ttl must be positive");
+        this.cacheTtl = ttl;
+        return this;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
     /** JOIN */
     public <J> Query<T> join(Class<J> type, String alias, Function<On<T, J>, On<T, J>> on) {
         return addJoin(type, alias, "JOIN", on);
@@ -222,8 +315,37 @@ public class Query<T> implements Serializable {
     }
 
     public java.util.List<T> toList() {
+        ReferenceTableReplica<T> replica = replica();
+        if (replica != null) {
+            List<T> local = replica.list(this);
+            if (local != null) return local;
+        }
+
         String sql = buildSelectSql();
-        return ctx.executeQuery(meta, sql, params);
+        ctx.noteQueryAccess(sql, this, true);
+        return cachedOrLoad("entity", sql, meta, () -> ctx.routeRead(c -> c.executeQuery(meta, sql, params)));
+    }
+
+    /* ---- async variants; each runs on its own connection, see IDbContext#supplyAsync ---- */
+
+    public CompletableFuture<List<T>> toListAsync() {
+        return ctx.supplyAsync(c -> on(c).toList());
+    }
+
+    public <R> CompletableFuture<List<R>> toListAsync(Class<R> dtoType) {
+        return ctx.supplyAsync(c -> on(c).toList(dtoType));
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> toMapListAsync() {
+        return ctx.supplyAsync(c -> on(c).toMapList());
+    }
+
+    public CompletableFuture<Optional<T>> firstAsync() {
+        return ctx.supplyAsync(c -> on(c).first());
+    }
+
+    public CompletableFuture<Long> countAsync() {
+        return ctx.supplyAsync(c -> on(c).count());
     }
 
     public String toJson() {
@@ -249,6 +371,120 @@ public class Query<T> implements Serializable {
         return this;
     }
 
+    /**
+     * Splits this query into {@code partitions} key ranges (or hash buckets) that are read in
+     * parallel, each on its own pooled connection. Requires {@link IDbContext#enableAsync}.
+     *
+     * @param partitions the number of partitions, at least 1
+     * @return a scan to configure and run
+     * @throws IllegalArgumentException if the query is grouped or selects aggregates
+     */
+    public ParallelScan<T> parallelScan(int partitions) {
+        return new ParallelScan<>(this, partitions);
+    }
+
+    /**
+     * Returns a Reactive Streams publisher over the matching entities. Rows are read on the
+     * async executor as subscribers request them; see {@link QueryPublisher}.
+     * Requires {@link IDbContext#enableAsync}.
+     *
+     * @return a publisher that runs this query once per subscriber
+     */
+    public Publisher<T> publisher() {
+        return publisher(1000);
+    }
+
+    /**
+     * Like {@link #publisher()}, capping the JDBC fetch size at {@code maxFetchSize} however
+     * much the subscriber requests.
+     *
+     * @param maxFetchSize the largest fetch size to use
+     * @return a publisher that runs this query once per subscriber
+     */
+    public Publisher<T> publisher(int maxFetchSize) {
+        return new QueryPublisher<>(ctx, meta, buildSelectSql(), params, maxFetchSize);
+    }
+
+    /* ---- hooks used by ParallelScan ---- */
+
+    /** ANDs a raw predicate onto WHERE, keeping any existing OR groups intact. */
+    void andWhere(String predicate, List<Object> values) {
+        if (where.length() > 0) {
+            where.insert(0, '(').append(") AND ");
+        }
+        where.append(predicate);
+        params.addAll(values);
+        simpleConditions = false;
+    }
+
+    /** @return the quoted column of a root property, qualified with the base alias if set */
+    String qualifiedColumn(String property) {
+        String column = ctx.dialect().q(meta.propToColumn.get(property));
+        return baseAlias != null ? ctx.dialect().q(baseAlias) + "." + column : column;
+    }
+
+    /** @return MIN and MAX of a root property over the rows this query matches */
+    Object[] minMax(String property) {
+        String col = qualifiedColumn(property);
+        StringBuilder sql = new StringBuilder("SELECT MIN(").append(col).append("), MAX(").append(col).append(')');
+        appendFromAndWhere(sql);
+        String text = sql.toString();
+        return ctx.routeRead(c -> {
+            StatementTimer timer = c.timeStatement(StatementKind.QUERY, text, params);
+            try (PreparedStatement ps = c.conn().prepareStatement(text)) {
+                JdbcParamBinder.bindParams(ps, params);
+                timer.prepared();
+                try (ResultSet rs = ps.executeQuery()) {
+                    timer.executed();
+                    Object[] range = timer.next(rs) ? new Object[]{rs.getObject(1), rs.getObject(2)} : new Object[]{null, null};
+                    timer.finish(1);
+                    return range;
+                }
+            } catch (SQLException e) {
+                timer.fail(e);
+                throw new RuntimeException("key range query failed: " + text, e);
+            }
+        });
+    }
+
+    /** Streams the matching entities to {@code sink} without materializing the result. */
+    void forEachRow(int fetchSize, Consumer<? super T> sink) {
+        String sql = buildSelectSql();
+        StatementTimer timer = ctx.timeStatement(StatementKind.QUERY, sql, params);
+        try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
+            if (fetchSize > 0) ps.setFetchSize(fetchSize);
+            JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
+            try (ResultSet rs = ps.executeQuery()) {
+                timer.executed();
+                timer.finish(timer.forEach(rs, meta, sink));
+            }
+        } catch (SQLException e) {
+            timer.fail(e);
+            throw new RuntimeException("scan failed: " + sql, e);
+        }
+    }
+
+    /** Replaces the explicit SELECT list; used by {@link ShardedContext} to rewrite aggregates per shard. */
+    void replaceSelection(List<SelectionPart> parts) {
+        this.selectionParts.clear();
+        this.selectionParts.addAll(parts);
+        this.hasExplicitSelect = true;
+    }
+
+    /**
+     * Label of {@code p} in a result row: its alias, its column name, or for an unaliased
+     * expression the SQL text, which is how SQLite and MySQL label it.
+     */
+    String selectionLabel(SelectionPart p) {
+        if (p.alias != null && !p.alias.isEmpty()) return p.alias;
+        if (p.kind == SelectionPart.Kind.COLUMN) {
+            Class<?> et = (p.entityType != null ? p.entityType : this.meta.type);
+            return getMeta(et).propToColumn.get(p.propertyName);
+        }
+        return buildClause(Collections.singletonList(p.withOrder(null)));
+    }
+
     public Query<T> groupBy(Consumer<Selector> s) {
         Selector sel = new Selector(this);
         s.accept(sel);
@@ -272,20 +508,7 @@ public class Query<T> implements Serializable {
 
         sql.append(buildSelectClause());
 
-        sql.append(" FROM ").append(ctx.dialect().q(meta.table));
-        if (baseAlias != null) sql.append(' ').append(ctx.dialect().q(baseAlias));
-
-        // Joins
-        for (JoinPart<?> j : joins) {
-            sql.append(' ')
-                    .append(j.kind).append(' ')
-                    .append(ctx.dialect().q(j.meta.table)).append(' ')
-                    .append(ctx.dialect().q(j.alias))
-                    .append(" ON ").append(j.onSql);
-        }
-
-        // WHERE
-        if (where.length() > 0) sql.append(" WHERE ").append(where);
+        appendFromAndWhere(sql);
 
         // Add group by clause
         if (!this.groupBys.isEmpty()) {
@@ -303,6 +526,24 @@ public class Query<T> implements Serializable {
         return ctx.dialect().paginate(sql.toString(), "", "", limit, offset);
     }
 
+    /** Appends FROM, the joins and WHERE. */
+    private void appendFromAndWhere(StringBuilder sql) {
+        sql.append(" FROM ").append(ctx.dialect().q(meta.table));
+        if (baseAlias != null) sql.append(' ').append(ctx.dialect().q(baseAlias));
+
+        // Joins
+        for (JoinPart<?> j : joins) {
+            sql.append(' ')
+                    .append(j.kind).append(' ')
+                    .append(ctx.dialect().q(j.meta.table)).append(' ')
+                    .append(ctx.dialect().q(j.alias))
+                    .append(" ON ").append(j.onSql);
+        }
+
+        // WHERE
+        if (where.length() > 0) sql.append(" WHERE ").append(where);
+    }
+
     public String compileSelectSql() {
         // Lambda implementing the formatter
         Function<Object, String> formatter = value -> {
@@ -476,15 +717,20 @@ public class Query<T> implements Serializable {
     /** Generic map projection (column label to value). */
     public List<Map<String,Object>> toMapList() {
         String sql = buildSelectSql();
-        return ctx.executeQueryMap(sql, params);
+        ctx.noteQueryAccess(sql, this, true);
+        return cachedOrLoad("map", sql, null, () -> ctx.routeRead(c -> c.executeQueryMap(sql, params)));
     }
 
     /** DTO projection via setters matching column labels (use AS to control labels). */
     public <R> List<R> toList(Class<R> dtoType) {
         String sql = buildSelectSql();
+        ctx.noteQueryAccess(sql, this, true);
+        return cachedOrLoad("dto:" + dtoType.getName(), sql, null, () -> mapToDtos(sql, dtoType));
+    }
 
+    private <R> List<R> mapToDtos(String sql, Class<R> dtoType) {
         TableMeta<R> tempMeta = TableMeta.of(dtoType, this.ctx.mappingRegistry());
-        List<Map<String, Object>> rs = ctx.executeQueryMap(sql, params);
+        List<Map<String, Object>> rs = ctx.routeRead(c -> c.executeQueryMap(sql, params));
 
         List<R> result = new ArrayList<>();
         for (Map<String, Object> row : rs) {
@@ -557,10 +803,17 @@ public class Query<T> implements Serializable {
         all.addAll(s.params());
         all.addAll(params);
 
+        StatementTimer timer = ctx.timeStatement(StatementKind.UPDATE, sql, all);
         try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, all);
-            return ps.executeUpdate();
+            timer.prepared();
+            int n = ps.executeUpdate();
+            timer.executed();
+            timer.finish(n);
+            ctx.invalidateQueryCache(meta.table);
+            return n;
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("update failed: " + sql, e);
         }
     }
@@ -660,10 +913,17 @@ public class Query<T> implements Serializable {
         all.addAll(bindParams);
         all.addAll(params);
 
+        StatementTimer timer = ctx.timeStatement(StatementKind.UPDATE, sql, all);
         try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, all);
-            return ps.executeUpdate();
+            timer.prepared();
+            int n = ps.executeUpdate();
+            timer.executed();
+            timer.finish(n);
+            ctx.invalidateQueryCache(meta.table);
+            return n;
         } catch (SQLException ex) {
+            timer.fail(ex);
             throw new RuntimeException("incrementBatch failed: " + sql, ex);
         }
     }
@@ -698,10 +958,17 @@ public class Query<T> implements Serializable {
         all.addAll(bindParams);
         all.addAll(params);
 
+        StatementTimer timer = ctx.timeStatement(StatementKind.UPDATE, sql, all);
         try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, all);
-            return ps.executeUpdate();
+            timer.prepared();
+            int n = ps.executeUpdate();
+            timer.executed();
+            timer.finish(n);
+            ctx.invalidateQueryCache(meta.table);
+            return n;
         } catch (SQLException ex) {
+            timer.fail(ex);
             throw new RuntimeException("decrementBatch failed: " + sql, ex);
         }
     }
@@ -712,31 +979,49 @@ public class Query<T> implements Serializable {
 
         String sql = "DELETE FROM " + ctx.q(meta.table) + " WHERE " + where;
 
+        StatementTimer timer = ctx.timeStatement(StatementKind.DELETE, sql, params);
         try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, params);
-            return ps.executeUpdate();
+            timer.prepared();
+            int n = ps.executeUpdate();
+            timer.executed();
+            timer.finish(n);
+            ctx.invalidateQueryCache(meta.table);
+            return n;
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("delete failed: " + sql, e);
         }
     }
 
     public long count() {
-        String sql = "SELECT COUNT(*) FROM " + ctx.q(meta.table);
+        ReferenceTableReplica<T> replica = replica();
+        if (replica != null) {
+            Long local = replica.count(this);
+            if (local != null) return local;
+        }
+
+        String base = "SELECT COUNT(*) FROM " + ctx.q(meta.table);
 
         // Only append WHERE if conditions exist
-        if (where.length() > 0) {
-            sql += " WHERE " + where;
-        }
+        String sql = where.length() > 0 ? base + " WHERE " + where : base;
+        ctx.noteQueryAccess(sql, this, false);
 
-        try (PreparedStatement ps = ctx.conn().prepareStatement(sql)) {
+        return cachedOrLoad("count", sql, null, () -> ctx.routeRead(c -> executeCount(c, sql)));
+    }
+
+    private long executeCount(IDbContext on, String sql) {
+        StatementTimer timer = on.timeStatement(StatementKind.QUERY, sql, params);
+        try (PreparedStatement ps = on.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getLong(1);
-            } else {
-                return 0L; // no rows matched
-            }
+            timer.executed();
+            long count = timer.next(rs) ? rs.getLong(1) : 0L; // no row: nothing matched
+            timer.finish(1);
+            return count;
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("count failed: " + sql, e);
         }
     }
@@ -832,6 +1117,107 @@ public class Query<T> implements Serializable {
         return a != null ? a.alias : null;
     }
 
+    /* ---- result cache helpers ---- */
+
+    @SuppressWarnings("unchecked")
+    private <R> R cachedOrLoad(String shape, String sql, TableMeta<?> rowMeta, Supplier<R> loader) {
+        if (cacheTtl == null || ctx.hasActiveTransaction()) return loader.get();
+
+        R value = ctx.queryCache().get(shape, sql, params, referencedTables(), cacheTtl, rowMeta, loader);
+        // Hand every caller its own list so that sorting/adding doesn't corrupt the cached copy
+        if (value instanceof List) return (R) new ArrayList<>((List<?>) value);
+        return value;
+    }
+
+    /** Replica that may answer this query from memory; never used inside a transaction. */
+    private ReferenceTableReplica<T> replica() {
+        ReferenceTableReplica<T> replica = ctx.replicaFor(meta.type);
+        return replica == null || ctx.hasActiveTransaction() ? null : replica;
+    }
+
+    /** Tables read by this query (FROM + JOINs), used for cache invalidation. */
+    public Set<String> referencedTables() {
+        Set<String> tables = new LinkedHashSet<>();
+        tables.add(meta.table);
+        for (JoinPart<?> j : joins) tables.add(j.meta.table);
+        return tables;
+    }
+
+    /* ---- column usage reported to StatementInterceptor#queryAccess ---- */
+
+    /**
+     * Describes the columns this query uses per table: the base table's filters and, if
+     * {@code withJoins}, the joined tables' ON equalities and the ORDER BY and GROUP BY columns.
+     * Filters combined with OR or raw predicates are not reported, since no single index
+     * serves them.
+     */
+    List<TableAccess> tableAccess(boolean withJoins) {
+        Map<TableMeta<?>, List<List<String>>> used = new LinkedHashMap<>();
+        List<List<String>> base = columnsOf(used, meta);
+        if (simpleConditions) {
+            for (Condition c : conditions) {
+                switch (c.op) {
+                    case EQ: case IN: case IS_NULL: addOnce(base.get(0), c.column); break;
+                    case GT: case GE: case LT: case LE: addOnce(base.get(1), c.column); break;
+                    default: break;
+                }
+            }
+        }
+        if (withJoins) {
+            for (JoinPart<?> j : joins) {
+                if (j.onSql.toUpperCase(Locale.ROOT).contains(" OR ")) continue;
+                Matcher m = ON_EQUALITY.matcher(j.onSql);
+                while (m.find()) {
+                    if (j.alias.equals(unquote(m.group(3)))) addOnce(columnsOf(used, j.meta).get(0), unquote(m.group(4)));
+                    else if (j.alias.equals(unquote(m.group(1)))) addOnce(columnsOf(used, j.meta).get(0), unquote(m.group(2)));
+                }
+            }
+            for (SelectionPart p : orderBys) {
+                if (p.kind == SelectionPart.Kind.COLUMN) addOnce(columnsOf(used, metaOf(p.entityType)).get(2), columnOf(p));
+            }
+            for (SelectionPart p : groupBys) {
+                if (p.kind == SelectionPart.Kind.COLUMN) addOnce(columnsOf(used, metaOf(p.entityType)).get(3), columnOf(p));
+            }
+        }
+
+        List<TableAccess> out = new ArrayList<>(used.size());
+        for (Map.Entry<TableMeta<?>, List<List<String>>> e : used.entrySet()) {
+            List<String> pk = new ArrayList<>();
+            for (PrimaryKey k : e.getKey().keys.values()) pk.add(k.column);
+            List<List<String>> c = e.getValue();
+            List<List<String>> declared = new ArrayList<>();
+            for (IndexMeta idx : e.getKey().indexes) {
+                if (idx.where == null && !idx.leadingColumns().isEmpty()) declared.add(idx.leadingColumns());
+            }
+            TableAccess access = new TableAccess(e.getKey().table, pk, c.get(0), c.get(1), c.get(2), c.get(3), declared);
+            if (out.isEmpty() || !access.isEmpty()) out.add(access);
+        }
+        return out;
+    }
+
+    private static List<List<String>> columnsOf(Map<TableMeta<?>, List<List<String>>> used, TableMeta<?> m) {
+        return used.computeIfAbsent(m, k -> Arrays.asList(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+    }
+
+    private TableMeta<?> metaOf(Class<?> type) {
+        if (type == null || type == meta.type) return meta;
+        AliasMeta<?> a = aliases.get(type);
+        return a != null ? a.meta : meta;
+    }
+
+    private String columnOf(SelectionPart p) {
+        TableMeta<?> m = metaOf(p.entityType);
+        return m.propToColumn.getOrDefault(p.propertyName, Names.defaultColumnName(p.propertyName));
+    }
+
+    private static void addOnce(List<String> columns, String column) {
+        if (column != null && !columns.contains(column)) columns.add(column);
+    }
+
+    private static String unquote(String ident) {
+        return ident == null || ident.length() < 2 ? ident : ident.substring(1, ident.length() - 1);
+    }
+
     /* ---- internal append helpers used by Filters ---- */
 
     /** columnExpr should already be qualified/quoted if needed. */
@@ -881,36 +1267,52 @@ public class Query<T> implements Serializable {
         Filters(Query<T> q, TableMeta<T> meta) { this.q = q; this.meta = meta; }
 
         private String baseCol(SFunction<T, ?> getter) {
-            String prop = LambdaUtils.propertyName(getter);
-            String col = meta.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
+            return baseCol(LambdaUtils.propertyName(getter));
+        }
+
+        private String baseCol(String prop) {
             String alias = q.baseAlias;
-            return (alias != null ? q.ctx.dialect().q(alias) + "." : "") + q.ctx.dialect().q(col);
+            return (alias != null ? q.ctx.dialect().q(alias) + "." : "") + q.ctx.dialect().q(column(prop));
+        }
+
+        private String column(String prop) {
+            return meta.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
+        }
+
+        private Filters<T> base(SFunction<T, ?> getter, Condition.Op op, String sqlOp, Object value) {
+            String prop = LambdaUtils.propertyName(getter);
+            q.appendCondition(baseCol(prop), sqlOp, value);
+            q.conditions.add(Condition.of(prop, column(prop), op, value));
+            return this;
         }
 
         // Base-table filters (backwards-compatible)
-        public Filters<T> equals(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), "=", value); return this; }
-        public Filters<T> notEquals(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), "<>", value); return this; }
-        public Filters<T> greater(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), ">", value); return this; }
-        public Filters<T> greaterOrEquals(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), ">=", value); return this; }
-        public Filters<T> less(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), "<", value); return this; }
-        public Filters<T> lessOrEquals(SFunction<T, ?> getter, Object value) { q.appendCondition(baseCol(getter), "<=", value); return this; }
-        public Filters<T> like(SFunction<T, ?> getter, String pattern) { q.appendCondition(baseCol(getter), "LIKE", pattern); return this; }
-        public Filters<T> in(SFunction<T, ?> getter, java.util.Collection<?> values) { q.appendCondition(baseCol(getter), "IN", new java.util.ArrayList<>(values)); return this; }
+        public Filters<T> equals(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.EQ, "=", value); }
+        public Filters<T> notEquals(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.NE, "<>", value); }
+        public Filters<T> greater(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.GT, ">", value); }
+        public Filters<T> greaterOrEquals(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.GE, ">=", value); }
+        public Filters<T> less(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.LT, "<", value); }
+        public Filters<T> lessOrEquals(SFunction<T, ?> getter, Object value) { return base(getter, Condition.Op.LE, "<=", value); }
+        public Filters<T> like(SFunction<T, ?> getter, String pattern) { q.simpleConditions = false; q.appendCondition(baseCol(getter), "LIKE", pattern); return this; }
+        public Filters<T> in(SFunction<T, ?> getter, java.util.Collection<?> values) { return base(getter, Condition.Op.IN, "IN", new java.util.ArrayList<>(values)); }
         public Filters<T> isNull(SFunction<T, ?> getter) {
-            String col = baseCol(getter);
+            String prop = LambdaUtils.propertyName(getter);
             q.autoAndIfNeeded();
-            q.where.append(col).append(" IS NULL");
+            q.where.append(baseCol(prop)).append(" IS NULL");
+            q.conditions.add(Condition.of(prop, column(prop), Condition.Op.IS_NULL, null));
             return this;
         }
         public Filters<T> isNotNull(SFunction<T, ?> getter) {
-            String col = baseCol(getter);
+            String prop = LambdaUtils.propertyName(getter);
             q.autoAndIfNeeded();
-            q.where.append(col).append(" IS NOT NULL");
+            q.where.append(baseCol(prop)).append(" IS NOT NULL");
+            q.conditions.add(Condition.of(prop, column(prop), Condition.Op.IS_NOT_NULL, null));
             return this;
         }
 
 
         public Filters<T> equalsIgnoreCase(SFunction<T, ?> getter, String value) {
+            q.simpleConditions = false;
             String col = baseCol(getter);
             // Compare upper(column) = upper(?)
             q.autoAndIfNeeded();
@@ -928,6 +1330,7 @@ public class Query<T> implements Serializable {
         public <J> Filters<T> lessOrEquals(Class<J> type, SFunction<J, ?> getter, Object value) { return op(type, getter, "<=", value); }
         public <J> Filters<T> like(Class<J> type, SFunction<J, ?> getter, String pattern) { return op(type, getter, "LIKE", pattern); }
         public <J> Filters<T> in(Class<J> type, SFunction<J, ?> getter, java.util.Collection<?> values) {
+            q.simpleConditions = false;
             String prop = LambdaUtils.propertyName(getter);
             TableMeta<J> m = q.getMeta(type);
             String col = m.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
@@ -938,6 +1341,7 @@ public class Query<T> implements Serializable {
         }
 
         public <J> Filters<T> isNull(Class<J> type, SFunction<J, ?> getter) {
+            q.simpleConditions = false;
             String prop = LambdaUtils.propertyName(getter);
             TableMeta<J> m = q.getMeta(type);
             String col = m.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
@@ -950,6 +1354,7 @@ public class Query<T> implements Serializable {
         }
 
         public <J> Filters<T> isNotNull(Class<J> type, SFunction<J, ?> getter) {
+            q.simpleConditions = false;
             String prop = LambdaUtils.propertyName(getter);
             TableMeta<J> m = q.getMeta(type);
             String col = m.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
@@ -962,6 +1367,7 @@ public class Query<T> implements Serializable {
         }
 
         public <J> Filters<T> equalsIgnoreCase(Class<J> type, SFunction<J, ?> getter, String value) {
+            q.simpleConditions = false;
             String prop = LambdaUtils.propertyName(getter);
             TableMeta<J> m = q.getMeta(type);
             String col = m.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
@@ -975,6 +1381,7 @@ public class Query<T> implements Serializable {
         }
 
         private <J> Filters<T> op(Class<J> type, SFunction<J, ?> getter, String op, Object value) {
+            q.simpleConditions = false;
             String prop = LambdaUtils.propertyName(getter);
             TableMeta<J> m = q.getMeta(type);
             String col = m.propToColumn.getOrDefault(prop, Names.defaultColumnName(prop));
@@ -985,9 +1392,9 @@ public class Query<T> implements Serializable {
         }
 
         public Filters<T> and() { q.where.append(" AND "); return this; }
-        public Filters<T> or() { q.where.append(" OR "); return this; }
-        public Filters<T> open() { q.where.append('('); return this; }
-        public Filters<T> close() { q.where.append(')'); return this; }
+        public Filters<T> or() { q.simpleConditions = false; q.where.append(" OR "); return this; }
+        public Filters<T> open() { q.simpleConditions = false; q.where.append('('); return this; }
+        public Filters<T> close() { q.simpleConditions = false; q.where.append(')'); return this; }
 
         public Query<T> done() { return q; }
     }
@@ -1074,6 +1481,41 @@ public class Query<T> implements Serializable {
         }
     }
 
+    /**
+     * A single base-table filter ({@code column op value}) recorded alongside the SQL text.
+     * {@code EQ} with a null value means {@code IS NULL}, {@code NE} with null means
+     * {@code IS NOT NULL}, matching the SQL that {@link Filters} generates.
+     */
+    public static final class Condition implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public enum Op {EQ, NE, GT, GE, LT, LE, IN, IS_NULL, IS_NOT_NULL}
+
+        public final String property;
+        public final String column;
+        public final Op op;
+        /** Comparison value; a {@code List} for {@code IN}, null for the null checks. */
+        public final Object value;
+
+        private Condition(String property, String column, Op op, Object value) {
+            this.property = property;
+            this.column = column;
+            this.op = op;
+            this.value = value;
+        }
+
+        static Condition of(String property, String column, Op op, Object value) {
+            if (value == null && op == Op.EQ) return new Condition(property, column, Op.IS_NULL, null);
+            if (value == null && op == Op.NE) return new Condition(property, column, Op.IS_NOT_NULL, null);
+            return new Condition(property, column, op, value);
+        }
+
+        @Override
+        public String toString() {
+            return column + " " + op + (value != null ? " " + value : "");
+        }
+    }
+
     private static final class AliasMeta<X> {
         final TableMeta<X> meta;
         final String alias;
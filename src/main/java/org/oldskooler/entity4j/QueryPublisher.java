@@ -0,0 +1,271 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Reactive Streams {@link Publisher} over the rows of a query.
+ * <p>
+ * Each subscription borrows a connection from the context's async data source and reads the
+ * result set on the async executor, only as far as the subscriber has requested: the JDBC
+ * fetch size follows the outstanding demand (up to a maximum), and reading pauses with the
+ * cursor left open while demand is zero. Cancelling the subscription cancels the running
+ * statement and closes the result set, statement and connection.
+ * </p>
+ * <p>
+ * The SQL and parameters are captured when the publisher is created; every subscriber runs
+ * the query afresh. Reads bypass the query cache and read routing.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public class QueryPublisher<T> implements Publisher<T> {
+    private final IDbContext ctx;
+    private final TableMeta<T> meta;
+    private final String sql;
+    private final List<Object> params;
+    private final int maxFetchSize;
+
+    QueryPublisher(IDbContext ctx, TableMeta<T> meta, String sql, List<Object> params, int maxFetchSize) {
+        if (maxFetchSize < 1) throw new IllegalArgumentException("maxFetchSize must be positive");
+        if (ctx.asyncOptions() == null) {
+            throw new IllegalStateException("Async operations are not enabled. Call enableAsync(AsyncOptions) first.");
+        }
+        this.ctx = ctx;
+        this.meta = meta;
+        this.sql = sql;
+        this.params = new ArrayList<>(params);
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        RowSubscription sub = new RowSubscription(subscriber, ctx.asyncOptions());
+        subscriber.onSubscribe(sub);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * One subscription's cursor. All reads and signals run in {@link #drain()}, which is only
+     * ever active on one thread at a time.
+     */
+    private final class RowSubscription implements Subscription {
+        private final Subscriber<? super T> downstream;
+        private final AsyncOptions options;
+        private final Executor executor;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException badRequest;
+        private volatile PreparedStatement running;
+
+        // Only touched inside drain()
+        private Connection conn;
+        private boolean autoCommit;
+        private ResultSet rs;
+        private int fetchSize;
+        private boolean done;
+        private StatementTimer timer;
+        private long rows;
+
+        RowSubscription(Subscriber<? super T> downstream, AsyncOptions options) {
+            this.downstream = downstream;
+            this.options = options;
+            this.executor = options.getExecutor();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request(n) must be positive, was " + n); // rule 3.9
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    if (r == Long.MAX_VALUE) break;
+                    u = r + n;
+                    if (u < 0) u = Long.MAX_VALUE;
+                } while (!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            PreparedStatement ps = running;
+            if (ps != null) {
+                try {
+                    ps.cancel();
+                } catch (SQLException ignored) {
+                    // The cursor is closed by drain() either way
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                release();
+                if (!done) {
+                    done = true;
+                    downstream.onError(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for (;;) {
+                if (done) return;
+                if (cancelled) {
+                    done = true;
+                    release();
+                    return;
+                }
+                if (badRequest != null) {
+                    fail(badRequest);
+                    return;
+                }
+
+                long r = requested.get();
+                long emitted = 0;
+                try {
+                    if (r > 0) {
+                        if (rs == null) open((int) Math.min(r, maxFetchSize));
+                        else adjustFetchSize(r);
+                    }
+                    while (emitted != r) {
+                        if (cancelled) break;
+                        if (!timer.next(rs)) {
+                            done = true;
+                            release();
+                            downstream.onComplete();
+                            return;
+                        }
+                        T row = timer.mapRow(rs, meta);
+                        rows++;
+                        emitted++;
+                        if (!emit(row)) return;
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    if (cancelled) {
+                        done = true;
+                        release();
+                        return;
+                    }
+                    if (timer != null) timer.fail(e);
+                    fail(new RuntimeException("query failed: " + sql, e));
+                    return;
+                }
+
+                if (emitted != 0 && r != Long.MAX_VALUE) requested.addAndGet(-emitted);
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+
+        /** Signals a row; a subscriber that throws is treated as having cancelled (rule 2.13). */
+        private boolean emit(T row) {
+            try {
+                downstream.onNext(row);
+                return true;
+            } catch (Throwable t) {
+                cancelled = true;
+                done = true;
+                release();
+                return false;
+            }
+        }
+
+        private void open(int initialFetchSize) throws SQLException {
+            conn = options.getDataSource().getConnection();
+            // Read inside a transaction so that drivers such as PostgreSQL honour the fetch size with a cursor
+            autoCommit = conn.getAutoCommit();
+            if (autoCommit) conn.setAutoCommit(false);
+
+            IDbContext attached = new AttachedDbContext(ctx, conn);
+            timer = attached.timeStatement(StatementKind.QUERY, sql, params);
+            PreparedStatement ps = attached.prepareCursor(sql, params, initialFetchSize);
+            running = ps;
+            fetchSize = initialFetchSize;
+            timer.prepared();
+            if (cancelled) return;
+            rs = ps.executeQuery();
+            timer.executed();
+        }
+
+        private void adjustFetchSize(long demand) throws SQLException {
+            int wanted = (int) Math.min(demand, maxFetchSize);
+            if (wanted != fetchSize) {
+                rs.setFetchSize(wanted);
+                fetchSize = wanted;
+            }
+        }
+
+        private void fail(Throwable error) {
+            done = true;
+            cancelled = true;
+            release();
+            downstream.onError(error);
+        }
+
+        /** Reports the statement and closes the result set, statement and connection, if open. */
+        private void release() {
+            if (timer != null) timer.finish(rows);
+            PreparedStatement ps = running;
+            running = null;
+            try {
+                if (rs != null) rs.close();
+            } catch (SQLException ignored) {
+                // Closing the statement below closes it too
+            }
+            rs = null;
+            try {
+                if (ps != null) ps.close();
+            } catch (SQLException ignored) {
+                // Released with the connection
+            }
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                    if (autoCommit) conn.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                    // Still closed below
+                }
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // Nothing more to release
+                }
+                conn = null;
+            }
+        }
+    }
+}
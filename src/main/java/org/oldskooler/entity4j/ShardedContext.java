@@ -0,0 +1,752 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.functions.SFunction;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.select.SelectionOrder;
+import org.oldskooler.entity4j.select.SelectionPart;
+import org.oldskooler.entity4j.util.LambdaUtils;
+import org.oldskooler.entity4j.util.SqlValues;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads entities across several databases (shards) by the value of one mapped property.
+ * <p>
+ * Writes go to the shard chosen by the entity's shard key. Queries whose filter pins the shard
+ * key with {@code equals} or {@code in} (and no {@code or}) run only on the matching shards.
+ * Other queries run on every shard in parallel and the results are combined:
+ * </p>
+ * <ul>
+ *   <li>rows are merge-sorted by the query's ORDER BY, with NULL placed as the dialect sorts it, and
+ *       LIMIT/OFFSET are re-applied to the merged rows; ordering by text columns requires
+ *       {@link Builder#stringCollation(Comparator)}</li>
+ *   <li>{@link #count(Query)} sums the per-shard counts</li>
+ *   <li>SUM, COUNT, MIN, MAX and AVG in {@link #toMapList(Query)} are recombined per group
+ *       (AVG is computed from per-shard sums and counts); COUNT(DISTINCT) is rejected</li>
+ *   <li>GROUP BY queries are merged by their group columns, with or without aggregates</li>
+ * </ul>
+ * <p>
+ * Queries built with {@link #from(Class)} are {@link ShardedQuery sharded queries}: their own
+ * {@code toList()}, {@code first()}, {@code count()} and {@code toMapList()} fan out the same way.
+ * Shard contexts are used from several threads during a fan-out, so use thread-safe contexts
+ * such as {@link DbContextFactory#shared()}.
+ * </p>
+ */
+public class ShardedContext implements AutoCloseable {
+
+    /** Maps a shard key to a shard index between 0 and {@code shardCount - 1}. */
+    @FunctionalInterface
+    public interface ShardFunction {
+        int shardFor(Object key, int shardCount);
+
+        /**
+         * Hash of the key modulo the shard count. Keys are normalized first, so an Integer and
+         * a Long with the same value land on the same shard.
+         *
+         * @return the default shard function
+         */
+        static ShardFunction hash() {
+            return (key, n) -> Math.floorMod(Objects.hashCode(SqlValues.normalize(key)), n);
+        }
+    }
+
+    private final List<IDbContext> shards;
+    private final Map<Class<?>, ShardKey> keys;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Comparator<? super String> collation;
+
+    private ShardedContext(Builder b) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(b.shards));
+        this.keys = new ConcurrentHashMap<>();
+        for (Map.Entry<Class<?>, ShardKey> e : b.keys.entrySet()) {
+            ShardKey k = e.getValue();
+            keys.put(e.getKey(), new ShardKey(k.type, k.property, k.function != null ? k.function : b.shardFunction));
+        }
+        this.collation = b.collation;
+        this.ownsExecutor = b.executor == null;
+        this.executor = b.executor != null ? b.executor : defaultExecutor(shards.size());
+    }
+
+    /**
+     * Creates a builder for a sharded context.
+     *
+     * @return a new Builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /* -------------------------------
+       Routing
+       ------------------------------- */
+
+    public List<IDbContext> getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the shard that holds entities of {@code type} with the given shard key.
+     *
+     * @param type     the entity type
+     * @param shardKey the value of the type's shard key property
+     * @return the shard context
+     * @throws IllegalArgumentException if no shard key is configured for the type
+     */
+    public IDbContext shardFor(Class<?> type, Object shardKey) {
+        return shards.get(index(key(type), shardKey));
+    }
+
+    /**
+     * Returns the shard that holds {@code entity}, based on its shard key property.
+     *
+     * @param entity the entity
+     * @return the shard context
+     * @throws IllegalArgumentException if no shard key is configured for the entity's type
+     */
+    public IDbContext shardOf(Object entity) {
+        ShardKey key = key(entity.getClass());
+        return shards.get(index(key, key.valueOf(entity, shards.get(0))));
+    }
+
+    /* -------------------------------
+       Writes
+       ------------------------------- */
+
+    public <T> int insert(T entity) {
+        return shardOf(entity).insert(entity);
+    }
+
+    public <T> int update(T entity) {
+        return shardOf(entity).update(entity);
+    }
+
+    public <T> int delete(T entity) {
+        return shardOf(entity).delete(entity);
+    }
+
+    /**
+     * Inserts entities, grouped by shard; the groups are written in parallel.
+     *
+     * @param entities the entities to insert
+     * @param <T>      the entity type
+     * @return the total number of rows affected
+     */
+    public <T> int insertAll(Collection<T> entities) {
+        return writeAll(entities, IDbContext::insertAll);
+    }
+
+    public <T> int updateAll(Collection<T> entities) {
+        return writeAll(entities, IDbContext::updateAll);
+    }
+
+    public <T> int deleteAll(Collection<T> entities) {
+        return writeAll(entities, IDbContext::deleteAll);
+    }
+
+    @FunctionalInterface
+    private interface BulkWrite {
+        <T> int apply(IDbContext ctx, Collection<T> entities);
+    }
+
+    private <T> int writeAll(Collection<T> entities, BulkWrite write) {
+        if (entities == null || entities.isEmpty()) return 0;
+
+        Map<IDbContext, List<T>> groups = new LinkedHashMap<>();
+        for (T e : entities) groups.computeIfAbsent(shardOf(e), s -> new ArrayList<>()).add(e);
+
+        int n = 0;
+        for (int rows : fanOut(new ArrayList<>(groups.keySet()), s -> write.apply(s, groups.get(s)))) n += rows;
+        return n;
+    }
+
+    /* -------------------------------
+       Queries
+       ------------------------------- */
+
+    /**
+     * Starts a query for {@code type}. Its {@code toList()}, {@code first()}, {@code count()} and
+     * {@code toMapList()} run across the shards, like {@link #toList(Query)} and friends.
+     *
+     * @param type the entity type
+     * @param <T>  the entity type
+     * @return a new sharded query
+     */
+    public <T> ShardedQuery<T> from(Class<T> type) {
+        return new ShardedQuery<>(this, shards.get(0).from(type));
+    }
+
+    public <T> List<T> toList(Query<T> query) {
+        return gather(query, query.getLimit());
+    }
+
+    public <T> Optional<T> first(Query<T> query) {
+        Integer limit = query.getLimit();
+        List<T> xs = gather(query, limit == null || limit > 1 ? 1 : limit);
+        return xs.isEmpty() ? Optional.empty() : Optional.of(xs.get(0));
+    }
+
+    public long count(Query<?> query) {
+        long n = 0;
+        for (long c : fanOut(targets(query), s -> query.on(s).count())) n += c;
+        return n;
+    }
+
+    /**
+     * Runs a projection on the relevant shards and combines the rows. Aggregating selections
+     * are recombined per group; ORDER BY columns must be part of the selection.
+     *
+     * @param query the query
+     * @return the combined rows
+     * @throws UnsupportedOperationException if the selection uses COUNT(DISTINCT) and the query spans shards
+     * @throws IllegalStateException if an ORDER BY cannot be evaluated on the combined rows
+     */
+    public List<Map<String, Object>> toMapList(Query<?> query) {
+        List<IDbContext> targets = targets(query);
+        if (targets.isEmpty()) return new ArrayList<>();
+        if (targets.size() == 1) return query.on(targets.get(0)).toMapList();
+
+        List<SelectionPart> select = query.getSelectionParts();
+        boolean aggregating = !query.getGroupBys().isEmpty();
+        for (SelectionPart p : select) aggregating |= p.kind == SelectionPart.Kind.AGGREGATE;
+
+        Integer limit = query.getLimit(), offset = query.getOffset();
+        List<Map<String, Object>> rows;
+        if (aggregating) {
+            List<String> labels = new ArrayList<>(select.size());
+            for (SelectionPart p : select) labels.add(query.selectionLabel(p));
+            rows = aggregate(query, targets, select, labels);
+            rows.sort(rowOrder(query, labels, targets.get(0)));
+        } else {
+            Integer perShard = perShardLimit(limit, offset);
+            List<List<Map<String, Object>>> parts = fanOut(targets, s -> query.on(s).limit(perShard).offset(null).toMapList());
+            List<String> labels = Collections.emptyList();
+            for (List<Map<String, Object>> part : parts) {
+                if (!part.isEmpty()) {
+                    labels = new ArrayList<>(part.get(0).keySet());
+                    break;
+                }
+            }
+            rows = merge(parts, query.getOrderBys().isEmpty() ? null : rowOrder(query, labels, targets.get(0)));
+        }
+        return page(rows, offset, limit);
+    }
+
+    private <T> List<T> gather(Query<T> query, Integer limit) {
+        List<IDbContext> targets = targets(query);
+        if (targets.isEmpty()) return new ArrayList<>();
+        if (targets.size() == 1) return query.on(targets.get(0)).limit(limit).toList();
+
+        Integer offset = query.getOffset();
+        Integer perShard = perShardLimit(limit, offset);
+        List<List<T>> parts = fanOut(targets, s -> query.on(s).limit(perShard).offset(null).toList());
+        List<T> merged = merge(parts, query.getOrderBys().isEmpty() ? null : entityOrder(query, targets.get(0)));
+        return page(merged, offset, limit);
+    }
+
+    /** Shards a query must run on: those pinned by its shard key conditions, else all. */
+    private List<IDbContext> targets(Query<?> query) {
+        ShardKey key = keys.get(query.getEntityType());
+        if (key == null || !query.hasOnlySimpleConditions()) return shards;
+
+        Set<Integer> selected = null;
+        for (Query.Condition c : query.getConditions()) {
+            if (!key.property.equals(c.property)) continue;
+
+            Set<Integer> hit = new TreeSet<>();
+            if (c.op == Query.Condition.Op.EQ) {
+                hit.add(index(key, c.value));
+            } else if (c.op == Query.Condition.Op.IN) {
+                for (Object v : (Collection<?>) c.value) hit.add(index(key, v));
+            } else {
+                continue;
+            }
+            if (selected == null) selected = hit;
+            else selected.retainAll(hit);
+        }
+        if (selected == null) return shards;
+
+        List<IDbContext> out = new ArrayList<>(selected.size());
+        for (int i : selected) out.add(shards.get(i));
+        return out;
+    }
+
+    /* -------------------------------
+       Aggregates
+       ------------------------------- */
+
+    /**
+     * Runs the aggregating selection on every shard without LIMIT/OFFSET and folds rows of the
+     * same group together. Every selected column is fetched under an alias of its own and the
+     * GROUP BY columns are fetched as well, so groups are matched by their keys even when they
+     * are not selected. AVG is fetched as SUM plus a COUNT.
+     */
+    private List<Map<String, Object>> aggregate(Query<?> query, List<IDbContext> targets,
+                                                List<SelectionPart> select, List<String> labels) {
+        int n = select.size();
+        List<SelectionPart> rewritten = new ArrayList<>();
+        Set<Integer> averages = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            SelectionPart p = select.get(i);
+            if (p.kind == SelectionPart.Kind.STAR) {
+                throw new UnsupportedOperationException("Cannot combine aggregates with a * selection across shards");
+            }
+            if (p.kind == SelectionPart.Kind.AGGREGATE && p.distinct) {
+                throw new UnsupportedOperationException("COUNT(DISTINCT) cannot be recombined across shards; filter on the shard key");
+            }
+            if (p.kind == SelectionPart.Kind.AGGREGATE && p.aggregateFunction == SelectionPart.AggregateFunction.AVG) {
+                rewritten.add(p.withAggregate(SelectionPart.AggregateFunction.SUM).withAlias(column(i)));
+                rewritten.add(p.withAggregate(SelectionPart.AggregateFunction.COUNT).withAlias(avgCount(i)).withOrder(null));
+                averages.add(i);
+            } else {
+                rewritten.add(p.withAlias(column(i)));
+            }
+        }
+        List<SelectionPart> groupBys = query.getGroupBys();
+        for (int g = 0; g < groupBys.size(); g++) {
+            rewritten.add(groupBys.get(g).withAlias(groupColumn(g)).withOrder(null));
+        }
+
+        List<List<Map<String, Object>>> parts = fanOut(targets, s -> {
+            Query<?> q = query.on(s).limit(null).offset(null);
+            q.replaceSelection(rewritten);
+            return q.toMapList();
+        });
+
+        // Per group: the selected values, then the COUNT behind each AVG
+        Map<List<Object>, Object[]> groups = new LinkedHashMap<>();
+        for (List<Map<String, Object>> part : parts) {
+            for (Map<String, Object> row : part) {
+                List<Object> groupKey = new ArrayList<>();
+                if (!groupBys.isEmpty()) {
+                    for (int g = 0; g < groupBys.size(); g++) groupKey.add(SqlValues.normalize(row.get(groupColumn(g))));
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        if (select.get(i).kind != SelectionPart.Kind.AGGREGATE) groupKey.add(SqlValues.normalize(row.get(column(i))));
+                    }
+                }
+
+                Object[] acc = groups.get(groupKey);
+                if (acc == null) {
+                    acc = new Object[2 * n];
+                    for (int i = 0; i < n; i++) acc[i] = row.get(column(i));
+                    for (int i : averages) acc[n + i] = row.get(avgCount(i));
+                    groups.put(groupKey, acc);
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    SelectionPart p = select.get(i);
+                    if (p.kind == SelectionPart.Kind.AGGREGATE) acc[i] = combine(p.aggregateFunction, acc[i], row.get(column(i)));
+                }
+                for (int i : averages) acc[n + i] = add(acc[n + i], row.get(avgCount(i)));
+            }
+        }
+
+        List<Map<String, Object>> out = new ArrayList<>(groups.size());
+        for (Object[] acc : groups.values()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                row.put(labels.get(i), averages.contains(i) ? average(acc[i], acc[n + i]) : acc[i]);
+            }
+            out.add(row);
+        }
+        return out;
+    }
+
+    private static String column(int i) {
+        return "shard_col_" + i;
+    }
+
+    private static String avgCount(int i) {
+        return "shard_avg_count_" + i;
+    }
+
+    private static String groupColumn(int g) {
+        return "shard_group_" + g;
+    }
+
+    private static Object combine(SelectionPart.AggregateFunction func, Object a, Object b) {
+        switch (func) {
+            case MIN:
+                if (a == null) return b;
+                if (b == null) return a;
+                return SqlValues.compare(a, b) <= 0 ? a : b;
+            case MAX:
+                if (a == null) return b;
+                if (b == null) return a;
+                return SqlValues.compare(a, b) >= 0 ? a : b;
+            case SUM:
+            case COUNT:
+            case AVG: // already rewritten to SUM
+            default:
+                return add(a, b);
+        }
+    }
+
+    private static Object add(Object a, Object b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        Number x = (Number) a, y = (Number) b;
+        if (isIntegral(x) && isIntegral(y)) {
+            try {
+                return Math.addExact(x.longValue(), y.longValue());
+            } catch (ArithmeticException overflow) {
+                return new BigDecimal(x.toString()).add(new BigDecimal(y.toString()));
+            }
+        }
+        if (x instanceof Double || x instanceof Float || y instanceof Double || y instanceof Float) {
+            return x.doubleValue() + y.doubleValue();
+        }
+        return new BigDecimal(x.toString()).add(new BigDecimal(y.toString()));
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    private static Object average(Object sum, Object count) {
+        if (sum == null || count == null || ((Number) count).longValue() == 0) return null;
+        return ((Number) sum).doubleValue() / ((Number) count).longValue();
+    }
+
+    /* -------------------------------
+       Ordering and paging
+       ------------------------------- */
+
+    private static Integer perShardLimit(Integer limit, Integer offset) {
+        if (limit == null) return null;
+        return offset == null ? limit : limit + offset;
+    }
+
+    private static <R> List<R> page(List<R> rows, Integer offset, Integer limit) {
+        int from = Math.min(offset == null ? 0 : Math.max(0, offset), rows.size());
+        int to = limit == null ? rows.size() : Math.min(rows.size(), from + Math.max(0, limit));
+        return new ArrayList<>(rows.subList(from, to));
+    }
+
+    /** K-way merge of per-shard lists that are each sorted by {@code order}; concatenates if null. */
+    private static <R> List<R> merge(List<List<R>> parts, Comparator<R> order) {
+        int total = 0;
+        for (List<R> p : parts) total += p.size();
+        List<R> out = new ArrayList<>(total);
+        if (order == null) {
+            for (List<R> p : parts) out.addAll(p);
+            return out;
+        }
+
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<R> part = parts.get(head[0]);
+            out.add(part.get(head[1]));
+            if (++head[1] < part.size()) heads.add(head);
+        }
+        return out;
+    }
+
+    private <T> Comparator<T> entityOrder(Query<T> query, IDbContext shard) {
+        TableMeta<T> meta = query.getTableMeta();
+        Comparator<T> order = null;
+        for (SelectionPart p : query.getOrderBys()) {
+            if (p.kind != SelectionPart.Kind.COLUMN || (p.entityType != null && p.entityType != meta.type)) {
+                throw new IllegalStateException("Cannot merge " + p + " across shards; only columns of "
+                        + meta.type.getSimpleName() + " can be ordered by");
+            }
+            Field f = meta.propToField.get(p.propertyName);
+            if (f == null) {
+                throw new IllegalStateException("Cannot merge " + p + " across shards; " + p.propertyName
+                        + " is not a mapped property of " + meta.type.getSimpleName());
+            }
+            Class<?> t = f.getType();
+            if (collation == null && (t == String.class || t == Character.class || t == char.class || t.isEnum())) {
+                throw textOrder(p);
+            }
+            f.setAccessible(true);
+            Comparator<T> c = Comparator.comparing(x -> read(f, x), valueOrder(p, shard));
+            if (p.orderBy == SelectionOrder.DESC) c = c.reversed();
+            order = order == null ? c : order.thenComparing(c);
+        }
+        return order;
+    }
+
+    private Comparator<Map<String, Object>> rowOrder(Query<?> query, List<String> labels, IDbContext shard) {
+        List<SelectionPart> select = query.getSelectionParts();
+        boolean positional = query.hasExplicitSelect();
+        for (SelectionPart s : select) positional &= s.kind != SelectionPart.Kind.STAR;
+
+        Comparator<Map<String, Object>> order = null;
+        for (SelectionPart p : query.getOrderBys()) {
+            String label = null;
+            if (p.alias != null && !p.alias.isEmpty()) {
+                label = p.alias;
+            } else if (positional) {
+                for (int i = 0; i < select.size() && i < labels.size(); i++) {
+                    if (sameColumn(select.get(i), p, query.getEntityType())) {
+                        label = labels.get(i);
+                        break;
+                    }
+                }
+            } else if (p.kind == SelectionPart.Kind.COLUMN) {
+                Class<?> type = p.entityType != null ? p.entityType : query.getEntityType();
+                label = TableMeta.of(type, query.context().mappingRegistry()).propToColumn.get(p.propertyName);
+            }
+            if (label == null) {
+                throw new IllegalStateException("Cannot merge " + p + " across shards; order by a selected column");
+            }
+
+            String key = label;
+            Comparator<Map<String, Object>> c = Comparator.comparing(row -> row.get(key), valueOrder(p, shard));
+            if (p.orderBy == SelectionOrder.DESC) c = c.reversed();
+            order = order == null ? c : order.thenComparing(c);
+        }
+        return order != null ? order : (a, b) -> 0;
+    }
+
+    /**
+     * Orders values the way the shards' database does: NULL sorts where the dialect puts it, and
+     * text only compares under the declared {@link Builder#stringCollation collation}.
+     */
+    private Comparator<Object> valueOrder(SelectionPart p, IDbContext shard) {
+        boolean nullsLow = shard.dialect().nullsSortLow();
+        return (a, b) -> {
+            if (a == null) return b == null ? 0 : nullsLow ? -1 : 1;
+            if (b == null) return nullsLow ? 1 : -1;
+            if (collation != null) return SqlValues.compare(a, b, collation);
+            if (isText(a) || isText(b)) throw textOrder(p);
+            return SqlValues.compare(a, b);
+        };
+    }
+
+    private static boolean isText(Object v) {
+        return v instanceof String || v instanceof Character || v instanceof Enum;
+    }
+
+    private static IllegalStateException textOrder(SelectionPart p) {
+        return new IllegalStateException("Cannot merge " + p + " across shards; text ordering follows the database"
+                + " collation, declare it with ShardedContext.Builder.stringCollation");
+    }
+
+    private static boolean sameColumn(SelectionPart a, SelectionPart b, Class<?> root) {
+        if (a.kind != b.kind || a.aggregateFunction != b.aggregateFunction || a.distinct != b.distinct) return false;
+        if (!Objects.equals(a.propertyName, b.propertyName)) return false;
+        if ((a.entityType != null ? a.entityType : root) != (b.entityType != null ? b.entityType : root)) return false;
+        return a.kind != SelectionPart.Kind.COMPUTED || a.expression.get().equals(b.expression.get());
+    }
+
+    private static Object read(Field f, Object target) {
+        try {
+            return f.get(target);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to read " + f.getName(), e);
+        }
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private ShardKey key(Class<?> type) {
+        ShardKey key = keys.get(type);
+        if (key == null) throw new IllegalArgumentException("No shard key configured for " + type.getName());
+        return key;
+    }
+
+    private int index(ShardKey key, Object value) {
+        int i = key.function.shardFor(value, shards.size());
+        if (i < 0 || i >= shards.size()) {
+            throw new IllegalStateException("Shard function returned " + i + " for key " + value + "; expected 0.." + (shards.size() - 1));
+        }
+        return i;
+    }
+
+    /** Runs {@code work} on each target in parallel and returns the results in target order. */
+    private <R> List<R> fanOut(List<IDbContext> targets, Function<IDbContext, R> work) {
+        if (targets.size() == 1) return Collections.singletonList(work.apply(targets.get(0)));
+
+        List<CompletableFuture<R>> futures = new ArrayList<>(targets.size());
+        for (IDbContext t : targets) futures.add(CompletableFuture.supplyAsync(() -> work.apply(t), executor));
+
+        List<R> out = new ArrayList<>(targets.size());
+        for (CompletableFuture<R> f : futures) {
+            try {
+                out.add(f.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+        }
+        return out;
+    }
+
+    private static ExecutorService defaultExecutor(int shards) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, "entity4j-shard-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return Executors.newFixedThreadPool(Math.max(2, shards * 2), tf);
+    }
+
+    /** Closes the shard contexts and, if it was created here, the fan-out executor. */
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+        RuntimeException failure = null;
+        for (IDbContext s : shards) {
+            try {
+                s.close();
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Shard key property of one entity type. */
+    private static final class ShardKey {
+        final Class<?> type;
+        final String property;
+        final ShardFunction function;
+        volatile Field field;
+
+        ShardKey(Class<?> type, String property, ShardFunction function) {
+            this.type = type;
+            this.property = property;
+            this.function = function;
+        }
+
+        Object valueOf(Object entity, IDbContext template) {
+            Field f = field;
+            if (f == null) {
+                template.ensureModelBuiltInternal();
+                f = TableMeta.of(type, template.mappingRegistry()).propToField.get(property);
+                if (f == null) {
+                    throw new IllegalArgumentException("Shard key '" + property + "' is not a mapped property of " + type.getName());
+                }
+                f.setAccessible(true);
+                field = f;
+            }
+            return read(f, entity);
+        }
+    }
+
+    /**
+     * Builder for ShardedContext.
+     */
+    public static class Builder {
+        private final List<IDbContext> shards = new ArrayList<>();
+        private final Map<Class<?>, ShardKey> keys = new LinkedHashMap<>();
+        private ShardFunction shardFunction = ShardFunction.hash();
+        private ExecutorService executor = null;
+        private Comparator<? super String> collation = null;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a shard. Shard indexes follow the order in which shards are added.
+         *
+         * @param context a thread-safe context for the shard's database
+         * @return this builder
+         */
+        public Builder shard(IDbContext context) {
+            shards.add(Objects.requireNonNull(context, "context"));
+            return this;
+        }
+
+        /**
+         * Shards {@code type} by a mapped property using the default shard function.
+         *
+         * @param type     the entity type
+         * @param property getter of the shard key property, e.g. {@code Order::getTenantId}
+         * @param <T>      the entity type
+         * @return this builder
+         */
+        public <T> Builder shardBy(Class<T> type, SFunction<T, ?> property) {
+            return shardBy(type, property, null);
+        }
+
+        /**
+         * Shards {@code type} by a mapped property using a custom shard function.
+         *
+         * @param type     the entity type
+         * @param property getter of the shard key property
+         * @param function maps key values to shard indexes, or null for the default
+         * @param <T>      the entity type
+         * @return this builder
+         */
+        public <T> Builder shardBy(Class<T> type, SFunction<T, ?> property, ShardFunction function) {
+            Objects.requireNonNull(type, "type");
+            keys.put(type, new ShardKey(type, LambdaUtils.propertyName(Objects.requireNonNull(property, "property")), function));
+            return this;
+        }
+
+        /**
+         * Sets the shard function used by {@link #shardBy(Class, SFunction)}.
+         * Defaults to {@link ShardFunction#hash()}.
+         *
+         * @param shardFunction the default shard function
+         * @return this builder
+         */
+        public Builder shardFunction(ShardFunction shardFunction) {
+            this.shardFunction = Objects.requireNonNull(shardFunction, "shardFunction");
+            return this;
+        }
+
+        /**
+         * Sets the executor used to query shards in parallel. Defaults to a daemon pool owned
+         * by the sharded context.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * Declares how the shards' database compares text columns, so that results ordered by
+         * String, char or enum columns can be merged: e.g. {@code Comparator.naturalOrder()} for
+         * binary collations (SQLite, PostgreSQL "C") or {@link String#CASE_INSENSITIVE_ORDER} for
+         * case-insensitive ones (the MySQL and SQL Server defaults). Defaults to null: such queries
+         * throw {@link IllegalStateException} when they span shards.
+         *
+         * @param collation the string ordering of the shards' text columns, or null
+         * @return this builder
+         */
+        public Builder stringCollation(Comparator<? super String> collation) {
+            this.collation = collation;
+            return this;
+        }
+
+        /**
+         * Builds the ShardedContext.
+         *
+         * @return a new ShardedContext instance
+         * @throws IllegalStateException if no shard was added
+         */
+        public ShardedContext build() {
+            if (shards.isEmpty()) throw new IllegalStateException("At least one shard is required");
+            return new ShardedContext(this);
+        }
+    }
+}
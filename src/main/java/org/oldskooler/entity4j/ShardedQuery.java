@@ -0,0 +1,129 @@
+package org.oldskooler.entity4j;
+
+import org.oldskooler.entity4j.functions.SFunction;
+import org.oldskooler.entity4j.mapping.SetBuilder;
+import org.reactivestreams.Publisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * A query built by {@link ShardedContext#from(Class)}. {@link #toList()}, {@link #first()},
+ * {@link #count()} and {@link #toMapList()} run on the shards the query targets and combine the
+ * results, exactly like the matching {@link ShardedContext} methods.
+ * <p>
+ * Operations that cannot be combined across shards (DTO projections, async variants, scans,
+ * publishers and set-based updates or deletes) throw {@link UnsupportedOperationException};
+ * run them on one shard with {@link #on(IDbContext)} and {@link ShardedContext#shardFor}.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public final class ShardedQuery<T> extends Query<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ShardedContext owner;
+
+    ShardedQuery(ShardedContext owner, Query<T> template) {
+        super(template, template.context());
+        this.owner = owner;
+    }
+
+    @Override
+    public List<T> toList() {
+        return owner.toList(this);
+    }
+
+    @Override
+    public Optional<T> first() {
+        return owner.first(this);
+    }
+
+    @Override
+    public long count() {
+        return owner.count(this);
+    }
+
+    @Override
+    public List<Map<String, Object>> toMapList() {
+        return owner.toMapList(this);
+    }
+
+    @Override
+    public <R> List<R> toList(Class<R> dtoType) {
+        throw unsupported("toList(Class)");
+    }
+
+    @Override
+    public CompletableFuture<List<T>> toListAsync() {
+        throw unsupported("toListAsync");
+    }
+
+    @Override
+    public <R> CompletableFuture<List<R>> toListAsync(Class<R> dtoType) {
+        throw unsupported("toListAsync");
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> toMapListAsync() {
+        throw unsupported("toMapListAsync");
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> firstAsync() {
+        throw unsupported("firstAsync");
+    }
+
+    @Override
+    public CompletableFuture<Long> countAsync() {
+        throw unsupported("countAsync");
+    }
+
+    @Override
+    public ParallelScan<T> parallelScan(int partitions) {
+        throw unsupported("parallelScan");
+    }
+
+    @Override
+    public Publisher<T> publisher(int maxFetchSize) {
+        throw unsupported("publisher");
+    }
+
+    @Override
+    public int update(Consumer<SetBuilder<T>> setter) {
+        throw unsupported("update");
+    }
+
+    @Override
+    public List<T> updateReturningList(Consumer<SetBuilder<T>> setter) {
+        throw unsupported("updateReturningList");
+    }
+
+    @Override
+    public Optional<T> updateReturningOptional(Consumer<SetBuilder<T>> setter) {
+        throw unsupported("updateReturningOptional");
+    }
+
+    @Override
+    public int incrementBatch(Map<SFunction<T, ?>, Number> increments) {
+        throw unsupported("incrementBatch");
+    }
+
+    @Override
+    public int decrementBatch(Map<SFunction<T, ?>, Number> decrements) {
+        throw unsupported("decrementBatch");
+    }
+
+    @Override
+    public int delete() {
+        throw unsupported("delete");
+    }
+
+    private static UnsupportedOperationException unsupported(String operation) {
+        return new UnsupportedOperationException(operation + " cannot run across shards; run it on one shard with on(shardFor(...))");
+    }
+}
@@ -1,5 +1,7 @@
 package org.oldskooler.entity4j.annotations;
 
+import org.oldskooler.entity4j.keys.KeyGenerator;
+
 import java.lang.annotation.*;
 
 @Target(ElementType.FIELD)
@@ -7,4 +9,10 @@ import java.lang.annotation.*;
 public @interface Id {
     String name() default "";
     boolean auto() default true;
+
+    /**
+     * Client-side key generator, e.g. {@code HiLoGenerator.class}; the key is then assigned before
+     * the insert and {@link #auto()} is ignored. {@code KeyGenerator.class} (the default) means none.
+     */
+    Class<? extends KeyGenerator> generator() default KeyGenerator.class;
 }
@@ -0,0 +1,30 @@
+package org.oldskooler.entity4j.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares an index, created together with the table by {@code createTable}/{@code createTables}.
+ * On a field, {@link #columns()} defaults to that field's column. Repeatable on the entity class.
+ */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(Indexes.class)
+public @interface Index {
+    /** Index name; defaults to ix_ (or ux_ if unique) followed by the table and columns. */
+    String name() default "";
+
+    /**
+     * Key columns, in order, given as property or column names. An entry containing a
+     * parenthesis, such as {@code "LOWER(email)"}, is an expression and rendered as written.
+     */
+    String[] columns() default {};
+
+    /** True for a UNIQUE index. */
+    boolean unique() default false;
+
+    /** Predicate of a partial index (e.g. "deleted_at IS NULL"), as raw SQL; empty for none. */
+    String where() default "";
+
+    /** Non-key columns stored in the index (INCLUDE) so queries reading them skip the table. */
+    String[] include() default {};
+}
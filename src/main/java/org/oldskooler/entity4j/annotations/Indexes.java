@@ -0,0 +1,10 @@
+package org.oldskooler.entity4j.annotations;
+
+import java.lang.annotation.*;
+
+/** Container for repeated {@link Index} declarations. */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Indexes {
+    Index[] value();
+}
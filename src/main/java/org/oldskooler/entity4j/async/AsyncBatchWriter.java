@@ -0,0 +1,734 @@
+package org.oldskooler.entity4j.async;
+
+import org.oldskooler.entity4j.AttachedDbContext;
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.ReflectionUtils;
+
+import org.oldskooler.entity4j.util.RowCodec;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Buffers inserts and updates from many threads and writes them in batches.
+ * <p>
+ * {@link #insert(Object)} and {@link #update(Object)} only enqueue the entity on a lock-free
+ * queue. A background thread drains the queue once {@link Builder#maxBatchSize(int)} writes are
+ * pending or {@link Builder#flushInterval(Duration)} has passed, and writes each batch with
+ * {@link IDbContext#insertAll(Collection)} followed by {@link IDbContext#updateAll(Collection)}
+ * in one transaction, on a connection borrowed from the context's async data source.
+ * </p>
+ * <p>
+ * Within a batch, several updates to the same primary key are coalesced into one (the last
+ * submitted entity wins), and an update of an instance that is still waiting to be inserted is
+ * dropped, since the insert writes its current state anyway.
+ * </p>
+ * <p>
+ * At most {@link Builder#maxPending(int)} writes are buffered, counting the batch being
+ * written; beyond that, submitting blocks until a flush frees space, and throws
+ * {@link RejectedExecutionException} if none is freed within the enqueue timeout. A batch that
+ * fails is rolled back and handed to the error callback; it is not retried. Closing the writer
+ * flushes everything still buffered.
+ * </p>
+ * <p>
+ * With {@link Builder#journal(Path)}, every write is also appended to a memory-mapped journal
+ * before it is queued, and acknowledged once its batch has committed (or been handed to the
+ * error callback). Writes left unacknowledged by a crash are written again when the next
+ * writer opens the same journal directory, before it accepts new writes. Replayed writes of
+ * one instance are merged like a batch: an insert followed by updates of the same new entity
+ * is replayed as one insert of its latest journaled state.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public class AsyncBatchWriter<T> implements AutoCloseable {
+
+    private enum Kind { INSERT, UPDATE }
+
+    private static final AtomicInteger WRITERS = new AtomicInteger();
+
+    private final IDbContext ctx;
+    private final Class<T> type;
+    private final int maxBatchSize;
+    private final Duration enqueueTimeout;
+    private final Consumer<FailedBatch<T>> onError;
+    private final Consumer<List<T>> onDone;
+    private final WriteJournal<T> journal;
+    /** Makes journal append and enqueue one step, so queue order matches sequence order */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /** Journaled instances with an insert, until all their queued writes are done; guarded by appendLock */
+    private final Map<T, Token> tokens = new IdentityHashMap<>();
+    /** Submits enqueue under the read lock; close() takes the write lock, so none is in flight once it is closed */
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private final ConcurrentLinkedQueue<Op<T>> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore space;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService flusher;
+    private volatile Thread flusherThread;
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    private TableMeta<T> meta;
+
+    private AsyncBatchWriter(Builder<T> b) {
+        if (b.ctx.asyncOptions() == null) {
+            throw new IllegalStateException("Async operations are not enabled. Call enableAsync(AsyncOptions) first.");
+        }
+        this.ctx = b.ctx;
+        this.type = b.type;
+        this.maxBatchSize = b.maxBatchSize;
+        this.enqueueTimeout = b.enqueueTimeout;
+        this.onError = b.onError;
+        this.onDone = b.onDone;
+        this.space = new Semaphore(b.maxPending);
+        this.journal = b.journalDir != null ? openJournal(b) : null;
+
+        String name = "entity4j-batch-writer-" + WRITERS.incrementAndGet();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            flusherThread = t;
+            return t;
+        });
+        long every = b.flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(() -> drain(true), every, every, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a builder for a writer of the given entity type.
+     *
+     * @param ctx  the context whose async data source, model and query cache are used
+     * @param type the entity class
+     * @param <T>  the entity type
+     * @return a new Builder instance
+     */
+    public static <T> Builder<T> builder(IDbContext ctx, Class<T> type) {
+        return new Builder<>(ctx, type);
+    }
+
+    /**
+     * Queues an insert. Auto-generated ids are assigned to the entity when its batch is written.
+     *
+     * @param entity the entity to insert
+     * @throws RejectedExecutionException if the buffer stayed full for the enqueue timeout
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void insert(T entity) {
+        submit(Kind.INSERT, entity);
+    }
+
+    /**
+     * Queues an update, replacing any update of the same primary key still in the buffer.
+     * The primary key must be set by the time the batch is written; updates without one are
+     * reported to the error callback.
+     *
+     * @param entity the entity to update
+     * @throws RejectedExecutionException if the buffer stayed full for the enqueue timeout
+     * @throws IllegalStateException if the writer is closed, or the entity type has no {@code @Id}
+     */
+    public void update(T entity) {
+        submit(Kind.UPDATE, entity);
+    }
+
+    /**
+     * Writes everything submitted so far and waits for it to finish. Failed batches are
+     * reported to the error callback, not thrown.
+     */
+    public void flush() {
+        if (Thread.currentThread() == flusherThread) {
+            drain(true);
+            return;
+        }
+        Future<?> f;
+        try {
+            f = flusher.submit(() -> drain(true));
+        } catch (RejectedExecutionException e) {
+            return; // closed; close() already flushed
+        }
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while flushing", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Flush failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops accepting writes, flushes the buffer and stops the background thread.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        flush();
+        flusher.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Nothing can be submitted any more and the flusher is gone, so this is the last drain
+        if (terminated) drain(true);
+        if (journal != null) journal.close();
+    }
+
+    /** @return writes submitted but not yet written, including the batch being written */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /** @return rows written by successful batches */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /** @return updates that were merged into another write of the same row */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.sum();
+    }
+
+    /** @return journaled writes replayed at startup */
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private void submit(Kind kind, T entity) {
+        Objects.requireNonNull(entity, "entity");
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (kind == Kind.UPDATE && meta().keys.isEmpty()) {
+            throw new IllegalStateException("@Id required to update " + type.getSimpleName() + " through a batch writer");
+        }
+
+        boolean acquired;
+        try {
+            acquired = space.tryAcquire(enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for buffer space", e);
+        }
+        if (!acquired) {
+            throw new RejectedExecutionException("Write buffer stayed full for " + enqueueTimeout.toMillis() + "ms (pending=" + pending.get() + ")");
+        }
+
+        int queued;
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                space.release();
+                throw new IllegalStateException("Writer is closed");
+            }
+            if (journal == null) {
+                queue.offer(new Op<>(0, kind, entity, null));
+            } else {
+                appendLock.lock();
+                try {
+                    Token token = tokens.get(entity);
+                    long seq = journal.append((byte) kind.ordinal(), token != null ? token.instance : 0, entity);
+                    if (token == null && kind == Kind.INSERT) tokens.put(entity, token = new Token(seq));
+                    if (token != null) token.outstanding++;
+                    queue.offer(new Op<>(seq, kind, entity, token));
+                } catch (RuntimeException e) {
+                    space.release();
+                    throw e;
+                } finally {
+                    appendLock.unlock();
+                }
+            }
+            submitted.increment();
+            queued = pending.incrementAndGet();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (queued >= maxBatchSize && !flushRequested) {
+            flushRequested = true;
+            try {
+                flusher.execute(() -> drain(false));
+            } catch (RejectedExecutionException ignored) {
+                // Shutting down; close() flushes
+            }
+        }
+    }
+
+    /**
+     * Writes full batches, or everything queued if {@code all} (on the interval, on flush and
+     * on close). Only ever runs on the flusher thread, or on the closing thread once the flusher
+     * has stopped, so batches are written in submission order.
+     */
+    private void drain(boolean all) {
+        flushRequested = false;
+        while (true) {
+            int queued = pending.get();
+            if (queued == 0 || (!all && queued < maxBatchSize)) return;
+
+            List<Op<T>> ops = new ArrayList<>(Math.min(queued, maxBatchSize));
+            Op<T> op;
+            while (ops.size() < maxBatchSize && (op = queue.poll()) != null) ops.add(op);
+            if (ops.isEmpty()) return;
+
+            try {
+                boolean committed;
+                try {
+                    committed = write(ops);
+                } catch (RuntimeException e) {
+                    // Thrown outside the database write (e.g. by a property getter); an exception
+                    // escaping here would cancel the periodic flush for good
+                    fail(failedOps(ops, e));
+                    committed = false;
+                }
+                if (journal != null) {
+                    try {
+                        acknowledge(ops, committed);
+                    } catch (RuntimeException e) {
+                        System.err.println("Warning: failed to acknowledge journaled writes; they will be replayed on restart: " + e);
+                    }
+                }
+            } finally {
+                pending.addAndGet(-ops.size());
+                space.release(ops.size());
+                if (onDone != null) done(ops);
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, reporting failures to the error callback.
+     *
+     * @return true if the batch committed
+     */
+    private boolean write(List<Op<T>> ops) {
+        Batch<T> batch = coalesce(ops);
+        if (batch == null) return true;
+        try {
+            writeBatch(batch);
+            return true;
+        } catch (Exception e) {
+            fail(new FailedBatch<>(batch.inserts, batch.updates, e));
+            return false;
+        }
+    }
+
+    /** Acknowledges a written batch in the journal. */
+    private void acknowledge(List<Op<T>> ops, boolean committed) {
+        appendLock.lock();
+        try {
+            for (Op<T> op : ops) {
+                if (op.token != null && --op.token.outstanding == 0) tokens.remove(op.entity);
+            }
+            if (committed) {
+                // Writes still queued for an entity this batch inserted were journaled without
+                // its generated id; journal its current state so that a replay updates the row
+                for (Op<T> op : ops) {
+                    if (op.kind == Kind.INSERT && op.token != null && op.token.outstanding > 0 && !op.token.keyed) {
+                        journal.append((byte) Kind.UPDATE.ordinal(), op.token.instance, op.entity);
+                        op.token.keyed = true;
+                    }
+                }
+            }
+            journal.acknowledge(ops.get(ops.size() - 1).seq);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void writeBatch(Batch<T> batch) throws Exception {
+        try (Connection conn = ctx.asyncOptions().getDataSource().getConnection()) {
+            IDbContext c = new AttachedDbContext(ctx, conn);
+            int rows = c.executeInTransaction(tx -> tx.insertAll(batch.inserts) + tx.updateAll(batch.updates));
+            written.add(rows);
+            batches.increment();
+        }
+    }
+
+    private static <T> FailedBatch<T> failedOps(List<Op<T>> ops, Exception error) {
+        List<T> inserts = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        for (Op<T> op : ops) (op.kind == Kind.INSERT ? inserts : updates).add(op.entity);
+        return new FailedBatch<>(inserts, updates, error);
+    }
+
+    /** @return the batch to write, or null if nothing is left after coalescing */
+    private Batch<T> coalesce(List<Op<T>> ops) {
+        List<T> inserts = new ArrayList<>();
+        Set<T> inserting = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Object, T> updates = new LinkedHashMap<>();
+        List<T> keyless = new ArrayList<>();
+        for (Op<T> op : ops) {
+            if (op.kind == Kind.INSERT) {
+                if (inserting.add(op.entity)) inserts.add(op.entity);
+            } else if (!inserting.contains(op.entity)) {
+                Object key = keyOf(op.entity);
+                if (key == null) keyless.add(op.entity);
+                else updates.put(key, op.entity);
+            }
+        }
+        coalesced.add(ops.size() - inserts.size() - updates.size() - keyless.size());
+        if (!keyless.isEmpty()) {
+            fail(new FailedBatch<>(Collections.<T>emptyList(), keyless,
+                    new IllegalArgumentException("Cannot update " + type.getSimpleName() + " without its primary key")));
+        }
+
+        if (inserts.isEmpty() && updates.isEmpty()) return null;
+        return new Batch<>(inserts, new ArrayList<>(updates.values()));
+    }
+
+    /**
+     * Opens the journal and writes what the previous run left unacknowledged. A replayed batch
+     * that fails stays in the journal and fails the build.
+     */
+    private WriteJournal<T> openJournal(Builder<T> b) {
+        TableMeta<T> m = meta();
+        if (!RowCodec.supports(m)) {
+            throw new IllegalArgumentException(type.getName() + " has properties the journal's binary format cannot encode");
+        }
+        WriteJournal<T> j = WriteJournal.open(b.journalDir, RowCodec.of(m), b.journalSegmentBytes, b.syncJournal);
+
+        List<WriteJournal.Entry<T>> left = j.takeUnacknowledged();
+        if (left.isEmpty()) return j;
+
+        // One write per instance, as coalesce would have merged them: its latest state, inserted
+        // if any of its records was an insert
+        Kind[] kinds = Kind.values();
+        Map<Long, List<WriteJournal.Entry<T>>> byInstance = new LinkedHashMap<>();
+        for (WriteJournal.Entry<T> e : left) byInstance.computeIfAbsent(e.instance, k -> new ArrayList<>()).add(e);
+        List<Op<T>> merged = new ArrayList<>(byInstance.size());
+        List<Long> firstSeqs = new ArrayList<>(byInstance.size());
+        for (List<WriteJournal.Entry<T>> records : byInstance.values()) {
+            Kind kind = Kind.UPDATE;
+            for (WriteJournal.Entry<T> e : records) if (kinds[e.kind] == Kind.INSERT) kind = Kind.INSERT;
+            WriteJournal.Entry<T> latest = records.get(records.size() - 1);
+            merged.add(new Op<>(latest.seq, kind, latest.entity, null));
+            firstSeqs.add(records.get(0).seq);
+        }
+
+        long lastSeq = left.get(left.size() - 1).seq;
+        for (int from = 0; from < merged.size(); from += maxBatchSize) {
+            int to = Math.min(merged.size(), from + maxBatchSize);
+            Batch<T> batch = coalesce(merged.subList(from, to));
+            if (batch != null) {
+                try {
+                    writeBatch(batch);
+                } catch (Exception e) {
+                    j.close();
+                    throw new RuntimeException("Failed to replay " + (merged.size() - from) + " journaled writes from " + b.journalDir, e);
+                }
+            }
+            // Only up to the first record of an instance not written yet
+            j.acknowledge(to < merged.size() ? firstSeqs.get(to) - 1 : lastSeq);
+        }
+        replayed.add(left.size());
+        return j;
+    }
+
+    private void done(List<Op<T>> ops) {
+        List<T> entities = new ArrayList<>(ops.size());
+        for (Op<T> op : ops) entities.add(op.entity);
+        try {
+            onDone.accept(entities);
+        } catch (RuntimeException callbackError) {
+            System.err.println("Warning: batch writer completion callback failed: " + callbackError);
+        }
+    }
+
+    private void fail(FailedBatch<T> failed) {
+        failedBatches.increment();
+        try {
+            onError.accept(failed);
+        } catch (RuntimeException callbackError) {
+            System.err.println("Warning: batch writer error callback failed: " + callbackError);
+        }
+    }
+
+    /** @return the primary key value (a list for composite keys), or null if unset */
+    Object keyOf(T entity) {
+        TableMeta<T> m = meta();
+        if (m.keys.isEmpty()) throw new IllegalStateException("@Id required to update " + type.getSimpleName() + " through a batch writer");
+        if (m.keys.size() == 1) {
+            PrimaryKey pk = m.keys.values().iterator().next();
+            return ReflectionUtils.getField(entity, m.propToField.get(pk.property));
+        }
+        List<Object> key = new ArrayList<>(m.keys.size());
+        for (PrimaryKey pk : m.keys.values()) {
+            Object v = ReflectionUtils.getField(entity, m.propToField.get(pk.property));
+            if (v == null) return null;
+            key.add(v);
+        }
+        return key;
+    }
+
+    TableMeta<T> meta() {
+        TableMeta<T> m = meta;
+        if (m == null) {
+            ctx.ensureModelBuiltInternal();
+            meta = m = TableMeta.of(type, ctx.mappingRegistry());
+        }
+        return m;
+    }
+
+    private static void warn(FailedBatch<?> failed) {
+        System.err.println("Warning: batch write of " + failed.getInserts().size() + " inserts and "
+                + failed.getUpdates().size() + " updates failed: " + failed.getError());
+    }
+
+    private static final class Op<T> {
+        final long seq;
+        final Kind kind;
+        final T entity;
+        final Token token;
+
+        Op(long seq, Kind kind, T entity, Token token) {
+            this.seq = seq;
+            this.kind = kind;
+            this.entity = entity;
+            this.token = token;
+        }
+    }
+
+    /** Journal identity of an instance submitted for insert. */
+    private static final class Token {
+        final long instance;
+        int outstanding;
+        boolean keyed;
+
+        Token(long instance) {
+            this.instance = instance;
+        }
+    }
+
+    private static final class Batch<T> {
+        final List<T> inserts;
+        final List<T> updates;
+
+        Batch(List<T> inserts, List<T> updates) {
+            this.inserts = inserts;
+            this.updates = updates;
+        }
+    }
+
+    /**
+     * A batch that could not be written; it was rolled back as a whole.
+     *
+     * @param <T> the entity type
+     */
+    public static final class FailedBatch<T> {
+        private final List<T> inserts;
+        private final List<T> updates;
+        private final Exception error;
+
+        FailedBatch(List<T> inserts, List<T> updates, Exception error) {
+            this.inserts = Collections.unmodifiableList(inserts);
+            this.updates = Collections.unmodifiableList(updates);
+            this.error = error;
+        }
+
+        /** @return entities that were to be inserted, in submission order */
+        public List<T> getInserts() {
+            return inserts;
+        }
+
+        /** @return entities that were to be updated, after coalescing */
+        public List<T> getUpdates() {
+            return updates;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Builder for AsyncBatchWriter.
+     *
+     * @param <T> the entity type
+     */
+    public static class Builder<T> {
+        private final IDbContext ctx;
+        private final Class<T> type;
+        private int maxBatchSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private int maxPending = 10_000;
+        private Duration enqueueTimeout = Duration.ofSeconds(30);
+        private Consumer<FailedBatch<T>> onError = AsyncBatchWriter::warn;
+        private Consumer<List<T>> onDone = null;
+        private Path journalDir = null;
+        private int journalSegmentBytes = 16 << 20;
+        private boolean syncJournal = false;
+
+        private Builder(IDbContext ctx, Class<T> type) {
+            this.ctx = Objects.requireNonNull(ctx, "ctx");
+            this.type = Objects.requireNonNull(type, "type");
+        }
+
+        /**
+         * Sets how many pending writes trigger a flush, and the most written per batch.
+         * Defaults to 500.
+         *
+         * @param maxBatchSize the batch size
+         * @return this builder
+         */
+        public Builder<T> maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the longest a write waits in the buffer before it is flushed. Defaults to 200 milliseconds.
+         *
+         * @param flushInterval the interval
+         * @return this builder
+         */
+        public Builder<T> flushInterval(Duration flushInterval) {
+            if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("flushInterval must be positive");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Sets how many writes may be buffered before submitting blocks. Defaults to 10,000.
+         *
+         * @param maxPending the buffer capacity
+         * @return this builder
+         */
+        public Builder<T> maxPending(int maxPending) {
+            if (maxPending <= 0) throw new IllegalArgumentException("maxPending must be positive");
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        /**
+         * Sets how long submitting waits for buffer space before throwing
+         * {@link RejectedExecutionException}. Defaults to 30 seconds.
+         *
+         * @param enqueueTimeout the maximum wait
+         * @return this builder
+         */
+        public Builder<T> enqueueTimeout(Duration enqueueTimeout) {
+            this.enqueueTimeout = Objects.requireNonNull(enqueueTimeout, "enqueueTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the callback for batches that fail to write. It runs on the writer's thread, so
+         * it must not wait for buffer space in the same writer. Defaults to printing a warning
+         * to standard error.
+         *
+         * @param onError the callback
+         * @return this builder
+         */
+        public Builder<T> onError(Consumer<FailedBatch<T>> onError) {
+            this.onError = Objects.requireNonNull(onError, "onError");
+            return this;
+        }
+
+        /**
+         * Sets a callback receiving, once per submitted write, the entities whose writes have
+         * been committed or reported as failed. Used by {@link PartitionedBatchWriter} to route
+         * writes of new entities.
+         *
+         * @param onDone the callback, run on the writer's thread
+         * @return this builder
+         */
+        Builder<T> onDone(Consumer<List<T>> onDone) {
+            this.onDone = onDone;
+            return this;
+        }
+
+        /**
+         * Journals buffered writes in {@code dir} so that they survive a crash of the process.
+         * Use one directory per writer.
+         *
+         * @param dir the journal directory, created if missing
+         * @return this builder
+         */
+        public Builder<T> journal(Path dir) {
+            this.journalDir = Objects.requireNonNull(dir, "dir");
+            return this;
+        }
+
+        /**
+         * Sets the size of each memory-mapped journal segment. Defaults to 16 MiB.
+         *
+         * @param segmentBytes the segment size
+         * @return this builder
+         */
+        public Builder<T> journalSegmentBytes(int segmentBytes) {
+            if (segmentBytes <= 0) throw new IllegalArgumentException("segmentBytes must be positive");
+            this.journalSegmentBytes = segmentBytes;
+            return this;
+        }
+
+        /**
+         * Forces every journal append and acknowledgement to disk, so that buffered writes also
+         * survive a power failure. Off by default: appends then survive a process crash but
+         * rely on the OS to write them out.
+         *
+         * @param syncJournal true to force each append
+         * @return this builder
+         */
+        public Builder<T> syncJournal(boolean syncJournal) {
+            this.syncJournal = syncJournal;
+            return this;
+        }
+
+        /**
+         * Builds the AsyncBatchWriter and starts its flush thread. With a journal, writes left
+         * over from a previous run are written first.
+         *
+         * @return a new AsyncBatchWriter instance
+         * @throws IllegalStateException if async operations are not enabled on the context
+         * @throws RuntimeException if journaled writes could not be replayed; they are kept
+         */
+        public AsyncBatchWriter<T> build() {
+            if (maxBatchSize > maxPending) throw new IllegalStateException("maxBatchSize cannot exceed maxPending");
+            return new AsyncBatchWriter<>(this);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.oldskooler.entity4j.async;
+
+import org.oldskooler.entity4j.IDbContext;
+
+import java.sql.Connection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs one async operation: borrows a connection, binds a context to it, runs the work on the
+ * configured executor and wires cancellation and timeouts to {@link java.sql.Statement#cancel()}.
+ */
+public final class AsyncExecution {
+    private AsyncExecution() {}
+
+    /** Shared timer for timeouts; it only flips futures and cancels statements, never runs JDBC work. */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(daemon("entity4j-async-timeout"));
+
+    /**
+     * @param options   async settings (data source, executor, timeout)
+     * @param contextOf creates a context bound to the borrowed connection
+     * @param work      the operation
+     * @param <R>       the result type
+     * @return a future for the result; cancelling it cancels the running statement
+     */
+    public static <R> CompletableFuture<R> supply(AsyncOptions options,
+                                                  Function<Connection, IDbContext> contextOf,
+                                                  Function<? super IDbContext, ? extends R> work) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        StatementTracker tracker = new StatementTracker();
+
+        future.whenComplete((r, t) -> {
+            if (t instanceof CancellationException || t instanceof TimeoutException) tracker.cancel();
+        });
+
+        if (options.getTimeout() != null) {
+            ScheduledFuture<?> timer = TIMER.schedule(
+                    () -> future.completeExceptionally(new TimeoutException("Async operation timed out after " + options.getTimeout())),
+                    options.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            future.whenComplete((r, t) -> timer.cancel(false));
+        }
+
+        try {
+            options.getExecutor().execute(() -> run(options, contextOf, work, future, tracker));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <R> void run(AsyncOptions options,
+                                Function<Connection, IDbContext> contextOf,
+                                Function<? super IDbContext, ? extends R> work,
+                                CompletableFuture<R> future,
+                                StatementTracker tracker) {
+        if (future.isDone()) return; // cancelled or timed out while queued
+
+        try (IDbContext ctx = contextOf.apply(tracker.wrap(options.getDataSource().getConnection()))) {
+            future.complete(work.apply(ctx));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package org.oldskooler.entity4j.async;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Options for the {@code *Async} methods of {@link org.oldskooler.entity4j.IDbContext} and
+ * {@link org.oldskooler.entity4j.Query}.
+ */
+public class AsyncOptions {
+
+    private final DataSource dataSource;
+    private final Executor executor;
+    private final Duration timeout;
+
+    private AsyncOptions(DataSource dataSource, Executor executor, Duration timeout) {
+        this.dataSource = dataSource;
+        this.executor = executor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Gets the data source each async operation borrows its connection from.
+     *
+     * @return the data source
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Gets the executor that runs async operations.
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the default timeout applied to every async operation.
+     *
+     * @return the timeout, or null for no timeout
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Creates a builder for constructing AsyncOptions.
+     *
+     * @param dataSource the data source connections are borrowed from
+     * @return a new Builder instance
+     */
+    public static Builder builder(DataSource dataSource) {
+        return new Builder(dataSource);
+    }
+
+    /**
+     * Builder for AsyncOptions.
+     */
+    public static class Builder {
+        private final DataSource dataSource;
+        private Executor executor = null;
+        private Duration timeout = null;
+
+        private Builder(DataSource dataSource) {
+            this.dataSource = Objects.requireNonNull(dataSource, "dataSource");
+        }
+
+        /**
+         * Sets the executor. JDBC calls block, so it should have at least as many threads as
+         * concurrent operations are expected. Defaults to a pool of daemon threads sized to
+         * twice the number of processors, shared by every AsyncOptions without an executor of
+         * its own and created on first use; its threads exit after a minute idle.
+         *
+         * @param executor the executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * Runs each async operation on its own virtual thread, so that thousands of blocking
+         * queries can be in flight without a matching number of platform threads. Size the
+         * data source's pool for the concurrency the database should see.
+         *
+         * @return this builder
+         * @throws UnsupportedOperationException if the JVM is older than Java 21
+         * @see VirtualThreads
+         */
+        public Builder virtualThreads() {
+            return executor(VirtualThreads.newExecutor());
+        }
+
+        /**
+         * Sets the default timeout. When it expires the running statement is cancelled and the
+         * future completes with a {@link java.util.concurrent.TimeoutException}.
+         *
+         * @param timeout the timeout, or null for no timeout
+         * @return this builder
+         */
+        public Builder timeout(Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Builds the AsyncOptions.
+         *
+         * @return a new AsyncOptions instance
+         */
+        public AsyncOptions build() {
+            Executor exec = executor != null ? executor : DefaultExecutor.INSTANCE;
+            return new AsyncOptions(dataSource, exec, timeout);
+        }
+    }
+
+    /** Holds the shared default executor; initialised when the first AsyncOptions needs it. */
+    private static final class DefaultExecutor {
+        static final ExecutorService INSTANCE = create();
+
+        private static ExecutorService create() {
+            AtomicInteger n = new AtomicInteger();
+            ThreadFactory tf = r -> {
+                Thread t = new Thread(r, "entity4j-async-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            int threads = Runtime.getRuntime().availableProcessors() * 2;
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(), tf);
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package org.oldskooler.entity4j.async;
+
+import org.oldskooler.entity4j.IDbContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Spreads buffered writes over several {@link AsyncBatchWriter} lanes that flush in parallel.
+ * <p>
+ * Each write is routed by a hash of the entity's primary key, so all writes to one row go to
+ * the same lane and are written in the order they were submitted, while different rows are
+ * written concurrently. An entity inserted without a primary key (a new row with a generated
+ * id) is routed by identity, and later writes of the same instance follow it to that lane until
+ * all of them have been written, even once its id is set.
+ * </p>
+ * <p>
+ * Every lane has its own buffer and flush thread, and borrows its own connection from the
+ * context's async data source for each batch, so the pool should allow at least one
+ * connection per lane. {@link #lanes()} reports queue depth and throughput per lane.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public class PartitionedBatchWriter<T> implements AutoCloseable {
+    private final List<AsyncBatchWriter<T>> lanes;
+    private final boolean keyed;
+    /** Lanes of instances inserted without a key, until their writes are done; guarded by pinLock */
+    private final Map<T, Pin<T>> pinned = new IdentityHashMap<>();
+    private final ReentrantLock pinLock = new ReentrantLock();
+    private final long startedAt = System.nanoTime();
+
+    private PartitionedBatchWriter(Builder<T> b) {
+        List<AsyncBatchWriter<T>> ls = new ArrayList<>(b.lanes);
+        try {
+            for (int i = 0; i < b.lanes; i++) {
+                AsyncBatchWriter.Builder<T> lb = AsyncBatchWriter.builder(b.ctx, b.type)
+                        .maxBatchSize(b.maxBatchSize)
+                        .flushInterval(b.flushInterval)
+                        .maxPending(b.maxPendingPerLane)
+                        .enqueueTimeout(b.enqueueTimeout);
+                if (b.onError != null) lb.onError(b.onError);
+                lb.onDone(this::unpin);
+                if (b.journalDir != null) lb.journal(b.journalDir.resolve("lane-" + i)).syncJournal(b.syncJournal);
+                ls.add(lb.build());
+            }
+        } catch (RuntimeException e) {
+            for (AsyncBatchWriter<T> w : ls) w.close();
+            throw e;
+        }
+        this.lanes = Collections.unmodifiableList(ls);
+        this.keyed = !ls.get(0).meta().keys.isEmpty();
+    }
+
+    /**
+     * Creates a builder for a partitioned writer of the given entity type.
+     *
+     * @param ctx  the context whose async data source, model and query cache are used
+     * @param type the entity class
+     * @param <T>  the entity type
+     * @return a new Builder instance
+     */
+    public static <T> Builder<T> builder(IDbContext ctx, Class<T> type) {
+        return new Builder<>(ctx, type);
+    }
+
+    /**
+     * Queues an insert on the entity's lane.
+     *
+     * @param entity the entity to insert
+     * @see AsyncBatchWriter#insert(Object)
+     */
+    public void insert(T entity) {
+        submit(entity, true);
+    }
+
+    /**
+     * Queues an update on the entity's lane.
+     *
+     * @param entity the entity to update
+     * @see AsyncBatchWriter#update(Object)
+     */
+    public void update(T entity) {
+        submit(entity, false);
+    }
+
+    /** Flushes every lane and waits for all of them. */
+    public void flush() {
+        for (AsyncBatchWriter<T> lane : lanes) lane.flush();
+    }
+
+    /** Flushes and closes every lane. */
+    @Override
+    public void close() {
+        RuntimeException first = null;
+        for (AsyncBatchWriter<T> lane : lanes) {
+            try {
+                lane.close();
+            } catch (RuntimeException e) {
+                if (first == null) first = e;
+                else first.addSuppressed(e);
+            }
+        }
+        if (first != null) throw first;
+    }
+
+    /** @return a snapshot of each lane's queue depth and throughput */
+    public List<LaneStats> lanes() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedAt) / 1e9);
+        List<LaneStats> out = new ArrayList<>(lanes.size());
+        for (int i = 0; i < lanes.size(); i++) {
+            AsyncBatchWriter<T> w = lanes.get(i);
+            out.add(new LaneStats(i, w.getPendingCount(), w.getSubmittedCount(), w.getWrittenCount(),
+                    w.getBatchCount(), w.getFailedBatchCount(), w.getWrittenCount() / seconds));
+        }
+        return out;
+    }
+
+    /** @return writes buffered across all lanes */
+    public int getPendingCount() {
+        int n = 0;
+        for (AsyncBatchWriter<T> lane : lanes) n += lane.getPendingCount();
+        return n;
+    }
+
+    /** @return rows written across all lanes */
+    public long getWrittenCount() {
+        long n = 0;
+        for (AsyncBatchWriter<T> lane : lanes) n += lane.getWrittenCount();
+        return n;
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private void submit(T entity, boolean insert) {
+        Objects.requireNonNull(entity, "entity");
+        Object key = keyed ? lanes.get(0).keyOf(entity) : null;
+        AsyncBatchWriter<T> lane;
+        boolean counted = false;
+        pinLock.lock();
+        try {
+            Pin<T> pin = pinned.get(entity);
+            if (pin == null && insert && key == null) {
+                // The id is assigned when the insert's batch is written, so its key lane is not known yet
+                pin = new Pin<>(laneFor(System.identityHashCode(entity)));
+                pinned.put(entity, pin);
+            }
+            if (pin != null) {
+                pin.outstanding++;
+                counted = true;
+                lane = pin.lane;
+            } else {
+                lane = laneFor(key != null ? key.hashCode() : System.identityHashCode(entity));
+            }
+        } finally {
+            pinLock.unlock();
+        }
+
+        boolean queued = false;
+        try {
+            if (insert) lane.insert(entity);
+            else lane.update(entity);
+            queued = true;
+        } finally {
+            if (counted && !queued) unpin(Collections.singletonList(entity));
+        }
+    }
+
+    /** Releases one outstanding write per occurrence of each pinned entity. */
+    private void unpin(List<T> entities) {
+        pinLock.lock();
+        try {
+            for (T e : entities) {
+                Pin<T> pin = pinned.get(e);
+                if (pin != null && --pin.outstanding == 0) pinned.remove(e);
+            }
+        } finally {
+            pinLock.unlock();
+        }
+    }
+
+    private AsyncBatchWriter<T> laneFor(int hash) {
+        int h = hash ^ (hash >>> 16);
+        return lanes.get(Math.floorMod(h, lanes.size()));
+    }
+
+    private static final class Pin<T> {
+        final AsyncBatchWriter<T> lane;
+        int outstanding;
+
+        Pin(AsyncBatchWriter<T> lane) {
+            this.lane = lane;
+        }
+    }
+
+    /** Queue depth and throughput of one lane. */
+    public static final class LaneStats {
+        private final int lane;
+        private final int pending;
+        private final long submitted;
+        private final long written;
+        private final long batches;
+        private final long failedBatches;
+        private final double rowsPerSecond;
+
+        LaneStats(int lane, int pending, long submitted, long written, long batches, long failedBatches, double rowsPerSecond) {
+            this.lane = lane;
+            this.pending = pending;
+            this.submitted = submitted;
+            this.written = written;
+            this.batches = batches;
+            this.failedBatches = failedBatches;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        public int getLane() {
+            return lane;
+        }
+
+        /** @return writes buffered on the lane, including the batch being written */
+        public int getPending() {
+            return pending;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        /** @return rows written per second since the writer was built */
+        public double getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Lane{%d, pending=%d, written=%d, batches=%d, failed=%d, %.0f rows/s}",
+                    lane, pending, written, batches, failedBatches, rowsPerSecond);
+        }
+    }
+
+    /**
+     * Builder for PartitionedBatchWriter. Lane settings apply to every lane.
+     *
+     * @param <T> the entity type
+     */
+    public static class Builder<T> {
+        private final IDbContext ctx;
+        private final Class<T> type;
+        private int lanes = Runtime.getRuntime().availableProcessors();
+        private int maxBatchSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private int maxPendingPerLane = 10_000;
+        private Duration enqueueTimeout = Duration.ofSeconds(30);
+        private Consumer<AsyncBatchWriter.FailedBatch<T>> onError = null;
+        private Path journalDir = null;
+        private boolean syncJournal = false;
+
+        private Builder(IDbContext ctx, Class<T> type) {
+            this.ctx = Objects.requireNonNull(ctx, "ctx");
+            this.type = Objects.requireNonNull(type, "type");
+        }
+
+        /**
+         * Sets the number of lanes. Defaults to the number of processors.
+         *
+         * @param lanes the lane count
+         * @return this builder
+         */
+        public Builder<T> lanes(int lanes) {
+            if (lanes <= 0) throw new IllegalArgumentException("lanes must be positive");
+            this.lanes = lanes;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize see {@link AsyncBatchWriter.Builder#maxBatchSize(int)}
+         * @return this builder
+         */
+        public Builder<T> maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param flushInterval see {@link AsyncBatchWriter.Builder#flushInterval(Duration)}
+         * @return this builder
+         */
+        public Builder<T> flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Sets how many writes each lane buffers before submitting to it blocks. Defaults to 10,000.
+         *
+         * @param maxPendingPerLane the per-lane buffer capacity
+         * @return this builder
+         */
+        public Builder<T> maxPendingPerLane(int maxPendingPerLane) {
+            this.maxPendingPerLane = maxPendingPerLane;
+            return this;
+        }
+
+        /**
+         * @param enqueueTimeout see {@link AsyncBatchWriter.Builder#enqueueTimeout(Duration)}
+         * @return this builder
+         */
+        public Builder<T> enqueueTimeout(Duration enqueueTimeout) {
+            this.enqueueTimeout = enqueueTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the callback for failed batches; it may be called from several lanes at once.
+         *
+         * @param onError see {@link AsyncBatchWriter.Builder#onError(Consumer)}
+         * @return this builder
+         */
+        public Builder<T> onError(Consumer<AsyncBatchWriter.FailedBatch<T>> onError) {
+            this.onError = Objects.requireNonNull(onError, "onError");
+            return this;
+        }
+
+        /**
+         * Journals each lane in its own subdirectory of {@code dir}. Keep the lane count
+         * unchanged between runs so that every lane's leftovers are replayed.
+         *
+         * @param dir the journal directory
+         * @return this builder
+         * @see AsyncBatchWriter.Builder#journal(Path)
+         */
+        public Builder<T> journal(Path dir) {
+            this.journalDir = Objects.requireNonNull(dir, "dir");
+            return this;
+        }
+
+        /**
+         * @param syncJournal see {@link AsyncBatchWriter.Builder#syncJournal(boolean)}
+         * @return this builder
+         */
+        public Builder<T> syncJournal(boolean syncJournal) {
+            this.syncJournal = syncJournal;
+            return this;
+        }
+
+        /**
+         * Builds the PartitionedBatchWriter and starts one flush thread per lane.
+         *
+         * @return a new PartitionedBatchWriter instance
+         */
+        public PartitionedBatchWriter<T> build() {
+            return new PartitionedBatchWriter<>(this);
+        }
+    }
+}
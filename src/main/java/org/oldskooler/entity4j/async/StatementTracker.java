@@ -0,0 +1,97 @@
+package org.oldskooler.entity4j.async;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps a connection so that every statement it creates can be cancelled from another thread.
+ * Once {@link #cancel()} has been called, running statements are cancelled with
+ * {@link Statement#cancel()} and creating new ones fails.
+ */
+public final class StatementTracker {
+    private final Set<Statement> open = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * @param connection the connection to track
+     * @return a connection that registers the statements it creates
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    /** Cancels every open statement; statements created afterwards fail immediately. */
+    public void cancel() {
+        cancelled = true;
+        for (Statement s : open) {
+            try {
+                s.cancel();
+            } catch (SQLException | RuntimeException ignored) {
+                // Statement may have completed or the driver may not support cancel
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?> rt = method.getReturnType();
+            if (!Statement.class.isAssignableFrom(rt)) {
+                return StatementTracker.invoke(target, method, args);
+            }
+
+            if (cancelled) throw new SQLException("Operation was cancelled");
+            Statement stmt = (Statement) StatementTracker.invoke(target, method, args);
+            open.add(stmt);
+            if (cancelled) stmt.cancel();
+            return Proxy.newProxyInstance(
+                    Statement.class.getClassLoader(),
+                    new Class<?>[]{rt},
+                    new StatementHandler(stmt));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        StatementHandler(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                open.remove(target);
+            }
+            return StatementTracker.invoke(target, method, args);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.oldskooler.entity4j.async;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread executors for the async API.
+ * <p>
+ * On Java 21 and later this class is replaced by the variant in {@code META-INF/versions/21}
+ * of the multi-release jar, which creates named virtual threads directly. This base version is
+ * used on older runtimes, where {@link #isSupported()} is false, and when the library is run
+ * from plain class directories on a newer runtime, where it falls back to looking the executor
+ * up reflectively.
+ * </p>
+ */
+public final class VirtualThreads {
+    private static final MethodHandle NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task. Blocking JDBC calls
+     * park the virtual thread instead of occupying a platform thread, so thousands of
+     * operations can wait on the database at once; the connection pool then becomes the limit.
+     *
+     * @return a new executor
+     * @throws UnsupportedOperationException if the JVM is older than Java 21
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later (running " + System.getProperty("java.version") + ")");
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke();
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create a virtual-thread executor", t);
+        }
+    }
+
+    private static MethodHandle lookup() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
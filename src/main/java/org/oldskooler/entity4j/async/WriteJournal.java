@@ -0,0 +1,342 @@
+package org.oldskooler.entity4j.async;
+
+import org.oldskooler.entity4j.util.RowCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the writes buffered by an {@link AsyncBatchWriter}.
+ * <p>
+ * Records are appended to memory-mapped segment files, so they reach the OS page cache (and
+ * survive a crash of the process) as soon as {@link #append} returns; with {@code sync} each
+ * append is also forced to disk. A record is the write kind, a sequence number, the instance
+ * it belongs to and the entity in {@link RowCodec} format, framed by its length and a CRC-32 so
+ * that a torn tail is detected and ignored. The instance is the sequence number of the record
+ * that inserted the entity, so that records of one new entity can be merged on replay.
+ * </p>
+ * <p>
+ * The highest acknowledged sequence number is kept in a checkpoint file. Segments whose records
+ * are all acknowledged are deleted; records after the checkpoint are returned by
+ * {@link #takeUnacknowledged()} when the journal is reopened. Delivery is at-least-once: a crash
+ * between a database commit and its acknowledgement replays that batch.
+ * </p>
+ * <p>
+ * Segment layout: magic, format version, entity class name, then records
+ * {@code [int length][int crc][long seq][byte kind][long instance][row]} until a zero length.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+final class WriteJournal<T> implements AutoCloseable {
+    private static final int MAGIC = 0x454A4A31; // "EJJ1"
+    private static final int VERSION = 1;
+    private static final int RECORD_HEADER = 4 + 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    /** A record read back from the journal. */
+    static final class Entry<T> {
+        final long seq;
+        final byte kind;
+        final long instance;
+        final T entity;
+
+        Entry(long seq, byte kind, long instance, T entity) {
+            this.seq = seq;
+            this.kind = kind;
+            this.instance = instance;
+            this.entity = entity;
+        }
+    }
+
+    private final Path dir;
+    private final RowCodec<T> codec;
+    private final int segmentBytes;
+    private final boolean sync;
+    private final byte[] header;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Segment> sealed = new ArrayDeque<>();
+    private final MappedByteBuffer checkpoint;
+    private final FileChannel checkpointChannel;
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+
+    private List<Entry<T>> recovered;
+    private Segment active;
+    private long nextSeq;
+    private long acknowledged;
+
+    private WriteJournal(Path dir, RowCodec<T> codec, int segmentBytes, boolean sync) throws IOException {
+        this.dir = dir;
+        this.codec = codec;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        this.header = header(codec.meta().type.getName());
+        if (segmentBytes < header.length + 1024) {
+            throw new IllegalArgumentException("segmentBytes must be at least " + (header.length + 1024));
+        }
+
+        Files.createDirectories(dir);
+        this.checkpointChannel = FileChannel.open(dir.resolve("checkpoint"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        this.acknowledged = checkpoint.getLong(0);
+
+        this.recovered = new ArrayList<>();
+        long maxSeq = acknowledged;
+        for (Path p : segmentFiles()) {
+            Segment s = recover(p);
+            sealed.addLast(s);
+            // A segment may have been created just before a crash, with no record in it yet
+            maxSeq = Math.max(maxSeq, Math.max(s.lastSeq, firstSeqOf(p)));
+        }
+        this.nextSeq = maxSeq + 1;
+        deleteAcknowledged();
+    }
+
+    /**
+     * Opens the journal in {@code dir}, creating it if needed, and reads back the records that
+     * were never acknowledged.
+     */
+    static <T> WriteJournal<T> open(Path dir, RowCodec<T> codec, int segmentBytes, boolean sync) {
+        try {
+            return new WriteJournal<>(dir, codec, segmentBytes, sync);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write journal in " + dir, e);
+        }
+    }
+
+    /**
+     * Hands over the records left unacknowledged by the previous run, in sequence order.
+     * Returns an empty list on later calls.
+     */
+    List<Entry<T>> takeUnacknowledged() {
+        lock.lock();
+        try {
+            List<Entry<T>> out = recovered;
+            recovered = new ArrayList<>();
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param instance the sequence number of the record that inserted the same entity, or 0 to
+     *                 use this record's own
+     * @return the record's sequence number
+     */
+    long append(byte kind, long instance, T entity) {
+        lock.lock();
+        try {
+            return appendLocked(kind, instance, entity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long appendLocked(byte kind, long instance, T entity) {
+        long seq = nextSeq;
+        scratch.reset();
+        try {
+            scratchOut.writeLong(seq);
+            scratchOut.writeByte(kind);
+            scratchOut.writeLong(instance != 0 ? instance : seq);
+            codec.write(entity, scratchOut);
+            scratchOut.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream; never thrown
+        }
+        byte[] body = scratch.toByteArray();
+        if (RECORD_HEADER + body.length + 4 > segmentBytes - header.length) {
+            throw new IllegalArgumentException("Journal record of " + body.length + " bytes does not fit in a segment");
+        }
+
+        try {
+            if (active == null || active.remaining() < RECORD_HEADER + body.length + 4) roll(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment in " + dir, e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        MappedByteBuffer buf = active.buffer;
+        int start = buf.position();
+        buf.position(start + 4);
+        buf.putInt((int) crc.getValue());
+        buf.put(body);
+        // Length last, so a record is only visible once it is complete
+        buf.putInt(start, body.length);
+        if (sync) buf.force();
+
+        active.lastSeq = seq;
+        nextSeq = seq + 1;
+        return seq;
+    }
+
+    /**
+     * Marks every record up to {@code seq} as written to the database and deletes segments
+     * that hold nothing newer.
+     */
+    void acknowledge(long seq) {
+        lock.lock();
+        try {
+            if (seq <= acknowledged) return;
+            acknowledged = seq;
+            checkpoint.putLong(0, seq);
+            if (sync) checkpoint.force();
+            deleteAcknowledged();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return segment files currently on disk */
+    int segmentCount() {
+        lock.lock();
+        try {
+            return sealed.size() + (active != null ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.buffer.force();
+                active.channel.close();
+            }
+            checkpoint.force();
+            checkpointChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close write journal in " + dir, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private void roll(long firstSeq) throws IOException {
+        if (active != null) {
+            active.channel.close();
+            sealed.addLast(active);
+        }
+        Path p = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        FileChannel ch = FileChannel.open(p, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buf.put(header);
+        active = new Segment(p, ch, buf, firstSeq - 1);
+        deleteAcknowledged();
+    }
+
+    private void deleteAcknowledged() {
+        while (!sealed.isEmpty() && sealed.peekFirst().lastSeq <= acknowledged) {
+            Segment s = sealed.peekFirst();
+            try {
+                Files.deleteIfExists(s.path);
+            } catch (IOException e) {
+                return; // Still mapped on some platforms; retried on the next acknowledgement
+            }
+            sealed.pollFirst();
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> out = new ArrayList<>();
+            files.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX);
+            }).forEach(out::add);
+            Collections.sort(out); // zero-padded first sequence numbers sort in order
+            return out;
+        }
+    }
+
+    /** Reads a segment left by an earlier run, collecting records after the checkpoint. */
+    private Segment recover(Path p) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(p));
+        long lastSeq = acknowledged;
+        if (buf.remaining() < header.length) return new Segment(p, null, null, lastSeq);
+
+        byte[] h = new byte[header.length];
+        buf.get(h);
+        if (!Arrays.equals(h, header)) {
+            throw new IllegalStateException("Journal segment " + p + " was not written for " + codec.meta().type.getName());
+        }
+
+        while (buf.remaining() >= RECORD_HEADER) {
+            int length = buf.getInt();
+            if (length <= 0 || length > buf.remaining() - 4) break;
+            int crc = buf.getInt();
+            byte[] body = new byte[length];
+            buf.get(body);
+            CRC32 c = new CRC32();
+            c.update(body, 0, length);
+            if ((int) c.getValue() != crc) break; // torn write
+
+            ByteBuffer rec = ByteBuffer.wrap(body);
+            long seq = rec.getLong();
+            byte kind = rec.get();
+            long instance = rec.getLong();
+            lastSeq = Math.max(lastSeq, seq);
+            if (seq > acknowledged) recovered.add(new Entry<>(seq, kind, instance, codec.read(rec)));
+        }
+        return new Segment(p, null, null, lastSeq);
+    }
+
+    private static long firstSeqOf(Path segment) {
+        String n = segment.getFileName().toString();
+        try {
+            return Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] header(String typeName) {
+        byte[] name = typeName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(4 + 4 + 2 + name.length);
+        b.putInt(MAGIC).putInt(VERSION).putShort((short) name.length).put(name);
+        return b.array();
+    }
+
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        long lastSeq;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer, long lastSeq) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.lastSeq = lastSeq;
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+    }
+}
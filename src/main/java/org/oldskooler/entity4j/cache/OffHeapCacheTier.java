@@ -0,0 +1,386 @@
+package org.oldskooler.entity4j.cache;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second cache tier that keeps encoded results outside the Java heap.
+ * <p>
+ * Memory is carved into fixed-size direct {@link ByteBuffer} slabs. Values are appended to the
+ * current slab and located through an on-heap index of key to (slab, offset, length). When the
+ * budget is exhausted a whole slab is reclaimed at once, dropping every value stored in it; which
+ * slab is chosen depends on the configured {@link Eviction} policy.
+ * </p>
+ * <p>
+ * The tier only stores bytes. {@link QueryCache} encodes entity results with a
+ * {@link org.oldskooler.entity4j.util.RowCodec} when it demotes them here and decodes them on read.
+ * </p>
+ */
+public class OffHeapCacheTier {
+    /** Default slab size (1 MiB). */
+    public static final int DEFAULT_SLAB_BYTES = 1 << 20;
+
+    /** How a slab is chosen for reuse when the memory budget is exhausted. */
+    public enum Eviction {
+        /** Reclaim the slab that was filled first (log-structured, cheapest bookkeeping). */
+        OLDEST_SLAB,
+        /** Reclaim the slab whose values were read least recently. */
+        LEAST_RECENTLY_USED_SLAB
+    }
+
+    private final long maxBytes;
+    private final int slabBytes;
+    private final int maxSlabs;
+    private final Eviction eviction;
+
+    /** Slabs in fill order; the last one is the slab currently being written. */
+    private final List<Slab> slabs = new ArrayList<>();
+    private final Map<Object, Location> index = new HashMap<>();
+    private final Map<String, Set<Object>> keysByTable = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long clock;
+    private long slabEvictions;
+    private long rejected;
+
+    private OffHeapCacheTier(Builder b) {
+        this.maxBytes = b.maxBytes;
+        this.slabBytes = b.slabBytes;
+        this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, b.maxBytes / b.slabBytes));
+        this.eviction = b.eviction;
+    }
+
+    /**
+     * Creates a builder for constructing an OffHeapCacheTier.
+     *
+     * @return a new Builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Stores a value, evicting a slab if the budget requires it.
+     *
+     * @param key       cache key
+     * @param bytes     encoded value
+     * @param tag       opaque value handed back by {@link #get(Object)} (e.g. the entity type)
+     * @param tables    tables the value was read from
+     * @param expiresAt {@link System#nanoTime()} deadline after which the value is dropped
+     * @return false if the value is larger than a slab and was not stored
+     */
+    public boolean put(Object key, byte[] bytes, Object tag, String[] tables, long expiresAt) {
+        lock.lock();
+        try {
+            if (bytes.length > slabBytes) {
+                rejected++;
+                return false;
+            }
+
+            remove(key);
+
+            Slab slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+            if (slab == null || slabBytes - slab.writePos < bytes.length) {
+                slab = nextSlab();
+            }
+
+            int offset = slab.writePos;
+            ByteBuffer dst = slab.buffer.duplicate();
+            dst.position(offset);
+            dst.put(bytes);
+            slab.writePos += bytes.length;
+
+            Location loc = new Location(slab, offset, bytes.length, tag, tables, expiresAt);
+            index.put(key, loc);
+            slab.keys.add(key);
+            for (String t : tables) {
+                keysByTable.computeIfAbsent(t, x -> new HashSet<>()).add(key);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies a stored value back onto the heap.
+     *
+     * @param key cache key
+     * @return the stored value, or null if absent or expired
+     */
+    public Stored get(Object key) {
+        lock.lock();
+        try {
+            Location loc = index.get(key);
+            if (loc == null) return null;
+            if (loc.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                return null;
+            }
+
+            byte[] out = new byte[loc.length];
+            ByteBuffer src = loc.slab.buffer.duplicate();
+            src.position(loc.offset);
+            src.get(out);
+            loc.slab.lastAccess = ++clock;
+            return new Stored(out, loc.tag);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a value. Its bytes are reclaimed when the slab holding it is reused.
+     *
+     * @param key cache key
+     */
+    public void remove(Object key) {
+        lock.lock();
+        try {
+            Location loc = index.remove(key);
+            if (loc == null) return;
+            loc.slab.keys.remove(key);
+            unindexTables(key, loc.tables);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every value read from the given table.
+     *
+     * @param table the (unquoted) table name
+     */
+    public void invalidate(String table) {
+        lock.lock();
+        try {
+            Set<Object> keys = keysByTable.get(table);
+            if (keys == null) return;
+            for (Object k : new ArrayList<>(keys)) remove(k);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops every value; slabs stay allocated for reuse. */
+    public void clear() {
+        lock.lock();
+        try {
+            index.clear();
+            keysByTable.clear();
+            for (Slab s : slabs) {
+                s.keys.clear();
+                s.writePos = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return bytes of direct memory currently allocated for slabs */
+    public long allocatedBytes() {
+        lock.lock();
+        try {
+            return (long) slabs.size() * slabBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSlabEvictionCount() {
+        lock.lock();
+        try {
+            return slabEvictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return number of values that were too large for a slab */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getSlabBytes() {
+        return slabBytes;
+    }
+
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private Slab nextSlab() {
+        // Reuse an empty slab before allocating or evicting
+        for (int i = 0; i < slabs.size() - 1; i++) {
+            Slab s = slabs.get(i);
+            if (s.keys.isEmpty()) {
+                slabs.remove(i);
+                return recycle(s);
+            }
+        }
+
+        if (slabs.size() < maxSlabs) {
+            Slab s = new Slab(ByteBuffer.allocateDirect(slabBytes));
+            s.lastAccess = ++clock;
+            slabs.add(s);
+            return s;
+        }
+
+        Slab victim = pickVictim();
+        slabs.remove(victim);
+        for (Object k : victim.keys) {
+            Location loc = index.remove(k);
+            if (loc != null) unindexTables(k, loc.tables);
+        }
+        slabEvictions++;
+        return recycle(victim);
+    }
+
+    private Slab recycle(Slab s) {
+        s.keys.clear();
+        s.writePos = 0;
+        s.lastAccess = ++clock;
+        slabs.add(s);
+        return s;
+    }
+
+    private Slab pickVictim() {
+        if (eviction == Eviction.OLDEST_SLAB) return slabs.get(0);
+
+        Slab victim = slabs.get(0);
+        for (Slab s : slabs) {
+            if (s.lastAccess < victim.lastAccess) victim = s;
+        }
+        return victim;
+    }
+
+    private void unindexTables(Object key, String[] tables) {
+        for (String t : tables) {
+            Set<Object> keys = keysByTable.get(t);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTable.remove(t);
+        }
+    }
+
+    /* -------------------------------
+       Simple holders
+       ------------------------------- */
+
+    /** A value copied back from off-heap memory. */
+    public static final class Stored {
+        public final byte[] bytes;
+        public final Object tag;
+
+        Stored(byte[] bytes, Object tag) {
+            this.bytes = bytes;
+            this.tag = tag;
+        }
+    }
+
+    private static final class Slab {
+        final ByteBuffer buffer;
+        final Set<Object> keys = new HashSet<>();
+        int writePos;
+        long lastAccess;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Location {
+        final Slab slab;
+        final int offset;
+        final int length;
+        final Object tag;
+        final String[] tables;
+        final long expiresAt;
+
+        Location(Slab slab, int offset, int length, Object tag, String[] tables, long expiresAt) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            this.tag = tag;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Builder for OffHeapCacheTier.
+     */
+    public static class Builder {
+        private long maxBytes = 64L * 1024 * 1024;
+        private int slabBytes = DEFAULT_SLAB_BYTES;
+        private Eviction eviction = Eviction.OLDEST_SLAB;
+
+        /**
+         * Sets the total direct memory budget.
+         *
+         * @param maxBytes the budget in bytes
+         * @return this builder
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the slab size; values larger than a slab are not stored.
+         *
+         * @param slabBytes the slab size in bytes
+         * @return this builder
+         */
+        public Builder slabBytes(int slabBytes) {
+            if (slabBytes <= 0) throw new IllegalArgumentException("slabBytes must be positive");
+            this.slabBytes = slabBytes;
+            return this;
+        }
+
+        /**
+         * Sets the slab eviction policy.
+         *
+         * @param eviction the policy
+         * @return this builder
+         */
+        public Builder eviction(Eviction eviction) {
+            this.eviction = Objects.requireNonNull(eviction, "eviction");
+            return this;
+        }
+
+        /**
+         * Builds the OffHeapCacheTier.
+         *
+         * @return a new OffHeapCacheTier instance
+         */
+        public OffHeapCacheTier build() {
+            if (slabBytes > maxBytes) slabBytes = (int) maxBytes;
+            return new OffHeapCacheTier(this);
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package org.oldskooler.entity4j.cache;
+
+import org.oldskooler.entity4j.diagnostics.FlightRecorderEvents;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.RowCodec;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache for materialized query results.
+ * <p>
+ * Entries are keyed by the generated SQL plus its bound parameters (and the shape of the result,
+ * e.g. entities, maps or a count). Each entry remembers the tables it read from so that a write to
+ * any of those tables drops it. Entries expire after their time-to-live, and the least recently
+ * used entry is evicted once {@code maxEntries} is reached.
+ * </p>
+ * <p>
+ * Concurrent misses for the same key collapse into a single load: the first caller runs the
+ * query, everyone else waits for its result.
+ * </p>
+ * <p>
+ * With an {@link OffHeapCacheTier} configured, entity lists evicted for size are encoded with a
+ * {@link RowCodec} and demoted to direct memory instead of being dropped; a later hit decodes them
+ * and promotes them back on-heap.
+ * </p>
+ */
+public class QueryCache {
+    /** Default number of entries kept when no explicit size is configured. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final int maxEntries;
+    private final OffHeapCacheTier offHeap;
+
+    /** entity type - codec, or null when the type has properties the row format can't encode */
+    private final ConcurrentHashMap<Class<?>, Optional<RowCodec<?>>> codecs = new ConcurrentHashMap<>();
+
+    /** Access-ordered so that iteration starts from the least recently used entry. */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /** table - keys of entries that read from it */
+    private final Map<String, Set<Key>> keysByTable = new HashMap<>();
+
+    /** Guards entries and keysByTable; a lock rather than a monitor so that virtual threads are not pinned */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** table - write counter, used to discard loads that raced with an invalidation */
+    private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong offHeapHits = new AtomicLong();
+
+    public QueryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries maximum number of cached results before least recently used ones are evicted
+     */
+    public QueryCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * @param maxEntries maximum number of on-heap results before least recently used ones are evicted
+     * @param offHeap    tier receiving evicted entity results, or null to drop them
+     */
+    public QueryCache(int maxEntries, OffHeapCacheTier offHeap) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.offHeap = offHeap;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached value for the key, or runs {@code loader} and caches its result.
+     *
+     * @param shape  discriminator for the result type (entities, maps, DTO class, count...)
+     * @param sql    the SQL that produces the result
+     * @param params the parameters bound to {@code sql}
+     * @param tables tables referenced in FROM/JOIN; a write to any of them invalidates the entry
+     * @param ttl    how long the result stays valid
+     * @param loader executes the query on a miss
+     * @param <R>    result type
+     * @return the cached or freshly loaded result
+     */
+    public <R> R get(String shape, String sql, List<Object> params, Collection<String> tables,
+                     Duration ttl, Supplier<R> loader) {
+        return get(shape, sql, params, tables, ttl, null, loader);
+    }
+
+    /**
+     * Same as {@link #get(String, String, List, Collection, Duration, Supplier)}, for results that
+     * are lists of {@code rowMeta} entities and may therefore be demoted to the off-heap tier.
+     *
+     * @param rowMeta mapping of the listed entities, or null if the result is not an entity list
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(String shape, String sql, List<Object> params, Collection<String> tables,
+                     Duration ttl, TableMeta<?> rowMeta, Supplier<R> loader) {
+        Objects.requireNonNull(loader, "loader");
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            return loader.get();
+        }
+
+        Key key = new Key(shape, sql, params);
+        Object jfr = FlightRecorderEvents.beginCacheLookup();
+        Object cached = lookupHeap(key);
+        String source = "heap";
+        if (cached == null && offHeap != null) {
+            cached = promote(key);
+            source = "off-heap";
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            FlightRecorderEvents.endCacheHit(jfr, shape, sql, source);
+            return (R) cached;
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Someone else is already loading this key; share their result.
+            hits.incrementAndGet();
+            Object shared = await(running);
+            FlightRecorderEvents.endCacheHit(jfr, shape, sql, "in-flight");
+            return (R) shared;
+        }
+
+        try {
+            cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                FlightRecorderEvents.endCacheHit(jfr, shape, sql, "heap");
+                mine.complete(cached);
+                return (R) cached;
+            }
+
+            misses.incrementAndGet();
+            String[] tableArray = tables.toArray(new String[0]);
+            long[] versions = versions(tableArray);
+
+            R value = loader.get();
+            if (value != null && versionsUnchanged(tableArray, versions)) {
+                store(key, new Entry(value, tableArray, versions, rowMeta, System.nanoTime() + ttl.toNanos()));
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Drops every cached result that read from the given table.
+     *
+     * @param table the (unquoted) table name
+     */
+    public void invalidate(String table) {
+        if (table == null) return;
+        tableVersions.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+
+        lock.lock();
+        try {
+            Set<Key> keys = keysByTable.remove(table);
+            if (keys != null) {
+                for (Key k : keys) {
+                    Entry e = entries.remove(k);
+                    if (e != null) unindex(k, e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (offHeap != null) offHeap.invalidate(table);
+    }
+
+    /** Drops every cached result. */
+    public void invalidateAll() {
+        for (AtomicLong v : tableVersions.values()) v.incrementAndGet();
+        lock.lock();
+        try {
+            entries.clear();
+            keysByTable.clear();
+        } finally {
+            lock.unlock();
+        }
+        if (offHeap != null) offHeap.clear();
+    }
+
+    /** @return number of entries currently cached (expired entries may still be counted) */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** @return number of hits served by decoding a result from the off-heap tier */
+    public long getOffHeapHitCount() {
+        return offHeapHits.get();
+    }
+
+    /** @return the off-heap tier, or null if none is configured */
+    public OffHeapCacheTier getOffHeapTier() {
+        return offHeap;
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    private Object lookup(Key key) {
+        Object value = lookupHeap(key);
+        return value != null || offHeap == null ? value : promote(key);
+    }
+
+    private Object lookupHeap(Key key) {
+        lock.lock();
+        try {
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (e.expiresAt - System.nanoTime() > 0) return e.value;
+                entries.remove(key);
+                unindex(key, e);
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return null;
+    }
+
+    private Object promote(Key key) {
+        OffHeapCacheTier.Stored stored = offHeap.get(key);
+        if (stored == null) return null;
+
+        Demoted d = (Demoted) stored.tag;
+        // Versions are read before decoding so a concurrent write can't be masked by the promotion
+        if (!versionsUnchanged(d.tables, d.versions)) {
+            offHeap.remove(key);
+            return null;
+        }
+        List<?> rows = d.codec.decodeAll(ByteBuffer.wrap(stored.bytes));
+        offHeap.remove(key);
+        offHeapHits.incrementAndGet();
+        store(key, new Entry(rows, d.tables, d.versions, d.codec.meta(), d.expiresAt));
+        return rows;
+    }
+
+    private void store(Key key, Entry entry) {
+        List<Map.Entry<Key, Entry>> evicted = null;
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) unindex(key, previous);
+            for (String t : entry.tables) {
+                keysByTable.computeIfAbsent(t, x -> new HashSet<>()).add(key);
+            }
+
+            if (entries.size() > maxEntries) {
+                purgeExpired();
+            }
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                Map.Entry<Key, Entry> eldest = it.next();
+                it.remove();
+                unindex(eldest.getKey(), eldest.getValue());
+                evictions.incrementAndGet();
+                if (offHeap != null && eldest.getValue().rowMeta != null) {
+                    if (evicted == null) evicted = new ArrayList<>();
+                    evicted.add(eldest);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Encoding happens outside the lock; it is proportional to the size of the result
+        if (evicted != null) {
+            for (Map.Entry<Key, Entry> e : evicted) demote(e.getKey(), e.getValue());
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void demote(Key key, Entry e) {
+        if (!(e.value instanceof List) || e.expiresAt - System.nanoTime() <= 0) return;
+        if (!versionsUnchanged(e.tables, e.versions)) return;
+
+        RowCodec codec = codecFor(e.rowMeta);
+        if (codec == null) return;
+
+        byte[] bytes = codec.encodeAll((List) e.value);
+        offHeap.put(key, bytes, new Demoted(codec, e.tables, e.versions, e.expiresAt), e.tables, e.expiresAt);
+
+        // An invalidation may have run between the version check and the put
+        if (!versionsUnchanged(e.tables, e.versions)) offHeap.remove(key);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private RowCodec<?> codecFor(TableMeta<?> meta) {
+        return codecs.computeIfAbsent(meta.type, t ->
+                RowCodec.supports(meta) ? Optional.of(RowCodec.of((TableMeta) meta)) : Optional.empty()
+        ).orElse(null);
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getValue().expiresAt - now <= 0) {
+                it.remove();
+                unindex(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private void unindex(Key key, Entry e) {
+        for (String t : e.tables) {
+            Set<Key> keys = keysByTable.get(t);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByTable.remove(t);
+        }
+    }
+
+    private long[] versions(String[] tables) {
+        long[] out = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            out[i] = tableVersions.computeIfAbsent(tables[i], t -> new AtomicLong()).get();
+        }
+        return out;
+    }
+
+    private boolean versionsUnchanged(String[] tables, long[] versions) {
+        for (int i = 0; i < tables.length; i++) {
+            if (tableVersions.get(tables[i]).get() != versions[i]) return false;
+        }
+        return true;
+    }
+
+    private static Object await(CompletableFuture<Object> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /* -------------------------------
+       Simple holders
+       ------------------------------- */
+
+    private static final class Entry {
+        final Object value;
+        final String[] tables;
+        final long[] versions;
+        final TableMeta<?> rowMeta;
+        final long expiresAt;
+
+        Entry(Object value, String[] tables, long[] versions, TableMeta<?> rowMeta, long expiresAt) {
+            this.value = value;
+            this.tables = tables;
+            this.versions = versions;
+            this.rowMeta = rowMeta;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Off-heap tag: what's needed to decode and re-validate a demoted result. */
+    private static final class Demoted {
+        final RowCodec<?> codec;
+        final String[] tables;
+        final long[] versions;
+        final long expiresAt;
+
+        Demoted(RowCodec<?> codec, String[] tables, long[] versions, long expiresAt) {
+            this.codec = codec;
+            this.tables = tables;
+            this.versions = versions;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Key {
+        final String shape;
+        final String sql;
+        final List<Object> params;
+        final int hash;
+
+        Key(String shape, String sql, List<Object> params) {
+            this.shape = shape;
+            this.sql = sql;
+            this.params = params == null ? Collections.emptyList() : new ArrayList<>(params);
+            this.hash = Objects.hash(shape, sql, this.params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && Objects.equals(shape, k.shape) && sql.equals(k.sql) && params.equals(k.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
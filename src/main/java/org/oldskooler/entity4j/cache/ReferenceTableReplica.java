@@ -0,0 +1,529 @@
+package org.oldskooler.entity4j.cache;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.Query;
+import org.oldskooler.entity4j.functions.SFunction;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.select.SelectionOrder;
+import org.oldskooler.entity4j.select.SelectionPart;
+import org.oldskooler.entity4j.util.LambdaUtils;
+import org.oldskooler.entity4j.util.ReflectionUtils;
+import org.oldskooler.entity4j.util.SqlValues;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * In-memory copy of a small, read-mostly table (countries, feature flags, price tiers...).
+ * <p>
+ * Once registered with {@link org.oldskooler.entity4j.IDbContext#replicate(ReferenceTableReplica)},
+ * the whole table is loaded and {@link Query#toList()}, {@link Query#first()} and
+ * {@link Query#count()} are answered from memory when the query only uses simple base-table
+ * filters ({@code equals}, {@code notEquals}, comparisons, {@code in}, {@code isNull},
+ * {@code isNotNull}) and column ordering. Anything else falls back to the database.
+ * </p>
+ * <p>
+ * Declared hash indexes serve {@code equals}/{@code in} lookups, sorted indexes serve range
+ * filters; remaining conditions are checked row by row. The copy is reloaded on the next read
+ * after a write through the owning context, or once the refresh interval has passed.
+ * </p>
+ * <p>
+ * Text columns compare according to the column's collation in the database, which Java cannot
+ * know. Unless {@link Builder#stringCollation(Comparator)} declares it, filters on and ordering
+ * by String, char and enum properties fall back to the database; {@code isNull} and
+ * {@code isNotNull} are still answered locally.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+public class ReferenceTableReplica<T> {
+    private final Class<T> type;
+    private final List<String> hashIndexed;
+    private final List<String> sortedIndexed;
+    private final Duration refreshInterval;
+    private final boolean refreshOnWrite;
+    private final Comparator<? super String> collation;
+
+    private TableMeta<T> meta;
+    private IDbContext owner;
+    private Function<IDbContext, List<T>> loader;
+
+    private volatile Snapshot<T> snapshot;
+    /** Counts writes marking the table stale; the snapshot is current while it reflects the latest */
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long loadedWrites = -1;
+
+    /** Serialises reloads; a lock rather than a monitor because the load blocks on JDBC */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    private ReferenceTableReplica(Builder<T> b) {
+        this.type = b.type;
+        this.hashIndexed = new ArrayList<>(b.hashIndexed);
+        this.sortedIndexed = new ArrayList<>(b.sortedIndexed);
+        this.refreshInterval = b.refreshInterval;
+        this.refreshOnWrite = b.refreshOnWrite;
+        this.collation = b.collation;
+    }
+
+    /**
+     * Creates a builder for a replica of the given entity's table.
+     *
+     * @param type the entity class
+     * @param <T>  the entity type
+     * @return a new Builder instance
+     */
+    public static <T> Builder<T> builder(Class<T> type) {
+        return new Builder<>(type);
+    }
+
+    /**
+     * Binds the replica to its table and loader. Called by
+     * {@link org.oldskooler.entity4j.IDbContext#replicate(ReferenceTableReplica)}.
+     *
+     * @param owner  context used by {@link #refresh()}
+     * @param meta   mapping of the replicated entity
+     * @param loader reads every row of the table through the given context
+     */
+    public void attach(IDbContext owner, TableMeta<T> meta, Function<IDbContext, List<T>> loader) {
+        lock.lock();
+        try {
+            if (meta.type != type) throw new IllegalArgumentException("Replica is for " + type.getName() + ", not " + meta.type.getName());
+            for (String p : hashIndexed) requireMapped(meta, p);
+            for (String p : sortedIndexed) requireMapped(meta, p);
+            this.meta = meta;
+            this.owner = Objects.requireNonNull(owner, "owner");
+            this.loader = Objects.requireNonNull(loader, "loader");
+            refresh();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Reloads the table now, through the context it was registered with. */
+    public void refresh() {
+        refresh(owner);
+    }
+
+    private void refresh(IDbContext via) {
+        lock.lock();
+        try {
+            if (loader == null) throw new IllegalStateException("Replica for " + type.getName() + " is not attached to a context");
+            // Read before loading: a write during the load leaves the new snapshot stale, and a
+            // failed load leaves the old one stale
+            long seen = writes.get();
+            snapshot = new Snapshot<>(meta, loader.apply(via), hashIndexed, sortedIndexed, collation);
+            loadedWrites = seen;
+            refreshes.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called after a write to the replicated table; the next read reloads the table
+     * (unless refresh-on-write is disabled).
+     */
+    public void markStale() {
+        if (refreshOnWrite) writes.incrementAndGet();
+    }
+
+    /**
+     * Answers the query from memory.
+     *
+     * @param query the query to evaluate
+     * @return the matching rows (copies), or null if the query must go to the database
+     */
+    public List<T> list(Query<T> query) {
+        Snapshot<T> s = current(query.context());
+        List<T> rows = s == null ? null : s.evaluate(query);
+        if (rows == null) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        localHits.incrementAndGet();
+        List<T> out = new ArrayList<>(rows.size());
+        for (T row : rows) out.add(s.copy(row));
+        return out;
+    }
+
+    /**
+     * Counts matching rows from memory.
+     *
+     * @param query the query to evaluate
+     * @return the row count, or null if the query must go to the database
+     */
+    public Long count(Query<T> query) {
+        Snapshot<T> s = current(query.context());
+        List<T> rows = s == null ? null : s.filter(query);
+        if (rows == null) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        localHits.incrementAndGet();
+        return (long) rows.size();
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /** @return the replicated table name, or null before {@link #attach} */
+    public String getTable() {
+        TableMeta<T> m = meta;
+        return m == null ? null : m.table;
+    }
+
+    /** @return number of rows in the current copy */
+    public int size() {
+        Snapshot<T> s = snapshot;
+        return s == null ? 0 : s.rows.size();
+    }
+
+    public long getLocalHitCount() {
+        return localHits.get();
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    /** Reloads if needed, through the querying context rather than the owner (it may run on another thread). */
+    private Snapshot<T> current(IDbContext via) {
+        Snapshot<T> s = snapshot;
+        if (stale() || s == null || expired(s)) {
+            lock.lock();
+            try {
+                s = snapshot;
+                if (loader != null && (stale() || s == null || expired(s))) {
+                    refresh(via);
+                    s = snapshot;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return s;
+    }
+
+    private boolean stale() {
+        return loadedWrites != writes.get();
+    }
+
+    private boolean expired(Snapshot<T> s) {
+        return refreshInterval != null && System.nanoTime() - s.loadedAt >= refreshInterval.toNanos();
+    }
+
+    private static void requireMapped(TableMeta<?> meta, String prop) {
+        if (!meta.propToField.containsKey(prop)) {
+            throw new IllegalArgumentException("Property '" + prop + "' is not mapped on " + meta.type.getName());
+        }
+    }
+
+    /** Immutable loaded copy of the table with its indexes. */
+    private static final class Snapshot<T> {
+        final TableMeta<T> meta;
+        final List<T> rows;
+        final Map<String, Map<Object, List<T>>> hash = new HashMap<>();
+        final Map<String, NavigableMap<Object, List<T>>> sorted = new HashMap<>();
+        final long loadedAt = System.nanoTime();
+        /** String ordering of the text columns; null if text predicates go to the database */
+        final Comparator<? super String> collation;
+        final Comparator<Object> order;
+
+        Snapshot(TableMeta<T> meta, List<T> rows, List<String> hashIndexed, List<String> sortedIndexed,
+                 Comparator<? super String> collation) {
+            this.meta = meta;
+            this.rows = Collections.unmodifiableList(new ArrayList<>(rows));
+            this.collation = collation;
+            this.order = collation == null ? SqlValues.ORDER : SqlValues.order(collation);
+
+            for (String prop : hashIndexed) {
+                Field f = meta.propToField.get(prop);
+                // Under a declared collation equal strings need not be equal Java strings
+                Map<Object, List<T>> idx = collation == null ? new HashMap<>() : new TreeMap<>(order);
+                for (T row : this.rows) {
+                    Object v = SqlValues.normalize(ReflectionUtils.getField(row, f));
+                    if (v != null) idx.computeIfAbsent(v, k -> new ArrayList<>(1)).add(row);
+                }
+                hash.put(prop, idx);
+            }
+            for (String prop : sortedIndexed) {
+                Field f = meta.propToField.get(prop);
+                NavigableMap<Object, List<T>> idx = new TreeMap<>(order);
+                for (T row : this.rows) {
+                    Object v = SqlValues.normalize(ReflectionUtils.getField(row, f));
+                    if (v != null) idx.computeIfAbsent(v, k -> new ArrayList<>(1)).add(row);
+                }
+                sorted.put(prop, idx);
+            }
+        }
+
+        /** Filter, sort and paginate, or null if the query can't be answered locally. */
+        List<T> evaluate(Query<T> q) {
+            if (!q.getGroupBys().isEmpty()) return null;
+
+            List<SelectionPart> orderBys = q.getOrderBys();
+            for (SelectionPart p : orderBys) {
+                if (p.kind != SelectionPart.Kind.COLUMN) return null;
+                if (p.entityType != null && p.entityType != meta.type) return null;
+                if (!meta.propToField.containsKey(p.propertyName)) return null;
+                if (collation == null && isText(meta.propToField.get(p.propertyName))) return null;
+            }
+
+            List<T> rows = filter(q);
+            if (rows == null) return null;
+
+            if (!orderBys.isEmpty()) {
+                try {
+                    rows.sort(comparator(orderBys));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+
+            int from = q.getOffset() != null ? Math.max(0, q.getOffset()) : 0;
+            int to = q.getLimit() != null ? (int) Math.min((long) from + Math.max(0, q.getLimit()), rows.size()) : rows.size();
+            if (from >= rows.size()) return new ArrayList<>();
+            return from == 0 && to == rows.size() ? rows : new ArrayList<>(rows.subList(from, to));
+        }
+
+        /** Rows matching the WHERE, or null if the query can't be answered locally. */
+        List<T> filter(Query<T> q) {
+            if (!q.getJoins().isEmpty() || q.hasExplicitSelect() || !q.hasOnlySimpleConditions()) return null;
+
+            List<Query.Condition> conds = q.getConditions();
+            for (Query.Condition c : conds) {
+                Field f = meta.propToField.get(c.property);
+                if (f == null) return null;
+                if (collation == null && isText(f)
+                        && c.op != Query.Condition.Op.IS_NULL && c.op != Query.Condition.Op.IS_NOT_NULL) {
+                    return null;
+                }
+            }
+
+            try {
+                Collection<T> candidates = candidates(conds);
+                List<T> out = new ArrayList<>();
+                for (T row : candidates) {
+                    if (matches(row, conds)) out.add(row);
+                }
+                return out;
+            } catch (IllegalArgumentException e) {
+                // Incomparable types, e.g. a String bound against a numeric column
+                return null;
+            }
+        }
+
+        /** Narrows the scan with the first usable index; the caller still checks every condition. */
+        private Collection<T> candidates(List<Query.Condition> conds) {
+            for (Query.Condition c : conds) {
+                Map<Object, List<T>> idx = hash.get(c.property);
+                if (idx == null) continue;
+                if (c.op == Query.Condition.Op.EQ) {
+                    return idx.getOrDefault(SqlValues.normalize(c.value), Collections.emptyList());
+                }
+                if (c.op == Query.Condition.Op.IN) {
+                    Set<T> out = Collections.newSetFromMap(new IdentityHashMap<>());
+                    for (Object v : (Collection<?>) c.value) {
+                        out.addAll(idx.getOrDefault(SqlValues.normalize(v), Collections.emptyList()));
+                    }
+                    // Keep table order for unordered queries
+                    List<T> ordered = new ArrayList<>(out.size());
+                    for (T row : rows) if (out.contains(row)) ordered.add(row);
+                    return ordered;
+                }
+            }
+
+            for (Query.Condition c : conds) {
+                NavigableMap<Object, List<T>> idx = sorted.get(c.property);
+                if (idx == null || c.value == null) continue;
+                Object v = SqlValues.normalize(c.value);
+                NavigableMap<Object, List<T>> range;
+                switch (c.op) {
+                    case EQ: range = idx.subMap(v, true, v, true); break;
+                    case GT: range = idx.tailMap(v, false); break;
+                    case GE: range = idx.tailMap(v, true); break;
+                    case LT: range = idx.headMap(v, false); break;
+                    case LE: range = idx.headMap(v, true); break;
+                    default: continue;
+                }
+                List<T> out = new ArrayList<>();
+                for (List<T> bucket : range.values()) out.addAll(bucket);
+                return out;
+            }
+
+            return rows;
+        }
+
+        private boolean matches(T row, List<Query.Condition> conds) {
+            for (Query.Condition c : conds) {
+                Object v = ReflectionUtils.getField(row, meta.propToField.get(c.property));
+                if (!matches(v, c)) return false;
+            }
+            return true;
+        }
+
+        private static boolean isText(Field f) {
+            Class<?> t = f.getType();
+            return t == String.class || t == Character.class || t == char.class || t.isEnum();
+        }
+
+        private boolean matches(Object v, Query.Condition c) {
+            switch (c.op) {
+                case IS_NULL: return v == null;
+                case IS_NOT_NULL: return v != null;
+                case IN:
+                    if (v == null) return false;
+                    for (Object x : (Collection<?>) c.value) if (equal(v, x)) return true;
+                    return false;
+                default:
+                    // Any comparison with NULL is unknown, i.e. not a match
+                    if (v == null || c.value == null) return false;
+            }
+            switch (c.op) {
+                case EQ: return equal(v, c.value);
+                case NE: return order.compare(v, c.value) != 0;
+                case GT: return order.compare(v, c.value) > 0;
+                case GE: return order.compare(v, c.value) >= 0;
+                case LT: return order.compare(v, c.value) < 0;
+                case LE: return order.compare(v, c.value) <= 0;
+                default: return false;
+            }
+        }
+
+        private boolean equal(Object a, Object b) {
+            return collation == null ? SqlValues.equal(a, b) : SqlValues.equal(a, b, collation);
+        }
+
+        private Comparator<T> comparator(List<SelectionPart> orderBys) {
+            Comparator<T> cmp = null;
+            for (SelectionPart p : orderBys) {
+                Field f = meta.propToField.get(p.propertyName);
+                Comparator<T> c = (a, b) -> order.compare(ReflectionUtils.getField(a, f), ReflectionUtils.getField(b, f));
+                if (p.orderBy == SelectionOrder.DESC) c = c.reversed();
+                cmp = cmp == null ? c : cmp.thenComparing(c);
+            }
+            return cmp;
+        }
+
+        /** Shallow copy so callers can't modify the shared rows. */
+        T copy(T row) {
+            try {
+                T out = meta.type.getDeclaredConstructor().newInstance();
+                for (Field f : meta.propToField.values()) {
+                    f.setAccessible(true);
+                    f.set(out, f.get(row));
+                }
+                return out;
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Builder for ReferenceTableReplica.
+     *
+     * @param <T> the entity type
+     */
+    public static class Builder<T> {
+        private final Class<T> type;
+        private final List<String> hashIndexed = new ArrayList<>();
+        private final List<String> sortedIndexed = new ArrayList<>();
+        private Duration refreshInterval = null;
+        private boolean refreshOnWrite = true;
+        private Comparator<? super String> collation = null;
+
+        private Builder(Class<T> type) {
+            this.type = Objects.requireNonNull(type, "type");
+        }
+
+        /**
+         * Adds a hash index on the property, used by {@code equals} and {@code in} filters.
+         *
+         * @param getter the property getter
+         * @return this builder
+         */
+        public Builder<T> hashIndex(SFunction<T, ?> getter) {
+            hashIndexed.add(LambdaUtils.propertyName(getter));
+            return this;
+        }
+
+        /**
+         * Adds a sorted index on the property, used by range filters.
+         *
+         * @param getter the property getter
+         * @return this builder
+         */
+        public Builder<T> sortedIndex(SFunction<T, ?> getter) {
+            sortedIndexed.add(LambdaUtils.propertyName(getter));
+            return this;
+        }
+
+        /**
+         * Reloads the table on the first read after the interval has passed.
+         *
+         * @param interval the refresh interval, or null to only refresh on writes
+         * @return this builder
+         */
+        public Builder<T> refreshEvery(Duration interval) {
+            if (interval != null && (interval.isNegative() || interval.isZero())) {
+                throw new IllegalArgumentException("refresh interval must be positive");
+            }
+            this.refreshInterval = interval;
+            return this;
+        }
+
+        /**
+         * Sets whether a write through the owning context reloads the table (default true).
+         *
+         * @param refreshOnWrite whether to reload after local writes
+         * @return this builder
+         */
+        public Builder<T> refreshOnWrite(boolean refreshOnWrite) {
+            this.refreshOnWrite = refreshOnWrite;
+            return this;
+        }
+
+        /**
+         * Declares how the database compares the table's text columns, so that filters on and
+         * ordering by String, char and enum properties can be answered from memory: e.g.
+         * {@code Comparator.naturalOrder()} for binary collations (SQLite, PostgreSQL "C") or
+         * {@link String#CASE_INSENSITIVE_ORDER} for case-insensitive ones (the MySQL and
+         * SQL Server defaults). Accent and trailing-space rules are not modelled. Defaults to
+         * null: such queries go to the database.
+         *
+         * @param collation the string ordering of the table's text columns, or null
+         * @return this builder
+         */
+        public Builder<T> stringCollation(Comparator<? super String> collation) {
+            this.collation = collation;
+            return this;
+        }
+
+        /**
+         * Builds the ReferenceTableReplica.
+         *
+         * @return a new ReferenceTableReplica instance
+         */
+        public ReferenceTableReplica<T> build() {
+            return new ReferenceTableReplica<>(this);
+        }
+    }
+}
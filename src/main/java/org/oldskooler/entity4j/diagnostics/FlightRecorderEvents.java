@@ -0,0 +1,110 @@
+package org.oldskooler.entity4j.diagnostics;
+
+/**
+ * Emits JDK Flight Recorder events for statements, result hydration, batch chunks, transactions
+ * and query cache hits.
+ * <p>
+ * The events are defined in the {@code org.oldskooler.entity4j} namespace and recorded like any
+ * other JFR event, for example with {@code -XX:StartFlightRecording} or JDK Mission Control, so
+ * ORM time can be lined up with GC, I/O and lock events on the same timeline. While no recording
+ * is running, each emit point costs a single check.
+ * </p>
+ * <p>
+ * This class does not reference {@code jdk.jfr}: the event classes are loaded by name the first
+ * time this class is used, and only if the runtime has Flight Recorder. On other runtimes, or
+ * when started with {@code -Dentity4j.jfr=false}, every method is a no-op.
+ * </p>
+ * <p>
+ * The {@code begin*} methods return an opaque started event, or null if that event type is not
+ * being recorded; pass the result to the matching {@code end*} method, which ignores null. This
+ * class is used internally by the operation handlers, transactions and the query cache.
+ * </p>
+ */
+public final class FlightRecorderEvents {
+    private static final String IMPL = "org.oldskooler.entity4j.diagnostics.JfrEventSink";
+
+    private static final JfrSink SINK = load();
+
+    private FlightRecorderEvents() {}
+
+    /** @return true if the runtime has Flight Recorder and the events are registered */
+    public static boolean isAvailable() {
+        return SINK != JfrSink.NONE;
+    }
+
+    /** @return a started batch chunk event, or null */
+    public static Object beginBatchChunk() {
+        return SINK.beginBatchChunk();
+    }
+
+    /**
+     * Commits a batch chunk event.
+     *
+     * @param event     the result of {@link #beginBatchChunk()}
+     * @param operation the batch operation, such as {@code insertAll}
+     * @param table     the table written
+     * @param sql       the SQL of the chunk
+     * @param chunk     the chunk's index within the operation, from 0
+     * @param entities  the entities in the chunk
+     * @param rows      rows affected
+     */
+    public static void endBatchChunk(Object event, String operation, String table, String sql, int chunk,
+                                     int entities, long rows) {
+        if (event != null) SINK.endBatchChunk(event, operation, table, sql, chunk, entities, rows);
+    }
+
+    /** @return a started transaction event, or null */
+    public static Object beginTransaction() {
+        return SINK.beginTransaction();
+    }
+
+    /**
+     * Commits a transaction event spanning the whole transaction.
+     *
+     * @param event           the result of {@link #beginTransaction()}
+     * @param outcome         {@code commit}, {@code rollback}, or either followed by {@code failed}
+     * @param isolation       the isolation level requested, or null for the connection default
+     * @param readOnly        whether the transaction was read-only
+     * @param completionNanos time taken by the commit or rollback call itself
+     */
+    public static void endTransaction(Object event, String outcome, String isolation, boolean readOnly,
+                                      long completionNanos) {
+        if (event != null) SINK.endTransaction(event, outcome, isolation, readOnly, completionNanos);
+    }
+
+    /** @return a started cache hit event, or null; begin before the lookup to time it */
+    public static Object beginCacheLookup() {
+        return SINK.beginCacheLookup();
+    }
+
+    /**
+     * Commits a cache hit event. Misses are not reported; the query they run is.
+     *
+     * @param event  the result of {@link #beginCacheLookup()}
+     * @param shape  the cached result type
+     * @param sql    the SQL of the cached query
+     * @param source where the result came from: {@code heap}, {@code off-heap} or {@code in-flight}
+     */
+    public static void endCacheHit(Object event, String shape, String sql, String source) {
+        if (event != null) SINK.endCacheHit(event, shape, sql, source);
+    }
+
+    static JfrSink sink() {
+        return SINK;
+    }
+
+    private static JfrSink load() {
+        if ("false".equalsIgnoreCase(System.getProperty("entity4j.jfr"))) return JfrSink.NONE;
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, FlightRecorderEvents.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return JfrSink.NONE;
+        }
+        try {
+            return (JfrSink) Class.forName(IMPL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Present but unusable, for example disabled in the JVM
+            return JfrSink.NONE;
+        }
+    }
+}
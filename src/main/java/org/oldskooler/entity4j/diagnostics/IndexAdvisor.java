@@ -0,0 +1,446 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.mapping.IndexMeta;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Statement interceptor that collects the columns queries filter, join, sort and group on, and
+ * proposes the composite indexes that would serve them.
+ * <p>
+ * For every query built with {@link org.oldskooler.entity4j.Query}, the advisor records the
+ * {@link TableAccess} of its shape together with how often the shape ran and how long it took,
+ * over a rolling {@link Builder#window(Duration) window}. {@link #advise()} turns each table
+ * access into a candidate index, with the equality columns first, then the sort (or group)
+ * columns, then one range column, and merges candidates that are a prefix of another. It then
+ * drops candidates already served by the primary key or an index declared in the model, or by
+ * an index reported by {@link DatabaseMetaData#getIndexInfo}, and ranks the rest by frequency
+ * times mean latency, that is the total time spent in the queries the index would serve.
+ * </p>
+ * <pre>{@code
+ * IndexAdvisor advisor = IndexAdvisor.builder(ctx).window(Duration.ofHours(1)).build();
+ * ctx.addStatementInterceptor(advisor);
+ * ...
+ * advisor.advise().forEach(r -> System.out.println(r.getDdl() + "  -- " + r));
+ * }</pre>
+ */
+public class IndexAdvisor implements StatementInterceptor {
+
+    private final IDbContext ctx;
+    private final long windowNanos;
+    private final int maxShapes;
+    private final int minExecutions;
+    private final int maxColumns;
+
+    private volatile Map<String, ShapeUsage> current = new ConcurrentHashMap<>();
+    private volatile Map<String, ShapeUsage> previous = Collections.emptyMap();
+    private volatile long windowStart = System.nanoTime();
+    /** Serialises window rotation and reset; readers only take it when the window has ended */
+    private final ReentrantLock windowLock = new ReentrantLock();
+
+    private IndexAdvisor(Builder b) {
+        this.ctx = b.ctx;
+        this.windowNanos = b.window.toNanos();
+        this.maxShapes = b.maxShapes;
+        this.minExecutions = b.minExecutions;
+        this.maxColumns = b.maxColumns;
+    }
+
+    /**
+     * Creates a builder for an index advisor.
+     *
+     * @param ctx the context whose dialect renders the DDL and whose database is inspected
+     * @return a new Builder instance
+     */
+    public static Builder builder(IDbContext ctx) {
+        return new Builder(ctx);
+    }
+
+    @Override
+    public void queryAccess(String sql, List<TableAccess> access) {
+        Map<String, ShapeUsage> shapes = window();
+        String fp = SqlFingerprint.of(sql);
+        if (shapes.containsKey(fp) || shapes.size() >= maxShapes) return;
+        shapes.putIfAbsent(fp, new ShapeUsage(access));
+    }
+
+    @Override
+    public void afterStatement(StatementEvent event) {
+        if (event.getKind() != StatementKind.QUERY || !event.isSuccess()) return;
+        ShapeUsage usage = window().get(event.getFingerprint());
+        if (usage == null) return;
+        usage.executions.increment();
+        usage.nanos.add(event.getElapsedNanos());
+    }
+
+    /**
+     * Proposes indexes for the workload seen in the current and previous window.
+     *
+     * @return the missing indexes, the most valuable first
+     * @throws RuntimeException wrapping the {@link SQLException} if the database's indexes
+     *         cannot be read
+     */
+    public List<Recommendation> advise() {
+        window();
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        Map<String, List<List<String>>> modelIndexes = new HashMap<>();
+        collect(previous, candidates, modelIndexes);
+        collect(current, candidates, modelIndexes);
+
+        List<Candidate> merged = mergePrefixes(candidates.values());
+        List<Recommendation> out = new ArrayList<>();
+        Map<String, List<List<String>>> existing = new HashMap<>();
+        for (Candidate c : merged) {
+            if (c.executions < minExecutions) continue;
+            List<List<String>> indexes = existing.computeIfAbsent(c.table, t -> existingIndexes(t, modelIndexes.get(t)));
+            if (isServed(c, indexes)) continue;
+            out.add(new Recommendation(c.table, c.columns, ctx.dialect().createIndexDdl(c.table, index(c), false),
+                    c.executions, c.nanos, new ArrayList<>(c.fingerprints)));
+        }
+        out.sort(Comparator.comparingDouble(Recommendation::getScore).reversed());
+        return out;
+    }
+
+    /** Forgets the workload seen so far and starts a new window. */
+    public void reset() {
+        windowLock.lock();
+        try {
+            previous = Collections.emptyMap();
+            current = new ConcurrentHashMap<>();
+            windowStart = System.nanoTime();
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    /** @return the shapes of the current window, rotating windows first if it has ended */
+    private Map<String, ShapeUsage> window() {
+        if (System.nanoTime() - windowStart < windowNanos) return current;
+        windowLock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - windowStart >= windowNanos) {
+                previous = now - windowStart < 2 * windowNanos ? current : Collections.emptyMap();
+                current = new ConcurrentHashMap<>();
+                windowStart = now;
+            }
+            return current;
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    private void collect(Map<String, ShapeUsage> shapes, Map<String, Candidate> candidates,
+                         Map<String, List<List<String>>> modelIndexes) {
+        for (Map.Entry<String, ShapeUsage> e : shapes.entrySet()) {
+            ShapeUsage usage = e.getValue();
+            long executions = usage.executions.sum();
+            if (executions == 0) continue;
+            for (TableAccess t : usage.access) {
+                modelIndexes.computeIfAbsent(t.getTable(), k -> {
+                    List<List<String>> declared = new ArrayList<>();
+                    if (!t.getPrimaryKey().isEmpty()) declared.add(t.getPrimaryKey());
+                    declared.addAll(t.getDeclaredIndexes());
+                    return declared;
+                });
+                List<String> columns = candidateColumns(t);
+                if (columns.isEmpty()) continue;
+                String key = t.getTable() + '\u0000' + columns;
+                Candidate c = candidates.computeIfAbsent(key,
+                        k -> new Candidate(t.getTable(), columns, t.getEqualityColumns().size()));
+                c.executions += executions;
+                c.nanos += usage.nanos.sum();
+                c.fingerprints.add(e.getKey());
+            }
+        }
+    }
+
+    /** Orders columns the way a B-tree index serves them: equality, then sort, then range. */
+    private List<String> candidateColumns(TableAccess t) {
+        List<String> cols = new ArrayList<>(t.getEqualityColumns());
+        List<String> ordering = !t.getSortColumns().isEmpty() ? t.getSortColumns() : t.getGroupColumns();
+        for (String c : ordering) if (!cols.contains(c)) cols.add(c);
+        for (String c : t.getRangeColumns()) {
+            if (!cols.contains(c)) {
+                cols.add(c);
+                break;
+            }
+        }
+        return cols.size() > maxColumns ? new ArrayList<>(cols.subList(0, maxColumns)) : cols;
+    }
+
+    /** Folds each candidate into a longer one on the same table that it is a prefix of. */
+    private static List<Candidate> mergePrefixes(Iterable<Candidate> all) {
+        List<Candidate> sorted = new ArrayList<>();
+        for (Candidate c : all) sorted.add(c);
+        sorted.sort(Comparator.comparingInt((Candidate c) -> c.columns.size()).reversed());
+        List<Candidate> kept = new ArrayList<>();
+        outer:
+        for (Candidate c : sorted) {
+            for (Candidate k : kept) {
+                if (k.table.equals(c.table) && startsWith(k.columns, c.columns, c.equalityCount)) {
+                    k.executions += c.executions;
+                    k.nanos += c.nanos;
+                    k.fingerprints.addAll(c.fingerprints);
+                    continue outer;
+                }
+            }
+            kept.add(c);
+        }
+        return kept;
+    }
+
+    private static boolean isServed(Candidate c, List<List<String>> indexes) {
+        for (List<String> index : indexes) {
+            if (startsWith(index, c.columns, c.equalityCount)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if {@code index} begins with {@code columns}, where the first
+     *         {@code unordered} columns may appear in any order
+     */
+    private static boolean startsWith(List<String> index, List<String> columns, int unordered) {
+        if (index.size() < columns.size()) return false;
+        Set<String> head = new HashSet<>();
+        Set<String> want = new HashSet<>();
+        for (int i = 0; i < unordered; i++) {
+            head.add(index.get(i).toLowerCase(Locale.ROOT));
+            want.add(columns.get(i).toLowerCase(Locale.ROOT));
+        }
+        if (!head.equals(want)) return false;
+        for (int i = unordered; i < columns.size(); i++) {
+            if (!index.get(i).equalsIgnoreCase(columns.get(i))) return false;
+        }
+        return true;
+    }
+
+    /** @return the column lists of the table's indexes, the model's primary key and declared indexes included */
+    private List<List<String>> existingIndexes(String table, List<List<String>> modelIndexes) {
+        List<List<String>> out = new ArrayList<>();
+        if (modelIndexes != null) out.addAll(modelIndexes);
+        AsyncOptions async = ctx.asyncOptions();
+        try {
+            if (async != null) {
+                try (Connection conn = async.getDataSource().getConnection()) {
+                    readIndexes(conn.getMetaData(), table, out);
+                }
+            } else {
+                readIndexes(ctx.conn().getMetaData(), table, out);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read indexes of table: " + table, e);
+        }
+        return out;
+    }
+
+    private static void readIndexes(DatabaseMetaData md, String table, List<List<String>> out) throws SQLException {
+        for (String name : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+            Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = md.getIndexInfo(null, null, name, false, true)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index == null || column == null) continue; // table statistics row
+                    indexes.computeIfAbsent(index, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), column);
+                }
+            }
+            if (indexes.isEmpty()) continue;
+            for (TreeMap<Short, String> columns : indexes.values()) out.add(new ArrayList<>(columns.values()));
+            return;
+        }
+    }
+
+    /** @return a plain, non-unique index over the candidate's columns, with the default name */
+    private static IndexMeta index(Candidate c) {
+        List<IndexMeta.Part> parts = new ArrayList<>(c.columns.size());
+        for (String col : c.columns) parts.add(new IndexMeta.Part(col, false));
+        return new IndexMeta(IndexMeta.defaultName(c.table, false, parts), false, parts, null, null);
+    }
+
+    private static final class ShapeUsage {
+        final List<TableAccess> access;
+        final LongAdder executions = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        ShapeUsage(List<TableAccess> access) {
+            this.access = access;
+        }
+    }
+
+    private static final class Candidate {
+        final String table;
+        final List<String> columns;
+        final int equalityCount;
+        final Set<String> fingerprints = new LinkedHashSet<>();
+        long executions;
+        long nanos;
+
+        Candidate(String table, List<String> columns, int equalityCount) {
+            this.table = table;
+            this.columns = columns;
+            this.equalityCount = Math.min(equalityCount, columns.size());
+        }
+    }
+
+    /** A proposed index and the workload it would serve. */
+    public static final class Recommendation {
+        private final String table;
+        private final List<String> columns;
+        private final String ddl;
+        private final long executions;
+        private final long totalNanos;
+        private final List<String> fingerprints;
+
+        Recommendation(String table, List<String> columns, String ddl, long executions, long totalNanos,
+                       List<String> fingerprints) {
+            this.table = table;
+            this.columns = Collections.unmodifiableList(columns);
+            this.ddl = ddl;
+            this.executions = executions;
+            this.totalNanos = totalNanos;
+            this.fingerprints = Collections.unmodifiableList(fingerprints);
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /** @return the index columns, in index order */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /** @return the CREATE INDEX statement, rendered by the context's dialect */
+        public String getDdl() {
+            return ddl;
+        }
+
+        /** @return executions of the queries the index would serve */
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return executions == 0 ? 0 : totalNanos / executions;
+        }
+
+        /** @return executions times mean latency, in milliseconds */
+        public double getScore() {
+            return executions * LatencyHistogram.millis(getMeanNanos());
+        }
+
+        /** @return the shapes of the queries the index would serve */
+        public List<String> getFingerprints() {
+            return fingerprints;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s) score=%.1f executions=%d mean=%.2fms queries=%d",
+                    table, String.join(", ", columns), getScore(), executions,
+                    LatencyHistogram.millis(getMeanNanos()), fingerprints.size());
+        }
+    }
+
+    /**
+     * Builder for IndexAdvisor.
+     */
+    public static class Builder {
+        private final IDbContext ctx;
+        private Duration window = Duration.ofHours(1);
+        private int maxShapes = 1000;
+        private int minExecutions = 10;
+        private int maxColumns = 4;
+
+        private Builder(IDbContext ctx) {
+            this.ctx = Objects.requireNonNull(ctx, "ctx");
+        }
+
+        /**
+         * Sets the workload window. Advice covers the current window and the one before it.
+         * Defaults to 1 hour.
+         *
+         * @param window the window length
+         * @return this builder
+         */
+        public Builder window(Duration window) {
+            if (window == null || window.isNegative() || window.isZero()) throw new IllegalArgumentException("window must be positive");
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Sets how many distinct query shapes are tracked per window. Defaults to 1000.
+         *
+         * @param maxShapes the limit
+         * @return this builder
+         */
+        public Builder maxShapes(int maxShapes) {
+            if (maxShapes <= 0) throw new IllegalArgumentException("maxShapes must be positive");
+            this.maxShapes = maxShapes;
+            return this;
+        }
+
+        /**
+         * Sets how many executions an index must serve to be proposed. Defaults to 10.
+         *
+         * @param minExecutions the minimum
+         * @return this builder
+         */
+        public Builder minExecutions(int minExecutions) {
+            if (minExecutions < 1) throw new IllegalArgumentException("minExecutions must be at least 1");
+            this.minExecutions = minExecutions;
+            return this;
+        }
+
+        /**
+         * Sets the most columns a proposed index has. Defaults to 4.
+         *
+         * @param maxColumns the limit
+         * @return this builder
+         */
+        public Builder maxColumns(int maxColumns) {
+            if (maxColumns < 1) throw new IllegalArgumentException("maxColumns must be at least 1");
+            this.maxColumns = maxColumns;
+            return this;
+        }
+
+        /**
+         * Builds the IndexAdvisor. Register it with
+         * {@link IDbContext#addStatementInterceptor(StatementInterceptor)}.
+         *
+         * @return a new IndexAdvisor instance
+         */
+        public IndexAdvisor build() {
+            return new IndexAdvisor(this);
+        }
+    }
+}
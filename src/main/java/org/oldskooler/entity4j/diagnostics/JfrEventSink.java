@@ -0,0 +1,277 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Flight Recorder events and the sink that emits them. Only loaded, by name, from
+ * {@link FlightRecorderEvents} after checking that {@code jdk.jfr} exists.
+ */
+final class JfrEventSink implements JfrSink {
+    private static final String CATEGORY = "Entity4j";
+
+    private final EventType statementType;
+    private final EventType hydrationType;
+    private final EventType batchChunkType;
+    private final EventType transactionType;
+    private final EventType cacheHitType;
+
+    JfrEventSink() {
+        if (!FlightRecorder.isAvailable()) throw new IllegalStateException("Flight Recorder is not available");
+        this.statementType = EventType.getEventType(StatementExecution.class);
+        this.hydrationType = EventType.getEventType(Hydration.class);
+        this.batchChunkType = EventType.getEventType(BatchChunk.class);
+        this.transactionType = EventType.getEventType(TransactionCompleted.class);
+        this.cacheHitType = EventType.getEventType(CacheHit.class);
+    }
+
+    @Override
+    public Object beginStatement() {
+        if (!statementType.isEnabled()) return null;
+        StatementExecution e = new StatementExecution();
+        e.begin();
+        return e;
+    }
+
+    @Override
+    public void endStatement(Object event, StatementEvent s) {
+        StatementExecution e = (StatementExecution) event;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.kind = s.getKind().name();
+        e.sql = s.getFingerprint();
+        e.parameters = s.getParameterCount();
+        e.rows = s.getRows();
+        e.batchSize = s.getBatchSize();
+        e.prepareTime = s.getPrepareNanos();
+        e.executeTime = s.getExecuteNanos();
+        e.fetchTime = s.getFetchNanos();
+        e.hydrateTime = s.getHydrateNanos();
+        e.success = s.isSuccess();
+        e.error = s.getError() != null ? s.getError().toString() : null;
+        e.commit();
+    }
+
+    @Override
+    public Object beginHydration() {
+        if (!hydrationType.isEnabled()) return null;
+        Hydration e = new Hydration();
+        e.begin();
+        return e;
+    }
+
+    @Override
+    public void endHydration(Object event, String sql, String entityType, long rows, long fetchNanos, long hydrateNanos) {
+        Hydration e = (Hydration) event;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.sql = SqlFingerprint.of(sql);
+        e.entityType = entityType;
+        e.rows = rows;
+        e.fetchTime = fetchNanos;
+        e.hydrateTime = hydrateNanos;
+        e.commit();
+    }
+
+    @Override
+    public Object beginBatchChunk() {
+        if (!batchChunkType.isEnabled()) return null;
+        BatchChunk e = new BatchChunk();
+        e.begin();
+        return e;
+    }
+
+    @Override
+    public void endBatchChunk(Object event, String operation, String table, String sql, int chunk, int entities, long rows) {
+        BatchChunk e = (BatchChunk) event;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.operation = operation;
+        e.table = table;
+        e.sql = SqlFingerprint.of(sql);
+        e.chunk = chunk;
+        e.entities = entities;
+        e.rows = rows;
+        e.commit();
+    }
+
+    @Override
+    public Object beginTransaction() {
+        if (!transactionType.isEnabled()) return null;
+        TransactionCompleted e = new TransactionCompleted();
+        e.begin();
+        return e;
+    }
+
+    @Override
+    public void endTransaction(Object event, String outcome, String isolation, boolean readOnly, long completionNanos) {
+        TransactionCompleted e = (TransactionCompleted) event;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.outcome = outcome;
+        e.isolation = isolation;
+        e.readOnly = readOnly;
+        e.completionTime = completionNanos;
+        e.commit();
+    }
+
+    @Override
+    public Object beginCacheLookup() {
+        if (!cacheHitType.isEnabled()) return null;
+        CacheHit e = new CacheHit();
+        e.begin();
+        return e;
+    }
+
+    @Override
+    public void endCacheHit(Object event, String shape, String sql, String source) {
+        CacheHit e = (CacheHit) event;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.shape = shape;
+        e.sql = SqlFingerprint.of(sql);
+        e.source = source;
+        e.commit();
+    }
+
+    /* -------------------------------
+       Event types
+       ------------------------------- */
+
+    @Name("org.oldskooler.entity4j.Statement")
+    @Label("Statement")
+    @Category(CATEGORY)
+    @Description("A SQL statement executed by a context, from prepare until its rows were read")
+    static final class StatementExecution extends Event {
+        @Label("Kind")
+        String kind;
+
+        @Label("SQL Shape")
+        @Description("SQL with literals and repeated placeholder groups collapsed")
+        String sql;
+
+        @Label("Parameters")
+        int parameters;
+
+        @Label("Rows")
+        @Description("Rows returned by a query, or rows affected by a write")
+        long rows;
+
+        @Label("Batch Size")
+        int batchSize;
+
+        @Label("Prepare Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long prepareTime;
+
+        @Label("Execute Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long executeTime;
+
+        @Label("Fetch Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long fetchTime;
+
+        @Label("Hydrate Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long hydrateTime;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("org.oldskooler.entity4j.Hydration")
+    @Label("Result Hydration")
+    @Category(CATEGORY)
+    @Description("Reading a result set into entities or maps, from the first row fetched to the last")
+    @StackTrace(false)
+    static final class Hydration extends Event {
+        @Label("SQL Shape")
+        String sql;
+
+        @Label("Entity Type")
+        String entityType;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Fetch Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long fetchTime;
+
+        @Label("Hydrate Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long hydrateTime;
+    }
+
+    @Name("org.oldskooler.entity4j.BatchChunk")
+    @Label("Batch Chunk")
+    @Category(CATEGORY)
+    @Description("One statement of insertAll, updateAll or deleteAll")
+    @StackTrace(false)
+    static final class BatchChunk extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Table")
+        String table;
+
+        @Label("SQL Shape")
+        String sql;
+
+        @Label("Chunk")
+        int chunk;
+
+        @Label("Entities")
+        int entities;
+
+        @Label("Rows")
+        long rows;
+    }
+
+    @Name("org.oldskooler.entity4j.Transaction")
+    @Label("Transaction")
+    @Category(CATEGORY)
+    @Description("A transaction, from begin to commit or rollback")
+    static final class TransactionCompleted extends Event {
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Isolation")
+        String isolation;
+
+        @Label("Read Only")
+        boolean readOnly;
+
+        @Label("Completion Time")
+        @Description("Time taken by the commit or rollback call")
+        @Timespan(Timespan.NANOSECONDS)
+        long completionTime;
+    }
+
+    @Name("org.oldskooler.entity4j.CacheHit")
+    @Label("Query Cache Hit")
+    @Category(CATEGORY)
+    @Description("A query answered from the query cache")
+    @StackTrace(false)
+    static final class CacheHit extends Event {
+        @Label("Result Shape")
+        String shape;
+
+        @Label("SQL Shape")
+        String sql;
+
+        @Label("Source")
+        String source;
+    }
+}
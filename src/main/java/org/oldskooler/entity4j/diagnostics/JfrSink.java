@@ -0,0 +1,44 @@
+package org.oldskooler.entity4j.diagnostics;
+
+/**
+ * Bridge to the Flight Recorder events. The implementation that references {@code jdk.jfr} is
+ * loaded by name, so this interface and {@link #NONE} are all that remain on runtimes without
+ * JFR. Each {@code begin*} method returns an opaque started event, or null if the event type is
+ * not being recorded; the matching {@code end*} method ignores null.
+ */
+interface JfrSink {
+
+    Object beginStatement();
+
+    void endStatement(Object event, StatementEvent e);
+
+    Object beginHydration();
+
+    void endHydration(Object event, String sql, String entityType, long rows, long fetchNanos, long hydrateNanos);
+
+    Object beginBatchChunk();
+
+    void endBatchChunk(Object event, String operation, String table, String sql, int chunk, int entities, long rows);
+
+    Object beginTransaction();
+
+    void endTransaction(Object event, String outcome, String isolation, boolean readOnly, long completionNanos);
+
+    Object beginCacheLookup();
+
+    void endCacheHit(Object event, String shape, String sql, String source);
+
+    /** Used when JFR is missing or disabled; records nothing. */
+    JfrSink NONE = new JfrSink() {
+        @Override public Object beginStatement() { return null; }
+        @Override public void endStatement(Object event, StatementEvent e) { }
+        @Override public Object beginHydration() { return null; }
+        @Override public void endHydration(Object event, String sql, String entityType, long rows, long fetchNanos, long hydrateNanos) { }
+        @Override public Object beginBatchChunk() { return null; }
+        @Override public void endBatchChunk(Object event, String operation, String table, String sql, int chunk, int entities, long rows) { }
+        @Override public Object beginTransaction() { return null; }
+        @Override public void endTransaction(Object event, String outcome, String isolation, boolean readOnly, long completionNanos) { }
+        @Override public Object beginCacheLookup() { return null; }
+        @Override public void endCacheHit(Object event, String shape, String sql, String source) { }
+    };
+}
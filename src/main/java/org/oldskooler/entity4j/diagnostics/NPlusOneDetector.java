@@ -0,0 +1,485 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Statement interceptor that detects N+1 access patterns: the same keyed statement executed
+ * over and over within one unit of work, each time for a different key, typically from a loop
+ * calling {@code from(...).filter(...).first()} per element.
+ * <p>
+ * Statements are grouped by {@link StatementEvent#getFingerprint()} within a scope. A scope is
+ * every transaction begun on the context, and any block opened with {@link #openScope(String)},
+ * for example around each web request; nested scopes count toward the outermost one.
+ * Statements outside any scope are ignored. A shape is flagged once it has run with
+ * {@link Builder#threshold(int)} different parameter lists in one scope, if it is a lookup by
+ * key (a query, update or delete whose {@code WHERE} clause is only equality comparisons) or a
+ * single-row insert.
+ * </p>
+ * <p>
+ * Each detection reports the first call site outside Entity4j, the number of executions in the
+ * scope and the batching API to use instead. Detections go to the {@link Builder#listener
+ * listener}, which prints a warning by default, and are aggregated per shape and call site in
+ * {@link #findings()}. In production, {@link Builder#sampleRate(double)} tracks only a fraction
+ * of scopes; untracked scopes cost one thread-local lookup per statement.
+ * </p>
+ * <pre>{@code
+ * NPlusOneDetector detector = NPlusOneDetector.builder().threshold(5).build();
+ * ctx.addStatementInterceptor(detector);
+ *
+ * try (NPlusOneDetector.Scope scope = detector.openScope("GET /orders")) {
+ *     handle(request);
+ * }
+ * }</pre>
+ */
+public class NPlusOneDetector implements StatementInterceptor {
+
+    private static final int MAX_SHAPES_PER_SCOPE = 1000;
+    private static final int MAX_FINDINGS = 1000;
+    private static final String LIBRARY_PACKAGE = "org.oldskooler.entity4j.";
+
+    /** {@code [alias.]column = ?}, with optionally quoted identifiers */
+    private static final Pattern KEY_EQUALS = Pattern.compile(
+            "^\\(?\\s*(?:[\\w\"`\\[\\]]+\\.)?([\\w\"`\\[\\]]+)\\s*=\\s*\\?\\s*\\)?$");
+    private static final Pattern CLAUSE_END = Pattern.compile(
+            " (ORDER BY|GROUP BY|LIMIT|OFFSET|FETCH|FOR UPDATE|RETURNING)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final int threshold;
+    private final double sampleRate;
+    private final boolean failOnDetection;
+    private final Consumer<Detection> listener;
+
+    private final ThreadLocal<ScopeState> current = new ThreadLocal<>();
+    private final ConcurrentHashMap<String, Finding> findings = new ConcurrentHashMap<>();
+    private final LongAdder scopes = new LongAdder();
+    private final LongAdder sampledScopes = new LongAdder();
+
+    private NPlusOneDetector(Builder b) {
+        this.threshold = b.threshold;
+        this.sampleRate = b.sampleRate;
+        this.failOnDetection = b.failOnDetection;
+        this.listener = b.listener;
+    }
+
+    /**
+     * Creates a builder for an N+1 detector.
+     *
+     * @return a new Builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Opens a scope on the current thread, such as one web request or job. Close it on the same
+     * thread, normally with try-with-resources; detections are reported when the outermost
+     * scope closes.
+     *
+     * @param name a label for the unit of work, included in detections
+     * @return the scope
+     */
+    public Scope openScope(String name) {
+        enter(name);
+        return new Scope();
+    }
+
+    @Override
+    public void transactionStarted() {
+        enter("transaction");
+    }
+
+    @Override
+    public void transactionCompleted(boolean committed) {
+        exit();
+    }
+
+    @Override
+    public void afterStatement(StatementEvent event) {
+        ScopeState scope = current.get();
+        if (scope == null || !scope.sampled) return;
+        List<Object> params = event.getParameters();
+        if (params.isEmpty() || event.getBatchSize() > 1) return;
+
+        String fp = event.getFingerprint();
+        ShapeState shape = scope.shapes.get(fp);
+        if (shape == null) {
+            if (scope.shapes.size() >= MAX_SHAPES_PER_SCOPE) return;
+            shape = new ShapeState(event.getKind(), suggest(event.getKind(), fp));
+            scope.shapes.put(fp, shape);
+        }
+        if (shape.suggestion == null) return;
+        shape.executions++;
+        if (shape.callSite != null) return;
+        if (shape.distinct.add(new ArrayList<>(params)) && shape.distinct.size() >= threshold) {
+            shape.callSite = callSite();
+            shape.distinct = null;
+        }
+    }
+
+    /** @return every shape and call site flagged so far, the most frequently flagged first */
+    public List<Finding> findings() {
+        List<Finding> out = new ArrayList<>(findings.values());
+        out.sort(Comparator.comparingLong(Finding::getOccurrences).reversed());
+        return out;
+    }
+
+    /** @return how many scopes were opened, sampled or not */
+    public long getScopeCount() {
+        return scopes.sum();
+    }
+
+    /** @return how many scopes were tracked */
+    public long getSampledScopeCount() {
+        return sampledScopes.sum();
+    }
+
+    /** Forgets every finding. */
+    public void reset() {
+        findings.clear();
+    }
+
+    private void enter(String name) {
+        ScopeState scope = current.get();
+        if (scope != null) {
+            scope.depth++;
+            return;
+        }
+        boolean sampled = sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        scopes.increment();
+        if (sampled) sampledScopes.increment();
+        current.set(new ScopeState(name, sampled));
+    }
+
+    private List<Detection> exit() {
+        ScopeState scope = current.get();
+        if (scope == null) return Collections.emptyList();
+        if (--scope.depth > 0) return Collections.emptyList();
+        current.remove();
+        if (!scope.sampled) return Collections.emptyList();
+
+        List<Detection> detected = new ArrayList<>();
+        for (Map.Entry<String, ShapeState> e : scope.shapes.entrySet()) {
+            ShapeState s = e.getValue();
+            if (s.callSite == null) continue;
+            Detection d = new Detection(scope.name, e.getKey(), s.kind, s.executions, s.callSite, s.suggestion);
+            detected.add(d);
+            record(d);
+            try {
+                listener.accept(d);
+            } catch (RuntimeException ex) {
+                System.err.println("Warning: N+1 detection listener failed: " + ex);
+            }
+        }
+        return detected;
+    }
+
+    private void record(Detection d) {
+        String key = d.getFingerprint() + '\u0000' + d.getCallSite();
+        Finding f = findings.get(key);
+        if (f == null) {
+            if (findings.size() >= MAX_FINDINGS) return;
+            f = findings.computeIfAbsent(key, k -> new Finding(d));
+        }
+        f.occurrences.increment();
+        f.maxExecutions.accumulate(d.getExecutions());
+    }
+
+    /**
+     * Works out the batching API for a shape, or null if the shape is not a keyed lookup or a
+     * single-row insert.
+     */
+    private static String suggest(StatementKind kind, String fingerprint) {
+        if (kind == StatementKind.INSERT) {
+            return "insertAll(Collection) writes them in one multi-row statement per chunk";
+        }
+        List<String> keys = keyColumns(fingerprint);
+        if (keys == null) return null;
+        switch (kind) {
+            case QUERY:
+                if (keys.size() == 1) {
+                    return "load them in one query with filter(f -> f.in(..., keys)) on " + keys.get(0)
+                            + ", then match the rows in memory";
+                }
+                return "load them in one query, one open()/close() group per key on " + String.join(", ", keys)
+                        + " joined with or(), or fetch once and index the rows in memory";
+            case UPDATE:
+                return "updateAll(Collection) writes them in JDBC batches";
+            case DELETE:
+                return "deleteAll(Collection) deletes them with one statement per chunk";
+            default:
+                return null;
+        }
+    }
+
+    /** @return the columns compared in a WHERE clause made only of {@code column = ?} terms, or null */
+    private static List<String> keyColumns(String fingerprint) {
+        String upper = fingerprint.toUpperCase(Locale.ROOT);
+        int where = upper.lastIndexOf(" WHERE ");
+        if (where < 0) return null;
+        String clause = fingerprint.substring(where + 7);
+        Matcher end = CLAUSE_END.matcher(clause);
+        if (end.find()) clause = clause.substring(0, end.start());
+        if (clause.toUpperCase(Locale.ROOT).contains(" OR ")) return null;
+
+        List<String> keys = new ArrayList<>();
+        for (String term : clause.split("(?i) AND ")) {
+            Matcher m = KEY_EQUALS.matcher(term.trim());
+            if (!m.matches()) return null;
+            keys.add(m.group(1).replaceAll("[\"`\\[\\]]", ""));
+        }
+        return keys;
+    }
+
+    private static String callSite() {
+        for (StackTraceElement e : new Throwable().getStackTrace()) {
+            String c = e.getClassName();
+            if (c.startsWith(LIBRARY_PACKAGE) || c.startsWith("java.") || c.startsWith("javax.")
+                    || c.startsWith("jdk.") || c.startsWith("sun.")) continue;
+            return e.toString();
+        }
+        return "(unknown)";
+    }
+
+    private static final class ScopeState {
+        final String name;
+        final boolean sampled;
+        final Map<String, ShapeState> shapes = new HashMap<>();
+        int depth = 1;
+
+        ScopeState(String name, boolean sampled) {
+            this.name = name;
+            this.sampled = sampled;
+        }
+    }
+
+    private static final class ShapeState {
+        final StatementKind kind;
+        final String suggestion;
+        Set<List<Object>> distinct = new HashSet<>();
+        int executions;
+        String callSite;
+
+        ShapeState(StatementKind kind, String suggestion) {
+            this.kind = kind;
+            this.suggestion = suggestion;
+        }
+    }
+
+    /**
+     * A scope opened with {@link #openScope(String)}.
+     */
+    public final class Scope implements AutoCloseable {
+        private boolean closed;
+
+        private Scope() {}
+
+        /**
+         * Closes the scope and reports what it detected.
+         *
+         * @throws IllegalStateException with the detections, if {@link Builder#failOnDetection(boolean)}
+         *         is set and anything was detected
+         */
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            List<Detection> detected = exit();
+            if (failOnDetection && !detected.isEmpty()) {
+                StringBuilder msg = new StringBuilder("N+1 queries detected:");
+                for (Detection d : detected) msg.append("\n  ").append(d);
+                throw new IllegalStateException(msg.toString());
+            }
+        }
+    }
+
+    /** One shape flagged in one scope. */
+    public static final class Detection {
+        private final String scope;
+        private final String fingerprint;
+        private final StatementKind kind;
+        private final int executions;
+        private final String callSite;
+        private final String suggestion;
+
+        Detection(String scope, String fingerprint, StatementKind kind, int executions, String callSite,
+                  String suggestion) {
+            this.scope = scope;
+            this.fingerprint = fingerprint;
+            this.kind = kind;
+            this.executions = executions;
+            this.callSite = callSite;
+            this.suggestion = suggestion;
+        }
+
+        /** @return the name of the scope, or {@code transaction} */
+        public String getScope() {
+            return scope;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        /** @return how many times the shape ran in the scope */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /** @return the first stack frame outside Entity4j when the threshold was reached */
+        public String getCallSite() {
+            return callSite;
+        }
+
+        /** @return the batching API to use instead */
+        public String getSuggestion() {
+            return suggestion;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s executed %d times in %s at %s: %s; %s",
+                    kind, executions, scope, callSite, fingerprint, suggestion);
+        }
+    }
+
+    /** A shape and call site flagged in one or more scopes. */
+    public static final class Finding {
+        private final String fingerprint;
+        private final StatementKind kind;
+        private final String callSite;
+        private final String suggestion;
+        private final LongAdder occurrences = new LongAdder();
+        private final LongAccumulator maxExecutions = new LongAccumulator(Math::max, 0);
+
+        Finding(Detection d) {
+            this.fingerprint = d.getFingerprint();
+            this.kind = d.getKind();
+            this.callSite = d.getCallSite();
+            this.suggestion = d.getSuggestion();
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        public String getCallSite() {
+            return callSite;
+        }
+
+        public String getSuggestion() {
+            return suggestion;
+        }
+
+        /** @return in how many scopes this was detected */
+        public long getOccurrences() {
+            return occurrences.sum();
+        }
+
+        /** @return the most executions seen in one scope */
+        public long getMaxExecutions() {
+            return maxExecutions.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s x%d (max %d per scope) at %s: %s; %s",
+                    kind, getOccurrences(), getMaxExecutions(), callSite, fingerprint, suggestion);
+        }
+    }
+
+    /**
+     * Builder for NPlusOneDetector.
+     */
+    public static class Builder {
+        private int threshold = 5;
+        private double sampleRate = 1.0;
+        private boolean failOnDetection = false;
+        private Consumer<Detection> listener = d -> System.err.println("Warning: N+1 " + d);
+
+        private Builder() {}
+
+        /**
+         * Sets how many different parameter lists a shape must run with in one scope to be
+         * flagged. Defaults to 5.
+         *
+         * @param threshold the threshold, at least 2
+         * @return this builder
+         */
+        public Builder threshold(int threshold) {
+            if (threshold < 2) throw new IllegalArgumentException("threshold must be at least 2");
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of scopes tracked, for use in production. Defaults to 1, tracking
+         * every scope.
+         *
+         * @param sampleRate a fraction between 0 and 1
+         * @return this builder
+         */
+        public Builder sampleRate(double sampleRate) {
+            if (!(sampleRate >= 0 && sampleRate <= 1)) throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Sets whether closing a {@link Scope} with detections throws, to fail tests and
+         * development requests. Transactions never fail because of a detection. Defaults to
+         * false.
+         *
+         * @param failOnDetection true to throw from {@link Scope#close()}
+         * @return this builder
+         */
+        public Builder failOnDetection(boolean failOnDetection) {
+            this.failOnDetection = failOnDetection;
+            return this;
+        }
+
+        /**
+         * Sets the callback run for each detection, on the thread closing the scope. Defaults
+         * to printing a warning.
+         *
+         * @param listener the callback
+         * @return this builder
+         */
+        public Builder listener(Consumer<Detection> listener) {
+            this.listener = Objects.requireNonNull(listener, "listener");
+            return this;
+        }
+
+        /**
+         * Builds the NPlusOneDetector. Register it with
+         * {@link org.oldskooler.entity4j.IDbContext#addStatementInterceptor(StatementInterceptor)}.
+         *
+         * @return a new NPlusOneDetector instance
+         */
+        public NPlusOneDetector build() {
+            return new NPlusOneDetector(this);
+        }
+    }
+}
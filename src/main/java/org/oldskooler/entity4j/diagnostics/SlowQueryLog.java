@@ -0,0 +1,429 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.dialect.SqlDialect;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Statement interceptor that records statements slower than a threshold in a bounded ring
+ * buffer, optionally with their execution plan.
+ * <p>
+ * Each entry holds the SQL, its fingerprint, the bound parameters after redaction, the elapsed
+ * time and row count. The buffer keeps the {@link Builder#capacity(int) most recent} entries;
+ * recording is lock-free and costs nothing for statements under the threshold.
+ * </p>
+ * <p>
+ * With {@link Builder#explain(boolean)}, slow queries are also explained with
+ * {@link SqlDialect#explain}, asynchronously on the context's async executor and on a connection
+ * borrowed from its async data source, so the plan is fetched outside the application's
+ * transaction and never delays it. Explains are rate limited, and each query shape is explained
+ * at most once per {@link Builder#explainCooldown(Duration) cooldown}; later entries of the same
+ * shape share that plan. Only single statements of kind {@link StatementKind#QUERY} are
+ * explained.
+ * </p>
+ * <pre>{@code
+ * SlowQueryLog slow = SlowQueryLog.builder(ctx)
+ *         .threshold(Duration.ofMillis(200))
+ *         .explain(true)
+ *         .build();
+ * ctx.addStatementInterceptor(slow);
+ * ...
+ * slow.recent().forEach(System.out::println);
+ * }</pre>
+ */
+public class SlowQueryLog implements StatementInterceptor {
+
+    /** Replaces every parameter with {@code ?}. */
+    public static final Function<Object, Object> REDACT_ALL = v -> "?";
+
+    /** Keeps parameters as bound. */
+    public static final Function<Object, Object> KEEP_VALUES = v -> v;
+
+    private static final int MAX_PLANS = 1000;
+
+    private final IDbContext ctx;
+    private final long thresholdNanos;
+    private final Function<Object, Object> redactor;
+    private final Consumer<SlowQuery> listener;
+    private final boolean explain;
+    private final long cooldownNanos;
+
+    private final AtomicReferenceArray<SlowQuery> ring;
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder explained = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private final Map<String, CachedPlan> plans = new ConcurrentHashMap<>();
+    /** Nanos per explain token and the bucket size in nanos */
+    private final long refillNanos;
+    private final long burstNanos;
+    /** When the token bucket would be full again; a time past {@code now} by more than the burst means empty */
+    private final AtomicLong bucketFullAt;
+
+    private SlowQueryLog(Builder b) {
+        if (b.explain && b.ctx.asyncOptions() == null) {
+            throw new IllegalStateException("Async operations are not enabled. Call enableAsync(AsyncOptions) first.");
+        }
+        this.ctx = b.ctx;
+        this.thresholdNanos = b.threshold.toNanos();
+        this.redactor = b.redactor;
+        this.listener = b.listener;
+        this.explain = b.explain;
+        this.cooldownNanos = b.explainCooldown.toNanos();
+        this.ring = new AtomicReferenceArray<>(b.capacity);
+        this.refillNanos = Math.max(1, b.explainPeriod.toNanos() / b.maxExplains);
+        this.burstNanos = refillNanos * b.maxExplains;
+        this.bucketFullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Creates a builder for a slow query log.
+     *
+     * @param ctx the context whose dialect and async data source are used for explains
+     * @return a new Builder instance
+     */
+    public static Builder builder(IDbContext ctx) {
+        return new Builder(ctx);
+    }
+
+    @Override
+    public void afterStatement(StatementEvent event) {
+        long elapsed = event.getElapsedNanos();
+        if (elapsed < thresholdNanos) return;
+
+        List<Object> bound = event.getParameters();
+        List<Object> shown = new ArrayList<>(bound.size());
+        for (Object v : bound) shown.add(redactor.apply(v));
+
+        CompletableFuture<String> plan = explain && explainable(event)
+                ? planFor(event.getSql(), event.getFingerprint(), new ArrayList<>(bound))
+                : CompletableFuture.completedFuture(null);
+
+        SlowQuery q = new SlowQuery(event, Collections.unmodifiableList(shown), Instant.now(),
+                Thread.currentThread().getName(), plan);
+        long slot = written.getAndIncrement();
+        ring.set((int) (slot % ring.length()), q);
+
+        if (listener != null) listener.accept(q);
+    }
+
+    /** @return the recorded slow statements, the most recent first */
+    public List<SlowQuery> recent() {
+        long end = written.get();
+        int n = (int) Math.min(end, ring.length());
+        List<SlowQuery> out = new ArrayList<>(n);
+        for (long i = end - 1; i >= end - n; i--) {
+            SlowQuery q = ring.get((int) (i % ring.length()));
+            if (q != null) out.add(q);
+        }
+        return out;
+    }
+
+    /** @return how many slow statements were recorded, including those since overwritten */
+    public long getRecordedCount() {
+        return written.get();
+    }
+
+    /** @return how many explains were run */
+    public long getExplainCount() {
+        return explained.sum();
+    }
+
+    /** @return how many slow queries were not explained because of the rate limit */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /** Forgets every recorded statement and cached plan. */
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) ring.set(i, null);
+        written.set(0);
+        plans.clear();
+    }
+
+    private static boolean explainable(StatementEvent e) {
+        if (e.getKind() != StatementKind.QUERY || e.getBatchSize() > 1) return false;
+        String head = e.getSql().trim().toUpperCase(Locale.ROOT);
+        return head.startsWith("SELECT") || head.startsWith("WITH");
+    }
+
+    private CompletableFuture<String> planFor(String sql, String fingerprint, List<Object> params) {
+        long now = System.nanoTime();
+        CachedPlan cached = plans.get(fingerprint);
+        if (cached != null && now - cached.at < cooldownNanos) return cached.plan;
+        if (!tryAcquire(now)) {
+            throttled.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<String> plan = new CompletableFuture<>();
+        if (plans.size() >= MAX_PLANS) plans.clear();
+        plans.put(fingerprint, new CachedPlan(now, plan));
+
+        AsyncOptions options = ctx.asyncOptions();
+        try {
+            options.getExecutor().execute(() -> runExplain(options, sql, params, plan));
+        } catch (RejectedExecutionException e) {
+            plan.completeExceptionally(e);
+        }
+        return plan;
+    }
+
+    private void runExplain(AsyncOptions options, String sql, List<Object> params, CompletableFuture<String> plan) {
+        try (Connection conn = options.getDataSource().getConnection()) {
+            explained.increment();
+            plan.complete(ctx.dialect().explain(conn, sql, params));
+        } catch (Exception e) {
+            plan.completeExceptionally(e);
+        }
+    }
+
+    /** Takes an explain token, lock-free: each token pushes the time the bucket is full again by {@code refillNanos}. */
+    private boolean tryAcquire(long now) {
+        while (true) {
+            long fullAt = bucketFullAt.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + refillNanos;
+            if (next - now > burstNanos) return false;
+            if (bucketFullAt.compareAndSet(fullAt, next)) return true;
+        }
+    }
+
+    private static final class CachedPlan {
+        final long at;
+        final CompletableFuture<String> plan;
+
+        CachedPlan(long at, CompletableFuture<String> plan) {
+            this.at = at;
+            this.plan = plan;
+        }
+    }
+
+    /** One slow statement. */
+    public static final class SlowQuery {
+        private final StatementKind kind;
+        private final String sql;
+        private final String fingerprint;
+        private final List<Object> parameters;
+        private final long elapsedNanos;
+        private final long rows;
+        private final Throwable error;
+        private final Instant timestamp;
+        private final String threadName;
+        private final CompletableFuture<String> plan;
+
+        SlowQuery(StatementEvent e, List<Object> parameters, Instant timestamp, String threadName,
+                  CompletableFuture<String> plan) {
+            this.kind = e.getKind();
+            this.sql = e.getSql();
+            this.fingerprint = e.getFingerprint();
+            this.parameters = parameters;
+            this.elapsedNanos = e.getElapsedNanos();
+            this.rows = e.getRows();
+            this.error = e.getError();
+            this.timestamp = timestamp;
+            this.threadName = threadName;
+            this.plan = plan;
+        }
+
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /** @return the bound parameters, after redaction */
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public Duration getElapsed() {
+            return Duration.ofNanos(elapsedNanos);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** @return the failure, or null if the statement succeeded */
+        public Throwable getError() {
+            return error;
+        }
+
+        /** @return when the statement completed */
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        /** @return the name of the thread that executed the statement */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * Gets the execution plan. The future completes with null if the statement was not
+         * explained, and exceptionally if the explain failed.
+         *
+         * @return the plan, in the dialect's format
+         */
+        public CompletableFuture<String> getPlan() {
+            return plan;
+        }
+
+        /** @return the plan if it is available, else null */
+        public String getPlanNow() {
+            return plan.isDone() && !plan.isCompletedExceptionally() ? plan.join() : null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.1fms rows=%d %s %s%s", kind, LatencyHistogram.millis(elapsedNanos), rows,
+                    sql, parameters, error != null ? " failed: " + error : "");
+        }
+    }
+
+    /**
+     * Builder for SlowQueryLog.
+     */
+    public static class Builder {
+        private final IDbContext ctx;
+        private Duration threshold = Duration.ofMillis(500);
+        private int capacity = 100;
+        private Function<Object, Object> redactor = REDACT_ALL;
+        private Consumer<SlowQuery> listener = null;
+        private boolean explain = false;
+        private int maxExplains = 10;
+        private Duration explainPeriod = Duration.ofMinutes(1);
+        private Duration explainCooldown = Duration.ofMinutes(10);
+
+        private Builder(IDbContext ctx) {
+            this.ctx = Objects.requireNonNull(ctx, "ctx");
+        }
+
+        /**
+         * Sets the elapsed time from which a statement is recorded. Defaults to 500 milliseconds.
+         *
+         * @param threshold the threshold
+         * @return this builder
+         */
+        public Builder threshold(Duration threshold) {
+            if (threshold == null || threshold.isNegative()) throw new IllegalArgumentException("threshold must not be negative");
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets how many recent slow statements are kept. Defaults to 100.
+         *
+         * @param capacity the ring buffer size
+         * @return this builder
+         */
+        public Builder capacity(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the function applied to each parameter before it is recorded. Explains still bind
+         * the real values. Defaults to {@link #REDACT_ALL}.
+         *
+         * @param redactor maps a bound value to what is recorded
+         * @return this builder
+         */
+        public Builder redactor(Function<Object, Object> redactor) {
+            this.redactor = Objects.requireNonNull(redactor, "redactor");
+            return this;
+        }
+
+        /**
+         * Sets a callback run for each slow statement, on the thread that executed it. The plan
+         * is usually not available yet; use {@link SlowQuery#getPlan()} to wait for it.
+         * Defaults to none.
+         *
+         * @param listener the callback
+         * @return this builder
+         */
+        public Builder listener(Consumer<SlowQuery> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets whether slow queries are explained. Requires async operations to be enabled on the
+         * context. Defaults to false.
+         *
+         * @param explain true to fetch execution plans
+         * @return this builder
+         */
+        public Builder explain(boolean explain) {
+            this.explain = explain;
+            return this;
+        }
+
+        /**
+         * Sets how many explains may run per period. Defaults to 10 per minute.
+         *
+         * @param maxExplains the explains allowed per period
+         * @param period      the period
+         * @return this builder
+         */
+        public Builder explainRate(int maxExplains, Duration period) {
+            if (maxExplains <= 0) throw new IllegalArgumentException("maxExplains must be positive");
+            if (period == null || period.isNegative() || period.isZero()) throw new IllegalArgumentException("period must be positive");
+            this.maxExplains = maxExplains;
+            this.explainPeriod = period;
+            return this;
+        }
+
+        /**
+         * Sets how long the plan of a query shape is reused before the shape is explained again.
+         * Defaults to 10 minutes.
+         *
+         * @param cooldown the cooldown
+         * @return this builder
+         */
+        public Builder explainCooldown(Duration cooldown) {
+            if (cooldown == null || cooldown.isNegative()) throw new IllegalArgumentException("cooldown must not be negative");
+            this.explainCooldown = cooldown;
+            return this;
+        }
+
+        /**
+         * Builds the SlowQueryLog. Register it with
+         * {@link IDbContext#addStatementInterceptor(StatementInterceptor)}.
+         *
+         * @return a new SlowQueryLog instance
+         */
+        public SlowQueryLog build() {
+            return new SlowQueryLog(this);
+        }
+    }
+}
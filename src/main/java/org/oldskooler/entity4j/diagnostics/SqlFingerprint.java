@@ -0,0 +1,181 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reduces SQL text to the shape of the statement, so that executions differing only in
+ * literal values or in the length of generated lists are counted together.
+ * <p>
+ * String and numeric literals become {@code ?}, comments are dropped and whitespace is
+ * collapsed. A parenthesized list of placeholders, as in {@code IN (?, ?, ?)} or a
+ * {@code VALUES} row, becomes {@code (...)}, and repeats of the same group separated by commas
+ * or {@code OR} (multi-row inserts, composite-key deletes) are reduced to one. Quoted
+ * identifiers are kept as written.
+ * </p>
+ */
+public final class SqlFingerprint {
+    private static final int MAX_CACHED = 4096;
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlFingerprint() {}
+
+    /**
+     * Computes the fingerprint of a statement. Results are cached, as the same few shapes are
+     * usually executed over and over.
+     *
+     * @param sql the SQL text
+     * @return the fingerprint
+     */
+    public static String of(String sql) {
+        if (sql == null) return "";
+        String fp = CACHE.get(sql);
+        if (fp != null) return fp;
+        fp = compute(sql);
+        if (CACHE.size() >= MAX_CACHED) CACHE.clear();
+        CACHE.put(sql, fp);
+        return fp;
+    }
+
+    private static String compute(String sql) {
+        return collapseRepeatedGroups(collapsePlaceholderLists(normalize(sql)));
+    }
+
+    private static String normalize(String sql) {
+        int n = sql.length();
+        StringBuilder out = new StringBuilder(n);
+        boolean space = false;
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') i++;
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                space = true;
+                continue;
+            }
+            if (space && out.length() > 0) out.append(' ');
+            space = false;
+
+            if (c == '\'') {
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') { i += 2; continue; }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int end = sql.indexOf(close, i + 1);
+                end = end < 0 ? n : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && !continuesIdentifier(out)) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    /** Replaces {@code (?, ?, ...)} with {@code (...)}; input is already normalized. */
+    private static String collapsePlaceholderLists(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '(') {
+                int j = skipSpace(s, i + 1);
+                if (j < n && s.charAt(j) == '?') {
+                    j = skipSpace(s, j + 1);
+                    while (j < n && s.charAt(j) == ',') {
+                        j = skipSpace(s, j + 1);
+                        if (j >= n || s.charAt(j) != '?') break;
+                        j = skipSpace(s, j + 1);
+                    }
+                    if (j < n && s.charAt(j) == ')') {
+                        out.append("(...)");
+                        i = j + 1;
+                        continue;
+                    }
+                }
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    /** Keeps one of each run of identical parenthesized groups joined by commas or OR. */
+    private static String collapseRepeatedGroups(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            int close = c == '(' ? innermostClose(s, i) : -1;
+            if (close < 0) {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int len = close + 1 - i;
+            out.append(s, i, close + 1);
+            int next = close + 1;
+            for (;;) {
+                int j = skipSeparator(s, next);
+                if (j < 0 || !s.regionMatches(j, s, i, len)) break;
+                next = j + len;
+            }
+            i = next;
+        }
+        return out.toString();
+    }
+
+    /** @return the index of the ')' closing the group at {@code open} if it has no nested group, else -1 */
+    private static int innermostClose(String s, int open) {
+        for (int i = open + 1; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ')') return i;
+            if (c == '(') return -1;
+        }
+        return -1;
+    }
+
+    /** @return the index after a {@code ,} or {@code OR} separator at {@code i}, or -1 if there is none */
+    private static int skipSeparator(String s, int i) {
+        int j = skipSpace(s, i);
+        if (j < s.length() && s.charAt(j) == ',') return skipSpace(s, j + 1);
+        if (j > i && s.regionMatches(true, j, "OR ", 0, 3)) return j + 3;
+        return -1;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && s.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    private static boolean continuesIdentifier(StringBuilder out) {
+        if (out.length() == 0) return false;
+        char prev = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(prev) || prev == '_' || prev == '$';
+    }
+}
@@ -0,0 +1,134 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and row counts of one executed statement, passed to
+ * {@link StatementInterceptor#afterStatement(StatementEvent)}.
+ * <p>
+ * The elapsed time is split into four phases: preparing the statement and binding its
+ * parameters, executing it, fetching rows from the driver ({@link java.sql.ResultSet#next()}),
+ * and hydrating them into entities or maps. Statements that return no rows report zero fetch and
+ * hydrate time.
+ * </p>
+ */
+public final class StatementEvent {
+    private final StatementKind kind;
+    private final String sql;
+    private final List<Object> params;
+    private final long prepareNanos;
+    private final long executeNanos;
+    private final long fetchNanos;
+    private final long hydrateNanos;
+    private final long rows;
+    private final int batchSize;
+    private final Throwable error;
+    private String fingerprint;
+
+    StatementEvent(StatementKind kind, String sql, List<Object> params, long prepareNanos, long executeNanos,
+                   long fetchNanos, long hydrateNanos, long rows, int batchSize, Throwable error) {
+        this.kind = kind;
+        this.sql = sql;
+        this.params = params;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.fetchNanos = fetchNanos;
+        this.hydrateNanos = hydrateNanos;
+        this.rows = rows;
+        this.batchSize = batchSize;
+        this.error = error;
+    }
+
+    public StatementKind getKind() {
+        return kind;
+    }
+
+    /** @return the SQL text as executed */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Gets the SQL with literals and repeated placeholder groups collapsed, so that statements of
+     * the same shape share one fingerprint.
+     *
+     * @return the fingerprint
+     * @see SqlFingerprint#of(String)
+     */
+    public String getFingerprint() {
+        String fp = fingerprint;
+        if (fp == null) fingerprint = fp = SqlFingerprint.of(sql);
+        return fp;
+    }
+
+    /** @return the bound parameters, in order; for a JDBC batch, those of its last row */
+    public List<Object> getParameters() {
+        return params != null ? Collections.unmodifiableList(params) : Collections.emptyList();
+    }
+
+    public int getParameterCount() {
+        return params != null ? params.size() : 0;
+    }
+
+    /** @return nanoseconds spent preparing the statement and binding parameters */
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    /** @return nanoseconds spent in {@code execute*} */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /** @return nanoseconds spent advancing the result set */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /** @return nanoseconds spent mapping rows into entities or maps */
+    public long getHydrateNanos() {
+        return hydrateNanos;
+    }
+
+    /** @return the sum of all four phases */
+    public long getElapsedNanos() {
+        return prepareNanos + executeNanos + fetchNanos + hydrateNanos;
+    }
+
+    /** @return rows returned by a query, or rows affected by a write */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of entities the statement carried: the row count of a multi-row insert,
+     * the number of rows in a JDBC batch or the ids of a batched delete; 1 otherwise.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /** @return the exception the statement failed with, or null if it succeeded */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %.3f ms (prepare %.3f, execute %.3f, fetch %.3f, hydrate %.3f) rows=%d batch=%d%s: %s",
+                kind, millis(getElapsedNanos()), millis(prepareNanos), millis(executeNanos), millis(fetchNanos),
+                millis(hydrateNanos), rows, batchSize, error != null ? " FAILED" : "", getFingerprint());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,64 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.List;
+
+/**
+ * Callback invoked around every statement a context executes: entity queries, CRUD and batch
+ * operations, DDL, and the bulk {@code update}/{@code delete}/{@code count}/{@code increment}
+ * methods of {@link org.oldskooler.entity4j.Query}.
+ * <p>
+ * Register with {@link org.oldskooler.entity4j.IDbContext#addStatementInterceptor}; the
+ * interceptor then applies to the context and every context attached to it, including async
+ * operations. Callbacks run synchronously on the thread that executes the statement, so they
+ * must be thread-safe and cheap. An exception thrown by a callback is printed as a warning and
+ * does not affect the statement.
+ * </p>
+ *
+ * @see StatementMetrics
+ * @see SlowQueryLog
+ */
+public interface StatementInterceptor {
+
+    /**
+     * Called before the statement is prepared.
+     *
+     * @param kind   the statement kind
+     * @param sql    the SQL text
+     * @param params the parameters to be bound, or null if there are none or the statement is a
+     *               JDBC batch; must not be modified
+     */
+    default void beforeStatement(StatementKind kind, String sql, List<Object> params) {
+    }
+
+    /**
+     * Called before a query built with {@link org.oldskooler.entity4j.Query} is executed, with
+     * the columns it uses per table. The statement itself is then reported as usual.
+     *
+     * @param sql    the SQL text, as passed to {@link #beforeStatement}
+     * @param access the base table first, then each joined table that has columns in use
+     */
+    default void queryAccess(String sql, List<TableAccess> access) {
+    }
+
+    /**
+     * Called once the statement has completed or failed, and its rows have been read.
+     *
+     * @param event the timings and row counts of the statement
+     */
+    void afterStatement(StatementEvent event);
+
+    /**
+     * Called when a context begins a transaction, on the thread that began it.
+     */
+    default void transactionStarted() {
+    }
+
+    /**
+     * Called once a transaction begun after {@link #transactionStarted()} has committed or
+     * rolled back.
+     *
+     * @param committed true if it committed
+     */
+    default void transactionCompleted(boolean committed) {
+    }
+}
@@ -0,0 +1,17 @@
+package org.oldskooler.entity4j.diagnostics;
+
+/**
+ * The kind of statement reported to a {@link StatementInterceptor}.
+ */
+public enum StatementKind {
+    /** A SELECT, including counts and key-range probes */
+    QUERY,
+    /** An INSERT, single-row or multi-row */
+    INSERT,
+    /** An UPDATE, including batched updates and increments */
+    UPDATE,
+    /** A DELETE */
+    DELETE,
+    /** CREATE/DROP TABLE and VIEW statements */
+    DDL
+}
@@ -0,0 +1,181 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement interceptor that keeps latency histograms and counters per query shape.
+ * <p>
+ * Statements are grouped by {@link StatementEvent#getFingerprint()}. Recording is lock-free:
+ * each shape holds a {@link LatencyHistogram} of elapsed times and {@link LongAdder} totals per
+ * phase, so contexts on many threads can share one instance. Once {@code maxShapes} distinct
+ * shapes have been seen, further shapes are counted under {@link #OTHER}, which bounds memory
+ * when an application builds SQL with inlined values.
+ * </p>
+ * <pre>{@code
+ * StatementMetrics metrics = new StatementMetrics();
+ * ctx.addStatementInterceptor(metrics);
+ * ...
+ * metrics.byTotalTime().stream().limit(10).forEach(System.out::println);
+ * }</pre>
+ */
+public class StatementMetrics implements StatementInterceptor {
+
+    /** Default number of distinct shapes tracked */
+    public static final int DEFAULT_MAX_SHAPES = 1000;
+
+    /** Fingerprint under which shapes beyond the limit are counted */
+    public static final String OTHER = "(other)";
+
+    private final ConcurrentHashMap<String, ShapeMetrics> shapes = new ConcurrentHashMap<>();
+    private final int maxShapes;
+
+    /**
+     * Creates metrics tracking up to {@link #DEFAULT_MAX_SHAPES} shapes.
+     */
+    public StatementMetrics() {
+        this(DEFAULT_MAX_SHAPES);
+    }
+
+    /**
+     * Creates metrics tracking up to {@code maxShapes} shapes.
+     *
+     * @param maxShapes the number of distinct fingerprints to keep separately
+     */
+    public StatementMetrics(int maxShapes) {
+        if (maxShapes <= 0) throw new IllegalArgumentException("maxShapes must be positive");
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void afterStatement(StatementEvent event) {
+        String fp = event.getFingerprint();
+        ShapeMetrics s = shapes.get(fp);
+        if (s == null) {
+            if (shapes.size() >= maxShapes) fp = OTHER;
+            s = shapes.computeIfAbsent(fp, f -> new ShapeMetrics(f, event.getKind()));
+        }
+        s.record(event);
+    }
+
+    /**
+     * Gets the metrics of one shape.
+     *
+     * @param fingerprint the shape's fingerprint
+     * @return the metrics, or null if no statement of that shape has run
+     */
+    public ShapeMetrics get(String fingerprint) {
+        return shapes.get(fingerprint);
+    }
+
+    /** @return the metrics of every shape seen, in no particular order */
+    public List<ShapeMetrics> shapes() {
+        return Collections.unmodifiableList(new ArrayList<>(shapes.values()));
+    }
+
+    /** @return the metrics of every shape seen, the most time-consuming first */
+    public List<ShapeMetrics> byTotalTime() {
+        List<ShapeMetrics> out = new ArrayList<>(shapes.values());
+        out.sort(Comparator.comparingLong(ShapeMetrics::getTotalNanos).reversed());
+        return out;
+    }
+
+    /** Forgets every shape. */
+    public void reset() {
+        shapes.clear();
+    }
+
+    /** Counters and latency histogram of one query shape. */
+    public static final class ShapeMetrics {
+        private final String fingerprint;
+        private final StatementKind kind;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder batched = new LongAdder();
+        private final LongAdder prepareNanos = new LongAdder();
+        private final LongAdder executeNanos = new LongAdder();
+        private final LongAdder fetchNanos = new LongAdder();
+        private final LongAdder hydrateNanos = new LongAdder();
+
+        ShapeMetrics(String fingerprint, StatementKind kind) {
+            this.fingerprint = fingerprint;
+            this.kind = kind;
+        }
+
+        void record(StatementEvent e) {
+            latency.record(e.getElapsedNanos());
+            if (!e.isSuccess()) errors.increment();
+            rows.add(e.getRows());
+            batched.add(e.getBatchSize());
+            prepareNanos.add(e.getPrepareNanos());
+            executeNanos.add(e.getExecuteNanos());
+            fetchNanos.add(e.getFetchNanos());
+            hydrateNanos.add(e.getHydrateNanos());
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /** @return the kind of the first statement seen with this shape */
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        /** @return the histogram of elapsed times */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /** @return rows returned or affected, summed over all executions */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /** @return entities carried, summed over all executions */
+        public long getBatchedEntities() {
+            return batched.sum();
+        }
+
+        public long getTotalNanos() {
+            return latency.getTotalNanos();
+        }
+
+        public long getPrepareNanos() {
+            return prepareNanos.sum();
+        }
+
+        public long getExecuteNanos() {
+            return executeNanos.sum();
+        }
+
+        public long getFetchNanos() {
+            return fetchNanos.sum();
+        }
+
+        public long getHydrateNanos() {
+            return hydrateNanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s] total=%.1fms rows=%d errors=%d (prepare %.1f, execute %.1f, fetch %.1f, hydrate %.1f ms): %s",
+                    kind, latency, LatencyHistogram.millis(getTotalNanos()), getRows(), getErrorCount(),
+                    LatencyHistogram.millis(getPrepareNanos()), LatencyHistogram.millis(getExecuteNanos()),
+                    LatencyHistogram.millis(getFetchNanos()), LatencyHistogram.millis(getHydrateNanos()), fingerprint);
+        }
+    }
+}
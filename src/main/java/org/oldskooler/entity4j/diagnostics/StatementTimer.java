@@ -0,0 +1,231 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Measures the phases of one statement and reports them to the registered interceptors.
+ * <p>
+ * Obtained from {@link org.oldskooler.entity4j.IDbContext#timeStatement}. Call sites mark the
+ * end of each phase with {@link #prepared()} and {@link #executed()}, read rows through
+ * {@link #mapAll}, {@link #toMapList}, {@link #forEach} or {@link #next} and {@link #mapRow},
+ * and finish with {@link #finish} or {@link #fail}. The timer also emits the Flight Recorder
+ * statement and hydration events (see {@link FlightRecorderEvents}). When no interceptor is
+ * registered and no recording is running, a shared inactive timer is returned whose methods do
+ * no timing at all.
+ * </p>
+ */
+public final class StatementTimer {
+    private static final StatementTimer INACTIVE = new StatementTimer(null, null, null, null, null);
+
+    private final List<StatementInterceptor> interceptors;
+    private final StatementKind kind;
+    private final String sql;
+    private List<Object> params;
+
+    private long mark;
+    private long prepareNanos;
+    private long executeNanos;
+    private long fetchNanos;
+    private long hydrateNanos;
+    private boolean reported;
+
+    private final Object jfrStatement;
+    private Object jfrHydration;
+    private String entityType;
+    private long fetched;
+
+    private StatementTimer(List<StatementInterceptor> interceptors, StatementKind kind, String sql, List<Object> params,
+                           Object jfrStatement) {
+        this.interceptors = interceptors;
+        this.kind = kind;
+        this.sql = sql;
+        this.params = params;
+        this.jfrStatement = jfrStatement;
+    }
+
+    /**
+     * Starts timing a statement, notifying {@link StatementInterceptor#beforeStatement}.
+     *
+     * @param interceptors the registered interceptors
+     * @param kind         the statement kind
+     * @param sql          the SQL text
+     * @param params       the parameters that will be bound, or null if there are none
+     * @return a running timer, or an inactive one if {@code interceptors} is empty and the
+     *         statement event is not being recorded
+     */
+    public static StatementTimer start(List<StatementInterceptor> interceptors, StatementKind kind, String sql,
+                                       List<Object> params) {
+        Object jfr = FlightRecorderEvents.sink().beginStatement();
+        if (interceptors.isEmpty() && jfr == null) return INACTIVE;
+        for (StatementInterceptor i : interceptors) {
+            try {
+                i.beforeStatement(kind, sql, params);
+            } catch (RuntimeException e) {
+                warn(i, e);
+            }
+        }
+        StatementTimer t = new StatementTimer(interceptors, kind, sql, params, jfr);
+        t.mark = System.nanoTime();
+        return t;
+    }
+
+    /** @return true if the statement is being timed */
+    public boolean isActive() {
+        return interceptors != null;
+    }
+
+    /**
+     * Sets the parameters reported for a JDBC batch, whose rows are bound after the timer starts.
+     *
+     * @param params the parameters of the row just added
+     */
+    public void parameters(List<Object> params) {
+        if (interceptors != null) this.params = params;
+    }
+
+    /** Ends the prepare phase; call after the parameters have been bound. */
+    public void prepared() {
+        if (interceptors == null) return;
+        long now = System.nanoTime();
+        prepareNanos += now - mark;
+        mark = now;
+    }
+
+    /** Ends the execute phase; call once {@code execute*} has returned. */
+    public void executed() {
+        if (interceptors == null) return;
+        long now = System.nanoTime();
+        executeNanos += now - mark;
+        mark = now;
+    }
+
+    /**
+     * Advances {@code rs}, counting the time as fetch time.
+     *
+     * @param rs the result set
+     * @return the result of {@link ResultSet#next()}
+     * @throws SQLException if the driver fails
+     */
+    public boolean next(ResultSet rs) throws SQLException {
+        if (interceptors == null) return rs.next();
+        if (jfrStatement != null && jfrHydration == null && fetched == 0) {
+            jfrHydration = FlightRecorderEvents.sink().beginHydration();
+        }
+        long start = System.nanoTime();
+        boolean more = rs.next();
+        fetchNanos += System.nanoTime() - start;
+        if (more) fetched++;
+        return more;
+    }
+
+    /** Maps the current row like {@link RowMapper#mapRow}, counting the time as hydrate time. */
+    public <T> T mapRow(ResultSet rs, TableMeta<T> m) throws SQLException {
+        if (interceptors == null) return RowMapper.mapRow(rs, m);
+        if (entityType == null) entityType = m.type.getName();
+        long start = System.nanoTime();
+        T row = RowMapper.mapRow(rs, m);
+        hydrateNanos += System.nanoTime() - start;
+        return row;
+    }
+
+    /**
+     * Maps every row of {@code rs} like {@link RowMapper#mapAll}, timing fetch and hydration
+     * separately.
+     */
+    public <T> List<T> mapAll(ResultSet rs, TableMeta<T> m) throws SQLException {
+        if (interceptors == null) return RowMapper.mapAll(rs, m);
+        List<T> out = new ArrayList<>();
+        while (next(rs)) out.add(mapRow(rs, m));
+        return out;
+    }
+
+    /**
+     * Maps rows one at a time like {@link RowMapper#forEach}. Time spent in {@code sink} is not
+     * counted.
+     *
+     * @return the number of rows
+     */
+    public <T> long forEach(ResultSet rs, TableMeta<T> m, Consumer<? super T> sink) throws SQLException {
+        long rows = 0;
+        while (next(rs)) {
+            sink.accept(mapRow(rs, m));
+            rows++;
+        }
+        return rows;
+    }
+
+    /** Maps every row of {@code rs} like {@link RowMapper#toMapList}, timing fetch and hydration separately. */
+    public List<Map<String, Object>> toMapList(ResultSet rs) throws SQLException {
+        if (interceptors == null) return RowMapper.toMapList(rs);
+        List<Map<String, Object>> out = new ArrayList<>();
+        ResultSetMetaData md = rs.getMetaData();
+        entityType = "java.util.Map";
+        while (next(rs)) {
+            long start = System.nanoTime();
+            out.add(RowMapper.mapRowToMap(rs, md));
+            hydrateNanos += System.nanoTime() - start;
+        }
+        return out;
+    }
+
+    /**
+     * Reports a successful single-row statement.
+     *
+     * @param rows rows returned or affected
+     */
+    public void finish(long rows) {
+        finish(rows, 1);
+    }
+
+    /**
+     * Reports a successful statement.
+     *
+     * @param rows      rows returned or affected
+     * @param batchSize entities carried by the statement
+     */
+    public void finish(long rows, int batchSize) {
+        report(rows, batchSize, null);
+    }
+
+    /**
+     * Reports a failed statement. The phase that was running when it failed is counted as
+     * execute time.
+     *
+     * @param error the failure
+     */
+    public void fail(Throwable error) {
+        if (interceptors == null || reported) return;
+        executed();
+        report(0, 1, error);
+    }
+
+    private void report(long rows, int batchSize, Throwable error) {
+        if (interceptors == null || reported) return;
+        reported = true;
+        StatementEvent e = new StatementEvent(kind, sql, params, prepareNanos, executeNanos, fetchNanos, hydrateNanos,
+                rows, batchSize, error);
+        JfrSink jfr = FlightRecorderEvents.sink();
+        if (jfrHydration != null && entityType != null) jfr.endHydration(jfrHydration, sql, entityType, fetched, fetchNanos, hydrateNanos);
+        if (jfrStatement != null) jfr.endStatement(jfrStatement, e);
+        for (StatementInterceptor i : interceptors) {
+            try {
+                i.afterStatement(e);
+            } catch (RuntimeException ex) {
+                warn(i, ex);
+            }
+        }
+    }
+
+    private static void warn(StatementInterceptor i, RuntimeException e) {
+        System.err.println("Warning: statement interceptor " + i.getClass().getName() + " failed: " + e);
+    }
+}
@@ -0,0 +1,96 @@
+package org.oldskooler.entity4j.diagnostics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The columns of one table that a query filters, joins, sorts and groups on, passed to
+ * {@link StatementInterceptor#queryAccess}.
+ * <p>
+ * Equality columns are compared with {@code =}, {@code IN} or {@code IS NULL} in the
+ * {@code WHERE} clause, or are the joined table's side of an equality in the {@code ON} clause.
+ * Range columns are compared with {@code <}, {@code <=}, {@code >} or {@code >=}. Column names
+ * are unquoted, in query order.
+ * </p>
+ */
+public final class TableAccess {
+    private final String table;
+    private final List<String> primaryKey;
+    private final List<String> equalityColumns;
+    private final List<String> rangeColumns;
+    private final List<String> sortColumns;
+    private final List<String> groupColumns;
+    private final List<List<String>> declaredIndexes;
+
+    /**
+     * @param table           the table name
+     * @param primaryKey      the primary key columns declared in the model
+     * @param equalityColumns columns compared for equality
+     * @param rangeColumns    columns compared with a range operator
+     * @param sortColumns     ORDER BY columns
+     * @param groupColumns    GROUP BY columns
+     */
+    public TableAccess(String table, List<String> primaryKey, List<String> equalityColumns, List<String> rangeColumns,
+                       List<String> sortColumns, List<String> groupColumns) {
+        this(table, primaryKey, equalityColumns, rangeColumns, sortColumns, groupColumns, Collections.emptyList());
+    }
+
+    /**
+     * @param table           the table name
+     * @param primaryKey      the primary key columns declared in the model
+     * @param equalityColumns columns compared for equality
+     * @param rangeColumns    columns compared with a range operator
+     * @param sortColumns     ORDER BY columns
+     * @param groupColumns    GROUP BY columns
+     * @param declaredIndexes leading key columns of each full (non-partial) index declared in the model
+     */
+    public TableAccess(String table, List<String> primaryKey, List<String> equalityColumns, List<String> rangeColumns,
+                       List<String> sortColumns, List<String> groupColumns, List<List<String>> declaredIndexes) {
+        this.table = table;
+        this.primaryKey = Collections.unmodifiableList(primaryKey);
+        this.equalityColumns = Collections.unmodifiableList(equalityColumns);
+        this.rangeColumns = Collections.unmodifiableList(rangeColumns);
+        this.sortColumns = Collections.unmodifiableList(sortColumns);
+        this.groupColumns = Collections.unmodifiableList(groupColumns);
+        this.declaredIndexes = Collections.unmodifiableList(declaredIndexes);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<String> getEqualityColumns() {
+        return equalityColumns;
+    }
+
+    public List<String> getRangeColumns() {
+        return rangeColumns;
+    }
+
+    public List<String> getSortColumns() {
+        return sortColumns;
+    }
+
+    public List<String> getGroupColumns() {
+        return groupColumns;
+    }
+
+    public List<List<String>> getDeclaredIndexes() {
+        return declaredIndexes;
+    }
+
+    /** @return true if no column of this table is filtered, joined, sorted or grouped on */
+    public boolean isEmpty() {
+        return equalityColumns.isEmpty() && rangeColumns.isEmpty() && sortColumns.isEmpty() && groupColumns.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return table + " eq=" + equalityColumns + " range=" + rangeColumns + " sort=" + sortColumns
+                + " group=" + groupColumns;
+    }
+}
@@ -0,0 +1,83 @@
+package org.oldskooler.entity4j.dialect;
+
+/**
+ * How {@code insertAll} reads back the auto-generated keys of a multi-row INSERT, chosen per
+ * connection by {@link SqlDialect#multiRowKeyStrategy}.
+ */
+public final class MultiRowKeyStrategy {
+
+    /** The ways keys can be matched to rows. */
+    public enum Kind {
+        /**
+         * {@code INSERT ... RETURNING key}. Rows may come back in any order, so numeric keys are
+         * sorted: keys generated by one statement increase in row order.
+         */
+        RETURNING,
+        /**
+         * {@code MERGE ... OUTPUT source_index, INSERTED.key} (SQL Server): each key comes with the
+         * index of its row, so no ordering is assumed.
+         */
+        OUTPUT_INSERTED,
+        /**
+         * The first generated key (MySQL's {@code LAST_INSERT_ID()}) plus {@link #getStep()} per
+         * row, valid when the server hands a multi-row insert consecutive keys.
+         */
+        CONSECUTIVE_RANGE,
+        /** {@link java.sql.Statement#getGeneratedKeys()}, trusting the driver to return one key per row in order. */
+        GENERATED_KEYS,
+        /** One execution per row of a single-row INSERT, reading its key each time. */
+        PER_ROW
+    }
+
+    private static final MultiRowKeyStrategy RETURNING = new MultiRowKeyStrategy(Kind.RETURNING, 1);
+    private static final MultiRowKeyStrategy OUTPUT_INSERTED = new MultiRowKeyStrategy(Kind.OUTPUT_INSERTED, 1);
+    private static final MultiRowKeyStrategy GENERATED_KEYS = new MultiRowKeyStrategy(Kind.GENERATED_KEYS, 1);
+    private static final MultiRowKeyStrategy PER_ROW = new MultiRowKeyStrategy(Kind.PER_ROW, 1);
+
+    private final Kind kind;
+    private final long step;
+
+    private MultiRowKeyStrategy(Kind kind, long step) {
+        this.kind = kind;
+        this.step = step;
+    }
+
+    public static MultiRowKeyStrategy returning() {
+        return RETURNING;
+    }
+
+    public static MultiRowKeyStrategy outputInserted() {
+        return OUTPUT_INSERTED;
+    }
+
+    /**
+     * @param step the difference between consecutive keys (MySQL's {@code auto_increment_increment})
+     * @return a strategy computing the keys of a chunk from its first key
+     */
+    public static MultiRowKeyStrategy consecutiveRange(long step) {
+        if (step < 1) throw new IllegalArgumentException("step must be at least 1");
+        return new MultiRowKeyStrategy(Kind.CONSECUTIVE_RANGE, step);
+    }
+
+    public static MultiRowKeyStrategy generatedKeys() {
+        return GENERATED_KEYS;
+    }
+
+    public static MultiRowKeyStrategy perRow() {
+        return PER_ROW;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** @return the key increment between rows, for {@link Kind#CONSECUTIVE_RANGE} */
+    public long getStep() {
+        return step;
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.CONSECUTIVE_RANGE ? kind + "(step=" + step + ")" : kind.toString();
+    }
+}
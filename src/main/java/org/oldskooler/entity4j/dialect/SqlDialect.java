@@ -1,8 +1,16 @@
 package org.oldskooler.entity4j.dialect;
 
+import org.oldskooler.entity4j.mapping.IndexMeta;
 import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.JdbcParamBinder;
 
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Locale;
 
 public interface SqlDialect {
@@ -44,6 +52,37 @@ public interface SqlDialect {
         return "";
     }
 
+    /**
+     * Choose how {@code insertAll} reads back the keys of a multi-row INSERT into a table with a
+     * single auto-generated key. The default uses RETURNING when {@link #useInsertReturning()}
+     * and the driver's generated keys otherwise; dialects whose answer depends on the server
+     * version or configuration ask {@code conn}.
+     *
+     * @param conn the connection the insert runs on
+     * @return the strategy
+     * @throws SQLException if the server cannot be asked
+     */
+    default MultiRowKeyStrategy multiRowKeyStrategy(Connection conn) throws SQLException {
+        return useInsertReturning() ? MultiRowKeyStrategy.returning() : MultiRowKeyStrategy.generatedKeys();
+    }
+
+    /**
+     * True if this dialect implements {@link #buildOutputInsertSql}. {@code insertAll} only uses
+     * {@link MultiRowKeyStrategy.Kind#OUTPUT_INSERTED} when it does, and otherwise inserts rows
+     * one at a time.
+     */
+    default boolean supportsOutputInsert() { return false; }
+
+    /**
+     * Render an insert of {@code rows} rows of {@code cols} whose result has, per inserted row,
+     * the row's 0-based position among the bound rows and its generated key, for
+     * {@link MultiRowKeyStrategy.Kind#OUTPUT_INSERTED}. Only called when
+     * {@link #supportsOutputInsert()} is true.
+     */
+    default <T> String buildOutputInsertSql(TableMeta<T> m, List<String> cols, int rows) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " has no OUTPUT insert");
+    }
+
     default String paginate(String selectSql, String groupByClause, String orderByClause, Integer limit, Integer offset) {
         // sensible defaults for Postgres/MySQL/SQLite
         if (limit == null && offset == null) return selectSql;
@@ -67,4 +106,122 @@ public interface SqlDialect {
     default String createViewSql(String viewName, String selectSql) {
         return "CREATE VIEW " + q(viewName) + " AS " + selectSql;
     }
+
+    /** True if this dialect accepts "IF NOT EXISTS" in CREATE INDEX. */
+    default boolean supportsCreateIndexIfNotExists() { return supportsCreateIfNotExists(); }
+
+    /** True if indexes can store non-key columns with INCLUDE (...). */
+    default boolean supportsIndexInclude() { return false; }
+
+    /** True if CREATE INDEX accepts a WHERE predicate (partial/filtered index). */
+    default boolean supportsPartialIndexes() { return true; }
+
+    /** True if index keys can be expressions such as {@code LOWER(email)}. */
+    default boolean supportsExpressionIndexes() { return true; }
+
+    /**
+     * Render CREATE INDEX DDL for an index on {@code table}, or null if this dialect cannot express it.
+     * <p>
+     * Without INCLUDE support the included columns are appended to the key of a non-unique index,
+     * which still covers the same queries; a unique index drops them, since widening its key would
+     * change what it enforces. Without partial index support a non-unique index is created over
+     * all rows and a unique one is not created.
+     * </p>
+     */
+    default String createIndexDdl(String table, IndexMeta idx, boolean ifNotExists) {
+        if (idx.hasExpressions() && !supportsExpressionIndexes()) return null;
+        if (idx.where != null && !supportsPartialIndexes() && idx.unique) return null;
+
+        StringBuilder s = new StringBuilder("CREATE ");
+        if (idx.unique) s.append("UNIQUE ");
+        s.append("INDEX ");
+        if (ifNotExists && supportsCreateIndexIfNotExists()) s.append("IF NOT EXISTS ");
+        s.append(q(idx.name)).append(" ON ").append(q(table)).append(" (");
+
+        boolean first = true;
+        for (IndexMeta.Part p : idx.parts) {
+            if (!first) s.append(", ");
+            first = false;
+            s.append(p.expression ? "(" + p.value + ")" : q(p.value));
+        }
+        if (!supportsIndexInclude() && !idx.unique) {
+            for (String c : idx.include) {
+                if (idx.leadingColumns().contains(c)) continue;
+                s.append(", ").append(q(c));
+            }
+        }
+        s.append(')');
+
+        if (supportsIndexInclude() && !idx.include.isEmpty()) {
+            s.append(" INCLUDE (");
+            for (int i = 0; i < idx.include.size(); i++) {
+                if (i > 0) s.append(", ");
+                s.append(q(idx.include.get(i)));
+            }
+            s.append(')');
+        }
+        if (idx.where != null && supportsPartialIndexes()) s.append(" WHERE ").append(idx.where);
+        return s.toString();
+    }
+
+    /**
+     * True if NULL sorts before every other value in an ascending ORDER BY (and after them in a
+     * descending one), as in SQLite, MySQL and SQL Server. PostgreSQL sorts NULL as the largest value.
+     */
+    default boolean nullsSortLow() { return true; }
+
+    /** True if this dialect has sequences; see {@link #createSequenceSql} and {@link #nextSequenceValueSql}. */
+    default boolean supportsSequences() { return false; }
+
+    /** Render DDL creating a BIGINT sequence starting at 1 unless it exists, or null without sequences. */
+    default String createSequenceSql(String sequence) { return null; }
+
+    /** Render a query returning the next value of a sequence, or null without sequences. */
+    default String nextSequenceValueSql(String sequence) { return null; }
+
+    /**
+     * Prefix that turns a query into a request for its execution plan, such as {@code EXPLAIN },
+     * or null if plans cannot be requested that way. Used by {@link #explain}. The default is
+     * null, since the syntax differs per database; dialects that support it override this.
+     */
+    default String explainPrefix() {
+        return null;
+    }
+
+    /**
+     * Fetch the execution plan of a query without running it. The default prepends
+     * {@link #explainPrefix()}, binds {@code params} and returns the rows of the result, one per
+     * line, with columns separated by tabs.
+     *
+     * @param conn   the connection to explain on; it should not be one executing application work
+     * @param sql    the query, as executed
+     * @param params the parameters it was executed with
+     * @return the plan, or null if this dialect cannot explain queries
+     * @throws SQLException if the database rejects the request
+     */
+    default String explain(Connection conn, String sql, List<Object> params) throws SQLException {
+        String prefix = explainPrefix();
+        if (prefix == null) return null;
+        try (PreparedStatement ps = conn.prepareStatement(prefix + sql)) {
+            JdbcParamBinder.bindParams(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readPlan(rs);
+            }
+        }
+    }
+
+    /** Utility: join the rows of a plan result set into text, one row per line. */
+    static String readPlan(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        int cols = md.getColumnCount();
+        StringBuilder out = new StringBuilder();
+        while (rs.next()) {
+            if (out.length() > 0) out.append('\n');
+            for (int i = 1; i <= cols; i++) {
+                if (i > 1) out.append('\t');
+                out.append(rs.getString(i));
+            }
+        }
+        return out.toString();
+    }
 }
@@ -1,13 +1,18 @@
 package org.oldskooler.entity4j.dialect.types;
 
 import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.dialect.MultiRowKeyStrategy;
 import org.oldskooler.entity4j.dialect.SqlDialect;
 import org.oldskooler.entity4j.mapping.ColumnMeta;
 import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
 
 import java.lang.reflect.Field;
+import java.sql.Connection;
 import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -15,9 +20,15 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 public class MySqlDialect implements SqlDialect {
+    private volatile MultiRowKeyStrategy keyStrategy;
+
     @Override public String q(String ident) { return "`" + ident.replace("`","``") + "`"; }
     @Override public String autoIncrementClause() { return " AUTO_INCREMENT"; }
 
+    // MySQL has neither CREATE INDEX IF NOT EXISTS nor partial indexes; expression keys need 8.0.13+.
+    @Override public boolean supportsCreateIndexIfNotExists() { return false; }
+    @Override public boolean supportsPartialIndexes() { return false; }
+
     @Override
     public <T> String createTableDdl(TableMeta<T> m, boolean ifNotExists) {
         List<String> defs = new ArrayList<>();
@@ -158,9 +169,38 @@ public class MySqlDialect implements SqlDialect {
         return "INSERT INTO " + q(m.table) + " (" + String.join(", ", quoted(cols)) + ") VALUES (" + placeholders + ")";
     }
 
+    // A multi-row INSERT ... VALUES is a "simple insert": InnoDB lock modes 0 (traditional) and 1
+    // (consecutive) reserve its keys as one run, so LAST_INSERT_ID() plus auto_increment_increment
+    // per row gives them all. Lock mode 2 (interleaved, the default since 8.0) lets concurrent
+    // inserts take keys in between, so rows are then inserted one at a time. Only an answer from
+    // the server is cached; a failed probe propagates and the next insertAll asks again.
+    @Override
+    public MultiRowKeyStrategy multiRowKeyStrategy(Connection conn) throws SQLException {
+        MultiRowKeyStrategy s = keyStrategy;
+        if (s == null) keyStrategy = s = detectKeyStrategy(conn);
+        return s;
+    }
+
+    private static MultiRowKeyStrategy detectKeyStrategy(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT @@innodb_autoinc_lock_mode, @@auto_increment_increment")) {
+            if (rs.next()) {
+                Object lockMode = rs.getObject(1);
+                long step = rs.getLong(2);
+                if (lockMode instanceof Number && ((Number) lockMode).intValue() <= 1 && step >= 1) {
+                    return MultiRowKeyStrategy.consecutiveRange(step);
+                }
+            }
+        }
+        return MultiRowKeyStrategy.perRow();
+    }
+
     private List<String> quoted(List<String> cols) {
         List<String> out = new ArrayList<>(cols.size());
         for (String c : cols) out.add(q(c));
         return out;
     }
+
+    @Override
+    public String explainPrefix() { return "EXPLAIN FORMAT=JSON "; }
 }
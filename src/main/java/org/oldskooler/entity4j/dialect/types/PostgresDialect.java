@@ -18,6 +18,21 @@ public class PostgresDialect implements SqlDialect {
     @Override
     public boolean supportsCreateIfNotExists() { return true; }
 
+    @Override
+    public boolean supportsIndexInclude() { return true; }
+
+    @Override
+    public boolean supportsSequences() { return true; }
+
+    @Override
+    public String createSequenceSql(String sequence) { return "CREATE SEQUENCE IF NOT EXISTS " + q(sequence) + " AS BIGINT START WITH 1"; }
+
+    @Override
+    public String nextSequenceValueSql(String sequence) { return "SELECT nextval('" + q(sequence).replace("'", "''") + "')"; }
+
+    @Override
+    public boolean nullsSortLow() { return false; }
+
     @Override
     public boolean useInsertReturning() { return true; } // leverage RETURNING for auto keys
 
@@ -222,4 +237,11 @@ public class PostgresDialect implements SqlDialect {
         // For non-numeric types, identity is invalid; keep original.
         return baseType;
     }
+
+    /* =========================
+       EXPLAIN
+       ========================= */
+
+    @Override
+    public String explainPrefix() { return "EXPLAIN (FORMAT JSON) "; }
 }
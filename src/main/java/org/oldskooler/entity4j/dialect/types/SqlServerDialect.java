@@ -1,16 +1,24 @@
 package org.oldskooler.entity4j.dialect.types;
 
 import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.dialect.MultiRowKeyStrategy;
 import org.oldskooler.entity4j.dialect.SqlDialect;
 import org.oldskooler.entity4j.mapping.ColumnMeta;
 import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.JdbcParamBinder;
 
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class SqlServerDialect implements SqlDialect {
+    private static final String OUTPUT_ROW = "entity4j_row";
 
     @Override
     public String q(String ident) { return "[" + ident.replace("]", "]]") + "]"; }
@@ -20,6 +28,25 @@ public class SqlServerDialect implements SqlDialect {
     @Override
     public boolean supportsCreateIfNotExists() { return false; }
 
+    @Override
+    public boolean supportsIndexInclude() { return true; }
+
+    // Expression keys need a computed column first, which DDL from the model cannot add.
+    @Override
+    public boolean supportsExpressionIndexes() { return false; }
+
+    @Override
+    public boolean supportsSequences() { return true; }
+
+    @Override
+    public String createSequenceSql(String sequence) {
+        return "IF NOT EXISTS (SELECT 1 FROM sys.sequences WHERE name = N'" + sequence.replace("'", "''") + "') "
+                + "CREATE SEQUENCE " + q(sequence) + " AS BIGINT START WITH 1 INCREMENT BY 1";
+    }
+
+    @Override
+    public String nextSequenceValueSql(String sequence) { return "SELECT NEXT VALUE FOR " + q(sequence); }
+
     // We'll use JDBC getGeneratedKeys() instead of OUTPUT INSERTED...
     @Override
     public boolean useInsertReturning() { return false; }
@@ -184,4 +211,59 @@ public class SqlServerDialect implements SqlDialect {
         // not used for SQL Server; rely on JDBC getGeneratedKeys()
         return "";
     }
+
+    @Override
+    public MultiRowKeyStrategy multiRowKeyStrategy(Connection conn) { return MultiRowKeyStrategy.outputInserted(); }
+
+    @Override
+    public boolean supportsOutputInsert() { return true; }
+
+    // MERGE rather than INSERT ... OUTPUT: the OUTPUT of an INSERT cannot name the source row, and
+    // neither identity values nor OUTPUT rows are promised in VALUES order. Each source row carries
+    // its position, which OUTPUT returns next to INSERTED.<key>.
+    @Override
+    public <T> String buildOutputInsertSql(TableMeta<T> m, List<String> cols, int rows) {
+        String key = null;
+        for (PrimaryKey pk : m.keys.values()) {
+            if (pk.auto()) key = m.propToColumn.get(pk.property);
+        }
+        if (key == null) throw new IllegalStateException("No auto primary key on " + m.table);
+
+        String placeholders = String.join(", ", Collections.nCopies(cols.size(), "?"));
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) values.append(", ");
+            values.append('(').append(placeholders).append(", ").append(i).append(')');
+        }
+        String colList = cols.stream().map(this::q).collect(Collectors.joining(", "));
+        return "MERGE INTO " + q(m.table) + " USING (VALUES " + values + ") AS " + q("s") + " (" + colList + ", " + q(OUTPUT_ROW) + ")"
+                + " ON 1 = 0 WHEN NOT MATCHED THEN INSERT (" + colList + ") VALUES ("
+                + cols.stream().map(c -> q("s") + "." + q(c)).collect(Collectors.joining(", ")) + ")"
+                + " OUTPUT " + q("s") + "." + q(OUTPUT_ROW) + ", INSERTED." + q(key) + ";";
+    }
+
+    /* =========================
+       EXPLAIN
+       ========================= */
+
+    // No EXPLAIN statement; SHOWPLAN_XML makes the session return plans instead of running statements.
+    @Override
+    public String explainPrefix() { return null; }
+
+    @Override
+    public String explain(Connection conn, String sql, List<Object> params) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET SHOWPLAN_XML ON");
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            JdbcParamBinder.bindParams(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                return SqlDialect.readPlan(rs);
+            }
+        } finally {
+            try (Statement st = conn.createStatement()) {
+                st.execute("SET SHOWPLAN_XML OFF");
+            }
+        }
+    }
 }
@@ -1,16 +1,22 @@
 package org.oldskooler.entity4j.dialect.types;
 
 import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.dialect.MultiRowKeyStrategy;
 import org.oldskooler.entity4j.dialect.SqlDialect;
 import org.oldskooler.entity4j.mapping.ColumnMeta;
 import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
 
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class SqliteDialect implements SqlDialect {
+    private volatile MultiRowKeyStrategy keyStrategy;
 
     @Override public String q(String ident) { return "\"" + ident.replace("\"","\"\"") + "\""; }
 
@@ -176,6 +182,23 @@ public class SqliteDialect implements SqlDialect {
                 ") VALUES (" + placeholders + ")";
     }
 
+    // RETURNING arrived in SQLite 3.35; before it, the driver's generated keys only hold the
+    // last rowid of a statement, so rows are inserted one at a time.
+    @Override
+    public MultiRowKeyStrategy multiRowKeyStrategy(Connection conn) throws SQLException {
+        MultiRowKeyStrategy s = keyStrategy;
+        if (s == null) {
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT sqlite_version()")) {
+                String[] v = (rs.next() ? rs.getString(1) : "0.0").split("\\.");
+                int major = Integer.parseInt(v[0]);
+                int minor = v.length > 1 ? Integer.parseInt(v[1]) : 0;
+                s = major > 3 || (major == 3 && minor >= 35) ? MultiRowKeyStrategy.returning() : MultiRowKeyStrategy.perRow();
+            }
+            keyStrategy = s;
+        }
+        return s;
+    }
+
     /* ---------------- helpers ---------------- */
 
     private boolean hasIntegerAffinity(String baseType, Field f) {
@@ -190,4 +213,9 @@ public class SqliteDialect implements SqlDialect {
                 t == short.class|| t == Short.class ||
                 t == byte.class || t == Byte.class);
     }
+
+    /* ---------------- EXPLAIN ---------------- */
+
+    @Override
+    public String explainPrefix() { return "EXPLAIN QUERY PLAN "; }
 }
@@ -0,0 +1,345 @@
+package org.oldskooler.entity4j.keys;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.async.AsyncOptions;
+import org.oldskooler.entity4j.dialect.SqlDialect;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out {@code long} keys from blocks reserved in the database, so one round trip covers
+ * {@link Builder#blockSize(int) blockSize} inserts.
+ * <p>
+ * Block {@code hi} (1, 2, 3, ...) covers keys {@code (hi - 1) * blockSize + 1} to
+ * {@code hi * blockSize}. The next {@code hi} comes from a sequence on dialects that have them
+ * (PostgreSQL, SQL Server) and from a row of the {@value #DEFAULT_TABLE} table elsewhere (MySQL,
+ * SQLite); both are created on first use. Every entity table gets its own sequence or row,
+ * named {@code <table>_hilo} and {@code <table>} respectively.
+ * </p>
+ * <p>
+ * Keys left in a block when the application stops are never used, so keys have gaps. Blocks
+ * are reserved on the configured {@link Builder#dataSource(DataSource) DataSource}, else the
+ * context's async data source, else the context's connection; the table-backed source needs
+ * that connection to be in auto-commit mode, as it must commit its reservation on its own.
+ * </p>
+ * <p>
+ * One instance may serve contexts on several databases: blocks are kept per data source, or per
+ * connection URL and user, and per block name.
+ * </p>
+ * <pre>{@code
+ * // defaults, on the entity:  @Id(generator = HiLoGenerator.class) private Long id;
+ * model.entity(Order.class).hasId("id", "id", HiLoGenerator.builder().blockSize(1000).build());
+ * }</pre>
+ */
+public class HiLoGenerator implements KeyGenerator {
+    /** Table holding the next block of each entity for the table-backed source. */
+    public static final String DEFAULT_TABLE = "entity4j_hilo";
+
+    /** Where blocks are reserved. */
+    public enum Source {
+        /** A sequence where the dialect has them, otherwise a table. */
+        AUTO,
+        /** {@code CREATE SEQUENCE} / next value of the sequence. */
+        SEQUENCE,
+        /** An UPDATE of a counter row, committed in its own transaction. */
+        TABLE
+    }
+
+    private final int blockSize;
+    private final Source source;
+    private final String name;
+    private final String table;
+    private final DataSource dataSource;
+
+    // Keyed by (database, block name): the same generator serves every context in the JVM
+    private final Map<List<Object>, Slot> slots = new ConcurrentHashMap<>();
+    private final Map<List<Object>, Boolean> prepared = new ConcurrentHashMap<>();
+
+    /** Creates a generator with the defaults, for {@code @Id(generator = HiLoGenerator.class)}. */
+    public HiLoGenerator() {
+        this(builder());
+    }
+
+    private HiLoGenerator(Builder b) {
+        this.blockSize = b.blockSize;
+        this.source = b.source;
+        this.name = b.name;
+        this.table = b.table;
+        this.dataSource = b.dataSource;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public Object next(IDbContext ctx, TableMeta<?> meta, PrimaryKey key) {
+        String blockName = name != null ? name : meta.table;
+        DataSource ds = dataSource(ctx);
+        Object database = ds != null ? ds : databaseOf(ctx.conn());
+        Slot slot = slots.computeIfAbsent(Arrays.asList(database, blockName), k -> new Slot());
+        while (true) {
+            slot.lock.lock();
+            try {
+                Block block = slot.blocks.peekFirst();
+                while (block != null && block.next > block.last) {
+                    slot.blocks.pollFirst();
+                    block = slot.blocks.peekFirst();
+                }
+                if (block != null) return block.next++;
+            } finally {
+                slot.lock.unlock();
+            }
+
+            // Reserve outside the lock; a block reserved concurrently by another thread is queued, not lost
+            long hi = reserve(ctx, ds, database, blockName);
+            slot.lock.lock();
+            try {
+                slot.blocks.addLast(new Block((hi - 1) * blockSize + 1, hi * blockSize));
+            } finally {
+                slot.lock.unlock();
+            }
+        }
+    }
+
+    private DataSource dataSource(IDbContext ctx) {
+        if (dataSource != null) return dataSource;
+        AsyncOptions async = ctx.asyncOptions();
+        return async != null ? async.getDataSource() : null;
+    }
+
+    /** Identifies the database behind a connection, so contexts on different databases never share blocks. */
+    private static String databaseOf(Connection conn) {
+        try {
+            DatabaseMetaData md = conn.getMetaData();
+            return md.getURL() + "|" + md.getUserName();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to identify the database of the connection", e);
+        }
+    }
+
+    private long reserve(IDbContext ctx, DataSource ds, Object database, String blockName) {
+        SqlDialect dialect = ctx.dialect();
+        boolean sequence = source == Source.SEQUENCE || (source == Source.AUTO && dialect.supportsSequences());
+        try {
+            if (ds != null) {
+                try (Connection conn = ds.getConnection()) {
+                    return sequence ? fromSequence(dialect, conn, database, blockName + "_hilo") : fromTable(dialect, conn, database, blockName);
+                }
+            }
+            if (sequence) return fromSequence(dialect, ctx.conn(), database, blockName + "_hilo");
+            Connection conn = ctx.conn();
+            if (!conn.getAutoCommit()) {
+                throw new IllegalStateException("HiLoGenerator reserves blocks in its own transaction, but the context is inside one;"
+                        + " configure a DataSource on the generator or enable async operations");
+            }
+            return fromTable(dialect, conn, database, blockName);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to reserve a key block for: " + blockName, e);
+        }
+    }
+
+    private long fromSequence(SqlDialect dialect, Connection conn, Object database, String sequence) throws SQLException {
+        if (!dialect.supportsSequences()) throw new IllegalStateException("Sequences are not supported by " + dialect.getClass().getSimpleName());
+        String nextSql = dialect.nextSequenceValueSql(sequence);
+        List<Object> created = Arrays.asList(database, "seq:" + sequence);
+        if (!prepared.containsKey(created)) {
+            try (Statement st = conn.createStatement()) {
+                st.execute(dialect.createSequenceSql(sequence));
+            }
+            // Inside a transaction the DDL is undone by a rollback, so it is repeated (it is IF NOT EXISTS) until seen committed
+            if (conn.getAutoCommit()) prepared.put(created, Boolean.TRUE);
+        }
+        // Sequences are not transactional, so the caller's transaction is safe here
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(nextSql)) {
+            if (!rs.next()) throw new SQLException("No value from sequence " + sequence);
+            return rs.getLong(1);
+        }
+    }
+
+    private long fromTable(SqlDialect d, Connection conn, Object database, String row) throws SQLException {
+        String t = d.q(table);
+        List<Object> created = Arrays.asList(database, "table:" + row);
+        if (!prepared.containsKey(created)) {
+            if (!tableExists(conn.getMetaData())) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("CREATE TABLE" + (d.supportsCreateIfNotExists() ? " IF NOT EXISTS " : " ") + t + " ("
+                            + d.q("name") + " VARCHAR(255) NOT NULL PRIMARY KEY, " + d.q("next_hi") + " BIGINT NOT NULL)");
+                }
+            }
+            if (!rowExists(d, conn, row)) {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO " + t + " (" + d.q("name") + ", "
+                        + d.q("next_hi") + ") VALUES (?, 1)")) {
+                    ps.setString(1, row);
+                    ps.executeUpdate();
+                } catch (SQLException e) {
+                    if (!rowExists(d, conn, row)) throw e; // otherwise another process inserted it first
+                }
+            }
+            prepared.put(created, Boolean.TRUE);
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // The UPDATE locks the row, so concurrent reservations are serialized
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE " + t + " SET " + d.q("next_hi") + " = "
+                    + d.q("next_hi") + " + 1 WHERE " + d.q("name") + " = ?")) {
+                ps.setString(1, row);
+                if (ps.executeUpdate() != 1) throw new SQLException("No " + table + " row for " + row);
+            }
+            long hi;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT " + d.q("next_hi") + " FROM " + t + " WHERE " + d.q("name") + " = ?")) {
+                ps.setString(1, row);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new SQLException("No " + table + " row for " + row);
+                    hi = rs.getLong(1) - 1;
+                }
+            }
+            conn.commit();
+            return hi;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private boolean rowExists(SqlDialect d, Connection conn, String row) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM " + d.q(table) + " WHERE " + d.q("name") + " = ?")) {
+            ps.setString(1, row);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private boolean tableExists(DatabaseMetaData md) throws SQLException {
+        for (String n : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = md.getTables(null, null, n, null)) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Slot {
+        final ReentrantLock lock = new ReentrantLock();
+        final Deque<Block> blocks = new ArrayDeque<>();
+    }
+
+    private static final class Block {
+        long next;
+        final long last;
+
+        Block(long next, long last) {
+            this.next = next;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Builder for HiLoGenerator.
+     */
+    public static class Builder {
+        private int blockSize = 100;
+        private Source source = Source.AUTO;
+        private String name;
+        private String table = DEFAULT_TABLE;
+        private DataSource dataSource;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets how many keys one reservation covers. Larger blocks mean fewer round trips and
+         * larger gaps after restarts. Defaults to 100.
+         *
+         * @param blockSize keys per block
+         * @return this builder
+         */
+        public Builder blockSize(int blockSize) {
+            if (blockSize < 1) throw new IllegalArgumentException("blockSize must be at least 1");
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Sets where blocks are reserved. Defaults to {@link Source#AUTO}.
+         *
+         * @param source the block source
+         * @return this builder
+         */
+        public Builder source(Source source) {
+            this.source = Objects.requireNonNull(source, "source");
+            return this;
+        }
+
+        /**
+         * Sets the sequence prefix or table row used for every entity, so that several tables
+         * share one key space. Defaults to the entity's table name.
+         *
+         * @param name the block name
+         * @return this builder
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the counter table of the table-backed source. Defaults to
+         * {@value HiLoGenerator#DEFAULT_TABLE}.
+         *
+         * @param table the table name
+         * @return this builder
+         */
+        public Builder table(String table) {
+            this.table = Objects.requireNonNull(table, "table");
+            return this;
+        }
+
+        /**
+         * Sets the data source the table-backed source reserves blocks on, outside the caller's
+         * transaction. Defaults to the context's async data source, if any.
+         *
+         * @param dataSource the data source
+         * @return this builder
+         */
+        public Builder dataSource(DataSource dataSource) {
+            this.dataSource = dataSource;
+            return this;
+        }
+
+        /**
+         * Builds the HiLoGenerator.
+         *
+         * @return a new HiLoGenerator instance
+         */
+        public HiLoGenerator build() {
+            return new HiLoGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.oldskooler.entity4j.keys;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+
+/**
+ * Assigns primary key values in memory before an entity is inserted, so inserts need no
+ * generated-key round trip and {@code insertAll} can batch freely.
+ * <p>
+ * Declare one with {@code @Id(generator = HiLoGenerator.class)} or
+ * {@code hasId(property, column, generator)}. A key with a generator is not auto-increment: its
+ * column is part of the INSERT and of the table DDL like any other. Values already set on the
+ * entity (non-null, non-zero) are kept.
+ * </p>
+ * <p>
+ * Generators declared by annotation are created once per class through a public no-argument
+ * constructor and shared by all entities and contexts, so implementations must be thread-safe.
+ * </p>
+ *
+ * @see HiLoGenerator
+ * @see UuidV7Generator
+ * @see SnowflakeGenerator
+ */
+@FunctionalInterface
+public interface KeyGenerator {
+
+    /**
+     * Returns the next key value. It is converted to the type of the key field.
+     *
+     * @param ctx  the context performing the insert
+     * @param meta the entity's table metadata
+     * @param key  the key being assigned
+     * @return a key value not handed out before
+     */
+    Object next(IDbContext ctx, TableMeta<?> meta, PrimaryKey key);
+}
@@ -0,0 +1,53 @@
+package org.oldskooler.entity4j.keys;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+import org.oldskooler.entity4j.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Utilities for {@link KeyGenerator}s: shared instances and assigning keys before inserts. */
+public final class KeyGenerators {
+    private static final Map<Class<? extends KeyGenerator>, KeyGenerator> SHARED = new ConcurrentHashMap<>();
+
+    private KeyGenerators() {}
+
+    /**
+     * @param type a generator class with a public no-argument constructor
+     * @return the instance shared by every key declaring {@code type}, or null for
+     *         {@code KeyGenerator.class}, which stands for no generator
+     */
+    public static KeyGenerator shared(Class<? extends KeyGenerator> type) {
+        if (type == null || type == KeyGenerator.class) return null;
+        return SHARED.computeIfAbsent(type, t -> {
+            try {
+                return t.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("KeyGenerator " + t.getName() + " needs a public no-argument constructor", e);
+            }
+        });
+    }
+
+    /** @return true if any key of the entity has a generator */
+    public static boolean hasGenerators(TableMeta<?> m) {
+        for (PrimaryKey k : m.keys.values()) if (k.generator != null) return true;
+        return false;
+    }
+
+    /**
+     * Assigns a generated value to every key of {@code entity} that has a generator and is
+     * still unset (null, or zero for numbers).
+     */
+    public static <T> void assign(IDbContext ctx, TableMeta<T> m, T entity) {
+        for (PrimaryKey k : m.keys.values()) {
+            if (k.generator == null) continue;
+            Field f = m.propToField.get(k.property);
+            Object current = ReflectionUtils.getField(entity, f);
+            if (current != null && !(current instanceof Number && ((Number) current).longValue() == 0)) continue;
+            ReflectionUtils.setField(entity, f, k.generator.next(ctx, m, k));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.oldskooler.entity4j.keys;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time-ordered 64-bit keys in the Snowflake layout: 41 bits of milliseconds since an epoch
+ * (2020-01-01 by default, good for about 69 years), a 10-bit worker id and a 12-bit sequence,
+ * so up to 4096 keys per millisecond per worker.
+ * <p>
+ * Keys are unique only if every process inserting into the same tables uses a different worker
+ * id. The no-argument constructor (used for {@code @Id(generator = SnowflakeGenerator.class)})
+ * reads it from the {@code entity4j.snowflake.worker} system property and otherwise derives it
+ * from the process name, which can collide; set the property in deployments with several nodes.
+ * </p>
+ */
+public class SnowflakeGenerator implements KeyGenerator {
+    /** 2020-01-01T00:00:00Z */
+    public static final long DEFAULT_EPOCH_MILLIS = 1577836800000L;
+    /** System property holding the worker id used by the no-argument constructor. */
+    public static final String WORKER_PROPERTY = "entity4j.snowflake.worker";
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_BACKWARD_MILLIS = 5;
+
+    private final long epochMillis;
+    private final long workerId;
+    /** Milliseconds since the epoch and sequence of the last key, packed like the key without its worker id */
+    private final AtomicLong last = new AtomicLong();
+
+    /** Uses the worker id from {@value #WORKER_PROPERTY}, or one derived from the process name. */
+    public SnowflakeGenerator() {
+        this(defaultWorkerId());
+    }
+
+    /**
+     * @param workerId this process's worker id, from 0 to 1023
+     */
+    public SnowflakeGenerator(long workerId) {
+        this(workerId, DEFAULT_EPOCH_MILLIS);
+    }
+
+    /**
+     * @param workerId    this process's worker id, from 0 to 1023
+     * @param epochMillis the custom epoch in Unix milliseconds; must not be in the future
+     */
+    public SnowflakeGenerator(long workerId, long epochMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER) throw new IllegalArgumentException("workerId must be between 0 and " + MAX_WORKER);
+        if (epochMillis > System.currentTimeMillis()) throw new IllegalArgumentException("epoch is in the future: " + Instant.ofEpochMilli(epochMillis));
+        this.workerId = workerId;
+        this.epochMillis = epochMillis;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    @Override
+    public Object next(IDbContext ctx, TableMeta<?> meta, PrimaryKey key) {
+        return next();
+    }
+
+    /**
+     * @return a new key
+     * @throws IllegalStateException if the clock moved back by more than a few milliseconds
+     */
+    public long next() {
+        while (true) {
+            long prev = last.get();
+            long lastMillis = prev >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - epochMillis;
+            long sequence = 0;
+            if (now < lastMillis) {
+                if (lastMillis - now > MAX_BACKWARD_MILLIS) {
+                    throw new IllegalStateException("Clock moved back by " + (lastMillis - now) + "ms; refusing to generate keys");
+                }
+                waitUntil(lastMillis);
+                continue;
+            }
+            if (now == lastMillis) {
+                sequence = (prev & SEQUENCE_MASK) + 1;
+                if (sequence > SEQUENCE_MASK) { // 4096 keys this millisecond
+                    waitUntil(lastMillis + 1);
+                    continue;
+                }
+            }
+            // Nothing is held while waiting, so callers on virtual threads never pin their carrier
+            if (last.compareAndSet(prev, now << SEQUENCE_BITS | sequence)) {
+                return now << (WORKER_BITS + SEQUENCE_BITS) | workerId << SEQUENCE_BITS | sequence;
+            }
+        }
+    }
+
+    /** Parks until {@code millis} after the epoch. */
+    private void waitUntil(long millis) {
+        while (System.currentTimeMillis() - epochMillis < millis) LockSupport.parkNanos(100_000);
+    }
+
+    private static long defaultWorkerId() {
+        String configured = System.getProperty(WORKER_PROPERTY);
+        if (configured != null) return Long.parseLong(configured.trim());
+        return (ManagementFactory.getRuntimeMXBean().getName().hashCode() & Integer.MAX_VALUE) % (MAX_WORKER + 1);
+    }
+}
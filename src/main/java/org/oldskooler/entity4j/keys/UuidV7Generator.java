@@ -0,0 +1,56 @@
+package org.oldskooler.entity4j.keys;
+
+import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
+import org.oldskooler.entity4j.mapping.TableMeta;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUIDs (version 7, RFC 9562): a 48-bit Unix millisecond timestamp, then a 12-bit
+ * counter and 62 random bits.
+ * <p>
+ * Keys generated later sort after earlier ones, so inserts append to the end of a B-tree index
+ * instead of landing at random pages as version 4 UUIDs do. Within one millisecond the counter
+ * keeps keys from this generator increasing; when it overflows the timestamp is advanced by one.
+ * </p>
+ * <p>
+ * Use a {@code UUID} field on PostgreSQL and SQL Server, where drivers bind it to a native UUID
+ * column, and a {@code String} field elsewhere; the key is converted to the field type. The
+ * random bits are not meant to be unguessable.
+ * </p>
+ */
+public class UuidV7Generator implements KeyGenerator {
+    /** Timestamp and counter of the last UUID, packed as {@code millis << 12 | counter} */
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public Object next(IDbContext ctx, TableMeta<?> meta, PrimaryKey key) {
+        return next();
+    }
+
+    /** @return a new version 7 UUID */
+    public UUID next() {
+        long millis, seq, prev;
+        do {
+            prev = last.get();
+            long now = System.currentTimeMillis();
+            millis = prev >>> 12;
+            seq = prev & 0xFFF;
+            if (now > millis) {
+                millis = now;
+                seq = ThreadLocalRandom.current().nextInt(1 << 11); // leave room to count up
+            } else if (seq == 0xFFF) {
+                millis++;
+                seq = 0;
+            } else {
+                seq++;
+            }
+        } while (!last.compareAndSet(prev, millis << 12 | seq));
+        long msb = (millis & 0xFFFF_FFFF_FFFFL) << 16 | 0x7000L | seq;
+        long lsb = ThreadLocalRandom.current().nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,97 @@
+package org.oldskooler.entity4j.mapping;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The entity model of a context class, built once by {@code onModelCreating} and then frozen.
+ * <p>
+ * Contexts of the same class attach to the same compiled model instead of configuring their
+ * own, so creating a context per request costs a map lookup. The frozen registry also caches
+ * each entity's {@link TableMeta}. Call {@link #invalidate(Class)} (or
+ * {@code IDbContext.rebuildModel}) when the configuration changes; contexts created afterwards
+ * build a fresh model, while existing ones keep the model they attached to.
+ * </p>
+ */
+public final class CompiledModel {
+    private static final Map<Class<?>, CompiledModel> MODELS = new ConcurrentHashMap<>();
+
+    private final Class<?> contextType;
+    private final MappingRegistry registry;
+    private final long builtAt;
+
+    private CompiledModel(Class<?> contextType, MappingRegistry registry) {
+        this.contextType = contextType;
+        this.registry = registry;
+        this.builtAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the compiled model of {@code contextType}, building it with {@code configure}
+     * if there is none yet. Concurrent callers for the same class wait for a single build.
+     *
+     * @param contextType the context class the model belongs to
+     * @param configure   fills a fresh model, typically {@code onModelCreating}
+     * @return the frozen model
+     */
+    public static CompiledModel forContext(Class<?> contextType, Consumer<ModelBuilder> configure) {
+        Objects.requireNonNull(contextType, "contextType");
+        Objects.requireNonNull(configure, "configure");
+        CompiledModel model = MODELS.get(contextType);
+        if (model != null) return model;
+        return MODELS.computeIfAbsent(contextType, t -> compile(t, configure));
+    }
+
+    /**
+     * Builds a frozen model without caching it.
+     *
+     * @param contextType the context class the model belongs to
+     * @param configure   fills a fresh model
+     * @return the frozen model
+     */
+    public static CompiledModel compile(Class<?> contextType, Consumer<ModelBuilder> configure) {
+        MappingRegistry registry = new MappingRegistry();
+        configure.accept(new ModelBuilder(registry));
+        registry.freeze();
+        return new CompiledModel(contextType, registry);
+    }
+
+    /**
+     * Discards the compiled model of {@code contextType}; the next context of that class
+     * rebuilds it.
+     *
+     * @param contextType the context class
+     */
+    public static void invalidate(Class<?> contextType) {
+        MODELS.remove(contextType);
+    }
+
+    /** Discards all compiled models. */
+    public static void invalidateAll() {
+        MODELS.clear();
+    }
+
+    /**
+     * @param contextType the context class
+     * @return true if a compiled model is cached for the class
+     */
+    public static boolean isCompiled(Class<?> contextType) {
+        return MODELS.containsKey(contextType);
+    }
+
+    public Class<?> getContextType() {
+        return contextType;
+    }
+
+    /** @return the frozen registry */
+    public MappingRegistry getRegistry() {
+        return registry;
+    }
+
+    /** @return when the model was built, in epoch milliseconds */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+}
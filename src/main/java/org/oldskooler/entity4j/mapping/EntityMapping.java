@@ -20,11 +20,23 @@ public final class EntityMapping<T> {
     /** NEW: property - ColumnMeta (DDL hints) */
     public final Map<String, ColumnMeta> columns;
 
+    /** declared secondary indexes, with properties already resolved to columns */
+    public final List<IndexMeta> indexes;
+
     public EntityMapping(Class<T> type,
                          String table,
                          Map<String, PrimaryKey> keys,
                          LinkedHashMap<String, String> propToColumn,
                          Map<String, ColumnMeta> columns) {
+        this(type, table, keys, propToColumn, columns, Collections.emptyList());
+    }
+
+    public EntityMapping(Class<T> type,
+                         String table,
+                         Map<String, PrimaryKey> keys,
+                         LinkedHashMap<String, String> propToColumn,
+                         Map<String, ColumnMeta> columns,
+                         List<IndexMeta> indexes) {
         this.type = Objects.requireNonNull(type, "type");
         this.table = Objects.requireNonNull(table, "table");
         this.keys = Collections.unmodifiableMap(keys);
@@ -45,5 +57,7 @@ public final class EntityMapping<T> {
 
         this.columns = (columns == null) ? Collections.unmodifiableMap(new HashMap<>())
                 : Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+        this.indexes = (indexes == null) ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(indexes));
     }
 }
@@ -0,0 +1,83 @@
+package org.oldskooler.entity4j.mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/** Index metadata for DDL rendering (annotation-free). */
+public final class IndexMeta {
+    public final String name;           // index name (unquoted)
+    public final boolean unique;
+    public final List<Part> parts;      // key columns/expressions, in order
+    public final String where;          // partial index predicate (raw SQL), or null
+    public final List<String> include;  // non-key (INCLUDE) columns (unquoted)
+
+    /** One key of an index: a column name, or an expression rendered as written. */
+    public static final class Part {
+        public final String value;
+        public final boolean expression;
+
+        public Part(String value, boolean expression) {
+            this.value = Objects.requireNonNull(value, "value");
+            this.expression = expression;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    public IndexMeta(String name, boolean unique, List<Part> parts, String where, List<String> include) {
+        if (parts == null || parts.isEmpty()) throw new IllegalArgumentException("An index needs at least one column or expression");
+        this.name = Objects.requireNonNull(name, "name");
+        this.unique = unique;
+        this.parts = Collections.unmodifiableList(new ArrayList<>(parts));
+        this.where = where == null || where.trim().isEmpty() ? null : where.trim();
+        this.include = include == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(include));
+    }
+
+    /**
+     * Utility: build an index from user input. Each entry of {@code keys} and {@code include}
+     * that names a mapped property is replaced by its column; a key containing a parenthesis is
+     * an expression. A null or empty {@code name} gets {@link #defaultName}.
+     */
+    public static IndexMeta resolve(String table, String name, List<String> keys, boolean unique, String where,
+                                    List<String> include, Map<String, String> propToColumn) {
+        List<Part> parts = new ArrayList<>(keys.size());
+        for (String k : keys) {
+            String key = k.trim();
+            parts.add(key.indexOf('(') >= 0 ? new Part(key, true) : new Part(propToColumn.getOrDefault(key, key), false));
+        }
+        List<String> inc = new ArrayList<>(include.size());
+        for (String c : include) inc.add(propToColumn.getOrDefault(c.trim(), c.trim()));
+        String n = name == null || name.isEmpty() ? defaultName(table, unique, parts) : name;
+        return new IndexMeta(n, unique, parts, where, inc);
+    }
+
+    /** Utility: ix_/ux_ + table + key names, limited to 60 characters. */
+    public static String defaultName(String table, boolean unique, List<Part> parts) {
+        StringBuilder s = new StringBuilder(unique ? "ux_" : "ix_").append(table);
+        for (Part p : parts) s.append('_').append(p.value);
+        String name = s.toString().replaceAll("[^A-Za-z0-9_]+", "_").replaceAll("_+$", "");
+        return name.length() > 60 ? name.substring(0, 51) + "_" + Integer.toHexString(name.hashCode()) : name;
+    }
+
+    /** @return true if any key is an expression */
+    public boolean hasExpressions() {
+        for (Part p : parts) if (p.expression) return true;
+        return false;
+    }
+
+    /** @return the plain key columns before the first expression, i.e. what a lookup by column can use */
+    public List<String> leadingColumns() {
+        List<String> out = new ArrayList<>();
+        for (Part p : parts) {
+            if (p.expression) break;
+            out.add(p.value);
+        }
+        return out;
+    }
+}
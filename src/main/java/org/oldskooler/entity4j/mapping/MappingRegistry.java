@@ -3,12 +3,47 @@ package org.oldskooler.entity4j.mapping;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public final class MappingRegistry {
     private final Map<Class<?>, EntityMapping<?>> byType = new LinkedHashMap<>();
-    public <T> void register(EntityMapping<T> m) { byType.put(m.type, m); }
+
+    /** Derived TableMeta per entity type; only populated once the registry is frozen */
+    private final Map<Class<?>, TableMeta<?>> metaCache = new ConcurrentHashMap<>();
+
+    private volatile boolean frozen = false;
+
+    public <T> void register(EntityMapping<T> m) {
+        if (frozen) throw new IllegalStateException("Mapping registry is frozen; rebuild the model to change mappings");
+        byType.put(m.type, m);
+    }
+
     @SuppressWarnings("unchecked")
     public <T> Optional<EntityMapping<T>> find(Class<T> type) {
         return Optional.ofNullable((EntityMapping<T>) byType.get(type));
     }
+
+    /**
+     * Makes the registry read-only. After this, {@link TableMeta#of(Class, MappingRegistry)}
+     * computes each entity's metadata once and reuses it.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> TableMeta<T> cachedMeta(Class<T> type, Function<Class<T>, TableMeta<T>> compute) {
+        TableMeta<?> meta = metaCache.get(type);
+        if (meta == null) {
+            meta = compute.apply(type);
+            TableMeta<?> raced = metaCache.putIfAbsent(type, meta);
+            if (raced != null) meta = raced;
+        }
+        return (TableMeta<T>) meta;
+    }
 }
@@ -1,9 +1,13 @@
 package org.oldskooler.entity4j.mapping;
 
 import org.oldskooler.entity4j.annotations.Column;
+import org.oldskooler.entity4j.keys.KeyGenerator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -64,6 +68,37 @@ public final class ModelBuilder {
 
     }
 
+    /** Index options exposed to users: key columns/expressions, uniqueness, partial predicate and INCLUDE columns. */
+    public interface IndexOptions {
+        IndexOptions name(String indexName);       // defaults to ix_/ux_ + table + columns
+        IndexOptions on(String... properties);     // key properties (or column names), in order
+        IndexOptions expression(String sql);       // key expression, e.g. "LOWER(email)"
+        IndexOptions unique(boolean isUnique);
+        IndexOptions where(String predicate);      // partial index, e.g. "deleted_at IS NULL"
+        IndexOptions include(String... properties); // covering (non-key) columns
+    }
+
+    static final class IndexBuilder implements IndexOptions {
+        String name = "";
+        final List<String> keys = new ArrayList<>();
+        boolean unique = false;
+        String where = "";
+        final List<String> include = new ArrayList<>();
+
+        @Override public IndexOptions name(String n) { this.name = n; return this; }
+        @Override public IndexOptions on(String... p) { keys.addAll(Arrays.asList(p)); return this; }
+        @Override public IndexOptions unique(boolean b) { this.unique = b; return this; }
+        @Override public IndexOptions where(String w) { this.where = w; return this; }
+        @Override public IndexOptions include(String... p) { include.addAll(Arrays.asList(p)); return this; }
+
+        @Override
+        public IndexOptions expression(String sql) {
+            if (sql.indexOf('(') < 0) sql = "(" + sql + ")";  // keys with a parenthesis are expressions
+            keys.add(sql);
+            return this;
+        }
+    }
+
     public static final class EntityBuilder<T> {
         private final MappingRegistry reg;
         private final Class<T> type;
@@ -74,6 +109,7 @@ public final class ModelBuilder {
         private final LinkedHashMap<String, String> propToColumn = new LinkedHashMap<>();
         private final LinkedHashMap<String, ColumnMeta> columnMeta = new LinkedHashMap<>();
         private final java.util.Set<String> ignored = new java.util.LinkedHashSet<>();
+        private final List<IndexBuilder> indexes = new ArrayList<>();
 
         EntityBuilder(MappingRegistry reg, Class<T> type) {
             this.reg = reg;
@@ -95,12 +131,21 @@ public final class ModelBuilder {
         }
 
         public EntityBuilder<T> hasId(String property, String column, boolean autoGenerated) {
+            return hasId(property, column, autoGenerated, null);
+        }
+
+        /** Primary key assigned on the client by {@code generator} before each insert. */
+        public EntityBuilder<T> hasId(String property, String column, KeyGenerator generator) {
+            return hasId(property, column, false, Objects.requireNonNull(generator, "generator"));
+        }
+
+        private EntityBuilder<T> hasId(String property, String column, boolean autoGenerated, KeyGenerator generator) {
             if (autoGenerated && !this.keys.isEmpty()) {
                 throw new IllegalArgumentException("auto=true not supported when multiple key columns are declared for type: " + this.type.getName());
             }
 
             if (property != null) {
-                this.keys.put(property, new PrimaryKey(property, column, autoGenerated));
+                this.keys.put(property, new PrimaryKey(property, column, autoGenerated, generator));
                 propToColumn.put(property, column);
                 // keep id non-nullable by default
                 columnMeta.put(column, new ColumnBuilder(property)
@@ -142,6 +187,20 @@ public final class ModelBuilder {
             return this;
         }
 
+        /** Secondary index on the given properties, created with the table. */
+        public EntityBuilder<T> hasIndex(String... properties) {
+            return hasIndex(ix -> ix.on(properties));
+        }
+
+        /** Full index specification (unique, partial, covering, expression keys). */
+        public EntityBuilder<T> hasIndex(Consumer<IndexOptions> config) {
+            IndexBuilder ib = new IndexBuilder();
+            config.accept(ib);
+            if (ib.keys.isEmpty()) throw new IllegalArgumentException("An index needs at least one column or expression on type: " + type.getName());
+            indexes.add(ib);
+            return this;
+        }
+
         /** Exclude a property (equivalent of @NotMapped). */
         public EntityBuilder<T> ignore(String property) {
             ignored.add(property);
@@ -162,7 +221,12 @@ public final class ModelBuilder {
 
             for (String p : ignored) { propToColumn.remove(p); columnMeta.remove(p); }
 
-            reg.register(new EntityMapping<>(type, table, keys, propToColumn, columnMeta));
+            List<IndexMeta> ix = new ArrayList<>(indexes.size());
+            for (IndexBuilder ib : indexes) {
+                ix.add(IndexMeta.resolve(table, ib.name, ib.keys, ib.unique, ib.where, ib.include, propToColumn));
+            }
+
+            reg.register(new EntityMapping<>(type, table, keys, propToColumn, columnMeta, ix));
             return new ModelBuilder(reg);
         }
     }
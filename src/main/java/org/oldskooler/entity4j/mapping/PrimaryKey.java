@@ -1,16 +1,27 @@
 package org.oldskooler.entity4j.mapping;
 
+import org.oldskooler.entity4j.keys.KeyGenerator;
+
 import java.lang.reflect.Field;
 
 public class PrimaryKey {
     public final String property;                // may be null
     public final String column;                  // may be null
     public final boolean auto;
+    public final KeyGenerator generator;         // client-side generator, or null
 
     public PrimaryKey(String property, String column, boolean auto) {
+        this(property, column, auto, null);
+    }
+
+    public PrimaryKey(String property, String column, boolean auto, KeyGenerator generator) {
+        if (auto && generator != null) {
+            throw new IllegalArgumentException("Key '" + property + "' cannot be both database-generated and use a KeyGenerator");
+        }
         this.property = property;
         this.column = column;
         this.auto = auto;
+        this.generator = generator;
     }
 
     public String property() {
@@ -25,4 +36,8 @@ public class PrimaryKey {
     public boolean auto() {
         return auto;
     }
+
+    public KeyGenerator generator() {
+        return generator;
+    }
 }
\ No newline at end of file
@@ -3,7 +3,10 @@ package org.oldskooler.entity4j.mapping;
 import org.oldskooler.entity4j.annotations.Column;
 import org.oldskooler.entity4j.annotations.Entity;
 import org.oldskooler.entity4j.annotations.Id;
+import org.oldskooler.entity4j.annotations.Index;
 import org.oldskooler.entity4j.annotations.NotMapped;
+import org.oldskooler.entity4j.keys.KeyGenerator;
+import org.oldskooler.entity4j.keys.KeyGenerators;
 import org.oldskooler.entity4j.util.Names;
 import org.oldskooler.entity4j.util.ReflectionUtils;
 
@@ -30,10 +33,23 @@ public final class TableMeta<T> {
      */
     public final Map<String, ColumnMeta> columns;
 
+    /**
+     * Declared secondary indexes (from {@code @Index} or {@code hasIndex}), created with the table.
+     */
+    public final List<IndexMeta> indexes;
+
     /**
      * Preferred factory: registry-aware, then annotations, then convention.
+     * Results are cached on a frozen registry.
      */
     public static <T> TableMeta<T> of(Class<T> type, MappingRegistry registry) {
+        if (registry.isFrozen()) {
+            return registry.cachedMeta(type, t -> build(t, registry));
+        }
+        return build(type, registry);
+    }
+
+    private static <T> TableMeta<T> build(Class<T> type, MappingRegistry registry) {
         Optional<EntityMapping<T>> mapped = registry.find(type);
 
         if (mapped.isPresent()) {
@@ -54,7 +70,8 @@ public final class TableMeta<T> {
                 em.keys,
                 new LinkedHashMap<>(em.propToColumn),
                 em.propToField,
-                em.columns
+                em.columns,
+                em.indexes
         );
     }
 
@@ -115,22 +132,51 @@ public final class TableMeta<T> {
 
             // If @Id present -> mark PK and force non-nullable
             if (idAnn != null) {
-                boolean auto = idAnn.auto();
+                KeyGenerator generator = KeyGenerators.shared(idAnn.generator());
+                boolean auto = idAnn.auto() && generator == null;
 
                 if (auto && !keys.isEmpty()) {
                     throw new IllegalArgumentException("auto=true not supported when multiple ID columns are declared for type: " + type.getName());
                 }
 
-                keys.put(prop, new PrimaryKey(prop, col, auto));
+                keys.put(prop, new PrimaryKey(prop, col, auto, generator));
                 nullable = false;
             }
 
             p2f.put(prop, f);
             p2c.put(prop, col);
-            cols.put(col, new ColumnMeta(prop, col, nullable, typeOverride, defaultValue, precision, scale, length, ignored));
+            cols.put(col, new ColumnMeta(prop, col, nullable, defaultValue, typeOverride, precision, scale, length, ignored));
         }
 
-        return new TableMeta<>(type, tableName, keys, p2c, p2f, cols);
+        return new TableMeta<>(type, tableName, keys, p2c, p2f, cols, indexes(type, tableName, p2c));
+    }
+
+    /**
+     * Collect {@code @Index} declarations: class-level ones name their columns, field-level ones
+     * default to the annotated field.
+     */
+    private static List<IndexMeta> indexes(Class<?> type, String table, Map<String, String> p2c) {
+        List<IndexMeta> out = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Index idx : c.getAnnotationsByType(Index.class)) {
+                if (idx.columns().length == 0) {
+                    throw new IllegalArgumentException("@Index on type " + c.getName() + " must declare columns");
+                }
+                out.add(toMeta(idx, Arrays.asList(idx.columns()), table, p2c));
+            }
+        }
+        for (Field f : ReflectionUtils.getInstanceFields(type)) {
+            for (Index idx : f.getAnnotationsByType(Index.class)) {
+                List<String> keys = idx.columns().length == 0
+                        ? Collections.singletonList(f.getName()) : Arrays.asList(idx.columns());
+                out.add(toMeta(idx, keys, table, p2c));
+            }
+        }
+        return out;
+    }
+
+    private static IndexMeta toMeta(Index idx, List<String> keys, String table, Map<String, String> p2c) {
+        return IndexMeta.resolve(table, idx.name(), keys, idx.unique(), idx.where(), Arrays.asList(idx.include()), p2c);
     }
 
     /**
@@ -171,6 +217,16 @@ public final class TableMeta<T> {
                      Map<String, String> propToColumn,
                      Map<String, Field> propToField,
                      Map<String, ColumnMeta> columns) {
+        this(type, table, keys, propToColumn, propToField, columns, Collections.emptyList());
+    }
+
+    public TableMeta(Class<T> type,
+                     String table,
+                     Map<String, PrimaryKey> keys,
+                     Map<String, String> propToColumn,
+                     Map<String, Field> propToField,
+                     Map<String, ColumnMeta> columns,
+                     List<IndexMeta> indexes) {
         this.type = Objects.requireNonNull(type, "type");
         this.table = Objects.requireNonNull(table, "table");
         this.keys = Collections.unmodifiableMap(new LinkedHashMap<>(keys));
@@ -178,5 +234,7 @@ public final class TableMeta<T> {
         this.propToField = Collections.unmodifiableMap(new LinkedHashMap<>(propToField));
         this.columns = (columns == null) ? Collections.unmodifiableMap(new HashMap<>())
                 : Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+        this.indexes = (indexes == null) ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(indexes));
     }
 }
@@ -1,6 +1,11 @@
 package org.oldskooler.entity4j.operations;
 
 import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.diagnostics.FlightRecorderEvents;
+import org.oldskooler.entity4j.dialect.MultiRowKeyStrategy;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.keys.KeyGenerators;
 import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
 import org.oldskooler.entity4j.util.BatchSqlUtils;
@@ -31,6 +36,11 @@ public class DbBatchOperations {
         Class<T> t = (Class<T>) entities.iterator().next().getClass();
         TableMeta<T> m = TableMeta.of(t, context.mappingRegistry());
 
+        // Client-side keys are assigned up front, so chunks need no generated-key round trip
+        if (KeyGenerators.hasGenerators(m)) {
+            for (T e : entities) KeyGenerators.assign(context, m, e);
+        }
+
         try {
             // Column order (excluding auto PK props)
             Set<String> autoPkProps = PrimaryKeyUtils.getAutoPkProps(m);
@@ -45,71 +55,165 @@ public class DbBatchOperations {
             if (paramsPerRow == 0) throw new IllegalStateException("No columns to insert");
             int maxRowsPerStmt = Math.max(1, MAX_PARAMS_PER_STATEMENT / paramsPerRow);
 
+            // Generated keys are only read back for a single auto PK; how depends on the dialect and server
+            Optional<Map.Entry<String, PrimaryKey>> singleAuto = PrimaryKeyUtils.getSingleAutoPk(m);
+            Field idField = singleAuto.isPresent() ? m.propToField.get(singleAuto.get().getValue().property) : null;
+            MultiRowKeyStrategy keys = idField != null
+                    ? context.dialect().multiRowKeyStrategy(context.conn())
+                    : MultiRowKeyStrategy.generatedKeys();
+            if (keys.getKind() == MultiRowKeyStrategy.Kind.OUTPUT_INSERTED && !context.dialect().supportsOutputInsert()) {
+                keys = MultiRowKeyStrategy.perRow();
+            }
+
             int total = 0;
+
+            int chunkIndex = 0;
             Iterator<T> it = entities.iterator();
             while (it.hasNext()) {
+                Object jfr = FlightRecorderEvents.beginBatchChunk();
                 List<T> chunk = new ArrayList<>(Math.min(maxRowsPerStmt, entities.size()));
                 for (int i = 0; i < maxRowsPerStmt && it.hasNext(); i++) {
                     chunk.add(it.next());
                 }
 
-                // Build single SQL: INSERT INTO t (c1,c2) VALUES (?,?),(?,?)...
-                String sql = BatchSqlUtils.buildMultiRowInsertSql(context.dialect(), m, cols, chunk.size());
+                // Build single SQL: INSERT INTO t (c1,c2) VALUES (?,?),(?,?)... plus whatever returns the keys
+                int rows = keys.getKind() == MultiRowKeyStrategy.Kind.PER_ROW ? 1 : chunk.size();
+                String sql = BatchSqlUtils.buildMultiRowInsertSql(context.dialect(), m, cols, rows, keys);
+
+                int n;
+                switch (keys.getKind()) {
+                    case PER_ROW:
+                        n = insertPerRow(m, cols, chunk, idField, sql);
+                        break;
+                    case RETURNING:
+                    case OUTPUT_INSERTED:
+                        n = insertChunkReturning(m, cols, chunk, idField, sql, keys);
+                        break;
+                    default:
+                        n = insertChunkGeneratedKeys(m, cols, chunk, idField, sql, keys);
+                        break;
+                }
+                total += n;
+                FlightRecorderEvents.endBatchChunk(jfr, "insertAll", m.table, sql, chunkIndex++, chunk.size(), n);
+            }
+            return total;
+        } catch (SQLException ex) {
+            throw new RuntimeException("insertAll failed", ex);
+        }
+    }
 
-                // If dialect supports RETURNING and we have exactly one auto PK, keep it
-                Optional<Map.Entry<String, PrimaryKey>> singleAuto = PrimaryKeyUtils.getSingleAutoPk(m);
-                boolean wantsReturningIds = context.dialect().useInsertReturning() && singleAuto.isPresent();
+    /** Runs a chunk whose keys come back as the statement's result: RETURNING, or OUTPUT with row positions. */
+    private <T> int insertChunkReturning(TableMeta<T> m, List<String> cols, List<T> chunk, Field idField, String sql,
+                                         MultiRowKeyStrategy keys) throws SQLException {
+        List<Object> params = new ArrayList<>(cols.size() * chunk.size());
+        for (T e : chunk) {
+            BatchSqlUtils.collectInsertParams(e, m, cols, params);
+        }
+        StatementTimer timer = context.timeStatement(StatementKind.INSERT, sql, params);
+        try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
+            JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
+            try (ResultSet rs = ps.executeQuery()) {
+                timer.executed();
+                int n = 0;
+                if (keys.getKind() == MultiRowKeyStrategy.Kind.OUTPUT_INSERTED) {
+                    while (timer.next(rs)) {
+                        ReflectionUtils.setField(chunk.get(rs.getInt(1)), idField, rs.getObject(2));
+                        n++;
+                    }
+                } else {
+                    List<Object> ids = new ArrayList<>(chunk.size());
+                    while (timer.next(rs)) ids.add(rs.getObject(1));
+                    // RETURNING rows come in no promised order, but keys generated by one statement
+                    // increase in row order, so numeric keys are matched up after sorting
+                    if (allNumbers(ids)) ids.sort(Comparator.comparingLong(id -> ((Number) id).longValue()));
+                    for (int i = 0; i < ids.size() && i < chunk.size(); i++) {
+                        ReflectionUtils.setField(chunk.get(i), idField, ids.get(i));
+                    }
+                    n = ids.size();
+                }
+                timer.finish(n, chunk.size());
+                return n;
+            }
+        } catch (SQLException ex) {
+            timer.fail(ex);
+            throw ex;
+        }
+    }
 
-                if (wantsReturningIds) {
-                    Field idField = m.propToField.get(singleAuto.get().getValue().property);
-                    try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
-                        List<Object> params = new ArrayList<>(paramsPerRow * chunk.size());
-                        for (T e : chunk) {
-                            BatchSqlUtils.collectInsertParams(e, m, cols, params);
-                        }
-                        JdbcParamBinder.bindParams(ps, params);
-                        try (ResultSet rs = ps.executeQuery()) {
-                            int n = 0;
-                            for (T e : chunk) {
-                                if (!rs.next()) break;
-                                Object id = rs.getObject(1);
-                                ReflectionUtils.setField(e, idField, id);
-                                n++;
+    /** Runs a chunk with executeUpdate, reading keys (if any) from getGeneratedKeys. */
+    private <T> int insertChunkGeneratedKeys(TableMeta<T> m, List<String> cols, List<T> chunk, Field idField, String sql,
+                                             MultiRowKeyStrategy keys) throws SQLException {
+        List<Object> params = new ArrayList<>(cols.size() * chunk.size());
+        for (T e : chunk) {
+            BatchSqlUtils.collectInsertParams(e, m, cols, params);
+        }
+        StatementTimer timer = context.timeStatement(StatementKind.INSERT, sql, params);
+        try (PreparedStatement ps = context.conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
+            int n = ps.executeUpdate();
+            timer.executed();
+
+            if (idField != null) {
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (keys.getKind() == MultiRowKeyStrategy.Kind.CONSECUTIVE_RANGE) {
+                        // The first key is LAST_INSERT_ID(); the server reserved the rest as one run
+                        if (timer.next(rs)) {
+                            long first = rs.getLong(1);
+                            for (int i = 0; i < chunk.size(); i++) {
+                                ReflectionUtils.setField(chunk.get(i), idField, first + i * keys.getStep());
                             }
-                            total += n;
                         }
-                    }
-                } else {
-                    // Use generated keys (only assign back if exactly one auto PK)
-                    try (PreparedStatement ps = context.conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                        List<Object> params = new ArrayList<>(paramsPerRow * chunk.size());
+                    } else {
                         for (T e : chunk) {
-                            BatchSqlUtils.collectInsertParams(e, m, cols, params);
-                        }
-                        JdbcParamBinder.bindParams(ps, params);
-                        int n = ps.executeUpdate();
-                        total += n;
-
-                        Optional<Map.Entry<String, PrimaryKey>> singleAutoGk = PrimaryKeyUtils.getSingleAutoPk(m);
-                        if (singleAutoGk.isPresent()) {
-                            Field idField = m.propToField.get(singleAutoGk.get().getValue().property);
-                            try (ResultSet rs = ps.getGeneratedKeys()) {
-                                for (T e : chunk) {
-                                    if (!rs.next()) break;
-                                    Object id = rs.getObject(1);
-                                    ReflectionUtils.setField(e, idField, id);
-                                }
-                            }
+                            if (!timer.next(rs)) break;
+                            ReflectionUtils.setField(e, idField, rs.getObject(1));
                         }
                     }
                 }
             }
-            return total;
+            timer.finish(n, chunk.size());
+            return n;
         } catch (SQLException ex) {
-            throw new RuntimeException("insertAll failed", ex);
+            timer.fail(ex);
+            throw ex;
         }
     }
 
+    /** Inserts a chunk one row at a time on one statement, reading each row's key. */
+    private <T> int insertPerRow(TableMeta<T> m, List<String> cols, List<T> chunk, Field idField, String sql) throws SQLException {
+        int n = 0;
+        try (PreparedStatement ps = context.conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (T e : chunk) {
+                List<Object> params = new ArrayList<>(cols.size());
+                BatchSqlUtils.collectInsertParams(e, m, cols, params);
+                StatementTimer timer = context.timeStatement(StatementKind.INSERT, sql, params);
+                try {
+                    ps.clearParameters();
+                    JdbcParamBinder.bindParams(ps, params);
+                    timer.prepared();
+                    int count = ps.executeUpdate();
+                    timer.executed();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (timer.next(rs)) ReflectionUtils.setField(e, idField, rs.getObject(1));
+                    }
+                    n += count;
+                    timer.finish(count);
+                } catch (SQLException ex) {
+                    timer.fail(ex);
+                    throw ex;
+                }
+            }
+        }
+        return n;
+    }
+
+    private static boolean allNumbers(List<Object> values) {
+        for (Object v : values) if (!(v instanceof Number)) return false;
+        return true;
+    }
+
     public <T> int updateAll(Collection<T> entities) {
         if (entities == null || entities.isEmpty()) return 0;
 
@@ -142,8 +246,12 @@ public class DbBatchOperations {
             int maxRowsPerStmt = Math.max(1, MAX_PARAMS_PER_STATEMENT / paramsPerRow);
 
             int total = 0;
+
+            int chunkIndex = 0;
             Iterator<T> it = entities.iterator();
             while (it.hasNext()) {
+                Object jfr = FlightRecorderEvents.beginBatchChunk();
+                StatementTimer timer = context.timeStatement(StatementKind.UPDATE, sql, null);
                 try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                     int batched = 0;
                     while (batched < maxRowsPerStmt && it.hasNext()) {
@@ -166,10 +274,19 @@ public class DbBatchOperations {
 
                         JdbcParamBinder.bindParams(ps, params);
                         ps.addBatch();
+                        timer.parameters(params);
                         batched++;
                     }
+                    timer.prepared();
                     int[] counts = ps.executeBatch();
-                    total += BatchSqlUtils.sum(counts);
+                    timer.executed();
+                    int n = BatchSqlUtils.sum(counts);
+                    total += n;
+                    timer.finish(n, batched);
+                    FlightRecorderEvents.endBatchChunk(jfr, "updateAll", m.table, sql, chunkIndex++, batched, n);
+                } catch (SQLException ex) {
+                    timer.fail(ex);
+                    throw ex;
                 }
             }
             return total;
@@ -210,9 +327,11 @@ public class DbBatchOperations {
 
         int maxIdsPerStmt = Math.max(1, MAX_PARAMS_PER_STATEMENT);
         int total = 0;
+        int chunkIndex = 0;
         Iterator<T> it = entities.iterator();
 
         while (it.hasNext()) {
+            Object jfr = FlightRecorderEvents.beginBatchChunk();
             List<Object> ids = new ArrayList<>(Math.min(maxIdsPerStmt, entities.size()));
             while (ids.size() < maxIdsPerStmt && it.hasNext()) {
                 T e = it.next();
@@ -226,11 +345,20 @@ public class DbBatchOperations {
             String placeholders = "(" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
             String sql = baseSql + placeholders;
 
+            StatementTimer timer = context.timeStatement(StatementKind.DELETE, sql, ids);
             try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                 for (int i = 0; i < ids.size(); i++) {
                     ps.setObject(i + 1, ids.get(i));
                 }
-                total += ps.executeUpdate();
+                timer.prepared();
+                int n = ps.executeUpdate();
+                timer.executed();
+                total += n;
+                timer.finish(n, ids.size());
+                FlightRecorderEvents.endBatchChunk(jfr, "deleteAll", m.table, sql, chunkIndex++, ids.size(), n);
+            } catch (SQLException ex) {
+                timer.fail(ex);
+                throw ex;
             }
         }
         return total;
@@ -245,29 +373,41 @@ public class DbBatchOperations {
         String base = "DELETE FROM " + context.dialect().q(m.table) + " WHERE ";
 
         int total = 0;
+
+        int chunkIndex = 0;
         Iterator<T> it = entities.iterator();
 
         while (it.hasNext()) {
+            Object jfr = FlightRecorderEvents.beginBatchChunk();
             List<T> chunk = new ArrayList<>(Math.min(maxGroupsPerStmt, entities.size()));
             for (int i = 0; i < maxGroupsPerStmt && it.hasNext(); i++) {
                 chunk.add(it.next());
             }
 
             String sql = base + String.join(" OR ", Collections.nCopies(chunk.size(), group));
-            try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
-                List<Object> params = new ArrayList<>(chunk.size() * pkArity);
-                for (T e : chunk) {
-                    Map<String, Object> vals = ReflectionUtils.extractValues(e, m);
-                    for (String prop : pkPropsList) {
-                        Object v = vals.get(prop);
-                        if (v == null) {
-                            throw new IllegalArgumentException("Entity primary key '" + prop + "' is null");
-                        }
-                        params.add(v);
+            List<Object> params = new ArrayList<>(chunk.size() * pkArity);
+            for (T e : chunk) {
+                Map<String, Object> vals = ReflectionUtils.extractValues(e, m);
+                for (String prop : pkPropsList) {
+                    Object v = vals.get(prop);
+                    if (v == null) {
+                        throw new IllegalArgumentException("Entity primary key '" + prop + "' is null");
                     }
+                    params.add(v);
                 }
+            }
+            StatementTimer timer = context.timeStatement(StatementKind.DELETE, sql, params);
+            try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                 JdbcParamBinder.bindParams(ps, params);
-                total += ps.executeUpdate();
+                timer.prepared();
+                int n = ps.executeUpdate();
+                timer.executed();
+                total += n;
+                timer.finish(n, chunk.size());
+                FlightRecorderEvents.endBatchChunk(jfr, "deleteAll", m.table, sql, chunkIndex++, chunk.size(), n);
+            } catch (SQLException ex) {
+                timer.fail(ex);
+                throw ex;
             }
         }
         return total;
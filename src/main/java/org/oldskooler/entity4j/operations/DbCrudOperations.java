@@ -1,6 +1,9 @@
 package org.oldskooler.entity4j.operations;
 
 import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.keys.KeyGenerators;
 import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
 import org.oldskooler.entity4j.util.JdbcParamBinder;
@@ -27,7 +30,9 @@ public class DbCrudOperations {
         Class<T> type = (Class<T>) entity.getClass();
         TableMeta<T> m = TableMeta.of(type, context.mappingRegistry());
 
+        StatementTimer timer = null;
         try {
+            KeyGenerators.assign(context, m, entity);
             Map<String, Object> values = ReflectionUtils.extractValues(entity, m);
 
             // Build insert column list excluding auto PK properties
@@ -52,6 +57,7 @@ public class DbCrudOperations {
             }
 
             String sql = context.dialect().buildInsertSql(m, cols);
+            timer = context.timeStatement(StatementKind.INSERT, sql, params);
 
             // If the dialect uses "RETURNING id" and we have exactly one auto PK
             Optional<Map.Entry<String, PrimaryKey>> singleAuto = PrimaryKeyUtils.getSingleAutoPk(m);
@@ -59,33 +65,41 @@ public class DbCrudOperations {
                 Field idField = m.propToField.get(singleAuto.get().getValue().property);
                 try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                     JdbcParamBinder.bindParams(ps, params);
+                    timer.prepared();
                     try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
+                        timer.executed();
+                        int n = 0;
+                        if (timer.next(rs)) {
                             Object id = rs.getObject(1);
                             ReflectionUtils.setField(entity, idField, id);
-                            return 1;
+                            n = 1;
                         }
-                        return 0;
+                        timer.finish(n);
+                        return n;
                     }
                 }
             }
 
             try (PreparedStatement ps = context.conn().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 JdbcParamBinder.bindParams(ps, params);
+                timer.prepared();
                 int n = ps.executeUpdate();
+                timer.executed();
                 Optional<Map.Entry<String, PrimaryKey>> singleAutoGk = PrimaryKeyUtils.getSingleAutoPk(m);
                 if (singleAutoGk.isPresent()) {
                     Field idField = m.propToField.get(singleAutoGk.get().getValue().property);
                     try (ResultSet rs = ps.getGeneratedKeys()) {
-                        if (rs.next()) {
+                        if (timer.next(rs)) {
                             Object id = rs.getObject(1);
                             ReflectionUtils.setField(entity, idField, id);
                         }
                     }
                 }
+                timer.finish(n);
                 return n;
             }
         } catch (SQLException e) {
+            if (timer != null) timer.fail(e);
             throw new RuntimeException("insert failed", e);
         }
     }
@@ -136,6 +150,7 @@ public class DbCrudOperations {
             throw new IllegalStateException("@Id required for update");
         }
 
+        StatementTimer timer = null;
         try {
             Map<String, Object> values = ReflectionUtils.extractValues(entity, m);
 
@@ -174,11 +189,17 @@ public class DbCrudOperations {
             String sql = "UPDATE " + context.dialect().q(m.table) + " SET " + String.join(", ", sets)
                     + " WHERE " + String.join(" AND ", where);
 
+            timer = context.timeStatement(StatementKind.UPDATE, sql, params);
             try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                 JdbcParamBinder.bindParams(ps, params);
-                return ps.executeUpdate();
+                timer.prepared();
+                int n = ps.executeUpdate();
+                timer.executed();
+                timer.finish(n);
+                return n;
             }
         } catch (SQLException e) {
+            if (timer != null) timer.fail(e);
             throw new RuntimeException("update failed", e);
         }
     }
@@ -192,6 +213,7 @@ public class DbCrudOperations {
             throw new IllegalStateException("@Id required for delete");
         }
 
+        StatementTimer timer = null;
         try {
             Map<String, Object> values = ReflectionUtils.extractValues(entity, m);
 
@@ -208,11 +230,17 @@ public class DbCrudOperations {
             }
 
             String sql = "DELETE FROM " + context.dialect().q(m.table) + " WHERE " + String.join(" AND ", where);
+            timer = context.timeStatement(StatementKind.DELETE, sql, params);
             try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
                 JdbcParamBinder.bindParams(ps, params);
-                return ps.executeUpdate();
+                timer.prepared();
+                int n = ps.executeUpdate();
+                timer.executed();
+                timer.finish(n);
+                return n;
             }
         } catch (SQLException e) {
+            if (timer != null) timer.fail(e);
             throw new RuntimeException("delete failed", e);
         }
     }
@@ -1,13 +1,24 @@
 package org.oldskooler.entity4j.operations;
 
 import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
+import org.oldskooler.entity4j.mapping.IndexMeta;
 import org.oldskooler.entity4j.mapping.TableMeta;
 
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
- * Handles DDL (Data Definition Language) operations like CREATE/DROP TABLE
+ * Handles DDL (Data Definition Language) operations like CREATE/DROP TABLE and the
+ * indexes declared on an entity
  */
 public class DbDdlOperations {
     private final IDbContext context;
@@ -23,6 +34,17 @@ public class DbDdlOperations {
         return context.dialect().createTableDdl(m, useIfNotExists);
     }
 
+    public <T> List<String> createIndexesSql(Class<T> type, boolean ifNotExists) {
+        context.ensureModelBuiltInternal();
+        TableMeta<T> m = TableMeta.of(type, context.mappingRegistry());
+        List<String> out = new ArrayList<>(m.indexes.size());
+        for (IndexMeta idx : m.indexes) {
+            String sql = context.dialect().createIndexDdl(m.table, idx, ifNotExists);
+            if (sql != null) out.add(sql);
+        }
+        return out;
+    }
+
     public <T> String dropTableSql(Class<T> type, boolean ifExists) {
         context.ensureModelBuiltInternal();
         TableMeta<T> m = TableMeta.of(type, context.mappingRegistry());
@@ -32,13 +54,69 @@ public class DbDdlOperations {
     public <T> int createTable(Class<T> type) {
         context.ensureModelBuiltInternal();
         String sql = createTableSql(type, true);
+        StatementTimer timer = context.timeStatement(StatementKind.DDL, sql, null);
         try (Statement st = context.conn().createStatement()) {
-            return st.executeUpdate(sql);
+            timer.prepared();
+            int n = st.executeUpdate(sql);
+            timer.executed();
+            timer.finish(n);
+            return n + createIndexes(TableMeta.of(type, context.mappingRegistry()));
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("createTable failed for " + type.getName() + ": " + sql, e);
         }
     }
 
+    /**
+     * Creates the indexes declared on the entity. Where the dialect has no CREATE INDEX IF NOT EXISTS,
+     * indexes whose name the database already reports are skipped.
+     */
+    private <T> int createIndexes(TableMeta<T> m) {
+        if (m.indexes.isEmpty()) return 0;
+        boolean ifNotExists = context.dialect().supportsCreateIndexIfNotExists();
+        Set<String> existing = ifNotExists ? new HashSet<>() : existingIndexNames(m.table);
+        int total = 0;
+        for (IndexMeta idx : m.indexes) {
+            if (existing.contains(idx.name.toLowerCase(Locale.ROOT))) continue;
+            String sql = context.dialect().createIndexDdl(m.table, idx, true);
+            if (sql == null) {
+                System.err.println("Warning: index " + idx.name + " on " + m.table + " is not supported by this dialect and was not created");
+                continue;
+            }
+            StatementTimer timer = context.timeStatement(StatementKind.DDL, sql, null);
+            try (Statement st = context.conn().createStatement()) {
+                timer.prepared();
+                int n = st.executeUpdate(sql);
+                timer.executed();
+                timer.finish(n);
+                total += n;
+            } catch (SQLException e) {
+                timer.fail(e);
+                throw new RuntimeException("createIndex failed for " + m.type.getName() + ": " + sql, e);
+            }
+        }
+        return total;
+    }
+
+    private Set<String> existingIndexNames(String table) {
+        Set<String> out = new HashSet<>();
+        try {
+            DatabaseMetaData md = context.conn().getMetaData();
+            for (String name : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+                try (ResultSet rs = md.getIndexInfo(null, null, name, false, true)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        if (index != null) out.add(index.toLowerCase(Locale.ROOT));
+                    }
+                }
+                if (!out.isEmpty()) break;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read indexes of table: " + table, e);
+        }
+        return out;
+    }
+
     public int createTables(Class<?>... types) {
         int total = 0;
         for (Class<?> t : types) {
@@ -50,9 +128,15 @@ public class DbDdlOperations {
     public <T> int dropTableIfExists(Class<T> type) {
         context.ensureModelBuiltInternal();
         String sql = dropTableSql(type, true);
+        StatementTimer timer = context.timeStatement(StatementKind.DDL, sql, null);
         try (Statement st = context.conn().createStatement()) {
-            return st.executeUpdate(sql);
+            timer.prepared();
+            int n = st.executeUpdate(sql);
+            timer.executed();
+            timer.finish(n);
+            return n;
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("dropTableIfExists failed for " + type.getName() + ": " + sql, e);
         }
     }
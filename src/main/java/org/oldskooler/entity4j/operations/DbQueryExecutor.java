@@ -1,9 +1,10 @@
 package org.oldskooler.entity4j.operations;
 
 import org.oldskooler.entity4j.IDbContext;
+import org.oldskooler.entity4j.diagnostics.StatementKind;
+import org.oldskooler.entity4j.diagnostics.StatementTimer;
 import org.oldskooler.entity4j.mapping.TableMeta;
 import org.oldskooler.entity4j.util.JdbcParamBinder;
-import org.oldskooler.entity4j.util.RowMapper;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -22,24 +23,58 @@ public class DbQueryExecutor {
     }
 
     public <T> List<T> executeQuery(TableMeta<T> m, String sql, List<Object> params) {
+        StatementTimer timer = context.timeStatement(StatementKind.QUERY, sql, params);
         try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
             try (ResultSet rs = ps.executeQuery()) {
-                return RowMapper.mapAll(rs, m);
+                timer.executed();
+                List<T> out = timer.mapAll(rs, m);
+                timer.finish(out.size());
+                return out;
             }
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("query failed", e);
         }
     }
 
     public List<Map<String, Object>> executeQueryMap(String sql, List<Object> params) {
+        StatementTimer timer = context.timeStatement(StatementKind.QUERY, sql, params);
         try (PreparedStatement ps = context.conn().prepareStatement(sql)) {
             JdbcParamBinder.bindParams(ps, params);
+            timer.prepared();
             try (ResultSet rs = ps.executeQuery()) {
-                return RowMapper.toMapList(rs);
+                timer.executed();
+                List<Map<String, Object>> out = timer.toMapList(rs);
+                timer.finish(out.size());
+                return out;
             }
         } catch (SQLException e) {
+            timer.fail(e);
             throw new RuntimeException("query failed", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Prepares a forward-only, read-only statement for reading rows incrementally.
+     * The caller executes the statement and must close it.
+     *
+     * @param sql       the SQL query
+     * @param params    the parameters for the query
+     * @param fetchSize the initial fetch size hint, or 0 for the driver default
+     * @return the bound statement
+     * @throws SQLException if the statement cannot be prepared or bound
+     */
+    public PreparedStatement prepareCursor(String sql, List<Object> params, int fetchSize) throws SQLException {
+        PreparedStatement ps = context.conn().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (fetchSize > 0) ps.setFetchSize(fetchSize);
+            JdbcParamBinder.bindParams(ps, params);
+            return ps;
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+package org.oldskooler.entity4j.pool;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool.
+ * <p>
+ * At most {@code maxSize} connections are leased at once; further borrowers wait up to the
+ * acquire timeout. Connections idle for longer than the validation interval are checked with
+ * {@link Connection#isValid(int)} before being handed out, idle connections beyond
+ * {@code minIdle} are closed after the idle timeout, and every connection is retired once it
+ * reaches its maximum lifetime.
+ * </p>
+ * <p>
+ * Leased connections are proxies: {@link Connection#close()} returns the physical connection
+ * to the pool (rolling back an unfinished transaction and restoring auto-commit, read-only
+ * and isolation settings) and makes the lease unusable.
+ * </p>
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /** Opens physical connections. */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionSource source;
+    private final int maxSize;
+    private final int minIdle;
+    private final Duration acquireTimeout;
+    private final Duration validationTimeout;
+    private final Duration validationInterval;
+    private final Duration idleTimeout;
+    private final Duration maxLifetime;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Entry> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Entry> all = ConcurrentHashMap.newKeySet();
+    /** Physical connections open or being opened; reserved with {@link #reserve()} before each create */
+    private final AtomicInteger size = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile boolean closed;
+    private volatile int loginTimeout;
+    private volatile PrintWriter logWriter;
+
+    private ConnectionPool(Builder b) {
+        this.source = b.source;
+        this.maxSize = b.maxSize;
+        this.minIdle = Math.min(b.minIdle, b.maxSize);
+        this.acquireTimeout = b.acquireTimeout;
+        this.validationTimeout = b.validationTimeout;
+        this.validationInterval = b.validationInterval;
+        this.idleTimeout = b.idleTimeout;
+        this.maxLifetime = b.maxLifetime;
+        this.permits = new Semaphore(b.maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "entity4j-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = b.housekeepingPeriod.toMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a builder for a pool that opens connections from a data source.
+     *
+     * @param dataSource the data source for physical connections
+     * @return a new Builder instance
+     */
+    public static Builder builder(DataSource dataSource) {
+        Objects.requireNonNull(dataSource, "dataSource");
+        return new Builder(dataSource::getConnection);
+    }
+
+    /**
+     * Creates a builder for a pool that opens connections through {@link DriverManager}.
+     *
+     * @param url      the JDBC URL
+     * @param user     the user, or null
+     * @param password the password, or null
+     * @return a new Builder instance
+     */
+    public static Builder builder(String url, String user, String password) {
+        Objects.requireNonNull(url, "url");
+        return new Builder(() -> user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password));
+    }
+
+    /**
+     * Creates a builder for a pool that opens connections with a custom source.
+     *
+     * @param source opens physical connections
+     * @return a new Builder instance
+     */
+    public static Builder builder(ConnectionSource source) {
+        return new Builder(Objects.requireNonNull(source, "source"));
+    }
+
+    /**
+     * Leases a connection, waiting up to the acquire timeout for a free slot.
+     *
+     * @return a pooled connection; close it to return it
+     * @throws SQLTransientConnectionException if no connection became available in time
+     * @throws SQLException if the pool is closed or a new connection could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Timed out after " + acquireTimeout.toMillis()
+                    + "ms waiting for a pooled connection (active=" + active.get() + ", max=" + maxSize + ")");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Entry e = null;
+            while (e == null) {
+                Entry candidate = idle.pollFirst();
+                if (candidate != null) {
+                    if (!expired(candidate) && validate(candidate)) e = candidate;
+                    else destroy(candidate);
+                } else if (reserve()) {
+                    e = create();
+                } else {
+                    // Holding a permit, a full pool means a connection is idle in another
+                    // borrower's hands or being opened by the housekeeper; it shows up shortly
+                    if (System.nanoTime() - start >= acquireTimeout.toNanos()) {
+                        timeouts.increment();
+                        throw new SQLTransientConnectionException("Timed out after " + acquireTimeout.toMillis()
+                                + "ms waiting for a pooled connection (active=" + active.get() + ", max=" + maxSize + ")");
+                    }
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+
+            active.incrementAndGet();
+            borrows.increment();
+            return lease(e);
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Not supported; credentials are fixed when the pool is built.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool does not support per-call credentials");
+    }
+
+    /**
+     * @return a snapshot of the pool's current state and counters
+     */
+    public PoolMetrics metrics() {
+        return new PoolMetrics(maxSize, all.size(), active.get(), idle.size(), waiting.get(),
+                borrows.sum(), timeouts.sum(), created.sum(), destroyed.sum(),
+                waitNanos.sum(), maxWaitNanos.get());
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes idle connections and stops housekeeping. Leased connections are closed when
+     * they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        Entry e;
+        while ((e = idle.pollFirst()) != null) destroy(e);
+    }
+
+    /* -------------------------------
+       Internals
+       ------------------------------- */
+
+    /** @return true if there was room for one more connection, which the caller must now {@link #create()} */
+    private boolean reserve() {
+        int n;
+        while ((n = size.get()) < maxSize) {
+            if (size.compareAndSet(n, n + 1)) return true;
+        }
+        return false;
+    }
+
+    /** Opens a connection in a slot taken with {@link #reserve()}, freeing the slot if that fails. */
+    private Entry create() throws SQLException {
+        Connection raw = null;
+        try {
+            raw = source.open();
+            Entry e = new Entry(raw);
+            all.add(e);
+            created.increment();
+            return e;
+        } catch (SQLException | RuntimeException ex) {
+            size.decrementAndGet();
+            if (raw != null) {
+                try {
+                    raw.close();
+                } catch (SQLException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    private void destroy(Entry e) {
+        if (!all.remove(e)) return;
+        size.decrementAndGet();
+        destroyed.increment();
+        try {
+            e.raw.close();
+        } catch (SQLException ignored) {
+            // Already broken
+        }
+    }
+
+    private boolean expired(Entry e) {
+        return maxLifetime != null && System.nanoTime() - e.createdAt >= maxLifetime.toNanos();
+    }
+
+    private boolean validate(Entry e) {
+        if (System.nanoTime() - e.lastUsed < validationInterval.toNanos()) return true;
+        try {
+            long seconds = validationTimeout.getSeconds() + (validationTimeout.getNano() > 0 ? 1 : 0);
+            return e.raw.isValid((int) Math.min(Integer.MAX_VALUE, Math.max(1, seconds)));
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) break;
+        }
+    }
+
+    private Connection lease(Entry e) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Lease(e));
+    }
+
+    /** Called exactly once per lease, from {@link Lease#close()}. */
+    private void giveBack(Entry e, boolean dirty) {
+        try {
+            if (!closed && !e.broken && !expired(e)) {
+                reset(e, dirty);
+                e.lastUsed = System.nanoTime();
+                idle.offerFirst(e);
+            } else {
+                destroy(e);
+            }
+        } catch (SQLException ex) {
+            destroy(e);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private void reset(Entry e, boolean dirty) throws SQLException {
+        Connection c = e.raw;
+        if (!c.getAutoCommit()) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        if (dirty) {
+            if (c.isReadOnly() != e.readOnly) c.setReadOnly(e.readOnly);
+            if (c.getTransactionIsolation() != e.isolation) c.setTransactionIsolation(e.isolation);
+        }
+        c.clearWarnings();
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            for (Entry e : idle) {
+                boolean idleTooLong = idleTimeout != null && now - e.lastUsed >= idleTimeout.toNanos()
+                        && all.size() > minIdle;
+                if ((idleTooLong || expired(e)) && idle.remove(e)) destroy(e);
+            }
+            while (!closed && idle.size() < minIdle && reserve()) {
+                Entry e = create();
+                idle.offerLast(e);
+                // close() may have drained the idle list while the connection was opening
+                if (closed && idle.remove(e)) destroy(e);
+            }
+        } catch (Throwable ignored) {
+            // Retry on the next run; a failing database must not kill the housekeeper
+        }
+    }
+
+    /* -------------------------------
+       DataSource boilerplate
+       ------------------------------- */
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /* -------------------------------
+       Simple holders
+       ------------------------------- */
+
+    private static final class Entry {
+        final Connection raw;
+        final long createdAt = System.nanoTime();
+        final boolean readOnly;
+        final int isolation;
+        volatile long lastUsed = createdAt;
+        volatile boolean broken;
+
+        Entry(Connection raw) throws SQLException {
+            this.raw = raw;
+            this.readOnly = raw.isReadOnly();
+            this.isolation = raw.getTransactionIsolation();
+        }
+    }
+
+    /** Proxy handler for one lease of a physical connection. */
+    private final class Lease implements InvocationHandler {
+        private final Entry entry;
+        private volatile boolean returned;
+        private boolean dirty;
+
+        Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(entry, dirty);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.raw + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("Connection has been returned to the pool");
+            if (name.equals("setReadOnly") || name.equals("setTransactionIsolation")) dirty = true;
+
+            try {
+                return method.invoke(entry.raw, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    // SQLSTATE class 08 = connection exception; don't hand this connection out again
+                    if (state != null && state.startsWith("08")) entry.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+
+    /**
+     * Builder for ConnectionPool.
+     */
+    public static class Builder {
+        private final ConnectionSource source;
+        private int maxSize = 10;
+        private int minIdle = 0;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration validationTimeout = Duration.ofSeconds(5);
+        private Duration validationInterval = Duration.ofMillis(500);
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private Duration maxLifetime = Duration.ofMinutes(30);
+        private Duration housekeepingPeriod = Duration.ofSeconds(30);
+
+        private Builder(ConnectionSource source) {
+            this.source = source;
+        }
+
+        /**
+         * Sets the maximum number of connections leased at once.
+         *
+         * @param maxSize the maximum pool size
+         * @return this builder
+         */
+        public Builder maxSize(int maxSize) {
+            if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive");
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of idle connections kept open by housekeeping.
+         *
+         * @param minIdle the minimum number of idle connections
+         * @return this builder
+         */
+        public Builder minIdle(int minIdle) {
+            if (minIdle < 0) throw new IllegalArgumentException("minIdle must not be negative");
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * Sets how long a borrower waits for a free connection.
+         *
+         * @param acquireTimeout the acquire timeout
+         * @return this builder
+         */
+        public Builder acquireTimeout(Duration acquireTimeout) {
+            this.acquireTimeout = requirePositive(acquireTimeout, "acquireTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the timeout passed to {@link Connection#isValid(int)} (rounded up to whole seconds).
+         *
+         * @param validationTimeout the validation timeout
+         * @return this builder
+         */
+        public Builder validationTimeout(Duration validationTimeout) {
+            this.validationTimeout = requirePositive(validationTimeout, "validationTimeout");
+            return this;
+        }
+
+        /**
+         * Sets how long a connection may sit idle before it is validated on borrow.
+         * {@link Duration#ZERO} validates on every borrow.
+         *
+         * @param validationInterval the validation interval
+         * @return this builder
+         */
+        public Builder validationInterval(Duration validationInterval) {
+            Objects.requireNonNull(validationInterval, "validationInterval");
+            if (validationInterval.isNegative()) throw new IllegalArgumentException("validationInterval must not be negative");
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        /**
+         * Sets how long a connection beyond {@code minIdle} may stay idle before it is closed.
+         *
+         * @param idleTimeout the idle timeout, or null to keep idle connections open
+         * @return this builder
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout == null ? null : requirePositive(idleTimeout, "idleTimeout");
+            return this;
+        }
+
+        /**
+         * Sets the age after which a connection is closed instead of being reused.
+         *
+         * @param maxLifetime the maximum lifetime, or null for unlimited
+         * @return this builder
+         */
+        public Builder maxLifetime(Duration maxLifetime) {
+            this.maxLifetime = maxLifetime == null ? null : requirePositive(maxLifetime, "maxLifetime");
+            return this;
+        }
+
+        /**
+         * Sets how often idle eviction and {@code minIdle} top-up run.
+         *
+         * @param housekeepingPeriod the housekeeping period
+         * @return this builder
+         */
+        public Builder housekeepingPeriod(Duration housekeepingPeriod) {
+            this.housekeepingPeriod = requirePositive(housekeepingPeriod, "housekeepingPeriod");
+            return this;
+        }
+
+        /**
+         * Builds the ConnectionPool.
+         *
+         * @return a new ConnectionPool instance
+         */
+        public ConnectionPool build() {
+            return new ConnectionPool(this);
+        }
+
+        private static Duration requirePositive(Duration d, String name) {
+            Objects.requireNonNull(d, name);
+            if (d.isNegative() || d.isZero()) throw new IllegalArgumentException(name + " must be positive");
+            return d;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.oldskooler.entity4j.pool;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time snapshot of a {@link ConnectionPool}'s state and counters.
+ */
+public final class PoolMetrics {
+    private final int maxSize;
+    private final int total;
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long createdCount;
+    private final long destroyedCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    PoolMetrics(int maxSize, int total, int active, int idle, int waiting,
+                long borrowCount, long timeoutCount, long createdCount, long destroyedCount,
+                long totalWaitNanos, long maxWaitNanos) {
+        this.maxSize = maxSize;
+        this.total = total;
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** @return open physical connections, active plus idle */
+    public int getTotal() {
+        return total;
+    }
+
+    /** @return connections currently leased out */
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    /** @return threads currently blocked waiting for a connection */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /** @return active connections as a fraction of the maximum pool size, 0.0 to 1.0 */
+    public double getUtilisation() {
+        return maxSize == 0 ? 0.0 : (double) active / maxSize;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /** @return borrows that gave up after the acquire timeout */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    /** @return physical connections closed (evicted, expired, failed validation or broken) */
+    public long getDestroyedCount() {
+        return destroyedCount;
+    }
+
+    /** @return mean time a successful borrow spent waiting for a free slot */
+    public Duration getAverageWait() {
+        return borrowCount == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / borrowCount);
+    }
+
+    public Duration getMaxWait() {
+        return Duration.ofNanos(maxWaitNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{total=" + total + ", active=" + active + ", idle=" + idle + ", waiting=" + waiting
+                + ", max=" + maxSize + ", borrows=" + borrowCount + ", timeouts=" + timeoutCount
+                + ", avgWait=" + getAverageWait().toNanos() / 1000 + "us, maxWait=" + maxWaitNanos / 1000 + "us}";
+    }
+}
@@ -0,0 +1,174 @@
+package org.oldskooler.entity4j.pool;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+
+/**
+ * A {@link Connection} that can be shared by many threads because it holds no physical
+ * connection of its own: every statement it creates borrows a connection from the pool and
+ * returns it when the statement is closed.
+ * <p>
+ * Auto-commit is always on. Anything that needs connection affinity (transactions,
+ * savepoints, session settings) fails with {@link SQLFeatureNotSupportedException}; use a
+ * leased connection for that. Metadata calls borrow a connection per call and materialize
+ * result sets in memory.
+ * </p>
+ */
+public final class StatementScopedConnection {
+    private StatementScopedConnection() {}
+
+    /**
+     * @param pool the pool statements borrow from
+     * @return a thread-safe connection view over the pool
+     */
+    public static Connection over(ConnectionPool pool) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(pool));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final ConnectionPool pool;
+
+        ConnectionHandler(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Class<?> rt = method.getReturnType();
+
+            switch (name) {
+                case "close":
+                    return null; // lifetime is the pool's
+                case "isClosed":
+                    return pool.isClosed();
+                case "isValid":
+                    return !pool.isClosed();
+                case "getAutoCommit":
+                    return true;
+                case "setAutoCommit":
+                    if (Boolean.TRUE.equals(args[0])) return null;
+                    throw new SQLFeatureNotSupportedException("Transactions need a leased connection; this connection borrows one per statement");
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementScopedConnection[" + pool + "]";
+                case "unwrap":
+                case "isWrapperFor":
+                    throw new SQLFeatureNotSupportedException(name + " is not supported on a statement-scoped connection");
+                default:
+                    break;
+            }
+
+            if (Statement.class.isAssignableFrom(rt)) {
+                Connection c = pool.getConnection();
+                try {
+                    Statement stmt = (Statement) StatementScopedConnection.invoke(c, method, args);
+                    return Proxy.newProxyInstance(
+                            Statement.class.getClassLoader(),
+                            new Class<?>[]{rt},
+                            new StatementHandler(stmt, c, (Connection) proxy));
+                } catch (Throwable t) {
+                    c.close();
+                    throw t;
+                }
+            }
+
+            if (rt == DatabaseMetaData.class) {
+                return Proxy.newProxyInstance(
+                        DatabaseMetaData.class.getClassLoader(),
+                        new Class<?>[]{DatabaseMetaData.class},
+                        new MetaDataHandler(pool, (Connection) proxy));
+            }
+
+            if (name.startsWith("set") || name.equals("commit") || name.equals("rollback")
+                    || name.equals("releaseSavepoint") || name.equals("abort")) {
+                throw new SQLFeatureNotSupportedException(name + " needs a leased connection; this connection borrows one per statement");
+            }
+
+            // Plain getters and factories (createClob, getSchema, nativeSQL...): run on any connection
+            try (Connection c = pool.getConnection()) {
+                return StatementScopedConnection.invoke(c, method, args);
+            }
+        }
+    }
+
+    /** Closes the statement, then returns its connection. */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final Connection borrowed;
+        private final Connection owner;
+        private boolean closed;
+
+        StatementHandler(Statement target, Connection borrowed, Connection owner) {
+            this.target = target;
+            this.borrowed = borrowed;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close") && method.getParameterCount() == 0) {
+                if (closed) return null;
+                closed = true;
+                try {
+                    target.close();
+                } finally {
+                    borrowed.close();
+                }
+                return null;
+            }
+            if (name.equals("getConnection")) return owner;
+            if (name.equals("isClosed")) return closed || target.isClosed();
+            return StatementScopedConnection.invoke(target, method, args);
+        }
+    }
+
+    /** Runs each metadata call on a borrowed connection; result sets are copied before it is returned. */
+    private static final class MetaDataHandler implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final Connection owner;
+
+        MetaDataHandler(ConnectionPool pool, Connection owner) {
+            this.pool = pool;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getConnection")) return owner;
+            if (method.getDeclaringClass() == Object.class) return method.invoke(this, args);
+
+            try (Connection c = pool.getConnection()) {
+                Object result = StatementScopedConnection.invoke(c.getMetaData(), method, args);
+                if (result instanceof ResultSet) {
+                    try (ResultSet rs = (ResultSet) result) {
+                        CachedRowSet copy = RowSetProvider.newFactory().createCachedRowSet();
+                        copy.populate(rs);
+                        return copy;
+                    }
+                }
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.oldskooler.entity4j.routing;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sends reads to replica databases while writes stay on the context's own (primary)
+ * connection.
+ * <p>
+ * Each read borrows a connection from one replica, chosen by the {@link Balance} policy, and
+ * closes it when the read completes, so replica data sources should be pooled. A replica whose
+ * data source fails to hand out a connection is skipped for the retry delay; if no replica is
+ * available the read runs on the primary.
+ * </p>
+ * <p>
+ * A read that fails on a replica with a transient or connection failure
+ * ({@link SQLTransientException}, {@link SQLRecoverableException} or SQLState class 08) is run
+ * once more on the primary, unless the caller reports that the read already had effects that
+ * running it again would repeat. After a connection failure the replica is also skipped for the
+ * retry delay. Other errors, such as syntax errors, are thrown as they would fail on the
+ * primary too.
+ * </p>
+ * <p>
+ * With a read-your-writes window, reads from a context that wrote within the window go to the
+ * primary, so that callers see their own writes despite replication lag.
+ * </p>
+ */
+public final class ReadRouting {
+
+    /** How a replica is picked for each read. */
+    public enum Balance {
+        /** Cycle through the replicas in order */
+        ROUND_ROBIN,
+        /** Pick a replica uniformly at random */
+        RANDOM,
+        /** Pick the replica with the fewest reads in progress */
+        LEAST_IN_FLIGHT
+    }
+
+    /** Reads on a borrowed replica connection. */
+    @FunctionalInterface
+    public interface ReplicaRead<R> {
+        R apply(Connection connection) throws SQLException;
+    }
+
+    private final List<Replica> replicas;
+    private final Balance balance;
+    private final Duration readYourWrites;
+    private final Duration retryAfter;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryFallbacks = new LongAdder();
+
+    private ReadRouting(Builder b) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(b.replicas));
+        this.balance = b.balance;
+        this.readYourWrites = b.readYourWrites;
+        this.retryAfter = b.retryAfter;
+    }
+
+    /**
+     * Creates a builder for read routing.
+     *
+     * @return a new Builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs a read that can safely be repeated, such as a single query, on a replica; see
+     * {@link #read(ReplicaRead, Supplier, BooleanSupplier)}.
+     *
+     * @param onReplica the read to run on a replica connection
+     * @param onPrimary the same read against the primary
+     * @param <R>       the result type
+     * @return the result of whichever ran
+     */
+    public <R> R read(ReplicaRead<R> onReplica, Supplier<R> onPrimary) {
+        return read(onReplica, onPrimary, () -> true);
+    }
+
+    /**
+     * Runs {@code onReplica} on a connection borrowed from a replica, or {@code onPrimary} if
+     * no replica could provide one or the replica read failed with a transient or connection
+     * failure while {@code repeatable} still returns true.
+     *
+     * @param onReplica  the read to run on a replica connection
+     * @param onPrimary  the same read against the primary
+     * @param repeatable asked after a replica failure; false once the read has done something,
+     *                   such as running a caller's action, that must not happen twice
+     * @param <R>        the result type
+     * @return the result of whichever ran
+     * @throws RuntimeException if the read fails on the primary, with the replica's failure
+     *         suppressed, or if it fails on the replica and is not run again
+     */
+    public <R> R read(ReplicaRead<R> onReplica, Supplier<R> onPrimary, BooleanSupplier repeatable) {
+        int attempts = replicas.size();
+        for (int i = 0; i < attempts; i++) {
+            Replica replica = choose();
+            if (replica == null) break;
+
+            Connection conn;
+            try {
+                conn = replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.failures.increment();
+                replica.downUntil = System.nanoTime() + retryAfter.toNanos();
+                continue;
+            }
+
+            RuntimeException failure;
+            replica.inFlight.incrementAndGet();
+            try (Connection c = conn) {
+                R result = onReplica.apply(c);
+                replica.reads.increment();
+                return result;
+            } catch (SQLException e) {
+                failure = new RuntimeException("Read on replica '" + replica.name + "' failed", e);
+            } catch (RuntimeException e) {
+                if (sqlCause(e) == null) throw e;
+                failure = e;
+            } finally {
+                replica.inFlight.decrementAndGet();
+            }
+
+            SQLException cause = sqlCause(failure);
+            if (isConnectionFailure(cause)) {
+                replica.failures.increment();
+                replica.downUntil = System.nanoTime() + retryAfter.toNanos();
+            } else if (!(cause instanceof SQLTransientException)) {
+                throw failure;
+            }
+            if (!repeatable.getAsBoolean()) throw failure;
+
+            primaryFallbacks.increment();
+            try {
+                return onPrimary.get();
+            } catch (RuntimeException e) {
+                e.addSuppressed(failure);
+                throw e;
+            }
+        }
+
+        primaryFallbacks.increment();
+        return onPrimary.get();
+    }
+
+    private static SQLException sqlCause(Throwable t) {
+        for (int depth = 0; t != null && depth < 16; t = t.getCause(), depth++) {
+            if (t instanceof SQLException) return (SQLException) t;
+        }
+        return null;
+    }
+
+    /** SQLState class 08 and the JDBC connection exception types mean the replica itself is unreachable. */
+    private static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    /**
+     * @param lastWriteNanos {@link System#nanoTime()} of the context's last write, or
+     *                       {@link Long#MIN_VALUE} if it has not written
+     * @return true if reads should stay on the primary to observe that write
+     */
+    public boolean withinReadYourWrites(long lastWriteNanos) {
+        if (readYourWrites.isZero() || lastWriteNanos == Long.MIN_VALUE) return false;
+        return System.nanoTime() - lastWriteNanos < readYourWrites.toNanos();
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public Balance getBalance() {
+        return balance;
+    }
+
+    public Duration getReadYourWrites() {
+        return readYourWrites;
+    }
+
+    /** @return reads that ran on the primary because no replica was available or the replica read failed transiently */
+    public long getPrimaryFallbackCount() {
+        return primaryFallbacks.sum();
+    }
+
+    /** Picks an available replica, or null if all are marked down. */
+    private Replica choose() {
+        long now = System.nanoTime();
+        int n = replicas.size();
+        switch (balance) {
+            case RANDOM: {
+                int start = ThreadLocalRandom.current().nextInt(n);
+                for (int i = 0; i < n; i++) {
+                    Replica r = replicas.get((start + i) % n);
+                    if (r.isUp(now)) return r;
+                }
+                return null;
+            }
+            case LEAST_IN_FLIGHT: {
+                Replica best = null;
+                for (Replica r : replicas) {
+                    if (r.isUp(now) && (best == null || r.inFlight.get() < best.inFlight.get())) best = r;
+                }
+                return best;
+            }
+            case ROUND_ROBIN:
+            default: {
+                int start = Math.floorMod(next.getAndIncrement(), n);
+                for (int i = 0; i < n; i++) {
+                    Replica r = replicas.get((start + i) % n);
+                    if (r.isUp(now)) return r;
+                }
+                return null;
+            }
+        }
+    }
+
+    /** A replica data source and its counters. */
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile long downUntil = Long.MIN_VALUE;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        boolean isUp(long now) {
+            return downUntil == Long.MIN_VALUE || now - downUntil >= 0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        /** @return reads currently running on this replica */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getReadCount() {
+            return reads.sum();
+        }
+
+        /** @return times the replica failed to provide a connection or lost it during a read */
+        public long getFailureCount() {
+            return failures.sum();
+        }
+    }
+
+    /**
+     * Builder for ReadRouting.
+     */
+    public static class Builder {
+        private final List<Replica> replicas = new ArrayList<>();
+        private Balance balance = Balance.ROUND_ROBIN;
+        private Duration readYourWrites = Duration.ZERO;
+        private Duration retryAfter = Duration.ofSeconds(5);
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a replica, named after its position.
+         *
+         * @param dataSource the replica's data source, ideally pooled
+         * @return this builder
+         */
+        public Builder replica(DataSource dataSource) {
+            return replica("replica-" + replicas.size(), dataSource);
+        }
+
+        /**
+         * Adds a named replica.
+         *
+         * @param name       the name used in errors and metrics
+         * @param dataSource the replica's data source, ideally pooled
+         * @return this builder
+         */
+        public Builder replica(String name, DataSource dataSource) {
+            replicas.add(new Replica(Objects.requireNonNull(name, "name"), Objects.requireNonNull(dataSource, "dataSource")));
+            return this;
+        }
+
+        /**
+         * Sets the load-balancing policy. Defaults to {@link Balance#ROUND_ROBIN}.
+         *
+         * @param balance the policy
+         * @return this builder
+         */
+        public Builder balance(Balance balance) {
+            this.balance = Objects.requireNonNull(balance, "balance");
+            return this;
+        }
+
+        /**
+         * Keeps a context's reads on the primary for this long after it writes.
+         * Defaults to zero (disabled).
+         *
+         * @param window the read-your-writes window
+         * @return this builder
+         */
+        public Builder readYourWrites(Duration window) {
+            if (window == null || window.isNegative()) throw new IllegalArgumentException("window must be zero or positive");
+            this.readYourWrites = window;
+            return this;
+        }
+
+        /**
+         * Sets how long a replica is skipped after failing to provide a connection.
+         * Defaults to 5 seconds.
+         *
+         * @param retryAfter the delay before the replica is tried again
+         * @return this builder
+         */
+        public Builder retryAfter(Duration retryAfter) {
+            this.retryAfter = Objects.requireNonNull(retryAfter, "retryAfter");
+            return this;
+        }
+
+        /**
+         * Builds the ReadRouting.
+         *
+         * @return a new ReadRouting instance
+         * @throws IllegalStateException if no replica was added
+         */
+        public ReadRouting build() {
+            if (replicas.isEmpty()) throw new IllegalStateException("At least one replica is required");
+            return new ReadRouting(this);
+        }
+    }
+}
@@ -102,6 +102,10 @@ public final class SelectionPart implements Serializable {
         return new SelectionPart(kind, entityType, propertyName, alias, aggregateFunction, distinct, expression, order);
     }
 
+    public SelectionPart withAggregate(AggregateFunction func) {
+        return new SelectionPart(Kind.AGGREGATE, entityType, propertyName, alias, func, distinct, expression, orderBy);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("SelectionPart{");
@@ -1,10 +1,13 @@
 package org.oldskooler.entity4j.transaction;
 
+import org.oldskooler.entity4j.diagnostics.FlightRecorderEvents;
+
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Implementation of Transaction interface that wraps a JDBC connection
@@ -17,6 +20,12 @@ public class DbTransaction implements Transaction {
     private boolean isCompleted;
     private final List<Savepoint> savepoints;
 
+    /** Flight Recorder event spanning the transaction, or null if not recorded */
+    private Object jfrEvent;
+
+    /** Callbacks run once the transaction completes, or null if none were registered */
+    private List<Consumer<Boolean>> completionCallbacks;
+
     /**
      * Creates a new transaction with the given connection.
      * Disables auto-commit mode on the connection.
@@ -36,18 +45,22 @@ public class DbTransaction implements Transaction {
 
         // Begin transaction by disabling auto-commit
         connection.setAutoCommit(false);
+        this.jfrEvent = FlightRecorderEvents.beginTransaction();
     }
 
     @Override
     public void commit() throws SQLException {
         checkNotCompleted();
 
+        long start = System.nanoTime();
         try {
             connection.commit();
             isCompleted = true;
         } finally {
             restoreAutoCommit();
             clearSavepoints();
+            recordCompletion("commit", start);
+            runCompletionCallbacks(isCompleted);
         }
     }
 
@@ -55,12 +68,15 @@ public class DbTransaction implements Transaction {
     public void rollback() throws SQLException {
         checkNotCompleted();
 
+        long start = System.nanoTime();
         try {
             connection.rollback();
             isCompleted = true;
         } finally {
             restoreAutoCommit();
             clearSavepoints();
+            recordCompletion("rollback", start);
+            runCompletionCallbacks(false);
         }
     }
 
@@ -144,6 +160,56 @@ public class DbTransaction implements Transaction {
         }
     }
 
+    /**
+     * Registers a callback run once this transaction has committed or rolled back, whether or
+     * not the commit or rollback call succeeded.
+     *
+     * @param callback receives true if the transaction committed
+     */
+    public void onCompletion(Consumer<Boolean> callback) {
+        if (completionCallbacks == null) completionCallbacks = new ArrayList<>(1);
+        completionCallbacks.add(callback);
+    }
+
+    /**
+     * Gets the isolation level reported for this transaction.
+     *
+     * @return the isolation level, or null if the connection's default is used
+     */
+    protected String isolationLevelName() {
+        return null;
+    }
+
+    /**
+     * Gets whether this transaction is reported as read-only.
+     *
+     * @return true if the transaction was opened read-only
+     */
+    protected boolean isReadOnlyTransaction() {
+        return false;
+    }
+
+    private void recordCompletion(String outcome, long start) {
+        if (jfrEvent == null) return;
+        Object event = jfrEvent;
+        jfrEvent = null;
+        FlightRecorderEvents.endTransaction(event, isCompleted ? outcome : outcome + " failed",
+                isolationLevelName(), isReadOnlyTransaction(), System.nanoTime() - start);
+    }
+
+    private void runCompletionCallbacks(boolean committed) {
+        if (completionCallbacks == null) return;
+        List<Consumer<Boolean>> callbacks = completionCallbacks;
+        completionCallbacks = null;
+        for (Consumer<Boolean> c : callbacks) {
+            try {
+                c.accept(committed);
+            } catch (RuntimeException e) {
+                System.err.println("Warning: transaction completion callback failed: " + e);
+            }
+        }
+    }
+
     private void checkNotCompleted() {
         if (isCompleted) {
             throw new IllegalStateException("Transaction has already been completed");
@@ -60,6 +60,16 @@ public class DbTransactionEnhanced extends DbTransaction {
         }
     }
 
+    @Override
+    protected String isolationLevelName() {
+        return options.getIsolationLevel() != null ? options.getIsolationLevel().name() : null;
+    }
+
+    @Override
+    protected boolean isReadOnlyTransaction() {
+        return options.isReadOnly();
+    }
+
     private void applyOptions(Connection connection) throws SQLException {
         // Set isolation level
         if (options.getIsolationLevel() != null) {
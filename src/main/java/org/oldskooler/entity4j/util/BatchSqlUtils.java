@@ -1,6 +1,8 @@
 package org.oldskooler.entity4j.util;
 
+import org.oldskooler.entity4j.dialect.MultiRowKeyStrategy;
 import org.oldskooler.entity4j.dialect.SqlDialect;
+import org.oldskooler.entity4j.mapping.PrimaryKey;
 import org.oldskooler.entity4j.mapping.TableMeta;
 
 import java.util.*;
@@ -15,10 +17,7 @@ public final class BatchSqlUtils {
     }
 
     public static <T> String buildMultiRowInsertSql(SqlDialect dialect, TableMeta<T> m, List<String> cols, int rows) {
-        String colList = String.join(", ", cols.stream().map(dialect::q).toArray(String[]::new));
-        String rowPlaceholders = "(" + String.join(", ", Collections.nCopies(cols.size(), "?")) + ")";
-        String values = String.join(", ", Collections.nCopies(rows, rowPlaceholders));
-        String sql = "INSERT INTO " + dialect.q(m.table) + " (" + colList + ") VALUES " + values;
+        String sql = buildValuesInsertSql(dialect, m, cols, rows);
 
         // Only add RETURNING if exactly one auto PK
         if (dialect.useInsertReturning() && PrimaryKeyUtils.getSingleAutoPk(m).isPresent()) {
@@ -27,6 +26,28 @@ public final class BatchSqlUtils {
         return sql;
     }
 
+    /** Build a multi-row INSERT that returns the generated keys the way {@code keys} reads them. */
+    public static <T> String buildMultiRowInsertSql(SqlDialect dialect, TableMeta<T> m, List<String> cols, int rows,
+                                                    MultiRowKeyStrategy keys) {
+        switch (keys.getKind()) {
+            case OUTPUT_INSERTED:
+                return dialect.buildOutputInsertSql(m, cols, rows);
+            case RETURNING:
+                Optional<Map.Entry<String, PrimaryKey>> auto = PrimaryKeyUtils.getSingleAutoPk(m);
+                String sql = buildValuesInsertSql(dialect, m, cols, rows);
+                return auto.isPresent() ? sql + " RETURNING " + dialect.q(m.propToColumn.get(auto.get().getValue().property)) : sql;
+            default:
+                return buildValuesInsertSql(dialect, m, cols, rows);
+        }
+    }
+
+    private static <T> String buildValuesInsertSql(SqlDialect dialect, TableMeta<T> m, List<String> cols, int rows) {
+        String colList = String.join(", ", cols.stream().map(dialect::q).toArray(String[]::new));
+        String rowPlaceholders = "(" + String.join(", ", Collections.nCopies(cols.size(), "?")) + ")";
+        String values = String.join(", ", Collections.nCopies(rows, rowPlaceholders));
+        return "INSERT INTO " + dialect.q(m.table) + " (" + colList + ") VALUES " + values;
+    }
+
     public static <T> void collectInsertParams(T entity, TableMeta<T> m, List<String> cols, List<Object> out) {
         Map<String, Object> vals = ReflectionUtils.extractValues(entity, m);
         for (String col : cols) {
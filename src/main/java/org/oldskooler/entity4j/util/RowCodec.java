@@ -0,0 +1,364 @@
+package org.oldskooler.entity4j.util;
+
+import org.oldskooler.entity4j.mapping.TableMeta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compact binary row format for mapped entities, derived from {@link TableMeta}.
+ * <p>
+ * A row is a null bitmap (one bit per mapped property, in {@code propToColumn} order) followed by
+ * the non-null values in a fixed per-type encoding. The layout carries no column names or type
+ * tags, so rows can only be read back by a codec built from the same mapping.
+ * </p>
+ */
+public final class RowCodec<T> {
+    private final TableMeta<T> meta;
+    private final Constructor<T> ctor;
+    private final Field[] fields;
+    private final ValueType[] types;
+    private final int bitmapBytes;
+
+    private RowCodec(TableMeta<T> meta, Constructor<T> ctor, Field[] fields, ValueType[] types) {
+        this.meta = meta;
+        this.ctor = ctor;
+        this.fields = fields;
+        this.types = types;
+        this.bitmapBytes = (fields.length + 7) / 8;
+    }
+
+    /**
+     * Builds a codec for the mapped entity.
+     *
+     * @param m   entity metadata
+     * @param <T> entity type
+     * @return the codec
+     * @throws IllegalArgumentException if a mapped property has a type the format can't encode,
+     *                                  or the entity has no no-arg constructor
+     */
+    public static <T> RowCodec<T> of(TableMeta<T> m) {
+        Field[] fields = new Field[m.propToColumn.size()];
+        ValueType[] types = new ValueType[fields.length];
+        int i = 0;
+        for (String prop : m.propToColumn.keySet()) {
+            Field f = m.propToField.get(prop);
+            ValueType vt = ValueType.of(f.getType());
+            if (vt == null) {
+                throw new IllegalArgumentException("Unsupported type for binary rows: "
+                        + m.type.getName() + "." + prop + " (" + f.getType().getName() + ")");
+            }
+            f.setAccessible(true);
+            fields[i] = f;
+            types[i] = vt;
+            i++;
+        }
+
+        try {
+            Constructor<T> ctor = m.type.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            return new RowCodec<>(m, ctor, fields, types);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No no-arg constructor on " + m.type.getName(), e);
+        }
+    }
+
+    /**
+     * @param m entity metadata
+     * @return true if {@link #of(TableMeta)} can build a codec for the entity
+     */
+    public static boolean supports(TableMeta<?> m) {
+        for (String prop : m.propToColumn.keySet()) {
+            if (ValueType.of(m.propToField.get(prop).getType()) == null) return false;
+        }
+        try {
+            m.type.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public TableMeta<T> meta() {
+        return meta;
+    }
+
+    /* -------------------------------
+       Encoding
+       ------------------------------- */
+
+    /**
+     * Encodes a list of entities as a row count followed by the rows.
+     *
+     * @param rows entities to encode
+     * @return the encoded bytes
+     */
+    public byte[] encodeAll(List<? extends T> rows) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + rows.size() * fields.length * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(rows.size());
+            for (T row : rows) write(row, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream; never thrown
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a single entity.
+     *
+     * @param entity entity to encode
+     * @return the encoded bytes
+     */
+    public byte[] encode(T entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + fields.length * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            write(entity, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a single entity as one row.
+     *
+     * @param entity entity to encode
+     * @param out    target stream
+     * @throws IOException if the stream fails
+     */
+    public void write(T entity, DataOutputStream out) throws IOException {
+        Object[] values = new Object[fields.length];
+        byte[] bitmap = new byte[bitmapBytes];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = ReflectionUtils.getField(entity, fields[i]);
+            if (values[i] == null) bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+        }
+        out.write(bitmap);
+        for (int i = 0; i < fields.length; i++) {
+            if (values[i] != null) types[i].write(out, values[i]);
+        }
+    }
+
+    /* -------------------------------
+       Decoding
+       ------------------------------- */
+
+    /**
+     * Decodes rows written by {@link #encodeAll(List)}.
+     *
+     * @param in buffer positioned at the row count
+     * @return the decoded entities
+     */
+    public List<T> decodeAll(ByteBuffer in) {
+        int n = in.getInt();
+        List<T> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(read(in));
+        return out;
+    }
+
+    /**
+     * Decodes a single row, advancing the buffer past it.
+     *
+     * @param in buffer positioned at the start of a row
+     * @return a new entity instance
+     */
+    public T read(ByteBuffer in) {
+        byte[] bitmap = new byte[bitmapBytes];
+        in.get(bitmap);
+        try {
+            T inst = ctor.newInstance();
+            for (int i = 0; i < fields.length; i++) {
+                boolean isNull = (bitmap[i >>> 3] & (1 << (i & 7))) != 0;
+                if (isNull) {
+                    if (!fields[i].getType().isPrimitive()) fields[i].set(inst, null);
+                    continue;
+                }
+                fields[i].set(inst, types[i].read(in, fields[i].getType()));
+            }
+            return inst;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to decode " + meta.type.getName(), e);
+        }
+    }
+
+    /* -------------------------------
+       Per-type encodings
+       ------------------------------- */
+
+    private enum ValueType {
+        BOOLEAN {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeBoolean((Boolean) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.get() != 0; }
+        },
+        BYTE {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeByte((Byte) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.get(); }
+        },
+        SHORT {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeShort((Short) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getShort(); }
+        },
+        CHAR {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeChar((Character) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getChar(); }
+        },
+        INT {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeInt((Integer) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getInt(); }
+        },
+        LONG {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeLong((Long) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getLong(); }
+        },
+        FLOAT {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeFloat((Float) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getFloat(); }
+        },
+        DOUBLE {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeDouble((Double) v); }
+            Object read(ByteBuffer in, Class<?> t) { return in.getDouble(); }
+        },
+        STRING {
+            void write(DataOutputStream out, Object v) throws IOException { writeBytes(out, ((String) v).getBytes(StandardCharsets.UTF_8)); }
+            Object read(ByteBuffer in, Class<?> t) { return new String(readBytes(in), StandardCharsets.UTF_8); }
+        },
+        BYTES {
+            void write(DataOutputStream out, Object v) throws IOException { writeBytes(out, (byte[]) v); }
+            Object read(ByteBuffer in, Class<?> t) { return readBytes(in); }
+        },
+        BIG_INTEGER {
+            void write(DataOutputStream out, Object v) throws IOException { writeBytes(out, ((BigInteger) v).toByteArray()); }
+            Object read(ByteBuffer in, Class<?> t) { return new BigInteger(readBytes(in)); }
+        },
+        BIG_DECIMAL {
+            void write(DataOutputStream out, Object v) throws IOException {
+                BigDecimal d = (BigDecimal) v;
+                out.writeInt(d.scale());
+                writeBytes(out, d.unscaledValue().toByteArray());
+            }
+            Object read(ByteBuffer in, Class<?> t) {
+                int scale = in.getInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+        },
+        LOCAL_DATE {
+            void write(DataOutputStream out, Object v) throws IOException { out.writeLong(((LocalDate) v).toEpochDay()); }
+            Object read(ByteBuffer in, Class<?> t) { return LocalDate.ofEpochDay(in.getLong()); }
+        },
+        LOCAL_DATE_TIME {
+            void write(DataOutputStream out, Object v) throws IOException {
+                LocalDateTime ldt = (LocalDateTime) v;
+                out.writeLong(ldt.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(ldt.getNano());
+            }
+            Object read(ByteBuffer in, Class<?> t) {
+                long secs = in.getLong();
+                return LocalDateTime.ofEpochSecond(secs, in.getInt(), ZoneOffset.UTC);
+            }
+        },
+        INSTANT {
+            void write(DataOutputStream out, Object v) throws IOException {
+                Instant i = (Instant) v;
+                out.writeLong(i.getEpochSecond());
+                out.writeInt(i.getNano());
+            }
+            Object read(ByteBuffer in, Class<?> t) {
+                long secs = in.getLong();
+                return Instant.ofEpochSecond(secs, in.getInt());
+            }
+        },
+        UTIL_DATE {
+            void write(DataOutputStream out, Object v) throws IOException {
+                Date d = (Date) v;
+                out.writeLong(d.getTime());
+                out.writeInt(d instanceof java.sql.Timestamp ? ((java.sql.Timestamp) d).getNanos() : 0);
+            }
+            Object read(ByteBuffer in, Class<?> t) {
+                long millis = in.getLong();
+                int nanos = in.getInt();
+                if (t == java.sql.Timestamp.class) {
+                    java.sql.Timestamp ts = new java.sql.Timestamp(millis);
+                    ts.setNanos(nanos);
+                    return ts;
+                }
+                if (t == java.sql.Date.class) return new java.sql.Date(millis);
+                if (t == java.sql.Time.class) return new java.sql.Time(millis);
+                return new Date(millis);
+            }
+        },
+        UUID {
+            void write(DataOutputStream out, Object v) throws IOException {
+                java.util.UUID u = (java.util.UUID) v;
+                out.writeLong(u.getMostSignificantBits());
+                out.writeLong(u.getLeastSignificantBits());
+            }
+            Object read(ByteBuffer in, Class<?> t) {
+                long msb = in.getLong();
+                return new java.util.UUID(msb, in.getLong());
+            }
+        },
+        ENUM {
+            void write(DataOutputStream out, Object v) throws IOException {
+                writeBytes(out, ((Enum<?>) v).name().getBytes(StandardCharsets.UTF_8));
+            }
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Object read(ByteBuffer in, Class<?> t) {
+                return Enum.valueOf((Class) t, new String(readBytes(in), StandardCharsets.UTF_8));
+            }
+        };
+
+        abstract void write(DataOutputStream out, Object v) throws IOException;
+
+        abstract Object read(ByteBuffer in, Class<?> targetType);
+
+        static ValueType of(Class<?> t) {
+            if (t == boolean.class || t == Boolean.class) return BOOLEAN;
+            if (t == byte.class || t == Byte.class) return BYTE;
+            if (t == short.class || t == Short.class) return SHORT;
+            if (t == char.class || t == Character.class) return CHAR;
+            if (t == int.class || t == Integer.class) return INT;
+            if (t == long.class || t == Long.class) return LONG;
+            if (t == float.class || t == Float.class) return FLOAT;
+            if (t == double.class || t == Double.class) return DOUBLE;
+            if (t == String.class) return STRING;
+            if (t == byte[].class) return BYTES;
+            if (t == BigInteger.class) return BIG_INTEGER;
+            if (t == BigDecimal.class) return BIG_DECIMAL;
+            if (t == LocalDate.class) return LOCAL_DATE;
+            if (t == LocalDateTime.class) return LOCAL_DATE_TIME;
+            if (t == Instant.class) return INSTANT;
+            if (Date.class.isAssignableFrom(t)) return UTIL_DATE;
+            if (t == java.util.UUID.class) return UUID;
+            if (t.isEnum()) return ENUM;
+            return null;
+        }
+
+        static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+            out.writeInt(b.length);
+            out.write(b);
+        }
+
+        static byte[] readBytes(ByteBuffer in) {
+            byte[] b = new byte[in.getInt()];
+            in.get(b);
+            return b;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 
 public final class RowMapper {
     private RowMapper() {}
@@ -17,24 +18,34 @@ public final class RowMapper {
         return out;
     }
 
+    /**
+     * Maps rows one at a time, so that large results need not fit in memory.
+     */
+    public static <T> void forEach(ResultSet rs, TableMeta<T> m, Consumer<? super T> sink) throws SQLException {
+        while (rs.next()) sink.accept(mapRow(rs, m));
+    }
+
     public static List<Map<String, Object>> toMapList(ResultSet rs) throws SQLException {
         List<Map<String, Object>> out = new ArrayList<>();
         ResultSetMetaData md = rs.getMetaData();
-        final int cols = md.getColumnCount();
+        while (rs.next()) out.add(mapRowToMap(rs, md));
+        return out;
+    }
 
-        while (rs.next()) {
-            Map<String, Object> row = new LinkedHashMap<>(cols);
-            for (int i = 1; i <= cols; i++) {
-                String label = md.getColumnLabel(i); // respects SQL aliases
-                Object val = rs.getObject(i);
-                row.put(label, val);
-            }
-            out.add(row);
+    /** Maps the current row of {@code rs} to a map keyed by column label, without advancing it. */
+    public static Map<String, Object> mapRowToMap(ResultSet rs, ResultSetMetaData md) throws SQLException {
+        final int cols = md.getColumnCount();
+        Map<String, Object> row = new LinkedHashMap<>(cols);
+        for (int i = 1; i <= cols; i++) {
+            String label = md.getColumnLabel(i); // respects SQL aliases
+            Object val = rs.getObject(i);
+            row.put(label, val);
         }
-        return out;
+        return row;
     }
 
-    private static <T> T mapRow(ResultSet rs, TableMeta<T> m) throws SQLException {
+    /** Maps the current row of {@code rs} without advancing it. */
+    public static <T> T mapRow(ResultSet rs, TableMeta<T> m) throws SQLException {
         try {
             T inst = m.type.getDeclaredConstructor().newInstance();
             for (Map.Entry<String, String> e : m.propToColumn.entrySet()) {
@@ -0,0 +1,133 @@
+package org.oldskooler.entity4j.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Comparator;
+
+/**
+ * Compares values in Java roughly the way the database compares bound parameters: numbers by
+ * value regardless of their boxed type, enums by name, everything else through
+ * {@link Comparable}. Used when results are filtered or sorted outside the database.
+ * <p>
+ * Strings compare in Java's case-sensitive, code-point order, which matches binary collations
+ * (SQLite's default, PostgreSQL's "C") but not the case-insensitive defaults of MySQL and
+ * SQL Server. The overloads taking a collation compare strings with it instead.
+ * </p>
+ */
+public final class SqlValues {
+    private SqlValues() {}
+
+    /** Orders normalized values; nulls first. Throws IllegalArgumentException for incomparable pairs. */
+    public static final Comparator<Object> ORDER = (a, b) -> {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return compare(a, b);
+    };
+
+    /**
+     * Maps a value to a canonical form so that equal SQL values have equal Java keys:
+     * integral numbers become {@link Long} (or {@link BigDecimal} if they don't fit), other
+     * numbers {@link BigDecimal}, enums their name and chars a one-character string.
+     *
+     * @param v the value
+     * @return the canonical value
+     */
+    public static Object normalize(Object v) {
+        if (v == null) return null;
+        if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            return ((Number) v).longValue();
+        }
+        if (v instanceof Number) {
+            BigDecimal bd = toBigDecimal((Number) v);
+            if (bd == null) return v;
+            bd = bd.stripTrailingZeros();
+            if (bd.scale() <= 0 && bd.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0
+                    && bd.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0) {
+                return bd.longValueExact();
+            }
+            return bd;
+        }
+        if (v instanceof Enum) return ((Enum<?>) v).name();
+        if (v instanceof Character) return v.toString();
+        return v;
+    }
+
+    /**
+     * @return true if both values are non-null and compare equal (SQL {@code =} semantics)
+     */
+    public static boolean equal(Object a, Object b) {
+        if (a == null || b == null) return false;
+        Object na = normalize(a), nb = normalize(b);
+        if (na instanceof BigDecimal && nb instanceof BigDecimal) return ((BigDecimal) na).compareTo((BigDecimal) nb) == 0;
+        if (na instanceof BigDecimal || nb instanceof BigDecimal) return false;
+        return na.equals(nb);
+    }
+
+    /**
+     * Like {@link #ORDER}, comparing strings with {@code collation}.
+     *
+     * @param collation the string ordering of the column
+     * @return a comparator over normalized values; nulls first
+     */
+    public static Comparator<Object> order(Comparator<? super String> collation) {
+        return (a, b) -> {
+            if (a == null) return b == null ? 0 : -1;
+            if (b == null) return 1;
+            return compare(a, b, collation);
+        };
+    }
+
+    /**
+     * Like {@link #equal(Object, Object)}, comparing strings with {@code collation}.
+     *
+     * @return true if both values are non-null and compare equal
+     */
+    public static boolean equal(Object a, Object b, Comparator<? super String> collation) {
+        if (a == null || b == null) return false;
+        Object na = normalize(a), nb = normalize(b);
+        if (na instanceof String && nb instanceof String) return collation.compare((String) na, (String) nb) == 0;
+        return equal(na, nb);
+    }
+
+    /**
+     * Like {@link #compare(Object, Object)}, comparing strings with {@code collation}.
+     *
+     * @throws IllegalArgumentException if the values have no common ordering
+     */
+    public static int compare(Object a, Object b, Comparator<? super String> collation) {
+        Object na = normalize(a), nb = normalize(b);
+        if (na instanceof String && nb instanceof String) return collation.compare((String) na, (String) nb);
+        return compare(na, nb);
+    }
+
+    /**
+     * Compares two non-null values.
+     *
+     * @throws IllegalArgumentException if the values have no common ordering
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int compare(Object a, Object b) {
+        Object na = normalize(a), nb = normalize(b);
+        if (na instanceof Number && nb instanceof Number) {
+            if (na instanceof Long && nb instanceof Long) return Long.compare((Long) na, (Long) nb);
+            BigDecimal x = toBigDecimal((Number) na), y = toBigDecimal((Number) nb);
+            if (x != null && y != null) return x.compareTo(y);
+        }
+        if (na instanceof Comparable && na.getClass().isInstance(nb)) {
+            return ((Comparable) na).compareTo(nb);
+        }
+        if (nb instanceof Comparable && nb.getClass().isInstance(na)) {
+            return -((Comparable) nb).compareTo(na);
+        }
+        throw new IllegalArgumentException("Cannot compare " + na.getClass().getName() + " with " + nb.getClass().getName());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) return (BigDecimal) n;
+        if (n instanceof BigInteger) return new BigDecimal((BigInteger) n);
+        if (n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte) return BigDecimal.valueOf(n.longValue());
+        double d = n.doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) return null;
+        return BigDecimal.valueOf(d);
+    }
+}
@@ -0,0 +1,34 @@
+package org.oldskooler.entity4j.async;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual-thread executors for the async API.
+ * <p>
+ * Java 21 variant, packaged in {@code META-INF/versions/21} of the multi-release jar. Threads
+ * are named {@code entity4j-vt-N} so they can be told apart in thread dumps and JFR recordings.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true; virtual threads are always available on Java 21
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task. Blocking JDBC calls
+     * park the virtual thread instead of occupying a platform thread, so thousands of
+     * operations can wait on the database at once; the connection pool then becomes the limit.
+     *
+     * @return a new executor
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("entity4j-vt-", 1).factory());
+    }
+}